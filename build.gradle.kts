@@ -29,12 +29,37 @@ dependencies {
     implementation("org.jetbrains:annotations:26.0.2")
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    testAnnotationProcessor(project(":processor"))
 }
 
+// The same tests, compiled without the annotation processor so that endpoints are discovered through reflection
+val reflectTest: SourceSet by sourceSets.creating {
+    java.srcDir("src/test/java")
+    resources.srcDir("src/test/resources")
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[reflectTest.implementationConfigurationName].extendsFrom(configurations.testImplementation.get())
+configurations[reflectTest.runtimeOnlyConfigurationName].extendsFrom(configurations.testRuntimeOnly.get())
+
 tasks.test {
     useJUnitPlatform()
 }
 
+val reflectTestTask = tasks.register<Test>("reflectTest") {
+    description = "Runs the tests without the annotation processor."
+    group = "verification"
+    testClassesDirs = reflectTest.output.classesDirs
+    classpath = reflectTest.runtimeClasspath
+    shouldRunAfter(tasks.test)
+    useJUnitPlatform()
+}
+
+tasks.check {
+    dependsOn(reflectTestTask)
+}
+
 tasks.processResources {
     val metaFileName = "BUILD.txt"
     val metaFile = this.project.layout.buildDirectory.file("tmp/processResources/$metaFileName").get().asFile
@@ -0,0 +1,297 @@
+package io.github.wasabithumb.xpdy.payload.body;
+
+import com.sun.net.httpserver.Headers;
+import io.github.wasabithumb.xpdy.except.BodyFormatException;
+import io.github.wasabithumb.xpdy.misc.MimeTypes;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.io.*;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * A {@link Body} extended with {@code multipart/form-data} (RFC 7578) support. Parts are parsed incrementally
+ * from the {@link #stream() stream} of the body, holding no more than a small fixed buffer in memory.
+ */
+public final class MultipartBody extends FilterBody {
+
+    /**
+     * The default number of bytes of a part which {@link #parts()} keeps in memory before spilling the part
+     * to a temporary file
+     */
+    public static final long DEFAULT_MEMORY_THRESHOLD = 65536L;
+
+    private static final int MAX_BOUNDARY = 70;
+
+    /**
+     * Reads a parameter from a header value of the form {@code value; key=token; key="quoted string"}
+     */
+    static @Nullable String parameter(@NotNull String header, @NotNull String key) {
+        int len = header.length();
+        int i = header.indexOf(';');
+        if (i == -1) return null;
+
+        while (i < len) {
+            i++;
+            while (i < len && (header.charAt(i) == ' ' || header.charAt(i) == '\t')) i++;
+
+            int nameStart = i;
+            while (i < len && header.charAt(i) != '=' && header.charAt(i) != ';') i++;
+            String name = header.substring(nameStart, i).strip();
+            if (i == len || header.charAt(i) == ';') continue;
+            i++;
+
+            String value;
+            if (i < len && header.charAt(i) == '"') {
+                StringBuilder sb = new StringBuilder();
+                i++;
+                while (i < len) {
+                    char c = header.charAt(i++);
+                    if (c == '"') break;
+                    if (c == '\\' && i < len) c = header.charAt(i++);
+                    sb.append(c);
+                }
+                value = sb.toString();
+                while (i < len && header.charAt(i) != ';') i++;
+            } else {
+                int valueStart = i;
+                while (i < len && header.charAt(i) != ';') i++;
+                value = header.substring(valueStart, i).strip();
+            }
+
+            if (name.equalsIgnoreCase(key)) return value;
+        }
+        return null;
+    }
+
+    /**
+     * Decodes an extended parameter value (RFC 8187), such as {@code UTF-8''na%C3%AFve.txt}
+     */
+    private static @Nullable String extendedValue(@NotNull String value) {
+        int a = value.indexOf('\'');
+        if (a == -1) return null;
+        int b = value.indexOf('\'', a + 1);
+        if (b == -1) return null;
+
+        Charset charset;
+        try {
+            charset = Charset.forName(value.substring(0, a));
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            return null;
+        }
+
+        try {
+            return URLDecoder.decode(value.substring(b + 1).replace("+", "%2B"), charset);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    //
+
+    MultipartBody(@NotNull Body backing) {
+        super(backing);
+    }
+
+    //
+
+    /**
+     * Provides the boundary declared by the {@code Content-Type} of this body
+     * @throws BodyFormatException The body is not a multipart body, or declares no valid boundary
+     */
+    public @NotNull String boundary() throws BodyFormatException {
+        String type = this.type();
+        if (!type.regionMatches(true, 0, "multipart/", 0, 10))
+            throw new BodyFormatException("Body is not multipart (type is " + type + ")");
+
+        String boundary = parameter(type, "boundary");
+        if (boundary == null || boundary.isEmpty() || boundary.length() > MAX_BOUNDARY)
+            throw new BodyFormatException("Multipart body has no valid boundary");
+        for (int i=0; i < boundary.length(); i++) {
+            char c = boundary.charAt(i);
+            if (c < ' ' || c > '~')
+                throw new BodyFormatException("Multipart boundary contains illegal character");
+        }
+        return boundary;
+    }
+
+    /**
+     * Opens a reader which streams the parts of this body one at a time. This is the most efficient way to
+     * consume large uploads, such as by piping each file directly to its destination.
+     * @throws BodyFormatException The body is not a multipart body
+     */
+    public @NotNull MultipartReader reader() throws IOException, BodyFormatException {
+        String boundary = this.boundary();
+        return new MultipartReader(this.stream(), boundary);
+    }
+
+    /**
+     * Reads all parts of this body so that they may be accessed in any order and read any number of times.
+     * Parts no larger than {@code memoryThreshold} bytes are held in memory, while larger parts are written
+     * to temporary files which are deleted when the returned {@link Parts} is closed.
+     * @param memoryThreshold The maximum size of a part to hold in memory
+     * @param directory The directory in which to create temporary files, or null to use the default
+     *                  temporary-file directory
+     * @throws BodyFormatException The body is not a well-formed multipart body
+     */
+    public @NotNull Parts parts(long memoryThreshold, @Nullable Path directory) throws IOException, BodyFormatException {
+        if (memoryThreshold < 0L)
+            throw new IllegalArgumentException("Memory threshold may not be negative");
+        int threshold = (int) Math.min(memoryThreshold, Integer.MAX_VALUE - 9);
+
+        List<Part> parts = new ArrayList<>();
+        List<Path> files = new ArrayList<>();
+        try (MultipartReader reader = this.reader()) {
+            Part part;
+            while ((part = reader.next()) != null) {
+                Body.Builder builder = Body.builder().type(part.body().type());
+                try (InputStream is = part.body().stream()) {
+                    byte[] head = is.readNBytes(threshold + 1);
+                    if (head.length <= threshold) {
+                        builder.source(() -> new ByteArrayInputStream(head)).size(head.length);
+                    } else {
+                        Path file = (directory == null) ?
+                                Files.createTempFile("xpdy-multipart", ".part") :
+                                Files.createTempFile(directory, "xpdy-multipart", ".part");
+                        files.add(file);
+                        try (OutputStream os = Files.newOutputStream(file)) {
+                            os.write(head);
+                            is.transferTo(os);
+                        }
+                        builder.source(() -> Files.newInputStream(file)).size(Files.size(file));
+                    }
+                }
+                parts.add(new Part(part.headers(), part.name(), part.filename(), builder.build()));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Path file : files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e1) {
+                    e.addSuppressed(e1);
+                }
+            }
+            throw e;
+        }
+        return new Parts(Collections.unmodifiableList(parts), files);
+    }
+
+    /**
+     * Reads all parts of this body, keeping up to {@link #DEFAULT_MEMORY_THRESHOLD} bytes of each part in memory.
+     * @see #parts(long, Path)
+     */
+    public @NotNull Parts parts() throws IOException, BodyFormatException {
+        return this.parts(DEFAULT_MEMORY_THRESHOLD, null);
+    }
+
+    //
+
+    /**
+     * A single part of a multipart body
+     * @param headers The headers of the part
+     * @param name The field name given by the {@code Content-Disposition} header, if any
+     * @param filename The file name given by the {@code Content-Disposition} header, if any
+     * @param body The content of the part. The type of the body is given by the {@code Content-Type} header of
+     *             the part, or {@code text/plain} if absent.
+     */
+    public record Part(
+            @NotNull Headers headers,
+            @Nullable String name,
+            @Nullable String filename,
+            @NotNull Body body
+    ) {
+
+        @SuppressWarnings("PatternValidation")
+        static @NotNull Part of(@NotNull Headers headers, @NotNull Body.Builder body) {
+            String type = headers.getFirst("Content-Type");
+            body.type(type == null ? MimeTypes.TEXT : type);
+
+            String name = null;
+            String filename = null;
+            String disposition = headers.getFirst("Content-Disposition");
+            if (disposition != null) {
+                name = parameter(disposition, "name");
+                String ext = parameter(disposition, "filename*");
+                if (ext != null) filename = extendedValue(ext);
+                if (filename == null) filename = parameter(disposition, "filename");
+            }
+
+            return new Part(headers, name, filename, body.build());
+        }
+
+        /**
+         * True if this part is a file upload, as indicated by the presence of a file name
+         */
+        public boolean isFile() {
+            return this.filename != null;
+        }
+
+    }
+
+    /**
+     * All parts of a multipart body, as read by {@link #parts(long, Path)}. Closing this object deletes any
+     * temporary files backing the parts, after which those parts can no longer be read.
+     */
+    public static final class Parts implements Iterable<Part>, Closeable {
+
+        private final List<Part> list;
+        private final List<Path> files;
+
+        Parts(@NotNull @Unmodifiable List<Part> list, @NotNull List<Path> files) {
+            this.list = list;
+            this.files = files;
+        }
+
+        //
+
+        /**
+         * Lists all parts in the order in which they appear
+         */
+        public @NotNull @Unmodifiable List<Part> list() {
+            return this.list;
+        }
+
+        /**
+         * Finds the first part with the given field name
+         */
+        public @Nullable Part get(@NotNull String name) {
+            for (Part p : this.list) {
+                if (name.equals(p.name())) return p;
+            }
+            return null;
+        }
+
+        @Override
+        public @NotNull Iterator<Part> iterator() {
+            return this.list.iterator();
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException ex = null;
+            for (Path file : this.files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    if (ex == null) {
+                        ex = e;
+                    } else {
+                        ex.addSuppressed(e);
+                    }
+                }
+            }
+            this.files.clear();
+            if (ex != null) throw ex;
+        }
+
+    }
+
+}
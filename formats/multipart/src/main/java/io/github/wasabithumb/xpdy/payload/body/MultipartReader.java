@@ -0,0 +1,99 @@
+package io.github.wasabithumb.xpdy.payload.body;
+
+import com.sun.net.httpserver.Headers;
+import io.github.wasabithumb.xpdy.except.BodyFormatException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the parts of a multipart body one at a time, directly from the underlying stream. The body of each part
+ * can be read until {@link #next()} is called again, at which point any unread data of the part is skipped.
+ * Part bodies can only be read once.
+ * @see MultipartBody#reader()
+ */
+public final class MultipartReader implements Closeable {
+
+    private final MultipartStream stream;
+    private PartStream current = null;
+    private boolean done = false;
+
+    MultipartReader(@NotNull InputStream in, @NotNull String boundary) {
+        this.stream = new MultipartStream(in, boundary);
+    }
+
+    //
+
+    /**
+     * Advances to the next part.
+     * @return The next part, or null if all parts have been read
+     * @throws BodyFormatException The body is not well-formed
+     */
+    public @Nullable MultipartBody.Part next() throws IOException, BodyFormatException {
+        if (this.done) return null;
+
+        // Skip the rest of the current part, or the preamble if this is the first call
+        PartStream current = this.current;
+        if (current != null) current.ended = true;
+        this.current = null;
+        this.stream.skip();
+
+        if (!this.stream.next()) {
+            this.done = true;
+            return null;
+        }
+
+        Headers headers = this.stream.headers();
+        PartStream ps = new PartStream(this.stream);
+        this.current = ps;
+        return MultipartBody.Part.of(headers, Body.builder().source(ps));
+    }
+
+    /**
+     * Closes the underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        this.done = true;
+        PartStream current = this.current;
+        if (current != null) current.ended = true;
+        this.current = null;
+        this.stream.close();
+    }
+
+    //
+
+    private static final class PartStream extends InputStream {
+
+        private final MultipartStream stream;
+        boolean ended = false;
+
+        PartStream(@NotNull MultipartStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return (this.read(b, 0, 1) == -1) ? -1 : (b[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte @NotNull [] b, int off, int len) throws IOException {
+            if (this.ended) return -1;
+            int r = this.stream.read(b, off, len);
+            if (r == -1) this.ended = true;
+            return r;
+        }
+
+        @Override
+        public void close() {
+            // The stream is owned by the reader; unread data is skipped when it advances
+        }
+
+    }
+
+}
@@ -0,0 +1,211 @@
+package io.github.wasabithumb.xpdy.payload.body;
+
+import com.sun.net.httpserver.Headers;
+import io.github.wasabithumb.xpdy.except.BodyFormatException;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits a multipart stream (RFC 2046 section 5.1) at its delimiters using a single fixed-size buffer.
+ * Part data is handed out in place as soon as it is known not to be the start of a delimiter, so no more than
+ * one buffer of the stream is ever held.
+ */
+@ApiStatus.Internal
+final class MultipartStream {
+
+    private static final int BUFFER_SIZE = 16384;
+    private static final int MAX_HEADER_SECTION = 16384;
+    private static final int MAX_HEADERS = 64;
+
+    //
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final byte[] buf;
+    private int pos = 0;
+    private int limit;
+    private boolean eof = false;
+    private int match = -1;     // Position of the next delimiter, if found
+    private int scanned = 0;    // No delimiter starts before this position
+
+    MultipartStream(@NotNull InputStream in, @NotNull String boundary) {
+        byte[] b = boundary.getBytes(StandardCharsets.US_ASCII);
+        byte[] delimiter = new byte[b.length + 4];
+        delimiter[0] = '\r';
+        delimiter[1] = '\n';
+        delimiter[2] = '-';
+        delimiter[3] = '-';
+        System.arraycopy(b, 0, delimiter, 4, b.length);
+
+        this.in = in;
+        this.delimiter = delimiter;
+        this.buf = new byte[BUFFER_SIZE];
+
+        // The first delimiter may appear at the very start of the body, without a preceding line break
+        this.buf[0] = '\r';
+        this.buf[1] = '\n';
+        this.limit = 2;
+    }
+
+    //
+
+    /**
+     * Reads data of the current part
+     * @param b Destination array, or null to discard the data
+     * @return The number of bytes read, or -1 if the current part has ended
+     */
+    int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        final int dl = this.delimiter.length;
+        while (true) {
+            int found = this.indexOfDelimiter();
+            int n;
+            if (found != -1) {
+                n = found - this.pos;
+                if (n == 0) return -1;
+            } else {
+                n = this.limit - this.pos - (dl - 1);
+            }
+            if (n > 0) {
+                n = Math.min(n, len);
+                if (b != null) System.arraycopy(this.buf, this.pos, b, off, n);
+                this.pos += n;
+                return n;
+            }
+            if (this.fill() == -1)
+                throw new BodyFormatException("Multipart body ended before the closing delimiter");
+        }
+    }
+
+    /**
+     * Discards the remaining data of the current part
+     */
+    void skip() throws IOException {
+        //noinspection StatementWithEmptyBody
+        while (this.read(null, 0, Integer.MAX_VALUE) != -1);
+    }
+
+    /**
+     * Consumes the delimiter which ends the current part
+     * @return True if another part follows, false if this was the closing delimiter
+     */
+    boolean next() throws IOException {
+        this.require(this.delimiter.length + 2);
+        this.pos += this.delimiter.length;
+        this.match = -1;
+        if (this.buf[this.pos] == '-' && this.buf[this.pos + 1] == '-') {
+            this.pos += 2;
+            return false;
+        }
+
+        // Transport padding
+        while (true) {
+            this.require(2);
+            byte c = this.buf[this.pos];
+            if (c != ' ' && c != '\t') break;
+            this.pos++;
+        }
+        if (this.buf[this.pos] != '\r' || this.buf[this.pos + 1] != '\n')
+            throw new BodyFormatException("Malformed multipart delimiter");
+        this.pos += 2;
+        return true;
+    }
+
+    /**
+     * Reads the header section of the current part, up to and including the blank line which ends it
+     */
+    @NotNull Headers headers() throws IOException {
+        Headers ret = new Headers();
+        int total = 0;
+        int count = 0;
+        while (true) {
+            int end;
+            while ((end = this.indexOfLineEnd()) == -1) {
+                if (this.limit - this.pos >= this.buf.length - 1)
+                    throw new BodyFormatException("Multipart header line is too long");
+                if (this.fill() == -1)
+                    throw new BodyFormatException("Multipart body ended within part headers");
+            }
+
+            int start = this.pos;
+            this.pos = end + 2;
+            if (end == start) return ret;
+
+            total += end - start + 2;
+            if (total > MAX_HEADER_SECTION || ++count > MAX_HEADERS)
+                throw new BodyFormatException("Multipart part headers are too large");
+
+            String line = new String(this.buf, start, end - start, StandardCharsets.UTF_8);
+            int colon = line.indexOf(':');
+            if (colon < 1) throw new BodyFormatException("Malformed multipart header: " + line);
+            ret.add(line.substring(0, colon).strip(), line.substring(colon + 1).strip());
+        }
+    }
+
+    //
+
+    private int indexOfDelimiter() {
+        if (this.match != -1) return this.match;
+
+        final byte[] d = this.delimiter;
+        final byte[] buf = this.buf;
+        final int last = this.limit - d.length;
+        int i = Math.max(this.pos, this.scanned);
+        outer:
+        for (; i <= last; i++) {
+            if (buf[i] != '\r') continue;
+            for (int j=1; j < d.length; j++) {
+                if (buf[i + j] != d[j]) continue outer;
+            }
+            return this.match = i;
+        }
+        this.scanned = i;
+        return -1;
+    }
+
+    private int indexOfLineEnd() {
+        for (int i = this.pos; i < this.limit - 1; i++) {
+            if (this.buf[i] == '\r' && this.buf[i + 1] == '\n') return i;
+        }
+        return -1;
+    }
+
+    private void require(int n) throws IOException {
+        while (this.limit - this.pos < n) {
+            if (this.fill() == -1)
+                throw new BodyFormatException("Multipart body ended unexpectedly");
+        }
+    }
+
+    /**
+     * Moves unread data to the start of the buffer and reads more after it
+     * @return The number of bytes read, or -1 if the stream has ended
+     */
+    private int fill() throws IOException {
+        if (this.eof) return -1;
+        int remaining = this.limit - this.pos;
+        if (this.pos != 0) {
+            System.arraycopy(this.buf, this.pos, this.buf, 0, remaining);
+            this.scanned = Math.max(this.scanned - this.pos, 0);
+            this.pos = 0;
+            this.limit = remaining;
+        }
+
+        int r = this.in.read(this.buf, this.limit, this.buf.length - this.limit);
+        if (r == -1) {
+            this.eof = true;
+            return -1;
+        }
+        this.limit += r;
+        return r;
+    }
+
+    void close() throws IOException {
+        this.in.close();
+    }
+
+}
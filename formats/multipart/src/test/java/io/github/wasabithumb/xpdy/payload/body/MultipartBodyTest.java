@@ -0,0 +1,244 @@
+package io.github.wasabithumb.xpdy.payload.body;
+
+import io.github.wasabithumb.xpdy.except.BodyFormatException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultipartBodyTest {
+
+    private static final String BOUNDARY = "xpdy-boundary";
+
+    @Test
+    void parts() throws IOException {
+        String content = part("form-data; name=\"field\"", null, "value") +
+                part("form-data; name=\"upload\"; filename=\"a.txt\"", "text/plain", "file content") +
+                "--" + BOUNDARY + "--\r\n";
+
+        try (MultipartBody.Parts parts = body(content, Integer.MAX_VALUE).parts()) {
+            assertEquals(2, parts.list().size());
+
+            MultipartBody.Part field = parts.get("field");
+            assertNotNull(field);
+            assertFalse(field.isFile());
+            assertEquals("value", field.body().text());
+
+            MultipartBody.Part upload = parts.get("upload");
+            assertNotNull(upload);
+            assertTrue(upload.isFile());
+            assertEquals("a.txt", upload.filename());
+            assertEquals("text/plain", upload.body().type());
+            assertEquals("file content", upload.body().text());
+
+            // Parts read by parts() may be read again
+            assertEquals("file content", upload.body().text());
+        }
+    }
+
+    @Test
+    void splitAcrossReads() throws IOException {
+        // Data resembling the delimiter must be kept as part data
+        String tricky = "line\r\n--" + BOUNDARY.substring(0, 5) + "\r\n-\r\n--x";
+        String content = part("form-data; name=\"a\"", null, tricky) +
+                part("form-data; name=\"b\"", null, "second") +
+                "--" + BOUNDARY + "--";
+
+        for (int chunk=1; chunk <= content.length(); chunk++) {
+            try (MultipartReader reader = body(content, chunk).reader()) {
+                MultipartBody.Part a = reader.next();
+                assertNotNull(a);
+                assertEquals("a", a.name());
+                assertEquals(tricky, a.body().text(), "chunk size " + chunk);
+
+                MultipartBody.Part b = reader.next();
+                assertNotNull(b);
+                assertEquals("second", b.body().text(), "chunk size " + chunk);
+
+                assertNull(reader.next());
+            }
+        }
+    }
+
+    @Test
+    void skipUnread() throws IOException {
+        String content = part("form-data; name=\"a\"", null, "x".repeat(100000)) +
+                part("form-data; name=\"b\"", null, "second") +
+                "--" + BOUNDARY + "--";
+
+        try (MultipartReader reader = body(content, 4096).reader()) {
+            assertNotNull(reader.next());
+            MultipartBody.Part b = reader.next();
+            assertNotNull(b);
+            assertEquals("b", b.name());
+            assertEquals("second", b.body().text());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void extendedFilename() throws IOException {
+        String content = part("form-data; name=\"a\"; filename=\"naive.txt\"; filename*=UTF-8''na%C3%AFve+1.txt", null, "") +
+                part("form-data; name=\"b\"; filename=\"fallback.txt\"; filename*=bogus''x.txt", null, "") +
+                part("form-data; name=\"c\"; filename=\"quoted \\\"name\\\".txt\"", null, "") +
+                "--" + BOUNDARY + "--";
+
+        try (MultipartBody.Parts parts = body(content, Integer.MAX_VALUE).parts()) {
+            assertEquals("na\u00EFve+1.txt", parts.list().get(0).filename());
+            assertEquals("fallback.txt", parts.list().get(1).filename());
+            assertEquals("quoted \"name\".txt", parts.list().get(2).filename());
+        }
+    }
+
+    @Test
+    void preambleAndEpilogue() throws IOException {
+        String content = "This is the preamble.\r\nIt is ignored.\r\n" +
+                part("form-data; name=\"a\"", null, "value") +
+                "--" + BOUNDARY + "--\r\nThis is the epilogue. --" + BOUNDARY + "\r\n";
+
+        try (MultipartBody.Parts parts = body(content, 7).parts()) {
+            assertEquals(1, parts.list().size());
+            assertEquals("value", parts.list().get(0).body().text());
+        }
+    }
+
+    @Test
+    void truncated() throws IOException {
+        String head = part("form-data; name=\"a\"", null, "value");
+        assertMalformed(head + "more data without a closing delimiter");
+        assertMalformed(head + "--" + BOUNDARY + "\r\nContent-Disposition: form-da");
+        assertMalformed("--" + BOUNDARY + "\r\nNo colon\r\n\r\nvalue\r\n--" + BOUNDARY + "--");
+        assertMalformed("--" + BOUNDARY + "junk\r\n\r\nvalue\r\n--" + BOUNDARY + "--");
+        assertMalformed("");
+    }
+
+    @Test
+    void spill() throws IOException {
+        byte[] large = new byte[5000];
+        for (int i=0; i < large.length; i++) large[i] = (byte) ('a' + (i % 26));
+        String content = part("form-data; name=\"small\"", null, "tiny") +
+                part("form-data; name=\"large\"; filename=\"large.bin\"", "application/octet-stream",
+                        new String(large, StandardCharsets.US_ASCII)) +
+                "--" + BOUNDARY + "--";
+
+        Path directory = Files.createTempDirectory("xpdy-multipart-test");
+        try {
+            MultipartBody.Parts parts = body(content, 1000).parts(16L, directory);
+            MultipartBody.Part file = parts.get("large");
+            assertNotNull(file);
+            try {
+                assertEquals(1, count(directory));
+                assertEquals(4L, parts.get("small").body().size());
+                assertEquals("tiny", parts.get("small").body().text());
+                assertEquals(large.length, file.body().size());
+                assertArrayEquals(large, file.body().bytes());
+            } finally {
+                parts.close();
+            }
+
+            // Temporary files are deleted once the parts are closed
+            assertEquals(0, count(directory));
+            assertThrows(IOException.class, () -> file.body().bytes());
+        } finally {
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void boundary() {
+        assertThrows(BodyFormatException.class, () -> Body.builder()
+                .source(() -> InputStream.nullInputStream())
+                .type("text/plain")
+                .build()
+                .as(MultipartBody.class)
+                .boundary());
+        assertThrows(BodyFormatException.class, () -> Body.builder()
+                .source(() -> InputStream.nullInputStream())
+                .type("multipart/form-data")
+                .build()
+                .as(MultipartBody.class)
+                .boundary());
+        assertDoesNotThrow(() -> assertEquals("quoted boundary", Body.builder()
+                .source(() -> InputStream.nullInputStream())
+                .type("multipart/form-data; boundary=\"quoted boundary\"")
+                .build()
+                .as(MultipartBody.class)
+                .boundary()));
+    }
+
+    //
+
+    private static @NotNull String part(@NotNull String disposition, @Nullable String type, @NotNull String content) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("--").append(BOUNDARY).append("\r\n");
+        sb.append("Content-Disposition: ").append(disposition).append("\r\n");
+        if (type != null) sb.append("Content-Type: ").append(type).append("\r\n");
+        sb.append("\r\n").append(content).append("\r\n");
+        return sb.toString();
+    }
+
+    private static @NotNull MultipartBody body(@NotNull String content, int chunk) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return Body.builder()
+                .source(() -> new ChunkedInputStream(bytes, chunk))
+                .type("multipart/form-data; boundary=" + BOUNDARY)
+                .build()
+                .as(MultipartBody.class);
+    }
+
+    private static void assertMalformed(@NotNull String content) {
+        assertThrows(BodyFormatException.class, () -> {
+            try (MultipartBody.Parts ignored = body(content, 3).parts()) {
+                fail("Parsed a malformed body");
+            }
+        }, content);
+    }
+
+    private static long count(@NotNull Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    //
+
+    /**
+     * Returns at most a fixed number of bytes from each read
+     */
+    private static final class ChunkedInputStream extends InputStream {
+
+        private final byte[] data;
+        private final int chunk;
+        private int head = 0;
+
+        ChunkedInputStream(byte @NotNull [] data, int chunk) {
+            this.data = data;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read() {
+            return (this.head < this.data.length) ? (this.data[this.head++] & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte @NotNull [] b, int off, int len) {
+            if (len == 0) return 0;
+            int n = Math.min(Math.min(len, this.chunk), this.data.length - this.head);
+            if (n <= 0) return -1;
+            System.arraycopy(this.data, this.head, b, off, n);
+            this.head += n;
+            return n;
+        }
+
+    }
+
+}
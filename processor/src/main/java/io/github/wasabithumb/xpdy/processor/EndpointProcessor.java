@@ -0,0 +1,412 @@
+package io.github.wasabithumb.xpdy.processor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * <p>
+ *     Generates an {@code EndpointTable} for each {@code Endpoints} class which declares endpoint methods
+ *     or injection points. The table is placed in the same package as the endpoint class and calls its
+ *     constructor, fields and methods directly, so that no reflection is needed to register the class.
+ * </p>
+ * <p>
+ *     Classes which cannot be served by a table (for instance, because an endpoint method or injected field is
+ *     private) are skipped with a note; such classes are registered through reflection as usual. Mistakes which
+ *     would otherwise fail at registration time (multiple endpoint annotations, illegal return types or
+ *     multiple injection constructors) are reported as compilation errors.
+ * </p>
+ */
+@SupportedAnnotationTypes({
+        EndpointProcessor.METHODS_PACKAGE + ".Get",
+        EndpointProcessor.METHODS_PACKAGE + ".Post",
+        EndpointProcessor.METHODS_PACKAGE + ".Put",
+        EndpointProcessor.METHODS_PACKAGE + ".Patch",
+        EndpointProcessor.METHODS_PACKAGE + ".Delete",
+        EndpointProcessor.INJECT
+})
+public final class EndpointProcessor extends AbstractProcessor {
+
+    static final String METHODS_PACKAGE = "io.github.wasabithumb.xpdy.endpoint.methods";
+    static final String ENDPOINTS = "io.github.wasabithumb.xpdy.endpoint.Endpoints";
+    static final String INJECT = "io.github.wasabithumb.xpdy.endpoint.EndpointInject";
+    static final String RESPONSE = "io.github.wasabithumb.xpdy.payload.response.Response";
+    static final String COMPLETION_STAGE = "java.util.concurrent.CompletionStage";
+    static final String TABLE_SUFFIX = "$XpdyEndpoints";
+
+    //
+
+    private final Set<String> seen = new HashSet<>();
+
+    //
+
+    @Override
+    public @NotNull SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(@NotNull Set<? extends TypeElement> annotations, @NotNull RoundEnvironment roundEnv) {
+        Set<TypeElement> candidates = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element e : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (e.getEnclosingElement() instanceof TypeElement owner) candidates.add(owner);
+            }
+        }
+
+        for (TypeElement candidate : candidates) {
+            this.processClass(candidate);
+        }
+        return false;
+    }
+
+    //
+
+    private void processClass(@NotNull TypeElement type) {
+        Elements elements = this.processingEnv.getElementUtils();
+        Types types = this.processingEnv.getTypeUtils();
+
+        if (type.getKind() != ElementKind.CLASS) return;
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) return;
+
+        TypeElement endpoints = elements.getTypeElement(ENDPOINTS);
+        if (endpoints == null) return;
+        TypeMirror endpointsType = endpoints.asType();
+        if (!types.isAssignable(types.erasure(type.asType()), endpointsType)) return;
+
+        String binaryName = elements.getBinaryName(type).toString();
+        if (!this.seen.add(binaryName)) return;
+
+        PackageElement pkg = elements.getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String simpleName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+
+        EndpointTableWriter writer = new EndpointTableWriter(
+                packageName,
+                simpleName + TABLE_SUFFIX,
+                this.sourceName(type)
+        );
+
+        try {
+            this.checkType(type, pkg);
+            this.collectConstructor(type, pkg, writer);
+
+            TypeElement head = type;
+            while (true) {
+                this.collectFields(head, pkg, writer);
+                this.collectMethods(head, pkg, writer);
+
+                TypeMirror sup = head.getSuperclass();
+                if (sup.getKind() != TypeKind.DECLARED) break;
+                if (!types.isAssignable(types.erasure(sup), endpointsType)) break;
+                head = (TypeElement) ((DeclaredType) sup).asElement();
+            }
+        } catch (Ineligible e) {
+            this.messager().printMessage(
+                    Diagnostic.Kind.NOTE,
+                    "Not generating endpoint table for " + binaryName + " (" + e.getMessage() +
+                            "); endpoints will be discovered through reflection",
+                    e.element == null ? type : e.element
+            );
+            return;
+        } catch (Invalid e) {
+            this.messager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+            return;
+        }
+
+        try {
+            writer.write(this.processingEnv.getFiler(), type);
+        } catch (IOException e) {
+            this.messager().printMessage(
+                    Diagnostic.Kind.ERROR,
+                    "Failed to write endpoint table for " + binaryName + ": " + e.getMessage(),
+                    type
+            );
+        }
+    }
+
+    private void checkType(@NotNull TypeElement type, @NotNull PackageElement pkg) throws Ineligible {
+        if (!type.getTypeParameters().isEmpty())
+            throw new Ineligible("class is generic", type);
+
+        Element head = type;
+        while (head instanceof TypeElement te) {
+            if (!this.isAccessible(te, pkg))
+                throw new Ineligible("class is not accessible from its package", te);
+            if (te.getNestingKind() == NestingKind.MEMBER && !te.getModifiers().contains(Modifier.STATIC))
+                throw new Ineligible("class is an inner class", te);
+            if (te.getNestingKind() == NestingKind.LOCAL || te.getNestingKind() == NestingKind.ANONYMOUS)
+                throw new Ineligible("class is local", te);
+            head = te.getEnclosingElement();
+        }
+    }
+
+    private void collectConstructor(
+            @NotNull TypeElement type,
+            @NotNull PackageElement pkg,
+            @NotNull EndpointTableWriter writer
+    ) throws Ineligible, Invalid {
+        ExecutableElement con = null;
+        ExecutableElement primary = null;
+
+        for (ExecutableElement candidate : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (candidate.getParameters().isEmpty()) primary = candidate;
+            if (this.findAnnotation(candidate, INJECT) == null) continue;
+            if (con != null) {
+                throw new Invalid("Endpoint class " + type.getQualifiedName() + " has multiple constructors " +
+                        "annotated with @EndpointInject", candidate);
+            }
+            con = candidate;
+        }
+
+        if (con == null) {
+            // Matches the reflective behavior, which only considers a public primary constructor
+            if (primary == null || !primary.getModifiers().contains(Modifier.PUBLIC))
+                throw new Ineligible("class has no public primary constructor", type);
+            con = primary;
+        } else if (!this.isAccessible(con, pkg)) {
+            throw new Ineligible("injection constructor is not accessible", con);
+        }
+
+        for (VariableElement param : con.getParameters()) {
+            writer.addConstructorParameter(this.erasureName(param.asType()), param.getSimpleName().toString());
+        }
+    }
+
+    private void collectFields(
+            @NotNull TypeElement owner,
+            @NotNull PackageElement pkg,
+            @NotNull EndpointTableWriter writer
+    ) throws Ineligible {
+        for (VariableElement field : ElementFilter.fieldsIn(owner.getEnclosedElements())) {
+            if (this.findAnnotation(field, INJECT) == null) continue;
+            if (!this.isAccessible(owner, pkg))
+                throw new Ineligible("superclass is not accessible", owner);
+
+            // Private and final fields are still set reflectively, but without scanning the class
+            boolean direct = this.isAccessible(field, pkg) && !field.getModifiers().contains(Modifier.FINAL);
+            writer.addField(
+                    this.sourceName(owner),
+                    direct,
+                    field.getModifiers().contains(Modifier.STATIC),
+                    this.erasureName(field.asType()),
+                    field.getSimpleName().toString()
+            );
+        }
+    }
+
+    private void collectMethods(
+            @NotNull TypeElement owner,
+            @NotNull PackageElement pkg,
+            @NotNull EndpointTableWriter writer
+    ) throws Ineligible, Invalid {
+        for (ExecutableElement method : ElementFilter.methodsIn(owner.getEnclosedElements())) {
+            String verb = null;
+            AnnotationMirror annotation = null;
+
+            for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+                TypeElement at = (TypeElement) mirror.getAnnotationType().asElement();
+                Element atOwner = at.getEnclosingElement();
+                if (!(atOwner instanceof PackageElement ap)) continue;
+                if (!ap.getQualifiedName().contentEquals(METHODS_PACKAGE)) continue;
+
+                String name = at.getSimpleName().toString();
+                switch (name) {
+                    case "Get", "Post", "Put", "Patch", "Delete" -> { }
+                    default -> { continue; }
+                }
+                if (verb != null) {
+                    throw new Invalid("Method \"" + method.getSimpleName() + "\" in class " +
+                            owner.getQualifiedName() + " has multiple endpoint annotations", method);
+                }
+                verb = name.toUpperCase(Locale.ROOT);
+                annotation = mirror;
+            }
+            if (verb == null) continue;
+
+            ReturnKind returnKind = this.checkReturnType(owner, method);
+            if (!this.isAccessible(method, pkg))
+                throw new Ineligible("endpoint method is not accessible", method);
+            if (!this.isAccessible(owner, pkg))
+                throw new Ineligible("superclass is not accessible", owner);
+
+            String path = this.annotationString(annotation, "value");
+            String in = verb.equals("GET") ? "" : this.annotationString(annotation, "in");
+            String out = this.annotationString(annotation, "out");
+            boolean compress = !Boolean.FALSE.equals(this.annotationValue(annotation, "compress"));
+            long maxBodySize = (this.annotationValue(annotation, "maxBodySize") instanceof Number n) ?
+                    Math.max(n.longValue(), -1L) : -1L;
+
+            List<? extends VariableElement> params = method.getParameters();
+            String[] paramTypes = new String[params.size()];
+            String[] paramNames = new String[params.size()];
+            for (int i=0; i < paramTypes.length; i++) {
+                VariableElement param = params.get(i);
+                paramTypes[i] = this.erasureName(param.asType());
+                paramNames[i] = param.getSimpleName().toString();
+            }
+
+            writer.addEndpoint(
+                    verb,
+                    path,
+                    in,
+                    out,
+                    returnKind == ReturnKind.VOID,
+                    returnKind == ReturnKind.ASYNC,
+                    this.needsCast(method, returnKind),
+                    compress,
+                    maxBodySize,
+                    this.sourceName(owner),
+                    method.getModifiers().contains(Modifier.STATIC),
+                    method.getSimpleName().toString(),
+                    paramTypes,
+                    paramNames
+            );
+        }
+    }
+
+    private @NotNull ReturnKind checkReturnType(@NotNull TypeElement owner, @NotNull ExecutableElement method) throws Invalid {
+        Elements elements = this.processingEnv.getElementUtils();
+        Types types = this.processingEnv.getTypeUtils();
+
+        TypeMirror ret = method.getReturnType();
+        if (ret.getKind() == TypeKind.VOID) return ReturnKind.VOID;
+
+        TypeMirror erased = types.erasure(ret);
+        if (erased.getKind() == TypeKind.DECLARED) {
+            TypeElement te = (TypeElement) ((DeclaredType) erased).asElement();
+            if (te.getQualifiedName().contentEquals("java.lang.Void")) return ReturnKind.VOID;
+        }
+
+        TypeElement response = elements.getTypeElement(RESPONSE);
+        if (response != null && types.isAssignable(response.asType(), erased)) return ReturnKind.RESPONSE;
+
+        // CompletionStage<T> where T may hold a Response
+        TypeElement stage = elements.getTypeElement(COMPLETION_STAGE);
+        if (response != null && stage != null && (
+                types.isAssignable(ret, types.getDeclaredType(stage, types.getWildcardType(response.asType(), null))) ||
+                types.isAssignable(ret, types.getDeclaredType(stage, types.getWildcardType(null, response.asType())))
+        )) {
+            return ReturnKind.ASYNC;
+        }
+
+        throw new Invalid("Endpoint method \"" + method.getSimpleName() + "\" in class " +
+                owner.getQualifiedName() + " has illegal return type " +
+                "(must be void, Response or CompletionStage<Response>)", method);
+    }
+
+    /**
+     * Checks whether the value returned by an endpoint method must be cast before its invoker can return it,
+     * which is the case when the declared type is not already a {@code Response} or
+     * {@code CompletionStage<Response>}
+     */
+    private boolean needsCast(@NotNull ExecutableElement method, @NotNull ReturnKind kind) {
+        Elements elements = this.processingEnv.getElementUtils();
+        Types types = this.processingEnv.getTypeUtils();
+        TypeMirror ret = method.getReturnType();
+        TypeMirror response = elements.getTypeElement(RESPONSE).asType();
+        return switch (kind) {
+            case VOID -> false;
+            case RESPONSE -> !types.isAssignable(ret, response);
+            case ASYNC -> !types.isAssignable(
+                    ret,
+                    types.getDeclaredType(elements.getTypeElement(COMPLETION_STAGE), response)
+            );
+        };
+    }
+
+    //
+
+    private @NotNull Messager messager() {
+        return this.processingEnv.getMessager();
+    }
+
+    private boolean isAccessible(@NotNull Element element, @NotNull PackageElement pkg) {
+        Set<Modifier> mods = element.getModifiers();
+        if (mods.contains(Modifier.PUBLIC)) return true;
+        if (mods.contains(Modifier.PRIVATE)) return false;
+        return this.processingEnv.getElementUtils().getPackageOf(element).equals(pkg);
+    }
+
+    private @NotNull String sourceName(@NotNull TypeElement type) {
+        return type.getQualifiedName().toString();
+    }
+
+    private @NotNull String erasureName(@NotNull TypeMirror type) {
+        return this.processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private @Nullable AnnotationMirror findAnnotation(@NotNull Element element, @NotNull String qualifiedName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement at = (TypeElement) mirror.getAnnotationType().asElement();
+            if (at.getQualifiedName().contentEquals(qualifiedName)) return mirror;
+        }
+        return null;
+    }
+
+    private @NotNull String annotationString(@NotNull AnnotationMirror mirror, @NotNull String key) {
+        Object value = this.annotationValue(mirror, key);
+        return value == null ? "" : value.toString();
+    }
+
+    private @Nullable Object annotationValue(@NotNull AnnotationMirror mirror, @NotNull String key) {
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                this.processingEnv.getElementUtils().getElementValuesWithDefaults(mirror);
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(key)) return entry.getValue().getValue();
+        }
+        return null;
+    }
+
+    //
+
+    private enum ReturnKind {
+        VOID,
+        RESPONSE,
+        ASYNC
+    }
+
+    /**
+     * Signals that a class cannot be served by a generated table, but is otherwise valid
+     */
+    private static final class Ineligible extends Exception {
+
+        final Element element;
+
+        Ineligible(@NotNull String message, @Nullable Element element) {
+            super(message, null, false, false);
+            this.element = element;
+        }
+
+    }
+
+    /**
+     * Signals that a class would fail to register at runtime
+     */
+    private static final class Invalid extends Exception {
+
+        final Element element;
+
+        Invalid(@NotNull String message, @NotNull Element element) {
+            super(message, null, false, false);
+            this.element = element;
+        }
+
+    }
+
+}
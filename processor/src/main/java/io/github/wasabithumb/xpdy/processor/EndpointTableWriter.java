@@ -0,0 +1,230 @@
+package io.github.wasabithumb.xpdy.processor;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Emits the source of a single {@code EndpointTable}
+ */
+final class EndpointTableWriter {
+
+    private static final String XPDY = "io.github.wasabithumb.xpdy.";
+    private static final String TABLE = XPDY + "endpoint.EndpointTable";
+    private static final String INJECTOR = XPDY + "endpoint.EndpointInjector";
+    private static final String CONTEXT = XPDY + "endpoint.EndpointContext";
+    private static final String CONTEXT_KEY = XPDY + "endpoint.ContextKey";
+    private static final String META = XPDY + "endpoint.EndpointMeta";
+    private static final String VERB = XPDY + "misc.HTTPVerb";
+    private static final String RESPONSE = XPDY + "payload.response.Response";
+    private static final String ASYNC_INVOKER = XPDY + "endpoint.EndpointInvoker.Async";
+    private static final String COMPLETION_STAGE = "java.util.concurrent.CompletionStage";
+
+    private static @NotNull String literal(@NotNull String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append('"');
+        for (int i=0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < ' ' || c > '~') {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static @NotNull String boxed(@NotNull String type) {
+        return switch (type) {
+            case "boolean" -> "java.lang.Boolean";
+            case "byte" -> "java.lang.Byte";
+            case "short" -> "java.lang.Short";
+            case "char" -> "java.lang.Character";
+            case "int" -> "java.lang.Integer";
+            case "long" -> "java.lang.Long";
+            case "float" -> "java.lang.Float";
+            case "double" -> "java.lang.Double";
+            default -> type;
+        };
+    }
+
+    //
+
+    private final String packageName;
+    private final String className;
+    private final String typeName;
+    private final List<String> constructorArgs = new ArrayList<>();
+    private final List<String> fieldStatements = new ArrayList<>();
+    private final List<String> entries = new ArrayList<>();
+    private final Map<String, String> contextKeys = new LinkedHashMap<>();
+
+    EndpointTableWriter(
+            @NotNull String packageName,
+            @NotNull String className,
+            @NotNull String typeName
+    ) {
+        this.packageName = packageName;
+        this.className = className;
+        this.typeName = typeName;
+    }
+
+    //
+
+    void addConstructorParameter(@NotNull String type, @NotNull String name) {
+        this.constructorArgs.add("injector.requireParameter(" + type + ".class, " + this.typeName + ".class, " +
+                literal(name) + ")");
+    }
+
+    void addField(@NotNull String owner, boolean direct, boolean isStatic, @NotNull String type, @NotNull String name) {
+        if (!direct) {
+            this.fieldStatements.add("injector.injectField(ret, " + owner + ".class, " + literal(name) + ");");
+            return;
+        }
+        String target = isStatic ? owner : ("((" + owner + ") ret)");
+        this.fieldStatements.add(target + "." + name + " = injector.requireField(" + type + ".class, " +
+                owner + ".class, " + literal(name) + ");");
+    }
+
+    /**
+     * Provides the name of the constant holding the context key for the given parameter type
+     */
+    private @NotNull String contextKey(@NotNull String type) {
+        return this.contextKeys.computeIfAbsent(type, (String t) -> "KEY_" + this.contextKeys.size());
+    }
+
+    void addEndpoint(
+            @NotNull String verb,
+            @NotNull String path,
+            @NotNull String in,
+            @NotNull String out,
+            boolean isVoid,
+            boolean isAsync,
+            boolean cast,
+            boolean compress,
+            long maxBodySize,
+            @NotNull String owner,
+            boolean isStatic,
+            @NotNull String methodName,
+            @NotNull String @NotNull [] paramTypes,
+            @NotNull String @NotNull [] paramNames
+    ) {
+        StringBuilder call = new StringBuilder();
+        call.append(isStatic ? owner : "instance").append('.').append(methodName).append('(');
+        for (int i=0; i < paramTypes.length; i++) {
+            if (i != 0) call.append(", ");
+            call.append(TABLE).append(".argument(ctx, ")
+                    .append(this.contextKey(paramTypes[i])).append(", ")
+                    .append(owner).append(".class, ")
+                    .append(literal(methodName)).append(", ")
+                    .append(literal(paramNames[i])).append(')');
+        }
+        call.append(')');
+
+        String body;
+        String invoker = "(" + CONTEXT + " ctx) -> ";
+        if (isAsync) {
+            invoker = "(" + ASYNC_INVOKER + ") " + invoker;
+            // Stages of a subtype or supertype of Response are unchecked; the registry verifies the result
+            body = cast ? ("(" + COMPLETION_STAGE + "<" + RESPONSE + ">) (" + COMPLETION_STAGE + ") " + call) :
+                    call.toString();
+        } else if (isVoid) {
+            body = "{\n                            " + call + ";\n" +
+                    "                            return " + RESPONSE + ".builder().code(200).build();\n" +
+                    "                        }";
+        } else {
+            body = cast ? ("(" + RESPONSE + ") " + call) : call.toString();
+        }
+
+        this.entries.add("new " + TABLE + ".Entry(\n" +
+                "                        " + META + ".of(" + VERB + "." + verb + ", " + literal(path) + ", " +
+                literal(in) + ", " + literal(out) + ", " + isVoid + ", " + compress + ", " + maxBodySize + "L),\n" +
+                "                        " + invoker + body + "\n" +
+                "                )");
+    }
+
+    //
+
+    void write(@NotNull Filer filer, @NotNull Element origin) throws IOException {
+        String qualified = this.packageName.isEmpty() ? this.className : (this.packageName + "." + this.className);
+        JavaFileObject file = filer.createSourceFile(qualified, origin);
+        try (Writer w = file.openWriter()) {
+            w.write(this.source());
+        }
+    }
+
+    private @NotNull String source() {
+        StringBuilder sb = new StringBuilder();
+        if (!this.packageName.isEmpty())
+            sb.append("package ").append(this.packageName).append(";\n\n");
+
+        sb.append("@javax.annotation.processing.Generated(\"").append(EndpointProcessor.class.getName()).append("\")\n")
+                .append("public final class ").append(this.className)
+                .append(" implements ").append(TABLE).append('<').append(this.typeName).append("> {\n\n");
+
+        // Context keys
+        for (Map.Entry<String, String> key : this.contextKeys.entrySet()) {
+            String type = key.getKey();
+            sb.append("    private static final ").append(CONTEXT_KEY).append('<').append(boxed(type)).append("> ")
+                    .append(key.getValue()).append(" = ").append(CONTEXT_KEY).append(".of(")
+                    .append(type).append(".class);\n");
+        }
+        if (!this.contextKeys.isEmpty()) sb.append('\n');
+
+        // type()
+        sb.append("    @Override\n")
+                .append("    public java.lang.Class<").append(this.typeName).append("> type() {\n")
+                .append("        return ").append(this.typeName).append(".class;\n")
+                .append("    }\n\n");
+
+        // construct()
+        sb.append("    @Override\n")
+                .append("    @SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+                .append("    public ").append(this.typeName).append(" construct(")
+                .append(INJECTOR).append(" injector) {\n")
+                .append("        ").append(this.typeName).append(" ret = new ").append(this.typeName).append('(');
+        for (int i=0; i < this.constructorArgs.size(); i++) {
+            sb.append(i == 0 ? "\n" : ",\n").append("                ").append(this.constructorArgs.get(i));
+        }
+        if (!this.constructorArgs.isEmpty()) sb.append("\n        ");
+        sb.append(");\n");
+        for (String statement : this.fieldStatements) {
+            sb.append("        ").append(statement).append('\n');
+        }
+        sb.append("        return ret;\n")
+                .append("    }\n\n");
+
+        // entries()
+        sb.append("    @Override\n")
+                .append("    @SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+                .append("    public java.util.List<").append(TABLE).append(".Entry> entries(final ")
+                .append(this.typeName).append(" instance) {\n")
+                .append("        return java.util.List.of(");
+        for (int i=0; i < this.entries.size(); i++) {
+            sb.append(i == 0 ? "\n" : ",\n").append("                ").append(this.entries.get(i));
+        }
+        if (!this.entries.isEmpty()) sb.append("\n        ");
+        sb.append(");\n")
+                .append("    }\n\n")
+                .append("}\n");
+
+        return sb.toString();
+    }
+
+}
@@ -1,2 +1,4 @@
 rootProject.name = "xpdy"
 include(":formats:json")
+include(":formats:multipart")
+include(":processor")
@@ -6,6 +6,9 @@ import io.github.wasabithumb.xpdy.except.handling.ExceptionHandler;
 import io.github.wasabithumb.xpdy.logging.XpdyLogger;
 import io.github.wasabithumb.xpdy.misc.MimeType;
 import io.github.wasabithumb.xpdy.nd.StaticContent;
+import io.github.wasabithumb.xpdy.payload.body.ErrorRenderer;
+import io.github.wasabithumb.xpdy.payload.response.Response;
+import io.github.wasabithumb.xpdy.transport.Transport;
 import org.jetbrains.annotations.*;
 
 import java.io.IOException;
@@ -162,6 +165,9 @@ public interface XpdyServer {
          * <p>
          *     If null, the underlying server will be a {@link com.sun.net.httpserver.HttpServer HttpServer}.
          * </p>
+         * <p>
+         *     HTTPS is not supported by {@link Transport#nio() the NIO transport}.
+         * </p>
          */
         @Contract("_ -> this")
         @NotNull Builder httpsConfigurator(@Nullable HttpsConfigurator httpsConfigurator);
@@ -169,10 +175,115 @@ public interface XpdyServer {
         /**
          * Sets the executor to use, as specified by
          * {@link com.sun.net.httpserver.HttpServer#setExecutor(Executor) HttpServer}.
+         * This replaces any previous call to {@link #virtualThreads(int)}.
          */
         @Contract("_ -> this")
         @NotNull Builder executor(@Nullable Executor executor);
 
+        /**
+         * <p>
+         *     Handles each exchange on its own virtual thread, allowing at most {@code maxConcurrency}
+         *     exchanges to be processed at once. Exchanges beyond this limit wait for a slot to free up.
+         *     The executor is created when the server starts and shut down when it stops.
+         * </p>
+         * <p>
+         *     Only running tasks hold a slot. An asynchronous endpoint gives up its slot when its method returns,
+         *     so exchanges waiting on a stage are not counted; the response is then sent by a separate task,
+         *     which waits for a slot of its own.
+         * </p>
+         * <p>
+         *     Virtual threads are detected at runtime. If they are not available, a pool of
+         *     {@code maxConcurrency} daemon platform threads is used instead.
+         * </p>
+         * <p>
+         *     This replaces any previous call to {@link #executor(Executor)}.
+         * </p>
+         * @since 0.3.0
+         */
+        @ApiStatus.AvailableSince("0.3.0")
+        @Contract("_ -> this")
+        @NotNull Builder virtualThreads(@Range(from=1, to=Integer.MAX_VALUE) int maxConcurrency);
+
+        /**
+         * Handles each exchange on its own virtual thread, without limiting the number of exchanges
+         * processed at once. If virtual threads are not available, a pool of platform threads
+         * sized according to the number of available processors is used instead.
+         * @since 0.3.0
+         * @see #virtualThreads(int)
+         */
+        @ApiStatus.AvailableSince("0.3.0")
+        @Contract("-> this")
+        default @NotNull Builder virtualThreads() {
+            return this.virtualThreads(Integer.MAX_VALUE);
+        }
+
+        /**
+         * Sets the {@link Transport transport} which accepts connections and parses requests.
+         * Default is {@link Transport#jdk()}.
+         * @since 0.3.0
+         */
+        @ApiStatus.AvailableSince("0.3.0")
+        @Contract("_ -> this")
+        @NotNull Builder transport(@NotNull Transport transport);
+
+        /**
+         * <p>
+         *     Compresses responses with gzip or deflate when the client accepts it and the body is at least
+         *     {@code minimumSize} bytes long. Bodies of unknown size are always eligible. Only textual types
+         *     (such as HTML, CSS, JavaScript and JSON) are compressed.
+         * </p>
+         * <p>
+         *     Static content is served from a precompressed sibling when one exists, for instance
+         *     {@code app.js.gz} for {@code app.js}. Endpoints may opt out with the {@code compress}
+         *     parameter of their annotation.
+         * </p>
+         * <p>
+         *     Compression is enabled by default, with a minimum size of {@code 1024}.
+         * </p>
+         * @since 0.3.0
+         */
+        @ApiStatus.AvailableSince("0.3.0")
+        @Contract("_ -> this")
+        @NotNull Builder compression(@Range(from=0, to=Long.MAX_VALUE) long minimumSize);
+
+        /**
+         * Enables or disables response compression. Compression is enabled by default.
+         * @since 0.3.0
+         * @see #compression(long)
+         */
+        @ApiStatus.AvailableSince("0.3.0")
+        @Contract("_ -> this")
+        @NotNull Builder compression(boolean enabled);
+
+        /**
+         * <p>
+         *     Limits the size of request bodies served to endpoints, in bytes. Requests declaring a larger
+         *     {@code Content-Length} are rejected with HTTP 413 before the endpoint is invoked. Bodies with no
+         *     declared length (such as chunked bodies) are cut off once the limit is exceeded, at which point
+         *     reading the body raises a {@link io.github.wasabithumb.xpdy.except.ServeException ServeException}
+         *     which serves HTTP 413.
+         * </p>
+         * <p>
+         *     Endpoints may set their own limit with the {@code maxBodySize} parameter of their annotation.
+         *     By default, there is no limit ({@code -1}).
+         * </p>
+         * @since 0.3.0
+         */
+        @ApiStatus.AvailableSince("0.3.0")
+        @Contract("_ -> this")
+        @NotNull Builder maxBodySize(@Range(from=-1, to=Long.MAX_VALUE) long maxBodySize);
+
+        /**
+         * Sets the {@link ErrorRenderer renderer} which produces the body of error responses that do not set
+         * a body of their own, such as those created by {@link Response#error(int)}. Each status code is
+         * rendered once and cached for the lifetime of the server.
+         * Default is {@link ErrorRenderer#DEFAULT}.
+         * @since 0.3.0
+         */
+        @ApiStatus.AvailableSince("0.3.0")
+        @Contract("_ -> this")
+        @NotNull Builder errorRenderer(@NotNull ErrorRenderer errorRenderer);
+
         /**
          * Sets the {@link StaticContent static content} to serve at the root path.
          * @since 0.2.0
@@ -1,26 +1,47 @@
 package io.github.wasabithumb.xpdy;
 
-import com.sun.net.httpserver.*;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpsConfigurator;
 import io.github.wasabithumb.xpdy.endpoint.EndpointInjector;
 import io.github.wasabithumb.xpdy.endpoint.EndpointRegistry;
+import io.github.wasabithumb.xpdy.endpoint.EndpointTable;
 import io.github.wasabithumb.xpdy.endpoint.Endpoints;
 import io.github.wasabithumb.xpdy.except.handling.ExceptionHandler;
 import io.github.wasabithumb.xpdy.logging.XpdyLogger;
+import io.github.wasabithumb.xpdy.misc.ByteRange;
+import io.github.wasabithumb.xpdy.misc.ContentEncoding;
+import io.github.wasabithumb.xpdy.misc.EntityTag;
+import io.github.wasabithumb.xpdy.misc.HttpDate;
 import io.github.wasabithumb.xpdy.misc.MimeType;
 import io.github.wasabithumb.xpdy.misc.MimeTypes;
+import io.github.wasabithumb.xpdy.misc.concurrent.RequestExecutor;
 import io.github.wasabithumb.xpdy.nd.StaticContent;
 import io.github.wasabithumb.xpdy.payload.body.Body;
+import io.github.wasabithumb.xpdy.payload.body.ErrorBodies;
+import io.github.wasabithumb.xpdy.payload.body.ErrorRenderer;
+import io.github.wasabithumb.xpdy.payload.body.EventStreamBody;
+import io.github.wasabithumb.xpdy.payload.body.FileBody;
+import io.github.wasabithumb.xpdy.payload.body.SeekableBody;
 import io.github.wasabithumb.xpdy.payload.request.Request;
 import io.github.wasabithumb.xpdy.payload.response.Response;
+import io.github.wasabithumb.xpdy.transport.Transport;
+import io.github.wasabithumb.xpdy.transport.TransportExchange;
 import org.jetbrains.annotations.*;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 
 @ApiStatus.Internal
 final class XpdyServerImpl extends EndpointRegistry implements XpdyServer {
@@ -29,6 +50,7 @@ final class XpdyServerImpl extends EndpointRegistry implements XpdyServer {
     static final String IDENTIFIER = "xpdy/" +
             VERSION +
             " (" + System.getProperty("os.name") + ")";
+    static final long DEFAULT_COMPRESSION_THRESHOLD = 1024L;
 
     //
 
@@ -38,7 +60,14 @@ final class XpdyServerImpl extends EndpointRegistry implements XpdyServer {
     private final StaticContent staticContent;
     private final HttpsConfigurator httpsConfigurator;
     private final Executor executor;
-    private HttpServer handle = null;
+    private final int maxConcurrency;
+    private final Transport transport;
+    private final long compressionThreshold;
+    private final ErrorBodies errorBodies;
+    private Transport.Binding handle = null;
+    private RequestExecutor ownedExecutor = null;
+    private RequestExecutor ownedCompletionExecutor = null;
+    private volatile Executor completionExecutor = Runnable::run;
 
     XpdyServerImpl(
             @NotNull InetSocketAddress address,
@@ -50,46 +79,75 @@ final class XpdyServerImpl extends EndpointRegistry implements XpdyServer {
             @NotNull @MimeType String defaultOut,
             @NotNull ExceptionHandler exceptionHandler,
             @Nullable HttpsConfigurator httpsConfigurator,
-            @Nullable Executor executor
+            @Nullable Executor executor,
+            int maxConcurrency,
+            @NotNull Transport transport,
+            long compressionThreshold,
+            long maxBodySize,
+            @NotNull ErrorRenderer errorRenderer
     ) {
-        super(logger, defaultIn, defaultOut, exceptionHandler);
+        super(logger, defaultIn, defaultOut, exceptionHandler, maxBodySize);
         this.address = address;
         this.name = name;
         this.injector = injector;
         this.staticContent = staticContent;
         this.httpsConfigurator = httpsConfigurator;
         this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+        this.transport = transport;
+        this.compressionThreshold = compressionThreshold;
+        this.errorBodies = (errorRenderer == ErrorRenderer.DEFAULT) ? ErrorBodies.DEFAULT : new ErrorBodies(errorRenderer);
     }
 
     //
 
     @Override
     public void registerEndpoints(@NotNull Class<? extends Endpoints> clazz) {
-        this.registerEndpoints(this.injector.inject(clazz));
+        this.registerEndpoints0(clazz);
+    }
+
+    private <E extends Endpoints> void registerEndpoints0(@NotNull Class<E> clazz) {
+        EndpointTable<E> table = EndpointTable.find(clazz);
+        if (table == null) {
+            this.registerEndpoints(this.injector.inject(clazz));
+        } else {
+            this.registerEndpoints(table.construct(this.injector), table);
+        }
     }
 
     @Override
     public synchronized void start() throws IOException {
         if (this.handle != null) return;
 
-        HttpServer server;
-        if (this.httpsConfigurator != null) {
-            HttpsServer s = HttpsServer.create();
-            s.setHttpsConfigurator(this.httpsConfigurator);
-            server = s;
-        } else {
-            server = HttpServer.create();
+        Executor executor = this.executor;
+        RequestExecutor owned = null;
+        if (executor == null && this.maxConcurrency > 0) {
+            owned = RequestExecutor.create(this.maxConcurrency);
+            executor = owned;
         }
 
-        if (this.executor != null) {
-            server.setExecutor(this.executor);
+        // Asynchronous endpoints are completed on the handler executor, or on workers of their own if the
+        // transport runs handlers on its own threads
+        Executor completions = executor;
+        RequestExecutor ownedCompletions = null;
+        if (completions == null) {
+            ownedCompletions = RequestExecutor.create(RequestExecutor.UNBOUNDED);
+            completions = ownedCompletions;
         }
 
-        server.bind(this.address, 0);
-        server.createContext("/", this::handle);
-        server.start();
+        Transport.Binding binding;
+        try {
+            binding = this.transport.bind(this.address, this.httpsConfigurator, executor, this::handle);
+        } catch (IOException | RuntimeException e) {
+            if (owned != null) owned.shutdown();
+            if (ownedCompletions != null) ownedCompletions.shutdown();
+            throw e;
+        }
 
-        this.handle = server;
+        this.handle = binding;
+        this.ownedExecutor = owned;
+        this.ownedCompletionExecutor = ownedCompletions;
+        this.completionExecutor = orCaller(completions);
     }
 
     @Override
@@ -97,39 +155,195 @@ final class XpdyServerImpl extends EndpointRegistry implements XpdyServer {
         if (this.handle == null) return;
         this.handle.stop(delay);
         this.handle = null;
+        if (this.ownedExecutor != null) {
+            this.ownedExecutor.shutdown();
+            this.ownedExecutor = null;
+        }
+        if (this.ownedCompletionExecutor != null) {
+            this.ownedCompletionExecutor.shutdown();
+            this.ownedCompletionExecutor = null;
+        }
     }
 
-    private void handle(@NotNull HttpExchange exchange) throws IOException {
-        String method = exchange.getRequestMethod();
-        String path = exchange.getRequestURI().getPath();
+    @Override
+    protected @NotNull Executor completionExecutor() {
+        return this.completionExecutor;
+    }
 
-        Response response = this.invokeStatic(method, path);
-        if (response == null) {
-            response = this.invokeEndpoint(
-                    exchange.getRequestMethod(),
-                    path,
-                    (List<String> params) -> Request.of(exchange, params)
-            );
-        }
+    /**
+     * Wraps an executor to run tasks on the calling thread if the executor refuses them (for instance once it
+     * has been shut down), since a dropped completion would leave its exchange unanswered
+     */
+    private static @NotNull Executor orCaller(@NotNull Executor executor) {
+        return (Runnable task) -> {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        };
+    }
 
-        Headers headers = exchange.getResponseHeaders();
+    private @Nullable CompletionStage<?> handle(@NotNull TransportExchange exchange) throws IOException {
+        if (RequestExecutor.isRejected())
+            return this.send(exchange, Response.builder().code(503).build());
+
+        String method = exchange.requestMethod();
+        String path = exchange.requestURI().getPath();
+
+        Response response = this.invokeStatic(method, path, exchange.requestHeaders());
+        if (response != null) return this.send(exchange, response);
+
+        CompletableFuture<Served> future = this.invokeEndpoint(
+                method,
+                path,
+                (List<String> params, long maxBodySize) -> Request.of(exchange, params, maxBodySize)
+        );
+        if (future.isDone()) return this.send(exchange, future.join());
+
+        // Asynchronous endpoint; the future is completed on the completion executor, which sends the response
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        future.whenComplete((Served served, Throwable error) -> {
+            if (error != null) {
+                sent.completeExceptionally(error);
+                return;
+            }
+            try {
+                CompletionStage<?> streaming = this.send(exchange, served);
+                if (streaming == null) {
+                    sent.complete(null);
+                    return;
+                }
+                streaming.whenComplete((Object ignored, Throwable t) -> {
+                    if (t == null) {
+                        sent.complete(null);
+                    } else {
+                        sent.completeExceptionally(t);
+                    }
+                });
+            } catch (Throwable t) {
+                sent.completeExceptionally(t);
+            }
+        });
+        return sent;
+    }
+
+    /**
+     * Sends a response produced by an endpoint
+     * @see #send(TransportExchange, Response, boolean)
+     */
+    private @Nullable CompletionStage<?> send(
+            @NotNull TransportExchange exchange,
+            @NotNull Served served
+    ) throws IOException {
+        return this.send(exchange, served.response(), served.compress());
+    }
+
+    /**
+     * Sends a response
+     * @see #send(TransportExchange, Response, boolean)
+     */
+    private @Nullable CompletionStage<?> send(
+            @NotNull TransportExchange exchange,
+            @NotNull Response response
+    ) throws IOException {
+        return this.send(exchange, response, true);
+    }
+
+    /**
+     * Sends a response
+     * @param compress False if the body may not be compressed, regardless of {@link Response#compress()}
+     * @return Null if the response has been sent in full, otherwise a stage which completes once it has
+     */
+    private @Nullable CompletionStage<?> send(
+            @NotNull TransportExchange exchange,
+            @NotNull Response response,
+            boolean compress
+    ) throws IOException {
+        Headers headers = exchange.responseHeaders();
         headers.set("Server", this.name);
         headers.putAll(response.headers());
         response.cookies().write(headers);
 
-        Body body = response.body();
+        Body body = this.errorBodies.replace(response.body());
+        if (body != response.body()) {
+            headers.set("Content-Type", body.type());
+            headers.set("Content-Length", Long.toString(body.size()));
+        }
         long size = body.size();
+
+        if (body instanceof EventStreamBody events) {
+            // Events are written as they are sent, so the stream is never compressed or held by a thread
+            headers.remove("Content-Length");
+            if (!headers.containsKey("Cache-Control")) headers.set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(response.code(), 0L);
+            return events.attach(exchange.responseBody(), exchange::abort);
+        }
+
+        ContentEncoding coding = (compress && response.compress()) ?
+                this.selectEncoding(exchange, response.code(), headers, size) :
+                null;
+        if (coding != null) {
+            headers.remove("Content-Length");
+            headers.set("Content-Encoding", coding.token());
+
+            // The encoded representation is not byte-for-byte identical, so any strong validator is weakened
+            String etag = headers.getFirst("ETag");
+            if (etag != null && etag.startsWith("\"")) headers.set("ETag", "W/" + etag);
+
+            exchange.sendResponseHeaders(response.code(), 0L);
+            try (OutputStream os = coding.encode(exchange.responseBody())) {
+                body.pipe(os);
+            }
+            return null;
+        }
+
         exchange.sendResponseHeaders(response.code(), size == -1L ? 0L : (size == 0L ? -1L : size));
 
-        if (size == 0L) return;
+        if (size == 0L) return null;
 
-        try (OutputStream os = exchange.getResponseBody()) {
-            body.pipe(os);
+        try (OutputStream os = exchange.responseBody()) {
+            if (body instanceof FileBody file && size > 0L) {
+                try (FileChannel ch = file.channel()) {
+                    exchange.transferFile(ch, file.offset(), size);
+                }
+            } else {
+                body.pipe(os);
+            }
             os.flush();
         }
+        return null;
     }
 
-    private @Nullable Response invokeStatic(@NotNull String method, @NotNull String path) throws IOException {
+    /**
+     * Decides whether a response should be compressed on the fly. Responses which already declare a
+     * {@code Content-Encoding} are sent as-is.
+     * @return The coding to compress with, or null to send the body unmodified
+     */
+    private @Nullable ContentEncoding selectEncoding(
+            @NotNull TransportExchange exchange,
+            int code,
+            @NotNull Headers headers,
+            long size
+    ) {
+        if (headers.containsKey("Content-Encoding")) return null;
+
+        if (this.compressionThreshold == -1L) return null;
+        if (size == 0L || (size != -1L && size < this.compressionThreshold)) return null;
+        if (code == 204 || code == 206 || code == 304) return null;
+
+        String type = headers.getFirst("Content-Type");
+        if (type == null || !ContentEncoding.isCompressible(type)) return null;
+
+        headers.add("Vary", "Accept-Encoding");
+        return ContentEncoding.negotiate(exchange.requestHeaders().getFirst("Accept-Encoding"));
+    }
+
+    private @Nullable Response invokeStatic(
+            @NotNull String method,
+            @NotNull String path,
+            @NotNull Headers requestHeaders
+    ) throws IOException {
         Body body;
         try {
             //noinspection PatternValidation
@@ -139,20 +353,203 @@ final class XpdyServerImpl extends EndpointRegistry implements XpdyServer {
         }
         if (body == null) return null;
 
-        if (method.equalsIgnoreCase("HEAD") || method.equalsIgnoreCase("OPTIONS")) {
+        boolean isGet = method.equalsIgnoreCase("GET");
+        boolean isHead = method.equalsIgnoreCase("HEAD");
+
+        // Prefer a precompressed sibling; ranges always address the unencoded content. Bodies too small to be
+        // compressed on the fly are not worth a sibling lookup, which would otherwise run (and, with cached
+        // content, be remembered as a miss) for every small file
+        String type = body.type();
+        ContentEncoding coding = null;
+        if ((isGet || isHead) && requestHeaders.getFirst("Range") == null) {
+            coding = this.precompressedEncoding(requestHeaders, type, body.size());
+            Body sibling = (coding == null) ? null : this.precompressed(path, coding);
+            if (sibling == null) {
+                coding = null;
+            } else {
+                body = sibling;
+            }
+        }
+
+        if ((isGet || isHead) && isNotModified(requestHeaders, body)) {
+            return withEncoding(withValidators(Response.builder().code(304), body), coding).build();
+        }
+
+        if (isHead || method.equalsIgnoreCase("OPTIONS")) {
             body.pipe(OutputStream.nullOutputStream());
-            return Response.builder()
+            return withEncoding(withValidators(Response.builder(), body), coding)
                     .code(204)
                     .setHeader("Allow", "GET, HEAD, OPTIONS")
-                    .setHeader("Content-Type", body.type())
+                    .setHeader("Content-Type", type)
                     .setHeader("Content-Length", Long.toString(body.size()))
                     .build();
-        } else if (!method.equalsIgnoreCase("GET")) {
+        } else if (!isGet) {
             body.pipe(OutputStream.nullOutputStream());
             return Response.error(405);
         }
 
-        return Response.of(body);
+        if (coding != null) {
+            return withEncoding(withValidators(Response.builder(), body), coding)
+                    .code(body.size() == 0L ? 204 : 200)
+                    .body(body)
+                    .setHeader("Content-Type", type)
+                    .build();
+        }
+
+        if (body instanceof SeekableBody seekable) {
+            String range = requestHeaders.getFirst("Range");
+            if (range != null && isRangeCurrent(requestHeaders, body)) {
+                List<ByteRange> ranges = ByteRange.parse(range, seekable.size());
+                if (ranges != null) return rangeResponse(seekable, ranges);
+            }
+        }
+
+        return withValidators(Response.builder(), body)
+                .code(body.size() == 0L ? 204 : 200)
+                .body(body)
+                .build();
+    }
+
+    private @Nullable ContentEncoding precompressedEncoding(
+            @NotNull Headers requestHeaders,
+            @NotNull String type,
+            long size
+    ) {
+        if (this.compressionThreshold == -1L || !ContentEncoding.isCompressible(type)) return null;
+        if (size != -1L && size < this.compressionThreshold) return null;
+        ContentEncoding coding = ContentEncoding.negotiate(requestHeaders.getFirst("Accept-Encoding"));
+        return (coding == null || coding.extension() == null) ? null : coding;
+    }
+
+    /**
+     * Looks up the precompressed sibling of a static path, for instance {@code /app.js.gz} for {@code /app.js}
+     * @return The sibling, or null if there is none
+     */
+    private @Nullable Body precompressed(@NotNull String path, @NotNull ContentEncoding coding) {
+        String extension = coding.extension();
+        if (extension == null || path.isEmpty() || path.endsWith("/")) return null;
+        try {
+            //noinspection PatternValidation
+            return this.staticContent.serve(path + extension);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static @NotNull Response.Builder withEncoding(
+            @NotNull Response.Builder builder,
+            @Nullable ContentEncoding coding
+    ) {
+        if (coding == null) return builder;
+        return builder.setHeader("Content-Encoding", coding.token())
+                .setHeader("Vary", "Accept-Encoding");
+    }
+
+    /**
+     * Serves part of a seekable body with {@code 206 Partial Content}. A single range is sent as-is with a
+     * {@code Content-Range} header, while several ranges are sent as {@code multipart/byteranges}. If no range
+     * is satisfiable, the response is {@code 416 Range Not Satisfiable}.
+     */
+    private static @NotNull Response rangeResponse(@NotNull SeekableBody body, @NotNull List<ByteRange> ranges) {
+        long size = body.size();
+        if (ranges.isEmpty()) {
+            return withValidators(Response.builder(), body)
+                    .code(416)
+                    .setHeader("Content-Range", "bytes */" + size)
+                    .build();
+        }
+
+        Response.Builder builder = withValidators(Response.builder(), body).code(206);
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            return builder.body(body.slice(range.first(), range.length()))
+                    .setHeader("Content-Range", range.contentRange(size))
+                    .build();
+        }
+
+        String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+        int count = ranges.size();
+        byte[][] heads = new byte[count][];
+        long total = 0L;
+        for (int i=0; i < count; i++) {
+            ByteRange range = ranges.get(i);
+            heads[i] = ("\r\n--" + boundary + "\r\n" +
+                    "Content-Type: " + body.type() + "\r\n" +
+                    "Content-Range: " + range.contentRange(size) + "\r\n\r\n"
+            ).getBytes(StandardCharsets.US_ASCII);
+            total += heads[i].length + range.length();
+        }
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        total += tail.length;
+
+        //noinspection PatternValidation
+        return builder.body(Body.builder()
+                        .source((OutputStream os) -> {
+                            for (int i=0; i < count; i++) {
+                                ByteRange range = ranges.get(i);
+                                os.write(heads[i]);
+                                body.slice(range.first(), range.length()).pipe(os);
+                            }
+                            os.write(tail);
+                        })
+                        .size(total)
+                        .type("multipart/byteranges; boundary=" + boundary)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Evaluates {@code If-Range} against the validators of a body. Only strong validators are accepted: an
+     * entity tag must match using the strong comparison function, and a date must exactly equal the
+     * modification time of the body (RFC 9110 13.1.5).
+     * @return True if the {@code Range} header should be honored
+     */
+    private static boolean isRangeCurrent(@NotNull Headers requestHeaders, @NotNull Body body) {
+        String ifRange = requestHeaders.getFirst("If-Range");
+        if (ifRange == null) return true;
+
+        ifRange = ifRange.strip();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            String etag = body.etag();
+            return etag != null && EntityTag.strongMatch(ifRange, etag);
+        }
+
+        Instant lastModified = body.lastModified();
+        if (lastModified == null) return false;
+
+        Instant date = HttpDate.parse(ifRange);
+        return date != null && date.getEpochSecond() == lastModified.getEpochSecond();
+    }
+
+    /**
+     * Evaluates {@code If-None-Match} and {@code If-Modified-Since} against the validators of a body.
+     * As per RFC 9110 13.2.2, {@code If-Modified-Since} is only considered when {@code If-None-Match} is absent.
+     */
+    private static boolean isNotModified(@NotNull Headers requestHeaders, @NotNull Body body) {
+        String noneMatch = requestHeaders.getFirst("If-None-Match");
+        if (noneMatch != null) {
+            String etag = body.etag();
+            return etag != null && EntityTag.noneMatchHit(noneMatch, etag);
+        }
+
+        String modifiedSince = requestHeaders.getFirst("If-Modified-Since");
+        Instant lastModified = body.lastModified();
+        if (modifiedSince == null || lastModified == null) return false;
+
+        Instant since = HttpDate.parse(modifiedSince);
+        return since != null && lastModified.getEpochSecond() <= since.getEpochSecond();
+    }
+
+    private static @NotNull Response.Builder withValidators(@NotNull Response.Builder builder, @NotNull Body body) {
+        if (body instanceof SeekableBody) builder.setHeader("Accept-Ranges", "bytes");
+
+        String etag = body.etag();
+        if (etag != null) builder.setHeader("ETag", etag);
+
+        Instant lastModified = body.lastModified();
+        if (lastModified != null) builder.setHeader("Last-Modified", HttpDate.format(lastModified));
+
+        return builder;
     }
 
     //
@@ -171,6 +568,11 @@ final class XpdyServerImpl extends EndpointRegistry implements XpdyServer {
         private ExceptionHandler  exceptionHandler  = ExceptionHandler.DEFAULT;
         private HttpsConfigurator httpsConfigurator = null;
         private Executor          executor          = null;
+        private int               maxConcurrency    = 0;
+        private Transport         transport         = Transport.jdk();
+        private long              compression       = DEFAULT_COMPRESSION_THRESHOLD;
+        private long              maxBodySize       = -1L;
+        private ErrorRenderer     errorRenderer     = ErrorRenderer.DEFAULT;
 
         //
 
@@ -263,6 +665,62 @@ final class XpdyServerImpl extends EndpointRegistry implements XpdyServer {
         public @NotNull Builder executor(@Nullable Executor executor) {
             this.checkOpen();
             this.executor = executor;
+            this.maxConcurrency = 0;
+            return this;
+        }
+
+        @Override
+        @Contract("_ -> this")
+        public @NotNull Builder virtualThreads(@Range(from=1, to=Integer.MAX_VALUE) int maxConcurrency) {
+            if (maxConcurrency < 1)
+                throw new IllegalArgumentException("Max concurrency must be positive (got " + maxConcurrency + ")");
+            this.checkOpen();
+            this.executor = null;
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        @Override
+        @Contract("_ -> this")
+        public @NotNull Builder transport(@NotNull Transport transport) {
+            this.checkOpen();
+            this.transport = transport;
+            return this;
+        }
+
+        @Override
+        @Contract("_ -> this")
+        public @NotNull Builder compression(@Range(from=0, to=Long.MAX_VALUE) long minimumSize) {
+            if (minimumSize < 0L)
+                throw new IllegalArgumentException("Minimum size may not be negative (got " + minimumSize + ")");
+            this.checkOpen();
+            this.compression = minimumSize;
+            return this;
+        }
+
+        @Override
+        @Contract("_ -> this")
+        public @NotNull Builder compression(boolean enabled) {
+            this.checkOpen();
+            this.compression = enabled ? DEFAULT_COMPRESSION_THRESHOLD : -1L;
+            return this;
+        }
+
+        @Override
+        @Contract("_ -> this")
+        public @NotNull Builder maxBodySize(@Range(from=-1, to=Long.MAX_VALUE) long maxBodySize) {
+            if (maxBodySize < -1L)
+                throw new IllegalArgumentException("Max body size may not be less than -1 (got " + maxBodySize + ")");
+            this.checkOpen();
+            this.maxBodySize = maxBodySize;
+            return this;
+        }
+
+        @Override
+        @Contract("_ -> this")
+        public @NotNull Builder errorRenderer(@NotNull ErrorRenderer errorRenderer) {
+            this.checkOpen();
+            this.errorRenderer = errorRenderer;
             return this;
         }
 
@@ -290,7 +748,12 @@ final class XpdyServerImpl extends EndpointRegistry implements XpdyServer {
                     this.defaultOut,
                     this.exceptionHandler,
                     this.httpsConfigurator,
-                    this.executor
+                    this.executor,
+                    this.maxConcurrency,
+                    this.transport,
+                    this.compression,
+                    this.maxBodySize,
+                    this.errorRenderer
             );
             this.injector.register(XpdyServer.class, ret);
             return ret;
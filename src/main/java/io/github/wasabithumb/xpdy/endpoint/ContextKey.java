@@ -0,0 +1,121 @@
+package io.github.wasabithumb.xpdy.endpoint;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *     Identifies a value stored in an {@link EndpointContext}. The first keys to be created (up to a small,
+ *     fixed number) are each assigned a slot, and contexts store their values in an array by slot. Values of
+ *     any further keys are kept in a map, so keys should be created once (for instance as constants) and reused.
+ * </p>
+ * <p>
+ *     {@link #of(Class)} provides the key used by {@link EndpointContext#get(Class)} and
+ *     {@link EndpointContext#set(Class, Object)}, which is also the key from which endpoint method parameters
+ *     are provided. {@link #create(Class, String)} provides a new key which is distinct from every other key,
+ *     even those of the same type.
+ * </p>
+ * @since 0.3.0
+ */
+@ApiStatus.AvailableSince("0.3.0")
+public final class ContextKey<T> {
+
+    /**
+     * The number of keys which are assigned a slot
+     */
+    static final int MAX_SLOTS = 64;
+
+    private static final AtomicInteger SLOTS = new AtomicInteger(0);
+
+    // Holds only the slot, as a value referencing its class would keep the class (and its loader) reachable
+    private static final ClassValue<Integer> CLASS_SLOTS = new ClassValue<>() {
+        @Override
+        protected @NotNull Integer computeValue(@NotNull Class<?> type) {
+            return allocateSlot();
+        }
+    };
+
+    private static int allocateSlot() {
+        int slot = SLOTS.getAndUpdate((int n) -> n < MAX_SLOTS ? n + 1 : n);
+        return slot < MAX_SLOTS ? slot : -1;
+    }
+
+    /**
+     * Provides the key for values of the given type. Every call with the same type returns an equal key.
+     */
+    public static <T> @NotNull ContextKey<T> of(@NotNull Class<T> type) {
+        return new ContextKey<>(type, null, CLASS_SLOTS.get(type));
+    }
+
+    /**
+     * Creates a new key for values of the given type
+     * @param name A name describing the key, used only in {@link #toString()}
+     */
+    @Contract("_, _ -> new")
+    public static <T> @NotNull ContextKey<T> create(@NotNull Class<T> type, @NotNull String name) {
+        return new ContextKey<>(type, Objects.requireNonNull(name, "name"), allocateSlot());
+    }
+
+    //
+
+    private final Class<T> type;
+    private final String name;
+    final int slot;     // Index of the value in a context, or -1 if the value is held in the context's map
+
+    private ContextKey(@NotNull Class<T> type, @Nullable String name, int slot) {
+        this.type = type;
+        this.name = name;
+        this.slot = slot;
+    }
+
+    //
+
+    /**
+     * The type of values stored under this key
+     */
+    public @NotNull Class<T> type() {
+        return this.type;
+    }
+
+    /**
+     * The name of this key, or null if this key was provided by {@link #of(Class)}
+     */
+    public @Nullable String name() {
+        return this.name;
+    }
+
+    /**
+     * True if this key was provided by {@link #of(Class)}
+     */
+    boolean isClassKey() {
+        return this.name == null;
+    }
+
+    /**
+     * Keys provided by {@link #of(Class)} are equal if their types are equal; other keys are only equal to
+     * themselves
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) return true;
+        if (this.name != null || !(obj instanceof ContextKey<?> other)) return false;
+        return other.name == null && this.type.equals(other.type);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.name == null ? this.type.hashCode() : System.identityHashCode(this);
+    }
+
+    @Override
+    public @NotNull String toString() {
+        if (this.name == null) return this.type.getName();
+        return this.name + " (" + this.type.getName() + ")";
+    }
+
+}
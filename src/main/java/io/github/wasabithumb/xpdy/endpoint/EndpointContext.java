@@ -3,10 +3,15 @@ package io.github.wasabithumb.xpdy.endpoint;
 import io.github.wasabithumb.xpdy.misc.collections.ClassMap;
 import io.github.wasabithumb.xpdy.payload.request.Request;
 import io.github.wasabithumb.xpdy.payload.response.Response;
+import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.UnknownNullability;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
 
 /**
  * A registry for values related to an endpoint invocation.
@@ -17,65 +22,150 @@ import java.util.Map;
  */
 public final class EndpointContext {
 
-    private final ClassMap<Object, Object> map = ClassMap.create();
+    private static final ContextKey<EndpointContext> CONTEXT = ContextKey.of(EndpointContext.class);
+    private static final ContextKey<Request> REQUEST = ContextKey.of(Request.class);
+    private static final ContextKey<EndpointMeta> META = ContextKey.of(EndpointMeta.class);
+    private static final ContextKey<Response> RESPONSE = ContextKey.of(Response.class);
+
+    //
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    //
+
+    private ContextKey<?>[] keys;
+    private Object[] values;
+    private Map<ContextKey<?>, Object> overflow = null; // Values of keys which were not assigned a slot
+    private ClassMap<Object, Object> byClass = null;    // Built on demand for assignable lookups
 
     EndpointContext(
             @NotNull Request request,
             @NotNull EndpointMeta meta
     ) {
-        this.map.put(EndpointContext.class, this);
-        this.map.put(Request.class, request);
-        this.map.put(EndpointMeta.class, meta);
+        this.keys = new ContextKey<?>[INITIAL_CAPACITY];
+        this.values = new Object[INITIAL_CAPACITY];
+        this.set(CONTEXT, this);
+        this.set(REQUEST, request);
+        this.set(META, meta);
     }
 
     //
 
+    /**
+     * Provides the value set for the given class or, if there is none, the value of the most specific
+     * class set on this context which is a subtype of the given class
+     * @see ContextKey#of(Class)
+     */
     public <T> @UnknownNullability T get(@NotNull Class<T> clazz) {
-        Object ret = this.map.get(clazz);
-        if (ret != null) return clazz.cast(ret);
+        return this.get(ContextKey.of(clazz));
+    }
 
-        for (Map.Entry<Class<?>, Object> entry : this.map.entrySet()) {
-            if (clazz.isAssignableFrom(entry.getKey()))
-                return clazz.cast(entry.getValue());
+    /**
+     * Provides the value stored under the given key. If the key was provided by {@link ContextKey#of(Class)},
+     * this is equivalent to {@link #get(Class)}.
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    public <T> @UnknownNullability T get(@NotNull ContextKey<T> key) {
+        int slot = key.slot;
+        Object ret;
+        if (slot != -1) {
+            ret = (slot < this.values.length) ? this.values[slot] : null;
+        } else {
+            ret = (this.overflow == null) ? null : this.overflow.get(key);
         }
-
-        return null;
+        if (ret == null && key.isClassKey()) ret = this.byClass().getAssignable(key.type());
+        return key.type().cast(ret);
     }
 
     public <T> void set(@NotNull Class<T> clazz, @NotNull T value) {
-        this.map.put(clazz, value);
+        this.set(ContextKey.of(clazz), value);
+    }
+
+    /**
+     * Stores a value under the given key
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    public <T> void set(@NotNull ContextKey<T> key, @NotNull T value) {
+        Objects.requireNonNull(value, "value");
+        int slot = key.slot;
+        if (slot == -1) {
+            if (this.overflow == null) this.overflow = new HashMap<>();
+            this.overflow.put(key, value);
+        } else {
+            if (slot >= this.values.length) {
+                int capacity = Math.min(Integer.highestOneBit(slot) << 1, ContextKey.MAX_SLOTS);
+                this.keys = Arrays.copyOf(this.keys, capacity);
+                this.values = Arrays.copyOf(this.values, capacity);
+            }
+            this.keys[slot] = key;
+            this.values[slot] = value;
+        }
+        if (key.isClassKey()) this.byClass = null;
+    }
+
+    private @NotNull ClassMap<Object, Object> byClass() {
+        ClassMap<Object, Object> ret = this.byClass;
+        if (ret == null) {
+            ret = ClassMap.create();
+            for (int i=0; i < this.keys.length; i++) {
+                ContextKey<?> key = this.keys[i];
+                if (key != null && key.isClassKey()) ret.put(key.type(), this.values[i]);
+            }
+            if (this.overflow != null) {
+                for (Map.Entry<ContextKey<?>, Object> entry : this.overflow.entrySet()) {
+                    ContextKey<?> key = entry.getKey();
+                    if (key.isClassKey()) ret.put(key.type(), entry.getValue());
+                }
+            }
+            this.byClass = ret;
+        }
+        return ret;
     }
 
     //
 
     public @NotNull Request getRequest() {
-        return this.get(Request.class);
+        return this.get(REQUEST);
     }
 
     public void setRequest(@NotNull Request request) {
-        this.set(Request.class, request);
+        this.set(REQUEST, request);
     }
 
     public @NotNull EndpointMeta getMeta() {
-        return this.get(EndpointMeta.class);
+        return this.get(META);
     }
 
     public @NotNull Response getResponse() throws IllegalStateException {
-        Response response = this.get(Response.class);
+        Response response = this.get(RESPONSE);
         if (response == null)
             throw new IllegalStateException("Response is not set");
         return response;
     }
 
     public void setResponse(@NotNull Response response) {
-        this.set(Response.class, response);
+        this.set(RESPONSE, response);
     }
 
     //
 
     @Override
     public @NotNull String toString() {
-        return this.map.toString();
+        StringJoiner sj = new StringJoiner(", ", "{", "}");
+        for (int i=0; i < this.keys.length; i++) {
+            ContextKey<?> key = this.keys[i];
+            if (key == null) continue;
+            Object value = this.values[i];
+            sj.add(key + "=" + (value == this ? "(this context)" : value));
+        }
+        if (this.overflow != null) {
+            for (Map.Entry<ContextKey<?>, Object> entry : this.overflow.entrySet()) {
+                sj.add(entry.getKey() + "=" + entry.getValue());
+            }
+        }
+        return sj.toString();
     }
 
 }
@@ -6,7 +6,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.*;
-import java.util.Map;
 
 @ApiStatus.Internal
 public final class EndpointInjector {
@@ -20,15 +19,60 @@ public final class EndpointInjector {
     }
 
     public <T> @Nullable T match(@NotNull Class<T> clazz) {
-        Object exact = this.map.get(clazz);
-        if (exact != null) return clazz.cast(exact);
+        return clazz.cast(this.map.getAssignable(clazz));
+    }
 
-        for (Map.Entry<Class<?>, Object> entry : this.map.entrySet()) {
-            if (clazz.isAssignableFrom(entry.getKey()))
-                return clazz.cast(entry.getValue());
+    /**
+     * Provides the value to inject into a constructor parameter of an endpoint class
+     * @throws IllegalStateException No value is registered for the parameter type
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    public <T> @NotNull T requireParameter(@NotNull Class<T> type, @NotNull Class<?> owner, @NotNull String name) {
+        T value = this.match(type);
+        if (value == null) {
+            throw new IllegalStateException("Cannot inject constructor parameter \"" + name +
+                    "\" for endpoint class " + owner.getName() + " (type " +
+                    type.getName() + " is not registered)");
         }
+        return value;
+    }
+
+    /**
+     * Provides the value to inject into a field of an endpoint class
+     * @throws IllegalStateException No value is registered for the field type
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    public <T> @NotNull T requireField(@NotNull Class<T> type, @NotNull Class<?> owner, @NotNull String name) {
+        T value = this.match(type);
+        if (value == null) {
+            throw new IllegalStateException("Cannot inject field \"" + name + "\" for endpoint class " +
+                    owner.getName() + " (type " + type.getName() + " is not registered)");
+        }
+        return value;
+    }
 
-        return null;
+    /**
+     * Populates a single field of an endpoint class through reflection. Used by
+     * {@link EndpointTable generated endpoint tables} for fields which cannot be assigned
+     * directly, such as private fields.
+     * @throws IllegalStateException No value is registered for the field type, or the field cannot be set
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    public void injectField(@NotNull Endpoints instance, @NotNull Class<?> owner, @NotNull String name) {
+        Field f;
+        try {
+            f = owner.getDeclaredField(name);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Field \"" + name + "\" no longer exists in endpoint class " +
+                    owner.getName(), e);
+        }
+        try {
+            f.setAccessible(true);
+        } catch (InaccessibleObjectException | SecurityException ignored) { }
+        this.handleField(owner, instance, f);
     }
 
     public <E extends Endpoints> @NotNull E inject(@NotNull Class<E> clazz) {
@@ -73,14 +117,7 @@ public final class EndpointInjector {
 
         for (int i=0; i < paramCount; i++) {
             Parameter spec = paramSpecs[i];
-            Class<?> type = spec.getType();
-            Object value = this.match(type);
-            if (value == null) {
-                throw new IllegalStateException("Cannot inject constructor parameter \"" + spec.getName() +
-                        "\" for endpoint class " + clazz.getName() + " (type " +
-                        type.getName() + " is not registered)");
-            }
-            params[i] = value;
+            params[i] = this.requireParameter(spec.getType(), clazz, spec.getName());
         }
 
         try {
@@ -112,11 +149,7 @@ public final class EndpointInjector {
     }
 
     private void handleField(Class<?> cls, Endpoints o, Field f) {
-        Object value = this.match(f.getType());
-        if (value == null) {
-            throw new IllegalStateException("Cannot inject field \"" + f.getName() + "\" for endpoint class " +
-                    cls.getName() + " (type " + f.getType().getName() + " is not registered)");
-        }
+        Object value = this.requireField(f.getType(), cls, f.getName());
 
         try {
             f.set(o, value);
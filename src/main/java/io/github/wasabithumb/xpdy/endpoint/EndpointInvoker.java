@@ -0,0 +1,49 @@
+package io.github.wasabithumb.xpdy.endpoint;
+
+import io.github.wasabithumb.xpdy.payload.response.Response;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Calls an endpoint handler, sourcing its parameters from the {@link EndpointContext}.
+ * Handlers with a {@code void} return type should produce an empty {@code 200} response.
+ * @since 0.3.0
+ */
+@ApiStatus.AvailableSince("0.3.0")
+@FunctionalInterface
+public interface EndpointInvoker {
+
+    @NotNull Response invoke(@NotNull EndpointContext ctx) throws Throwable;
+
+    //
+
+    /**
+     * Calls an endpoint handler which returns a {@link CompletionStage CompletionStage&lt;Response&gt;}.
+     * The server does not wait for the stage; the exchange is completed once the stage completes.
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    @FunctionalInterface
+    interface Async extends EndpointInvoker {
+
+        @NotNull CompletionStage<Response> invokeAsync(@NotNull EndpointContext ctx) throws Throwable;
+
+        /**
+         * Calls the handler and waits for the stage to complete
+         */
+        @Override
+        default @NotNull Response invoke(@NotNull EndpointContext ctx) throws Throwable {
+            try {
+                return this.invokeAsync(ctx).toCompletableFuture().get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw (cause == null) ? e : cause;
+            }
+        }
+
+    }
+
+}
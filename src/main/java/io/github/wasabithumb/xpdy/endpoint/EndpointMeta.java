@@ -6,13 +6,17 @@ import io.github.wasabithumb.xpdy.misc.MimeType;
 import io.github.wasabithumb.xpdy.misc.MimeTypes;
 import io.github.wasabithumb.xpdy.misc.URIPath;
 import io.github.wasabithumb.xpdy.payload.response.Response;
+import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.Objects;
+import java.util.concurrent.CompletionStage;
 
 public sealed abstract class EndpointMeta {
 
@@ -58,15 +62,56 @@ public sealed abstract class EndpointMeta {
             Class<?> type = method.getReturnType();
             if (Void.TYPE.equals(type) || Void.class.equals(type)) {
                 meta.isVoid = true;
-            } else if (!type.isAssignableFrom(Response.class)) {
+            } else if (!type.isAssignableFrom(Response.class) && !isAsyncReturnType(method)) {
                 throw new IllegalStateException("Endpoint method \"" + method.getName() + "\" in class " +
-                        method.getDeclaringClass().getName() + " has illegal return type (must be void or Response)");
+                        method.getDeclaringClass().getName() + " has illegal return type " +
+                        "(must be void, Response or CompletionStage<Response>)");
             }
         }
 
         return meta;
     }
 
+    /**
+     * Creates endpoint meta from literal values, as they would appear on an
+     * {@link io.github.wasabithumb.xpdy.endpoint.methods endpoint annotation}. This is used by
+     * {@link EndpointTable generated endpoint tables}.
+     * @param in The MIME type accepted by the endpoint, or an empty string to use the default
+     * @param out The MIME type produced by the endpoint, or an empty string to use the default
+     * @param isVoid True if the endpoint method has a {@code void} return type
+     * @param compress False if responses from the endpoint should never be compressed
+     * @param maxBodySize The maximum size of the request body in bytes, or -1 to use the server default
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    @Contract("_, _, _, _, _, _, _ -> new")
+    public static @NotNull EndpointMeta of(
+            @NotNull HTTPVerb verb,
+            @NotNull @URIPath String path,
+            @NotNull @MimeType String in,
+            @NotNull @MimeType String out,
+            boolean isVoid,
+            boolean compress,
+            long maxBodySize
+    ) {
+        if (HTTPVerb.GET.equals(verb)) in = MimeTypes.URLENCODED;
+        EndpointMeta meta = new ForValues(verb, path, in, out, compress, maxBodySize < 0L ? -1L : maxBodySize);
+        meta.isVoid = isVoid;
+        return meta;
+    }
+
+    /**
+     * Checks if the method returns a {@link CompletionStage} which may hold a {@link Response}
+     */
+    static boolean isAsyncReturnType(@NotNull Method method) {
+        if (!CompletionStage.class.isAssignableFrom(method.getReturnType())) return false;
+        if (!(method.getGenericReturnType() instanceof ParameterizedType pt)) return true;
+
+        Type[] args = pt.getActualTypeArguments();
+        if (args.length != 1 || !(args[0] instanceof Class<?> arg)) return true;
+        return arg.isAssignableFrom(Response.class) || Response.class.isAssignableFrom(arg);
+    }
+
     @Contract("_ -> fail")
     private static void raiseMultiple(@NotNull Method method) throws IllegalStateException {
         throw new IllegalStateException("Method \"" + method.getName() + "\" in class " +
@@ -94,6 +139,22 @@ public sealed abstract class EndpointMeta {
 
     public abstract boolean enforceOutType();
 
+    /**
+     * False if responses from the endpoint should be sent without a {@code Content-Encoding}
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    public abstract boolean compress();
+
+    /**
+     * The maximum size of the request body in bytes, or -1 if the server default applies
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    public long maxBodySize() {
+        return -1L;
+    }
+
     public final boolean isVoid() {
         return this.isVoid;
     }
@@ -123,14 +184,7 @@ public sealed abstract class EndpointMeta {
 
     //
 
-    private static sealed abstract class For<A extends Annotation> extends EndpointMeta {
-
-        protected final A handle;
-        protected For(@NotNull A handle) {
-            this.handle = handle;
-        }
-
-        //
+    private static sealed abstract class Typed extends EndpointMeta {
 
         @Contract(pure = true)
         protected abstract @NotNull @MimeType String in();
@@ -157,6 +211,72 @@ public sealed abstract class EndpointMeta {
 
     }
 
+    private static sealed abstract class For<A extends Annotation> extends Typed {
+
+        protected final A handle;
+        protected For(@NotNull A handle) {
+            this.handle = handle;
+        }
+
+    }
+
+    private static final class ForValues extends Typed {
+
+        private final HTTPVerb verb;
+        private final String path;
+        private final String in;
+        private final String out;
+        private final boolean compress;
+        private final long maxBodySize;
+
+        private ForValues(
+                @NotNull HTTPVerb verb,
+                @NotNull @URIPath String path,
+                @NotNull @MimeType String in,
+                @NotNull @MimeType String out,
+                boolean compress,
+                long maxBodySize
+        ) {
+            this.verb = verb;
+            this.path = path;
+            this.in = in;
+            this.out = out;
+            this.compress = compress;
+            this.maxBodySize = maxBodySize;
+        }
+
+        @Override
+        public @NotNull HTTPVerb verb() {
+            return this.verb;
+        }
+
+        @Override
+        public @NotNull @URIPath String path() {
+            return this.path;
+        }
+
+        @Override
+        protected @NotNull @MimeType String in() {
+            return this.in;
+        }
+
+        @Override
+        protected @NotNull @MimeType String out() {
+            return this.out;
+        }
+
+        @Override
+        public boolean compress() {
+            return this.compress;
+        }
+
+        @Override
+        public long maxBodySize() {
+            return this.maxBodySize;
+        }
+
+    }
+
     //
 
     private static final class ForGet extends For<Get> {
@@ -185,6 +305,11 @@ public sealed abstract class EndpointMeta {
             return this.handle.out();
         }
 
+        @Override
+        public boolean compress() {
+            return this.handle.compress();
+        }
+
     }
 
     private static final class ForPost extends For<Post> {
@@ -213,6 +338,17 @@ public sealed abstract class EndpointMeta {
             return this.handle.out();
         }
 
+        @Override
+        public boolean compress() {
+            return this.handle.compress();
+        }
+
+        @Override
+        public long maxBodySize() {
+            long value = this.handle.maxBodySize();
+            return value < 0L ? -1L : value;
+        }
+
     }
 
     private static final class ForPut extends For<Put> {
@@ -241,6 +377,17 @@ public sealed abstract class EndpointMeta {
             return this.handle.out();
         }
 
+        @Override
+        public boolean compress() {
+            return this.handle.compress();
+        }
+
+        @Override
+        public long maxBodySize() {
+            long value = this.handle.maxBodySize();
+            return value < 0L ? -1L : value;
+        }
+
     }
 
     private static final class ForPatch extends For<Patch> {
@@ -269,6 +416,17 @@ public sealed abstract class EndpointMeta {
             return this.handle.out();
         }
 
+        @Override
+        public boolean compress() {
+            return this.handle.compress();
+        }
+
+        @Override
+        public long maxBodySize() {
+            long value = this.handle.maxBodySize();
+            return value < 0L ? -1L : value;
+        }
+
     }
 
     private static final class ForDelete extends For<Delete> {
@@ -297,6 +455,11 @@ public sealed abstract class EndpointMeta {
             return this.handle.out();
         }
 
+        @Override
+        public boolean compress() {
+            return this.handle.compress();
+        }
+
     }
 
 }
@@ -1,112 +1,177 @@
 package io.github.wasabithumb.xpdy.endpoint;
 
-import io.github.wasabithumb.xpdy.except.ContextMissException;
 import io.github.wasabithumb.xpdy.except.handling.ExceptionHandler;
 import io.github.wasabithumb.xpdy.logging.XpdyLogger;
 import io.github.wasabithumb.xpdy.misc.HTTPVerb;
 import io.github.wasabithumb.xpdy.misc.MimeType;
 import io.github.wasabithumb.xpdy.misc.path.PathMap;
+import io.github.wasabithumb.xpdy.misc.path.PathRouter;
 import io.github.wasabithumb.xpdy.payload.request.Request;
 import io.github.wasabithumb.xpdy.payload.response.Response;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
-import java.util.EnumMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.function.Function;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 
 @ApiStatus.Internal
 public class EndpointRegistry {
 
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object writeLock = new Object();
     private final PathMap<Map<HTTPVerb, Registration>> map = new PathMap<>();
+    private volatile PathRouter<Map<HTTPVerb, Registration>> router = PathRouter.empty();
     private final XpdyLogger logger;
     private final String defaultIn;
     private final String defaultOut;
     private final ExceptionHandler exceptionHandler;
+    private final long maxBodySize;
 
     public EndpointRegistry(
             @NotNull XpdyLogger logger,
             @NotNull @MimeType String defaultIn,
             @NotNull @MimeType String defaultOut,
-            @NotNull ExceptionHandler exceptionHandler
+            @NotNull ExceptionHandler exceptionHandler,
+            long maxBodySize
     ) {
         this.logger = logger;
         this.defaultIn = defaultIn;
         this.defaultOut = defaultOut;
         this.exceptionHandler = exceptionHandler;
+        this.maxBodySize = maxBodySize;
     }
 
     //
 
-    public @NotNull Response invokeEndpoint(
+    /**
+     * Serves a request with the matching endpoint. The returned future is already complete unless the endpoint
+     * is {@link EndpointInvoker.Async asynchronous}, in which case it is completed on the
+     * {@link #completionExecutor() completion executor} once the endpoint's stage completes.
+     */
+    public @NotNull CompletableFuture<Served> invokeEndpoint(
             @NotNull String method,
             @NotNull String path,
-            @NotNull Function<List<String>, Request> createRequest
+            @NotNull RequestFactory createRequest
     ) {
         return this.invokeEndpoint(new VerbLike.Arbitrary(method), path, createRequest);
     }
 
-    public @NotNull Response invokeEndpoint(
+    /**
+     * @see #invokeEndpoint(String, String, RequestFactory)
+     */
+    public @NotNull CompletableFuture<Served> invokeEndpoint(
             @NotNull HTTPVerb method,
             @NotNull String path,
-            @NotNull Function<List<String>, Request> createRequest
+            @NotNull RequestFactory createRequest
     ) {
         return this.invokeEndpoint(new VerbLike.Literal(method), path, createRequest);
     }
 
-    private @NotNull Response invokeEndpoint(
+    private @NotNull CompletableFuture<Served> invokeEndpoint(
             @NotNull VerbLike method,
             @NotNull String path,
-            @NotNull Function<List<String>, Request> createRequest
+            @NotNull RequestFactory createRequest
     ) {
         Registration r;
         List<String> params;
         HTTPVerb verb;
 
-        this.lock.readLock().lock();
-        try {
-            PathMap.Resolution<Map<HTTPVerb, Registration>> resolution = this.map.resolve(path);
-            if (resolution == null) {
-                this.logger.log(404, method.toString(), path, null);
-                return Response.error(404);
-            }
-            params = resolution.params();
+        PathMap.Resolution<Map<HTTPVerb, Registration>> resolution = this.router.resolve(path);
+        if (resolution == null) {
+            this.logger.log(404, method.toString(), path, null);
+            return CompletableFuture.completedFuture(new Served(Response.error(404), true));
+        }
+        params = resolution.params();
 
-            Map<HTTPVerb, Registration> sub = resolution.value();
-            if (method.isMeta()) {
-                this.logger.log(204, method.toString(), path, null);
-                return this.serveMeta(sub, true);
-            }
+        Map<HTTPVerb, Registration> sub = resolution.value();
+        if (method.isMeta()) {
+            this.logger.log(204, method.toString(), path, null);
+            return CompletableFuture.completedFuture(new Served(this.serveMeta(sub, true), true));
+        }
 
-            verb = method.toVerb();
-            if (verb == null || (r = sub.get(verb)) == null) {
-                this.logger.log(405, method.toString(), path, null);
-                return this.serveMeta(sub, false);
-            }
-        } finally {
-            this.lock.readLock().unlock();
+        verb = method.toVerb();
+        if (verb == null || (r = sub.get(verb)) == null) {
+            this.logger.log(405, method.toString(), path, null);
+            return CompletableFuture.completedFuture(new Served(this.serveMeta(sub, false), true));
         }
 
-        EndpointContext ctx = new EndpointContext(createRequest.apply(params), r.meta);
-        Response response;
+        long maxBodySize = r.meta.maxBodySize();
+        if (maxBodySize == -1L) maxBodySize = this.maxBodySize;
+
+        Request request = createRequest.create(params, maxBodySize);
+        if (maxBodySize != -1L && request.body().size() > maxBodySize) {
+            // Rejected before reading; bodies of unknown length are cut off by the request instead
+            this.logger.log(413, method.toString(), path, null);
+            return CompletableFuture.completedFuture(new Served(Response.error(413), true));
+        }
+
+        EndpointContext ctx = new EndpointContext(request, r.meta);
+        Response response = null;
         Throwable error = null;
         try {
             r.registrar.beforeEach(ctx);
+            if (r.invoker instanceof EndpointInvoker.Async async) {
+                CompletionStage<Response> stage = async.invokeAsync(ctx);
+                if (stage == null) throw new NullPointerException("Endpoint returned a null stage");
+                return ((CompletionStage<?>) stage)
+                        .handleAsync(
+                                (Object value, Throwable t) -> this.complete(r, ctx, method, path, verb, value, t),
+                                this.completionExecutor()
+                        )
+                        .toCompletableFuture();
+            }
             response = this.serveInternal(r, ctx);
-            ctx.setResponse(response);
-            r.registrar.afterEach(ctx);
-            response = ctx.getResponse();
         } catch (Throwable t) {
             error = t;
-            response = Response.error(this.exceptionHandler.handle(t));
+        }
+
+        return CompletableFuture.completedFuture(this.complete(r, ctx, method, path, verb, response, error));
+    }
+
+    /**
+     * Provides the executor on which asynchronous endpoints are completed, so that {@code afterEach}, logging and
+     * anything chained to the result do not run on whichever thread completed the endpoint's stage.
+     * By default, they run on that thread.
+     */
+    protected @NotNull Executor completionExecutor() {
+        return Runnable::run;
+    }
+
+    /**
+     * Runs {@link Endpoints#afterEach(EndpointContext)}, handles any error and logs the exchange
+     * once the endpoint has produced a response
+     */
+    private @NotNull Served complete(
+            @NotNull Registration r,
+            @NotNull EndpointContext ctx,
+            @NotNull VerbLike method,
+            @NotNull String path,
+            @NotNull HTTPVerb verb,
+            @Nullable Object value,
+            @Nullable Throwable error
+    ) {
+        if (error instanceof CompletionException && error.getCause() != null) error = error.getCause();
+
+        Response response = null;
+        if (error == null) {
+            try {
+                if (!(value instanceof Response)) {
+                    throw new ClassCastException("Endpoint produced " +
+                            (value == null ? "null" : value.getClass().getName()) + " instead of a Response");
+                }
+                ctx.setResponse((Response) value);
+                r.registrar.afterEach(ctx);
+                response = ctx.getResponse();
+            } catch (Throwable t) {
+                error = t;
+            }
+        }
+        if (error != null) {
+            response = Response.error(this.exceptionHandler.handle(error));
         }
 
         this.logger.log(response.code(), method.toString(), path, error);
@@ -114,7 +179,8 @@ public class EndpointRegistry {
         if (!verb.equals(HTTPVerb.GET) && !response.headers().containsKey("Accept")) {
             response.headers().set("Accept", r.meta.inType(this.defaultIn));
         }
-        return response;
+        // The response may be shared between endpoints, so the endpoint's opt-out is carried alongside it
+        return new Served(response, r.meta.compress());
     }
 
     private @NotNull Response serveMeta(@NotNull Map<HTTPVerb, Registration> map, boolean ok) {
@@ -146,74 +212,99 @@ public class EndpointRegistry {
     }
 
     private @NotNull Response serveInternal(@NotNull Registration r, @NotNull EndpointContext ctx) throws Throwable {
-        Method m = r.method;
-        Parameter[] params = m.getParameters();
-        int paramCount = params.length;
-        Object[] args = new Object[paramCount];
-
-        for (int i=0; i < paramCount; i++) {
-            Parameter param = params[i];
-            Object arg = ctx.get(param.getType());
-            if (arg == null)
-                throw new ContextMissException(m, param);
-            args[i] = arg;
-        }
-
-        Object out;
-        try {
-            out = r.method.invoke(r.registrar, args);
-        } catch (InvocationTargetException e) {
-            Throwable cause = e.getCause();
-            if (cause != null) throw cause;
-            throw e;
-        }
-
-        if (r.meta.isVoid()) {
-            return Response.builder()
-                    .code(200)
-                    .build();
-        }
-
-        return (Response) out;
+        return r.invoker.invoke(ctx);
     }
 
     //
 
+    /**
+     * Registers the endpoints declared by the given instance. Registration is atomic; if any endpoint
+     * method is invalid, no endpoints are registered. Requests being served concurrently observe either
+     * the routes before or after the registration, but never a partial state.
+     */
     public void registerEndpoints(@NotNull Endpoints endpoints) {
-        this.lock.writeLock().lock();
-        try {
-            Class<?> cls = endpoints.getClass();
-            do {
-                this.registerAt(cls, endpoints);
-                cls = cls.getSuperclass();
-            } while (cls != null && Endpoints.class.isAssignableFrom(cls));
-        } finally {
-            this.lock.writeLock().unlock();
+        List<Registration> list = new ArrayList<>();
+        Class<?> cls = endpoints.getClass();
+        do {
+            this.collectAt(cls, endpoints, list);
+            cls = cls.getSuperclass();
+        } while (cls != null && Endpoints.class.isAssignableFrom(cls));
+        this.register(list);
+    }
+
+    /**
+     * Registers the endpoints declared by the given instance, as listed by a
+     * {@link EndpointTable generated endpoint table}. Semantics are otherwise identical to
+     * {@link #registerEndpoints(Endpoints)}.
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    public <E extends Endpoints> void registerEndpoints(@NotNull E endpoints, @NotNull EndpointTable<E> table) {
+        List<EndpointTable.Entry> entries = table.entries(endpoints);
+        List<Registration> list = new ArrayList<>(entries.size());
+        for (EndpointTable.Entry entry : entries) {
+            list.add(new Registration(endpoints, entry.meta(), entry.invoker()));
         }
+        this.register(list);
     }
 
-    private void registerAt(@NotNull Class<?> cls, @NotNull Endpoints endpoints) {
+    private void register(@NotNull List<Registration> list) {
+        synchronized (this.writeLock) {
+            // Maps reachable from the published router are never mutated; copy on first write
+            Set<Map<HTTPVerb, Registration>> fresh = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Registration r : list) {
+                String path = r.meta.path();
+                Map<HTTPVerb, Registration> sub = this.map.get(path);
+                if (sub == null || !fresh.contains(sub)) {
+                    sub = (sub == null) ? new EnumMap<>(HTTPVerb.class) : new EnumMap<>(sub);
+                    this.map.put(path, sub);
+                    fresh.add(sub);
+                }
+                sub.put(r.meta.verb(), r);
+            }
+            this.router = this.map.compile();
+        }
+    }
+
+    private void collectAt(@NotNull Class<?> cls, @NotNull Endpoints endpoints, @NotNull List<Registration> out) {
         EndpointMeta meta;
         for (Method m : cls.getDeclaredMethods()) {
             meta = EndpointMeta.of(m);
             if (meta == null) continue;
-
-            Map<HTTPVerb, Registration> sub = this.map.get(meta.path());
-            if (sub == null) {
-                sub = new EnumMap<>(HTTPVerb.class);
-                this.map.put(meta.path(), sub);
-            }
-
-            sub.put(meta.verb(), new Registration(endpoints, meta, m));
+            out.add(new Registration(endpoints, meta, ReflectEndpointInvoker.create(endpoints, meta, m)));
         }
     }
 
     //
 
+    /**
+     * A response produced by {@link #invokeEndpoint(String, String, RequestFactory)}
+     * @param compress False if the endpoint does not allow its responses to be compressed, regardless of
+     *                 {@link Response#compress()}
+     */
+    public record Served(
+            @NotNull Response response,
+            boolean compress
+    ) { }
+
+    /**
+     * Creates the request for an exchange, once the endpoint serving it is known
+     */
+    @FunctionalInterface
+    public interface RequestFactory {
+
+        /**
+         * @param pathParameters The values of the wildcards in the endpoint path
+         * @param maxBodySize The maximum size of the request body, or -1 for no limit
+         */
+        @NotNull Request create(@NotNull List<String> pathParameters, long maxBodySize);
+
+    }
+
     private record Registration(
             @NotNull Endpoints registrar,
             @NotNull EndpointMeta meta,
-            @NotNull Method method
+            @NotNull EndpointInvoker invoker
     ) { }
 
     private interface VerbLike {
@@ -0,0 +1,124 @@
+package io.github.wasabithumb.xpdy.endpoint;
+
+import io.github.wasabithumb.xpdy.except.ContextMissException;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+
+/**
+ * <p>
+ *     A static dispatch table for an {@link Endpoints endpoint class}, generated at compile time by
+ *     {@code xpdy-processor}. Tables construct the endpoint class, populate fields marked with
+ *     {@link EndpointInject @EndpointInject} and expose each endpoint method as an {@link EndpointInvoker}
+ *     which calls the method directly.
+ * </p>
+ * <p>
+ *     The table for a class is named after the binary name of the class with the suffix {@link #CLASS_SUFFIX}.
+ *     When no table exists, endpoints are discovered through reflection instead.
+ * </p>
+ * @since 0.3.0
+ * @see #find(Class)
+ */
+@ApiStatus.AvailableSince("0.3.0")
+@ApiStatus.OverrideOnly
+public interface EndpointTable<E extends Endpoints> {
+
+    /**
+     * The suffix appended to the binary name of an endpoint class to form the name of its table
+     */
+    String CLASS_SUFFIX = "$XpdyEndpoints";
+
+    /**
+     * Finds the generated table for the given endpoint class.
+     * @return The table, or null if no table was generated for the class
+     * @throws IllegalStateException The table exists but could not be loaded
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Endpoints> @Nullable EndpointTable<T> find(@NotNull Class<T> clazz) throws IllegalStateException {
+        Class<?> tableClass;
+        try {
+            tableClass = Class.forName(clazz.getName() + CLASS_SUFFIX, true, clazz.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+        if (!EndpointTable.class.isAssignableFrom(tableClass)) return null;
+
+        EndpointTable<?> table;
+        try {
+            Constructor<?> con = tableClass.getConstructor();
+            table = (EndpointTable<?>) con.newInstance();
+        } catch (ReflectiveOperationException | SecurityException e) {
+            throw new IllegalStateException("Failed to load endpoint table " + tableClass.getName(), e);
+        }
+
+        if (!clazz.equals(table.type())) return null;
+        return (EndpointTable<T>) table;
+    }
+
+    /**
+     * Provides a value from the context for use as an argument to an endpoint method.
+     * Used by generated {@link EndpointInvoker invokers}.
+     * @throws ContextMissException The context has no value of the requested type
+     */
+    static <T> @NotNull T argument(
+            @NotNull EndpointContext ctx,
+            @NotNull Class<T> type,
+            @NotNull Class<?> owner,
+            @NotNull String methodName,
+            @NotNull String parameterName
+    ) throws ContextMissException {
+        return argument(ctx, ContextKey.of(type), owner, methodName, parameterName);
+    }
+
+    /**
+     * Provides a value from the context for use as an argument to an endpoint method.
+     * Used by generated {@link EndpointInvoker invokers}, which create the key for each parameter once.
+     * @throws ContextMissException The context has no value for the requested key
+     */
+    static <T> @NotNull T argument(
+            @NotNull EndpointContext ctx,
+            @NotNull ContextKey<T> key,
+            @NotNull Class<?> owner,
+            @NotNull String methodName,
+            @NotNull String parameterName
+    ) throws ContextMissException {
+        T value = ctx.get(key);
+        if (value == null)
+            throw new ContextMissException(owner, methodName, parameterName, key.type());
+        return value;
+    }
+
+    //
+
+    /**
+     * The endpoint class described by this table
+     */
+    @NotNull Class<E> type();
+
+    /**
+     * Creates an instance of the endpoint class, populating any constructor parameters
+     * and fields marked with {@link EndpointInject @EndpointInject}.
+     */
+    @NotNull E construct(@NotNull EndpointInjector injector);
+
+    /**
+     * Lists the endpoints served by the given instance of the endpoint class,
+     * including those declared by superclasses.
+     */
+    @NotNull @Unmodifiable List<Entry> entries(@NotNull E instance);
+
+    //
+
+    /**
+     * An endpoint within a table
+     */
+    record Entry(
+            @NotNull EndpointMeta meta,
+            @NotNull EndpointInvoker invoker
+    ) { }
+
+}
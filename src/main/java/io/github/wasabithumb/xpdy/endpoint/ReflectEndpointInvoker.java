@@ -0,0 +1,134 @@
+package io.github.wasabithumb.xpdy.endpoint;
+
+import io.github.wasabithumb.xpdy.except.ContextMissException;
+import io.github.wasabithumb.xpdy.payload.response.Response;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * An {@link EndpointInvoker} for an endpoint method discovered through reflection.
+ * The method is converted into a {@link MethodHandle} bound to the {@link Endpoints} instance,
+ * and each parameter is assigned an {@link ArgumentResolver} at registration time,
+ * so that no reflection takes place while serving requests. Methods returning a
+ * {@link CompletionStage} are exposed as an {@link EndpointInvoker.Async}.
+ */
+@ApiStatus.Internal
+final class ReflectEndpointInvoker implements EndpointInvoker {
+
+    private static final MethodType GENERIC_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    static @NotNull EndpointInvoker create(
+            @NotNull Endpoints registrar,
+            @NotNull EndpointMeta meta,
+            @NotNull Method method
+    ) throws IllegalStateException {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to access endpoint method \"" + method.getName() +
+                    "\" in class " + method.getDeclaringClass().getName() + " (VM restriction)", e);
+        }
+
+        Parameter[] params = method.getParameters();
+        int paramCount = params.length;
+        ArgumentResolver[] resolvers = new ArgumentResolver[paramCount];
+        for (int i=0; i < paramCount; i++) {
+            resolvers[i] = ArgumentResolver.of(params[i].getType());
+        }
+
+        if (!Modifier.isStatic(method.getModifiers())) handle = handle.bindTo(registrar);
+        handle = handle.asSpreader(Object[].class, paramCount)
+                .asType(GENERIC_TYPE);
+
+        ReflectEndpointInvoker invoker = new ReflectEndpointInvoker(method, params, resolvers, handle, meta.isVoid());
+        if (meta.isVoid() || !EndpointMeta.isAsyncReturnType(method)) return invoker;
+        return (EndpointInvoker.Async) invoker::invokeAsync;
+    }
+
+    //
+
+    private final Method method;
+    private final Parameter[] params;
+    private final ArgumentResolver[] resolvers;
+    private final MethodHandle handle;
+    private final boolean isVoid;
+
+    private ReflectEndpointInvoker(
+            @NotNull Method method,
+            @NotNull Parameter @NotNull [] params,
+            @NotNull ArgumentResolver @NotNull [] resolvers,
+            @NotNull MethodHandle handle,
+            boolean isVoid
+    ) {
+        this.method = method;
+        this.params = params;
+        this.resolvers = resolvers;
+        this.handle = handle;
+        this.isVoid = isVoid;
+    }
+
+    //
+
+    @Override
+    public @NotNull Response invoke(@NotNull EndpointContext ctx) throws Throwable {
+        Object out = this.call(ctx);
+
+        if (this.isVoid) {
+            return Response.builder()
+                    .code(200)
+                    .build();
+        }
+
+        return (Response) out;
+    }
+
+    @SuppressWarnings("unchecked")
+    private @NotNull CompletionStage<Response> invokeAsync(@NotNull EndpointContext ctx) throws Throwable {
+        return (CompletionStage<Response>) this.call(ctx);
+    }
+
+    private Object call(@NotNull EndpointContext ctx) throws Throwable {
+        int paramCount = this.resolvers.length;
+        Object[] args = new Object[paramCount];
+
+        for (int i=0; i < paramCount; i++) {
+            Object arg = this.resolvers[i].resolve(ctx);
+            if (arg == null)
+                throw new ContextMissException(this.method, this.params[i]);
+            args[i] = arg;
+        }
+
+        return (Object) this.handle.invokeExact(args);
+    }
+
+    //
+
+    /**
+     * Provides the value for a single endpoint method parameter
+     */
+    @FunctionalInterface
+    interface ArgumentResolver {
+
+        static @NotNull ArgumentResolver of(@NotNull Class<?> type) {
+            if (EndpointContext.class.equals(type)) return (EndpointContext ctx) -> ctx;
+            ContextKey<?> key = ContextKey.of(type);
+            return (EndpointContext ctx) -> ctx.get(key);
+        }
+
+        //
+
+        @Nullable Object resolve(@NotNull EndpointContext ctx);
+
+    }
+
+}
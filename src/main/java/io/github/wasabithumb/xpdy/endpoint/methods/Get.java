@@ -2,6 +2,7 @@ package io.github.wasabithumb.xpdy.endpoint.methods;
 
 import io.github.wasabithumb.xpdy.misc.MimeType;
 import io.github.wasabithumb.xpdy.misc.URIPath;
+import org.jetbrains.annotations.ApiStatus;
 
 import java.lang.annotation.*;
 
@@ -20,6 +21,11 @@ import java.lang.annotation.*;
  *     This also overrides the
  *     <a href="https://developer.mozilla.org/en-US/docs/Web/HTTP/Headers/Content-Type">Content-Type</a> header.
  * </p>
+ * <p>
+ *     The {@link #compress()} parameter may be set to {@code false} to send responses without a
+ *     <a href="https://developer.mozilla.org/en-US/docs/Web/HTTP/Headers/Content-Encoding">Content-Encoding</a>,
+ *     even if the client accepts compressed responses.
+ * </p>
  * @see io.github.wasabithumb.xpdy.endpoint.methods Endpoint Annotations
  */
 @Documented
@@ -28,4 +34,10 @@ import java.lang.annotation.*;
 public @interface Get {
     @URIPath String value();
     @MimeType String out() default "";
+
+    /**
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    boolean compress() default true;
 }
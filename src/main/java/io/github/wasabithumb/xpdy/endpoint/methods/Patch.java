@@ -2,6 +2,7 @@ package io.github.wasabithumb.xpdy.endpoint.methods;
 
 import io.github.wasabithumb.xpdy.misc.MimeType;
 import io.github.wasabithumb.xpdy.misc.URIPath;
+import org.jetbrains.annotations.ApiStatus;
 
 import java.lang.annotation.*;
 
@@ -21,6 +22,19 @@ import java.lang.annotation.*;
  *     This also overrides the
  *     <a href="https://developer.mozilla.org/en-US/docs/Web/HTTP/Headers/Content-Type">Content-Type</a> header.
  * </p>
+ * <p>
+ *     The {@link #compress()} parameter may be set to {@code false} to send responses without a
+ *     <a href="https://developer.mozilla.org/en-US/docs/Web/HTTP/Headers/Content-Encoding">Content-Encoding</a>,
+ *     even if the client accepts compressed responses.
+ * </p>
+ * <p>
+ *     The {@link #maxBodySize()} parameter may be set to limit the size of the request body, in bytes.
+ *     Requests declaring a larger
+ *     <a href="https://developer.mozilla.org/en-US/docs/Web/HTTP/Headers/Content-Length">Content-Length</a>
+ *     are rejected with HTTP 413 before the endpoint is invoked, and reading past the limit of a body with
+ *     no declared length fails with HTTP 413. If negative, the limit set by
+ *     {@link io.github.wasabithumb.xpdy.XpdyServer.Builder#maxBodySize(long) the server} applies.
+ * </p>
  * @see io.github.wasabithumb.xpdy.endpoint.methods Endpoint Annotations
  */
 @Documented
@@ -30,4 +44,16 @@ public @interface Patch {
     @URIPath String value();
     @MimeType String in() default "";
     @MimeType String out() default "";
+
+    /**
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    boolean compress() default true;
+
+    /**
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    long maxBodySize() default -1L;
 }
@@ -13,8 +13,24 @@ import java.lang.reflect.Parameter;
 public class ContextMissException extends ServeException {
 
     public ContextMissException(@NotNull Method method, @NotNull Parameter parameter) {
-        super(500, "Endpoint method \"" + method.getName() + "\" in class " + method.getDeclaringClass().getName() +
-                " accepts parameter \"" + parameter.getName() + "\" of type " + parameter.getType().getName() +
+        this(method.getDeclaringClass(), method.getName(), parameter.getName(), parameter.getType());
+    }
+
+    /**
+     * @param owner Class declaring the endpoint method
+     * @param methodName Name of the endpoint method
+     * @param parameterName Name of the parameter which could not be provided
+     * @param parameterType Type of the parameter which could not be provided
+     * @since 0.3.0
+     */
+    public ContextMissException(
+            @NotNull Class<?> owner,
+            @NotNull String methodName,
+            @NotNull String parameterName,
+            @NotNull Class<?> parameterType
+    ) {
+        super(500, "Endpoint method \"" + methodName + "\" in class " + owner.getName() +
+                " accepts parameter \"" + parameterName + "\" of type " + parameterType.getName() +
                 " which is not present in the context");
     }
 
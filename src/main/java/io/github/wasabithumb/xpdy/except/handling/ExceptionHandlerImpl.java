@@ -11,21 +11,40 @@ import java.util.function.ToIntFunction;
 @ApiStatus.Internal
 final class ExceptionHandlerImpl implements ExceptionHandler {
 
+    private static final ToIntFunction<Throwable> UNHANDLED = (Throwable ignored) -> 500;
+
+    //
+
     private final ClassMap<Throwable, ? extends ToIntFunction<Throwable>> map;
+    private final ClassValue<ToIntFunction<Throwable>> resolved;
     private ExceptionHandlerImpl(
             @NotNull ClassMap<Throwable, ? extends ToIntFunction<Throwable>> map
     ) {
         this.map = map;
+        this.resolved = new ClassValue<>() {
+            @Override
+            protected @NotNull ToIntFunction<Throwable> computeValue(@NotNull Class<?> type) {
+                return ExceptionHandlerImpl.this.resolve(type);
+            }
+        };
     }
 
     //
 
     @Override
     public @Range(from=400, to=599) int handle(@NotNull Throwable t) {
+        return this.resolved.get(t.getClass()).applyAsInt(t);
+    }
+
+    /**
+     * Finds the handler for exceptions of the given class. The map iterates the most specific classes first,
+     * so the first match is the most specific.
+     */
+    private @NotNull ToIntFunction<Throwable> resolve(@NotNull Class<?> type) {
         for (Map.Entry<Class<? extends Throwable>, ? extends ToIntFunction<Throwable>> entry : this.map.entrySet()) {
-            if (entry.getKey().isInstance(t)) return entry.getValue().applyAsInt(t);
+            if (entry.getKey().isAssignableFrom(type)) return entry.getValue();
         }
-        return 500;
+        return UNHANDLED;
     }
 
     //
@@ -0,0 +1,128 @@
+package io.github.wasabithumb.xpdy.misc;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Range;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A satisfiable range of bytes within a representation, as requested by the {@code Range} header
+ * (RFC 9110 14.1.2). Both ends of the range are inclusive.
+ */
+@ApiStatus.Internal
+public record ByteRange(
+        @Range(from=0, to=Long.MAX_VALUE) long first,
+        @Range(from=0, to=Long.MAX_VALUE) long last
+) {
+
+    /**
+     * Requests with more ranges than this are served in full, as they are more likely to be abusive than useful
+     */
+    private static final int MAX_RANGES = 64;
+
+    /**
+     * Parses the value of a {@code Range} header against a representation of the given size. Overlapping and
+     * adjacent ranges are coalesced, so the returned ranges are disjoint and in ascending order.
+     * @return The satisfiable ranges, which may be empty if none are satisfiable; or null if the header is malformed,
+     *         uses a unit other than {@code bytes}, or requests too many ranges. A null result means the
+     *         header should be ignored.
+     */
+    public static @Nullable List<ByteRange> parse(@NotNull String header, @Range(from=0, to=Long.MAX_VALUE) long size) {
+        int eq = header.indexOf('=');
+        if (eq == -1 || !header.substring(0, eq).strip().equalsIgnoreCase("bytes")) return null;
+
+        List<ByteRange> ranges = new ArrayList<>();
+        int count = 0;
+        int start = eq + 1;
+        int len = header.length();
+
+        while (start <= len) {
+            int end = header.indexOf(',', start);
+            if (end == -1) end = len;
+            String spec = header.substring(start, end).strip();
+            start = end + 1;
+
+            // Empty list elements are permitted (RFC 9110 5.6.1)
+            if (spec.isEmpty()) continue;
+            if (++count > MAX_RANGES) return null;
+
+            int dash = spec.indexOf('-');
+            if (dash == -1) return null;
+
+            long first;
+            long last;
+            if (dash == 0) {
+                long suffix = parseDigits(spec, 1, spec.length());
+                if (suffix == -1L) return null;
+                if (suffix == 0L || size == 0L) continue;
+                first = Math.max(0L, size - suffix);
+                last = size - 1L;
+            } else {
+                first = parseDigits(spec, 0, dash);
+                if (first == -1L) return null;
+                if (dash == spec.length() - 1) {
+                    last = Long.MAX_VALUE;
+                } else {
+                    last = parseDigits(spec, dash + 1, spec.length());
+                    if (last == -1L || last < first) return null;
+                }
+                if (first >= size) continue;
+                last = Math.min(last, size - 1L);
+            }
+            ranges.add(new ByteRange(first, last));
+        }
+        if (count == 0) return null;
+
+        return coalesce(ranges);
+    }
+
+    private static long parseDigits(@NotNull String s, int start, int end) {
+        if (start >= end) return -1L;
+        long value = 0L;
+        for (int i=start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1L;
+            if (value > (Long.MAX_VALUE - 9L) / 10L) return Long.MAX_VALUE;
+            value = value * 10L + (c - '0');
+        }
+        return value;
+    }
+
+    private static @NotNull List<ByteRange> coalesce(@NotNull List<ByteRange> ranges) {
+        if (ranges.size() < 2) return ranges;
+        ranges.sort(Comparator.comparingLong(ByteRange::first));
+
+        List<ByteRange> ret = new ArrayList<>(ranges.size());
+        ByteRange head = ranges.get(0);
+        for (int i=1; i < ranges.size(); i++) {
+            ByteRange next = ranges.get(i);
+            if (next.first <= head.last + 1L) {
+                head = new ByteRange(head.first, Math.max(head.last, next.last));
+            } else {
+                ret.add(head);
+                head = next;
+            }
+        }
+        ret.add(head);
+        return Collections.unmodifiableList(ret);
+    }
+
+    //
+
+    public @Range(from=1, to=Long.MAX_VALUE) long length() {
+        return this.last - this.first + 1L;
+    }
+
+    /**
+     * Formats this range as the value of a {@code Content-Range} header
+     */
+    public @NotNull String contentRange(@Range(from=0, to=Long.MAX_VALUE) long size) {
+        return "bytes " + this.first + "-" + this.last + "/" + size;
+    }
+
+}
@@ -0,0 +1,144 @@
+package io.github.wasabithumb.xpdy.misc;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content codings which responses may be compressed with, and negotiation of these codings against the
+ * {@code Accept-Encoding} request header (RFC 9110 12.5.3)
+ */
+@ApiStatus.Internal
+public enum ContentEncoding {
+    GZIP("gzip", ".gz"),
+    DEFLATE("deflate", null);
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Picks the coding to use for a response, preferring gzip when both codings are equally acceptable
+     * @param header Value of the {@code Accept-Encoding} header, or null if absent
+     * @return The coding, or null if the response should not be encoded
+     */
+    public static @Nullable ContentEncoding negotiate(@Nullable String header) {
+        if (header == null) return null;
+
+        float gzip = -1f;
+        float deflate = -1f;
+        float wildcard = -1f;
+
+        int len = header.length();
+        int start = 0;
+        while (start < len) {
+            int end = header.indexOf(',', start);
+            if (end == -1) end = len;
+
+            int semi = header.indexOf(';', start);
+            int nameEnd = (semi == -1 || semi > end) ? end : semi;
+            String name = header.substring(start, nameEnd).strip();
+            float q = (nameEnd == end) ? 1f : parseQuality(header.substring(nameEnd + 1, end));
+            start = end + 1;
+
+            if (name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip")) {
+                gzip = Math.max(gzip, q);
+            } else if (name.equalsIgnoreCase("deflate")) {
+                deflate = Math.max(deflate, q);
+            } else if (name.equals("*")) {
+                wildcard = q;
+            }
+        }
+
+        if (gzip < 0f) gzip = wildcard;
+        if (deflate < 0f) deflate = wildcard;
+        if (gzip <= 0f && deflate <= 0f) return null;
+        return (gzip >= deflate) ? GZIP : DEFLATE;
+    }
+
+    private static float parseQuality(@NotNull String params) {
+        for (String param : params.split(";")) {
+            param = param.strip();
+            if (param.length() < 2 || Character.toLowerCase(param.charAt(0)) != 'q' || param.charAt(1) != '=')
+                continue;
+            try {
+                float q = Float.parseFloat(param.substring(2).strip());
+                return (q >= 0f && q <= 1f) ? q : 0f;
+            } catch (NumberFormatException e) {
+                return 0f;
+            }
+        }
+        return 1f;
+    }
+
+    /**
+     * Checks whether a body of the given MIME type is likely to benefit from compression. Media and archive
+     * formats are generally compressed already.
+     */
+    public static boolean isCompressible(@NotNull String type) {
+        int semi = type.indexOf(';');
+        if (semi != -1) type = type.substring(0, semi);
+        type = type.strip();
+
+        if (type.regionMatches(true, 0, "text/", 0, 5)) return true;
+        if (type.regionMatches(true, 0, "application/", 0, 12)) {
+            String sub = type.substring(12).toLowerCase();
+            return sub.equals("json") || sub.endsWith("+json") ||
+                    sub.equals("xml") || sub.endsWith("+xml") ||
+                    sub.equals("javascript") || sub.equals("x-javascript") ||
+                    sub.equals("x-www-form-urlencoded") || sub.equals("wasm");
+        }
+        return type.equalsIgnoreCase("image/svg+xml");
+    }
+
+    //
+
+    private final String token;
+    private final String extension;
+
+    ContentEncoding(@NotNull String token, @Nullable String extension) {
+        this.token = token;
+        this.extension = extension;
+    }
+
+    //
+
+    /**
+     * The token identifying this coding in the {@code Content-Encoding} header
+     */
+    public @NotNull String token() {
+        return this.token;
+    }
+
+    /**
+     * The file extension of precompressed siblings using this coding, or null if siblings are not looked up
+     */
+    public @Nullable String extension() {
+        return this.extension;
+    }
+
+    /**
+     * Wraps a stream such that data written to it is encoded with this coding. Closing the returned stream
+     * finishes the encoding and closes the underlying stream.
+     */
+    public @NotNull OutputStream encode(@NotNull OutputStream out) throws IOException {
+        return switch (this) {
+            case GZIP -> new GZIPOutputStream(out, BUFFER_SIZE);
+            case DEFLATE -> new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        this.def.end();
+                    }
+                }
+            };
+        };
+    }
+
+}
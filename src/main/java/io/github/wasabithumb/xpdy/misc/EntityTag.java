@@ -0,0 +1,77 @@
+package io.github.wasabithumb.xpdy.misc;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Utilities for HTTP entity tags, as used by the {@code ETag}, {@code If-None-Match} and {@code If-Range} headers
+ */
+@ApiStatus.Internal
+public final class EntityTag {
+
+    /**
+     * Formats an entity tag
+     * @param opaque The opaque tag, which may not contain double quotes
+     * @param weak True if the tag is a weak validator
+     * @throws IllegalArgumentException The opaque tag contains illegal characters
+     */
+    public static @NotNull String format(@NotNull String opaque, boolean weak) {
+        for (int i=0; i < opaque.length(); i++) {
+            char c = opaque.charAt(i);
+            if (c == '"' || c < 0x21 || c == 0x7F)
+                throw new IllegalArgumentException("Illegal character in entity tag: " + opaque);
+        }
+        return (weak ? "W/\"" : "\"") + opaque + '"';
+    }
+
+    /**
+     * Checks whether an {@code If-None-Match} header value matches the given tag, using the weak comparison
+     * function (RFC 9110 8.8.3.2)
+     */
+    public static boolean noneMatchHit(@NotNull String header, @NotNull String tag) {
+        String opaque = opaque(tag);
+        int len = header.length();
+        int i = 0;
+        while (i < len) {
+            char c = header.charAt(i);
+            if (c == ' ' || c == '\t' || c == ',') {
+                i++;
+                continue;
+            }
+            if (c == '*') return true;
+            if (c == 'W' && i + 1 < len && header.charAt(i + 1) == '/') {
+                i += 2;
+                if (i >= len) break;
+                c = header.charAt(i);
+            }
+            if (c != '"') return false;
+            int end = header.indexOf('"', i + 1);
+            if (end == -1) return false;
+            if (header.regionMatches(i + 1, opaque, 0, opaque.length()) && end - i - 1 == opaque.length())
+                return true;
+            i = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether two entity tags match using the strong comparison function (RFC 9110 8.8.3.2), as
+     * required by {@code If-Range}. Tags match if neither is weak and their opaque tags are equal.
+     */
+    public static boolean strongMatch(@NotNull String a, @NotNull String b) {
+        a = a.strip();
+        b = b.strip();
+        if (a.startsWith("W/") || b.startsWith("W/")) return false;
+        return a.length() >= 2 && a.charAt(0) == '"' && a.charAt(a.length() - 1) == '"' && a.equals(b);
+    }
+
+    private static @NotNull String opaque(@NotNull String tag) {
+        int start = tag.startsWith("W/") ? 3 : 1;
+        return tag.substring(start, tag.length() - 1);
+    }
+
+    //
+
+    private EntityTag() { }
+
+}
@@ -0,0 +1,40 @@
+package io.github.wasabithumb.xpdy.misc;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats and parses dates in the IMF-fixdate format used by HTTP headers such as
+ * {@code Last-Modified} and {@code If-Modified-Since}
+ */
+@ApiStatus.Internal
+public final class HttpDate {
+
+    public static @NotNull String format(@NotNull Instant instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.ofInstant(instant, ZoneOffset.UTC));
+    }
+
+    /**
+     * Parses a date
+     * @return The date, or null if the value is not a valid date
+     */
+    public static @Nullable Instant parse(@NotNull String value) {
+        try {
+            return ZonedDateTime.parse(value.strip(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    //
+
+    private HttpDate() { }
+
+}
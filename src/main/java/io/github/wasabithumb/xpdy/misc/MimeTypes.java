@@ -1,6 +1,7 @@
 package io.github.wasabithumb.xpdy.misc;
 
 import io.github.wasabithumb.xpdy.misc.io.IOSupplier;
+import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -58,4 +59,11 @@ public final class MimeTypes {
     @MimeType
     public static final String JSON = "application/json";
 
+    /**
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    @MimeType
+    public static final String EVENT_STREAM = "text/event-stream";
+
 }
@@ -0,0 +1,379 @@
+package io.github.wasabithumb.xpdy.misc.collections;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * A {@link ClassMap} for the handful of entries held by endpoint contexts and injectors. Entries are kept
+ * in parallel arrays in map order, with an open-addressed identity table for exact lookups. Hierarchical
+ * depths are computed once per class, and {@link #getAssignable(Class)} remembers its most recent
+ * resolutions until the map is modified. Like other maps, this is not safe for concurrent modification, but
+ * may be read from any number of threads once populated.
+ */
+@ApiStatus.Internal
+final class ArrayClassMap<C, V> extends AbstractMap<Class<? extends C>, V> implements ClassMap<C, V> {
+
+    private static final ClassValue<Integer> DEPTH = new ClassValue<>() {
+        @Override
+        protected @NotNull Integer computeValue(@NotNull Class<?> type) {
+            if (type.isPrimitive() || type.isInterface()) return 0;
+            int depth = 0;
+            Class<?> cls = type;
+            do {
+                depth++;
+                cls = cls.getSuperclass();
+            } while (cls != null);
+            return depth;
+        }
+    };
+
+    private static final Comparator<Class<?>> ORDER = ArrayClassMap::compare;
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int MEMO_SIZE = 4;
+
+    static int hierarchicalDepth(@NotNull Class<?> cls) {
+        return DEPTH.get(cls);
+    }
+
+    static int compare(@NotNull Class<?> a, @NotNull Class<?> b) {
+        if (a == b) return 0;
+        int cmp = Integer.compare(hierarchicalDepth(b), hierarchicalDepth(a));
+        if (cmp == 0) cmp = CharSequence.compare(b.getName(), a.getName());
+        return cmp;
+    }
+
+    private static int hash(@NotNull Object key) {
+        int h = System.identityHashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    //
+
+    private Class<?>[] keys = new Class<?>[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int[] depths = new int[INITIAL_CAPACITY];
+    private int[] table = new int[INITIAL_CAPACITY * 2];    // Entry index + 1, or 0 if empty
+    private int size = 0;
+    private int modCount = 0;
+
+    private volatile Memo memo = Memo.EMPTY;
+
+    ArrayClassMap() { }
+
+    //
+
+    private int indexOf(@Nullable Object key) {
+        if (key == null) return -1;
+        final int[] table = this.table;
+        final int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        int e;
+        while ((e = table[slot]) != 0) {
+            if (this.keys[e - 1] == key) return e - 1;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rebuildTable() {
+        int capacity = this.table.length;
+        while (capacity < this.size * 2) capacity <<= 1;
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int i=0; i < this.size; i++) {
+            int slot = hash(this.keys[i]) & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = i + 1;
+        }
+        this.table = table;
+    }
+
+    private void removeAt(int index) {
+        int tail = this.size - index - 1;
+        System.arraycopy(this.keys, index + 1, this.keys, index, tail);
+        System.arraycopy(this.values, index + 1, this.values, index, tail);
+        System.arraycopy(this.depths, index + 1, this.depths, index, tail);
+        this.size--;
+        this.keys[this.size] = null;
+        this.values[this.size] = null;
+        this.modCount++;
+        this.rebuildTable();
+    }
+
+    @SuppressWarnings("unchecked")
+    private @NotNull Class<? extends C> keyAt(int index) {
+        return (Class<? extends C>) this.keys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index) {
+        return (V) this.values[index];
+    }
+
+    //
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.indexOf(key) != -1;
+    }
+
+    @Override
+    public @Nullable V get(Object key) {
+        int index = this.indexOf(key);
+        return index == -1 ? null : this.valueAt(index);
+    }
+
+    @Override
+    public @Nullable V getAssignable(@NotNull Class<?> type) {
+        int index = this.indexOf(type);
+        if (index != -1) return this.valueAt(index);
+
+        // Readers on other threads only ever see a complete memo, so a resolution can't be torn
+        Memo memo = this.memo;
+        int modCount = this.modCount;
+        if (memo.modCount == modCount) {
+            int m = memo.indexOf(type);
+            if (m != -1) {
+                index = memo.indices[m];
+                return index == -1 ? null : this.valueAt(index);
+            }
+        } else {
+            memo = Memo.EMPTY;
+        }
+
+        for (int i=0; i < this.size; i++) {
+            if (type.isAssignableFrom(this.keys[i])) {
+                index = i;
+                break;
+            }
+        }
+        this.memo = memo.with(modCount, type, index);
+        return index == -1 ? null : this.valueAt(index);
+    }
+
+    @Override
+    public @Nullable V put(@NotNull Class<? extends C> key, V value) {
+        Objects.requireNonNull(key, "key");
+        int index = this.indexOf(key);
+        if (index != -1) {
+            V old = this.valueAt(index);
+            this.values[index] = value;
+            return old;
+        }
+
+        // Deepest classes first, then by descending name
+        int depth = hierarchicalDepth(key);
+        String name = key.getName();
+        int at = 0;
+        while (at < this.size) {
+            int d = this.depths[at];
+            if (d < depth || (d == depth && CharSequence.compare(this.keys[at].getName(), name) < 0)) break;
+            at++;
+        }
+
+        if (this.size == this.keys.length) {
+            int capacity = this.size << 1;
+            this.keys = Arrays.copyOf(this.keys, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.depths = Arrays.copyOf(this.depths, capacity);
+        }
+        int tail = this.size - at;
+        System.arraycopy(this.keys, at, this.keys, at + 1, tail);
+        System.arraycopy(this.values, at, this.values, at + 1, tail);
+        System.arraycopy(this.depths, at, this.depths, at + 1, tail);
+        this.keys[at] = key;
+        this.values[at] = value;
+        this.depths[at] = depth;
+        this.size++;
+        this.modCount++;
+        this.rebuildTable();
+        return null;
+    }
+
+    @Override
+    public @Nullable V remove(Object key) {
+        int index = this.indexOf(key);
+        if (index == -1) return null;
+        V old = this.valueAt(index);
+        this.removeAt(index);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(this.keys, 0, this.size, null);
+        Arrays.fill(this.values, 0, this.size, null);
+        Arrays.fill(this.table, 0);
+        this.size = 0;
+        this.modCount++;
+    }
+
+    @Override
+    public @NotNull Set<Entry<Class<? extends C>, V>> entrySet() {
+        return new EntrySet();
+    }
+
+    //
+
+    @Override
+    public @NotNull Comparator<? super Class<? extends C>> comparator() {
+        return ORDER;
+    }
+
+    @Override
+    public @NotNull Class<? extends C> firstKey() {
+        if (this.size == 0) throw new NoSuchElementException();
+        return this.keyAt(0);
+    }
+
+    @Override
+    public @NotNull Class<? extends C> lastKey() {
+        if (this.size == 0) throw new NoSuchElementException();
+        return this.keyAt(this.size - 1);
+    }
+
+    /**
+     * Unlike a {@link TreeMap}, the returned map is an unmodifiable snapshot rather than a view
+     */
+    @Override
+    public @NotNull SortedMap<Class<? extends C>, V> subMap(Class<? extends C> from, Class<? extends C> to) {
+        return this.snapshot().subMap(from, to);
+    }
+
+    /**
+     * Unlike a {@link TreeMap}, the returned map is an unmodifiable snapshot rather than a view
+     */
+    @Override
+    public @NotNull SortedMap<Class<? extends C>, V> headMap(Class<? extends C> to) {
+        return this.snapshot().headMap(to);
+    }
+
+    /**
+     * Unlike a {@link TreeMap}, the returned map is an unmodifiable snapshot rather than a view
+     */
+    @Override
+    public @NotNull SortedMap<Class<? extends C>, V> tailMap(Class<? extends C> from) {
+        return this.snapshot().tailMap(from);
+    }
+
+    private @NotNull SortedMap<Class<? extends C>, V> snapshot() {
+        TreeClassMap<C, V> copy = new TreeClassMap<>();
+        copy.putAll(this);
+        return Collections.unmodifiableSortedMap(copy);
+    }
+
+    //
+
+    /**
+     * The most recent resolutions of {@link #getAssignable(Class)}, valid while the map's modification count
+     * matches. A memo is never modified once created; a new one is published for each resolution.
+     */
+    private static final class Memo {
+
+        static final Memo EMPTY = new Memo(-1, new Class<?>[0], new int[0], 0);
+
+        final int modCount;
+        private final Class<?>[] types;
+        final int[] indices;            // Entry index, or -1 if no key is assignable
+        private final int next;
+
+        private Memo(int modCount, @NotNull Class<?> @NotNull [] types, int @NotNull [] indices, int next) {
+            this.modCount = modCount;
+            this.types = types;
+            this.indices = indices;
+            this.next = next;
+        }
+
+        int indexOf(@NotNull Class<?> type) {
+            for (int i=0; i < this.types.length; i++) {
+                if (this.types[i] == type) return i;
+            }
+            return -1;
+        }
+
+        /**
+         * Creates a memo which also holds the given resolution, replacing the oldest once full
+         */
+        @NotNull Memo with(int modCount, @NotNull Class<?> type, int index) {
+            int length = Math.min(this.types.length + 1, MEMO_SIZE);
+            Class<?>[] types = Arrays.copyOf(this.types, length);
+            int[] indices = Arrays.copyOf(this.indices, length);
+            int at = (this.types.length < MEMO_SIZE) ? this.types.length : this.next;
+            types[at] = type;
+            indices[at] = index;
+            return new Memo(modCount, types, indices, (at + 1) % MEMO_SIZE);
+        }
+
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<Class<? extends C>, V>> {
+
+        @Override
+        public int size() {
+            return ArrayClassMap.this.size;
+        }
+
+        @Override
+        public @NotNull Iterator<Entry<Class<? extends C>, V>> iterator() {
+            return new EntryIterator();
+        }
+
+    }
+
+    private final class EntryIterator implements Iterator<Entry<Class<? extends C>, V>> {
+
+        private int next = 0;
+        private int last = -1;
+        private int expectedModCount = ArrayClassMap.this.modCount;
+
+        @Override
+        public boolean hasNext() {
+            return this.next < ArrayClassMap.this.size;
+        }
+
+        @Override
+        public @NotNull Entry<Class<? extends C>, V> next() {
+            if (ArrayClassMap.this.modCount != this.expectedModCount) throw new ConcurrentModificationException();
+            if (this.next >= ArrayClassMap.this.size) throw new NoSuchElementException();
+            this.last = this.next++;
+            return new MapEntry(this.last);
+        }
+
+        @Override
+        public void remove() {
+            if (this.last == -1) throw new IllegalStateException();
+            if (ArrayClassMap.this.modCount != this.expectedModCount) throw new ConcurrentModificationException();
+            ArrayClassMap.this.removeAt(this.last);
+            this.next = this.last;
+            this.last = -1;
+            this.expectedModCount = ArrayClassMap.this.modCount;
+        }
+
+    }
+
+    private final class MapEntry extends SimpleEntry<Class<? extends C>, V> {
+
+        private final int index;
+
+        MapEntry(int index) {
+            super(ArrayClassMap.this.keyAt(index), ArrayClassMap.this.valueAt(index));
+            this.index = index;
+        }
+
+        @Override
+        public V setValue(V value) {
+            ArrayClassMap.this.values[this.index] = value;
+            return super.setValue(value);
+        }
+
+    }
+
+}
@@ -28,7 +28,7 @@ public interface ClassMap<C, V> extends SortedMap<Class<? extends C>, V> {
 
     @Contract("-> new")
     static <CC, VV> @NotNull ClassMap<CC, VV> create() {
-        return new TreeClassMap<>();
+        return new ArrayClassMap<>();
     }
 
     static <CC, VV> @NotNull @UnmodifiableView ClassMap<CC, VV> unmodifiableView(@NotNull ClassMap<CC, VV> map) {
@@ -48,4 +48,19 @@ public interface ClassMap<C, V> extends SortedMap<Class<? extends C>, V> {
         return unmodifiableView(mutableCopyOf(map));
     }
 
+    //
+
+    /**
+     * Provides the value mapped to the given class or, failing that, the value of the first key (in map order,
+     * so the most specific) which is a subtype of the given class. Null if no such key exists.
+     */
+    default @Nullable V getAssignable(@NotNull Class<?> type) {
+        V exact = this.get(type);
+        if (exact != null) return exact;
+        for (Entry<Class<? extends C>, V> entry : this.entrySet()) {
+            if (type.isAssignableFrom(entry.getKey())) return entry.getValue();
+        }
+        return null;
+    }
+
 }
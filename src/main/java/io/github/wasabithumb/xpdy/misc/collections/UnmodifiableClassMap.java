@@ -9,12 +9,14 @@ import java.util.*;
 @ApiStatus.Internal
 final class UnmodifiableClassMap<C, V> extends AbstractMap<Class<? extends C>, V> implements ClassMap<C, V> {
 
+    private final ClassMap<C, V> source;
     private final SortedMap<Class<? extends C>, V> backing;
 
     UnmodifiableClassMap(
-            @NotNull SortedMap<Class<? extends C>, V> backing
+            @NotNull ClassMap<C, V> source
     ) {
-        this.backing = Collections.unmodifiableSortedMap(backing);
+        this.source = source;
+        this.backing = Collections.unmodifiableSortedMap(source);
     }
 
     //
@@ -49,6 +51,26 @@ final class UnmodifiableClassMap<C, V> extends AbstractMap<Class<? extends C>, V
         return this.backing.lastKey();
     }
 
+    @Override
+    public int size() {
+        return this.source.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.source.containsKey(key);
+    }
+
+    @Override
+    public @Nullable V get(Object key) {
+        return this.source.get(key);
+    }
+
+    @Override
+    public @Nullable V getAssignable(@NotNull Class<?> type) {
+        return this.source.getAssignable(type);
+    }
+
     @Override
     public @NotNull Set<Entry<Class<? extends C>, V>> entrySet() {
         return this.backing.entrySet();
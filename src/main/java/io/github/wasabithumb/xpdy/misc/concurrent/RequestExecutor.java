@@ -0,0 +1,167 @@
+package io.github.wasabithumb.xpdy.misc.concurrent;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor which runs each exchange on its own thread. When the runtime supports
+ * {@link VirtualThreads virtual threads}, a new virtual thread is started per task and the number of tasks
+ * running at once is bounded by a semaphore; excess tasks wait on their (cheap) virtual thread rather than
+ * on the server dispatcher. Otherwise, a fixed pool of daemon platform threads is used.
+ * A permit is held only while a task runs, so work which continues elsewhere after a task returns
+ * (such as an asynchronous endpoint's stage) is not counted against the bound.
+ */
+@ApiStatus.Internal
+public abstract class RequestExecutor implements Executor {
+
+    /**
+     * Indicates that the number of concurrently running tasks should not be bounded
+     */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private static final String THREAD_PREFIX = "xpdy-worker-";
+
+    /**
+     * Size of the platform pool used when virtual threads are not supported and no bound is specified
+     */
+    private static final int DEFAULT_PLATFORM_THREADS = Math.max(16, Runtime.getRuntime().availableProcessors() * 8);
+
+    /**
+     * Set while a task runs without having been granted a permit
+     */
+    private static final ThreadLocal<Boolean> REJECTED = new ThreadLocal<>();
+
+    public static @NotNull RequestExecutor create(@Range(from=1, to=Integer.MAX_VALUE) int maxConcurrency) {
+        if (maxConcurrency < 1)
+            throw new IllegalArgumentException("Max concurrency must be positive (got " + maxConcurrency + ")");
+
+        ThreadFactory factory = VirtualThreads.factory(THREAD_PREFIX);
+        if (factory != null) return new Virtual(factory, maxConcurrency);
+
+        int threads = maxConcurrency == UNBOUNDED ? DEFAULT_PLATFORM_THREADS : maxConcurrency;
+        return new Platform(threads);
+    }
+
+    /**
+     * Reports true if the task running on the current thread was interrupted while waiting for a permit.
+     * Such a task is still run so that its exchange can be answered, but should do no other work
+     * (for instance by responding with 503).
+     */
+    public static boolean isRejected() {
+        return REJECTED.get() != null;
+    }
+
+    //
+
+    /**
+     * Reports true if this executor starts a virtual thread for each task
+     */
+    public abstract boolean isVirtual();
+
+    /**
+     * Stops accepting new tasks. Tasks which are already running are allowed to complete.
+     */
+    public abstract void shutdown();
+
+    //
+
+    private static final class Virtual extends RequestExecutor {
+
+        private final ThreadFactory factory;
+        private final Semaphore permits;
+        private volatile boolean shutdown = false;
+
+        Virtual(@NotNull ThreadFactory factory, int maxConcurrency) {
+            this.factory = factory;
+            this.permits = maxConcurrency == UNBOUNDED ? null : new Semaphore(maxConcurrency);
+        }
+
+        @Override
+        public void execute(@NotNull Runnable command) {
+            if (this.shutdown)
+                throw new RejectedExecutionException("Executor has been shut down");
+
+            Runnable task = (this.permits == null) ? command : () -> this.runLimited(command);
+            Thread thread = this.factory.newThread(task);
+            if (thread == null)
+                throw new RejectedExecutionException("Thread factory refused to create a thread");
+            thread.start();
+        }
+
+        private void runLimited(@NotNull Runnable command) {
+            try {
+                this.permits.acquire();
+            } catch (InterruptedException e) {
+                // Dropping the task would leave its exchange unanswered
+                REJECTED.set(Boolean.TRUE);
+                try {
+                    command.run();
+                } finally {
+                    REJECTED.remove();
+                    Thread.currentThread().interrupt();
+                }
+                return;
+            }
+            try {
+                command.run();
+            } finally {
+                this.permits.release();
+            }
+        }
+
+        @Override
+        public boolean isVirtual() {
+            return true;
+        }
+
+        @Override
+        public void shutdown() {
+            this.shutdown = true;
+        }
+
+    }
+
+    private static final class Platform extends RequestExecutor {
+
+        private final ThreadPoolExecutor pool;
+
+        Platform(int threads) {
+            AtomicInteger counter = new AtomicInteger(0);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    30L,
+                    TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    (Runnable r) -> {
+                        Thread t = new Thread(r, THREAD_PREFIX + counter.getAndIncrement());
+                        t.setDaemon(true);
+                        return t;
+                    }
+            );
+            pool.allowCoreThreadTimeOut(true);
+            this.pool = pool;
+        }
+
+        @Override
+        public void execute(@NotNull Runnable command) {
+            this.pool.execute(command);
+        }
+
+        @Override
+        public boolean isVirtual() {
+            return false;
+        }
+
+        @Override
+        public void shutdown() {
+            this.pool.shutdown();
+        }
+
+    }
+
+}
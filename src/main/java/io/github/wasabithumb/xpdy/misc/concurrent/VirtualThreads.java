@@ -0,0 +1,73 @@
+package io.github.wasabithumb.xpdy.misc.concurrent;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Provides access to virtual threads on runtimes which support them (Java 21+, or Java 19/20 with preview
+ * features enabled). The library targets Java 17, so the API is located reflectively once at class load.
+ */
+@ApiStatus.Internal
+public final class VirtualThreads {
+
+    private static final MethodHandle OF_VIRTUAL;
+    private static final MethodHandle NAME;
+    private static final MethodHandle FACTORY;
+
+    static {
+        MethodHandle ofVirtual = null;
+        MethodHandle name = null;
+        MethodHandle factory = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Class<?> ofVirtualClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+
+            ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtualClass));
+            name = lookup.findVirtual(builderClass, "name", MethodType.methodType(builderClass, String.class, long.class));
+            factory = lookup.findVirtual(builderClass, "factory", MethodType.methodType(ThreadFactory.class));
+
+            // Throws UnsupportedOperationException on Java 19/20 without --enable-preview
+            ofVirtual.invoke();
+        } catch (Throwable t) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    /**
+     * Reports true if the runtime supports virtual threads
+     */
+    public static boolean supported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Creates a factory which produces virtual threads named with the given prefix followed by
+     * an incrementing counter.
+     * @return The factory, or null if the runtime does not support virtual threads
+     */
+    public static @Nullable ThreadFactory factory(@NotNull String prefix) {
+        if (OF_VIRTUAL == null) return null;
+        try {
+            Object builder = OF_VIRTUAL.invoke();
+            builder = NAME.invoke(builder, prefix, 0L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to create virtual thread factory", t);
+        }
+    }
+
+    //
+
+    private VirtualThreads() { }
+
+}
@@ -0,0 +1,48 @@
+package io.github.wasabithumb.xpdy.misc.concurrent;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates executors for background tasks which may block on I/O, so the number of threads must not be
+ * bounded. Virtual threads are used where supported, and an elastic pool of daemon threads otherwise.
+ */
+@ApiStatus.Internal
+public final class Workers {
+
+    /**
+     * Creates an executor whose threads are named with the given prefix followed by an incrementing counter
+     */
+    public static @NotNull Executor create(@NotNull String prefix) {
+        ThreadFactory factory = VirtualThreads.factory(prefix);
+        if (factory != null) {
+            return (Runnable command) -> factory.newThread(command).start();
+        }
+
+        AtomicInteger counter = new AtomicInteger(0);
+        return new ThreadPoolExecutor(
+                0,
+                Integer.MAX_VALUE,
+                30L,
+                TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                (Runnable r) -> {
+                    Thread t = new Thread(r, prefix + counter.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+        );
+    }
+
+    //
+
+    private Workers() { }
+
+}
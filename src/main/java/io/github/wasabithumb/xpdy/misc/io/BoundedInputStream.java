@@ -0,0 +1,68 @@
+package io.github.wasabithumb.xpdy.misc.io;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A stream which reads at most a fixed number of bytes from another stream.
+ * Closing this stream closes the underlying stream.
+ */
+@ApiStatus.Internal
+public final class BoundedInputStream extends FilterInputStream {
+
+    private long remaining;
+
+    public BoundedInputStream(@NotNull InputStream in, long limit) {
+        super(in);
+        this.remaining = limit;
+    }
+
+    //
+
+    @Override
+    public int read() throws IOException {
+        if (this.remaining <= 0L) return -1;
+        int b = this.in.read();
+        if (b != -1) this.remaining--;
+        return b;
+    }
+
+    @Override
+    public int read(byte @NotNull [] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (this.remaining <= 0L) return -1;
+        int n = this.in.read(b, off, (int) Math.min(len, this.remaining));
+        if (n > 0) this.remaining -= n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = this.in.skip(Math.min(n, this.remaining));
+        if (skipped > 0L) this.remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(this.in.available(), this.remaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) { }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+}
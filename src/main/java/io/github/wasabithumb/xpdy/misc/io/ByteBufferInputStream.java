@@ -0,0 +1,77 @@
+package io.github.wasabithumb.xpdy.misc.io;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+/**
+ * A stream which reads the remaining bytes of a {@link ByteBuffer}. The buffer's position is advanced as
+ * bytes are read, so callers sharing a buffer should provide a {@link ByteBuffer#duplicate() duplicate}.
+ */
+@ApiStatus.Internal
+public final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buf;
+    private int mark = -1;
+
+    public ByteBufferInputStream(@NotNull ByteBuffer buf) {
+        this.buf = buf;
+    }
+
+    //
+
+    @Override
+    public int read() {
+        return this.buf.hasRemaining() ? (this.buf.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(byte @NotNull [] b, int off, int len) {
+        if (len == 0) return 0;
+        int n = Math.min(len, this.buf.remaining());
+        if (n == 0) return -1;
+        this.buf.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        int skipped = (int) Math.max(0L, Math.min(n, this.buf.remaining()));
+        this.buf.position(this.buf.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return this.buf.remaining();
+    }
+
+    @Override
+    public long transferTo(@NotNull OutputStream out) throws IOException {
+        int n = this.buf.remaining();
+        Channels.newChannel(out).write(this.buf);
+        return n;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        this.mark = this.buf.position();
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        if (this.mark == -1) throw new IOException("Stream not marked");
+        this.buf.position(this.mark);
+    }
+
+}
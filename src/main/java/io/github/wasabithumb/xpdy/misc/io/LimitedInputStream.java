@@ -0,0 +1,80 @@
+package io.github.wasabithumb.xpdy.misc.io;
+
+import io.github.wasabithumb.xpdy.except.ServeException;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A stream which fails with HTTP 413 once more than a fixed number of bytes are read from another stream.
+ * Unlike {@link BoundedInputStream}, excess data is never silently truncated.
+ * Closing this stream closes the underlying stream.
+ */
+@ApiStatus.Internal
+public final class LimitedInputStream extends FilterInputStream {
+
+    private final long limit;
+    private long remaining;
+
+    public LimitedInputStream(@NotNull InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+        this.remaining = limit;
+    }
+
+    //
+
+    @Override
+    public int read() throws IOException {
+        this.check();
+        int b = this.in.read();
+        if (b != -1) this.consume(1L);
+        return b;
+    }
+
+    @Override
+    public int read(byte @NotNull [] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        this.check();
+        // Reading at most one byte past the limit is enough to tell that the limit is exceeded
+        int n = this.in.read(b, off, (int) (Math.min(len - 1L, this.remaining) + 1L));
+        if (n > 0) this.consume(n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0L) return 0L;
+        this.check();
+        long skipped = this.in.skip(Math.min(n - 1L, this.remaining) + 1L);
+        if (skipped > 0L) this.consume(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) { }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    private void consume(long n) throws ServeException {
+        this.remaining -= n;
+        this.check();
+    }
+
+    private void check() throws ServeException {
+        if (this.remaining < 0L)
+            throw new ServeException(413, "Request body exceeds limit of " + this.limit + " bytes");
+    }
+
+}
@@ -1,26 +1,50 @@
 package io.github.wasabithumb.xpdy.misc.io;
 
+import io.github.wasabithumb.xpdy.misc.concurrent.Workers;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.*;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * A stream which executes a given write operation on a worker thread, buffering the written data
- * and allowing it to be read.
+ * <p>
+ *     A stream which executes a given write operation, buffering the written data and allowing it to be read.
+ * </p>
+ * <p>
+ *     The operation is not started until the stream is first read. If the stream is consumed with
+ *     {@link #transferTo(OutputStream)} or {@link #readAllBytes()} before that, the operation runs on the calling
+ *     thread and writes to the destination directly. Otherwise, the operation runs on a shared worker (a virtual
+ *     thread where supported) and hands data to the reader through a single-producer single-consumer ring buffer.
+ * </p>
  */
 @ApiStatus.Internal
 public final class PipeInputStream extends InputStream {
 
-    private final Collector collector;
-    private final Worker worker;
+    private static final int BUFFER_SIZE = 16384;
+    private static final int MASK = BUFFER_SIZE - 1;
+
+    /** Runs pipe operations, which block while the reader falls behind */
+    private static final Executor WORKERS = Workers.create("xpdy-pipe-");
+
+    //
+
+    private final Operation operation;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private boolean started = false;    // Only accessed by the reader
+    private boolean reported = false;   // Only accessed by the reader
+    private volatile long head = 0L;    // Only written by the reader
+    private volatile long tail = 0L;    // Only written by the writer
+    private volatile boolean done = false;
+    private volatile boolean abandoned = false;
+    private volatile Thread waitingReader = null;
+    private volatile Thread waitingWriter = null;
+    private Throwable error = null;     // Published by the write to done
 
     public PipeInputStream(@NotNull Operation operation) {
-        this.collector = new Collector();
-        this.worker = new Worker(this.collector, operation);
-        this.worker.start();
+        this.operation = operation;
     }
 
     //
@@ -28,173 +52,264 @@ public final class PipeInputStream extends InputStream {
     @Override
     public int read() throws IOException {
         byte[] b = new byte[1];
-        if (this.collector.read(b, 0, 1) == -1) return -1;
+        if (this.read(b, 0, 1) == -1) return -1;
         return b[0] & 0xFF;
     }
 
     @Override
     public int read(byte @NotNull [] b, int off, int len) throws IOException {
-        return this.collector.read(b, off, len);
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) return 0;
+        if (!this.started) this.start();
+
+        long h = this.head;
+        int n = this.awaitReadable(h);
+        if (n == -1) {
+            this.report();
+            return -1;
+        }
+
+        n = Math.min(n, len);
+        int i = (int) h & MASK;
+        int first = Math.min(n, BUFFER_SIZE - i);
+        System.arraycopy(this.buffer, i, b, off, first);
+        if (first < n) System.arraycopy(this.buffer, 0, b, off + first, n - first);
+
+        this.head = h + n;
+        Thread writer = this.waitingWriter;
+        if (writer != null) LockSupport.unpark(writer);
+        return n;
     }
 
     @Override
-    public void close() throws IOException {
-        this.worker.close();
+    public int available() {
+        return (int) (this.tail - this.head);
     }
 
-    //
+    @Override
+    public long transferTo(@NotNull OutputStream out) throws IOException {
+        if (this.started) return super.transferTo(out);
+
+        // Nothing has been read yet, so the operation can write to the destination directly
+        this.started = true;
+        DirectSink sink = new DirectSink(out);
+        try {
+            this.operation.write(sink);
+        } finally {
+            this.done = true;
+        }
+        return sink.count;
+    }
 
-    @FunctionalInterface
-    public interface Operation {
-        void write(@NotNull OutputStream out) throws IOException;
+    @Override
+    public byte @NotNull [] readAllBytes() throws IOException {
+        if (this.started) return super.readAllBytes();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        this.transferTo(bos);
+        return bos.toByteArray();
     }
 
-    //
+    /**
+     * Closes the stream. If the operation is still running, further writes made by it fail and
+     * this method waits for it to return.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!this.started) {
+            this.started = true;
+            this.done = true;
+            return;
+        }
 
-    private static final class Worker extends Thread {
+        if (!this.done) {
+            this.abandoned = true;
+            Thread writer = this.waitingWriter;
+            if (writer != null) LockSupport.unpark(writer);
+            this.awaitDone();
+            // Any error raised by the operation after this point was caused by closing the pipe
+            this.reported = true;
+            return;
+        }
+        this.report();
+    }
 
-        private final Collector collector;
-        private final Operation operation;
-        private IOException error = null;
+    //
+
+    private void start() {
+        this.started = true;
+        WORKERS.execute(this::run);
+    }
 
-        private Worker(@NotNull Collector collector, @NotNull Operation operation) {
-            this.collector = collector;
-            this.operation = operation;
-            this.setDaemon(true);
+    private void run() {
+        Throwable error = null;
+        try (Sink sink = new Sink()) {
+            this.operation.write(sink);
+        } catch (Throwable t) {
+            error = t;
         }
+        this.error = error;
+        this.done = true;
+        Thread reader = this.waitingReader;
+        if (reader != null) LockSupport.unpark(reader);
+    }
 
-        @Override
-        public void run() {
-            try (this.collector) {
-                this.operation.write(this.collector);
-            } catch (IOException e) {
-                this.error = e;
+    /**
+     * Raises the error thrown by the operation, if any and if not already raised
+     */
+    private void report() throws IOException {
+        if (this.reported) return;
+        this.reported = true;
+
+        Throwable error = this.error;
+        if (error == null) return;
+        if (error instanceof IOException io) throw io;
+        throw new IOException("Pipe operation failed", error);
+    }
+
+    /**
+     * Waits for data to become available to read
+     * @return The number of bytes which can be read, or -1 if the operation has completed and all data has been read
+     */
+    private int awaitReadable(long h) throws IOException {
+        long t = this.tail;
+        if (t != h) return (int) (t - h);
+
+        this.waitingReader = Thread.currentThread();
+        try {
+            while (true) {
+                t = this.tail;
+                if (t != h) return (int) (t - h);
+                if (this.done) {
+                    t = this.tail;
+                    return (t != h) ? (int) (t - h) : -1;
+                }
+                LockSupport.park(this);
+                if (Thread.interrupted())
+                    throw new InterruptedIOException("Interrupted while waiting for pipe");
             }
+        } finally {
+            this.waitingReader = null;
         }
+    }
 
-        private void close() throws IOException {
-            // Drain the stream
-            byte[] drain = new byte[512];
-            int r;
-            do {
-                r = this.collector.read(drain, 0, 512);
-            } while (r != -1);
-
-            // Join the thread
-            try {
-                this.join();
-            } catch (InterruptedException e) {
-                this.interrupt();
-                Thread.currentThread().interrupt();
+    /**
+     * Waits for space to become available to write
+     * @return The number of bytes which can be written
+     */
+    private int awaitWritable(long t) throws IOException {
+        int free = BUFFER_SIZE - (int) (t - this.head);
+        if (free != 0) return free;
+
+        this.waitingWriter = Thread.currentThread();
+        try {
+            while (true) {
+                if (this.abandoned) throw new IOException("Pipe closed");
+                free = BUFFER_SIZE - (int) (t - this.head);
+                if (free != 0) return free;
+                LockSupport.park(this);
+                if (Thread.interrupted())
+                    throw new InterruptedIOException("Broken pipe");
             }
-
-            // Forward errors
-            if (this.error != null)
-                throw this.error;
+        } finally {
+            this.waitingWriter = null;
         }
+    }
 
+    private void awaitDone() {
+        boolean interrupted = false;
+        this.waitingReader = Thread.currentThread();
+        try {
+            while (!this.done) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) interrupted = true;
+            }
+        } finally {
+            this.waitingReader = null;
+            if (interrupted) Thread.currentThread().interrupt();
+        }
     }
 
     //
 
-    private static final class Collector extends OutputStream {
+    @FunctionalInterface
+    public interface Operation {
+        void write(@NotNull OutputStream out) throws IOException;
+    }
 
-        private static final int BUFFER_SIZE = 8192;
-        private static final long BUFFER_SIZE_L = BUFFER_SIZE;
+    //
 
-        //
+    /**
+     * Writes into the ring buffer, from the worker
+     */
+    private final class Sink extends OutputStream {
 
-        private final Object mutex = new Object();
-        private final byte[] buffer = new byte[BUFFER_SIZE];
         private boolean open = true;
-        private long ir = 0;
-        private long iw = 0;
-
-        //
 
-        private int bi(long count) {
-            return (int) (count % BUFFER_SIZE_L);
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[] { (byte) b }, 0, 1);
         }
 
-        //
-
-        private int read(byte @NotNull [] b, int off, int max) throws IOException {
-            if (max <= 0) return 0;
-            synchronized (this.mutex) {
-                int count;
-
-                while (true) {
-                    long n = this.iw - this.ir;
-                    if (n > 0L) {
-                        count = (int) n;
-                        break;
-                    }
-                    if (!this.open) return -1;
-                    try {
-                        this.mutex.wait();
-                    } catch (InterruptedException e) {
-                        throw new IOException("Interrupted while waiting for pipe", e);
-                    }
-                }
+        @Override
+        public void write(byte @NotNull [] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (!this.open) throw new IOException("Stream closed");
 
-                count = Math.min(count, max);
-                for (int i=0; i < count; i++) {
-                    b[off + i] = this.buffer[this.bi(this.ir++)];
-                }
-                this.mutex.notify();
-                return count;
+            final PipeInputStream pipe = PipeInputStream.this;
+            while (len > 0) {
+                if (pipe.abandoned) throw new IOException("Pipe closed");
+
+                long t = pipe.tail;
+                int n = Math.min(pipe.awaitWritable(t), len);
+                int i = (int) t & MASK;
+                int first = Math.min(n, BUFFER_SIZE - i);
+                System.arraycopy(b, off, pipe.buffer, i, first);
+                if (first < n) System.arraycopy(b, off + first, pipe.buffer, 0, n - first);
+
+                pipe.tail = t + n;
+                Thread reader = pipe.waitingReader;
+                if (reader != null) LockSupport.unpark(reader);
+
+                off += n;
+                len -= n;
             }
         }
 
-        private int writeSome(byte @NotNull [] b, int off, int max) throws IOException {
-            if (max <= 0) return 0;
-            synchronized (this.mutex) {
-                if (!this.open) throw new IOException("Stream closed");
-
-                int count;
-                while (true) {
-                    long n = BUFFER_SIZE_L - this.iw + this.ir;
-                    if (n > 0L) {
-                        count = (int) n;
-                        break;
-                    }
-                    try {
-                        this.mutex.wait();
-                    } catch (InterruptedException e) {
-                        throw new IOException("Broken pipe", e);
-                    }
-                }
+        @Override
+        public void close() {
+            this.open = false;
+        }
 
-                count = Math.min(count, max);
-                for (int i=0; i < count; i++) {
-                    this.buffer[this.bi(this.iw++)] = b[off + i];
-                }
-                this.mutex.notify();
-                return count;
-            }
+    }
+
+    /**
+     * Writes to the destination of {@link #transferTo(OutputStream)}, on the calling thread. Closing this stream
+     * does not close the destination.
+     */
+    private static final class DirectSink extends FilterOutputStream {
+
+        long count = 0L;
+
+        DirectSink(@NotNull OutputStream out) {
+            super(out);
         }
 
         @Override
-        public void write(int i) throws IOException {
-            this.writeSome(new byte[] { (byte) i }, 0, 1);
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count++;
         }
 
         @Override
         public void write(byte @NotNull [] b, int off, int len) throws IOException {
-            int n;
-            while (len > 0) {
-                n = this.writeSome(b, off, len);
-                off += n;
-                len -= n;
-            }
+            this.out.write(b, off, len);
+            this.count += len;
         }
 
         @Override
-        public void close() {
-            synchronized (this.mutex) {
-                this.open = false;
-                this.mutex.notify();
-            }
+        public void close() throws IOException {
+            this.out.flush();
         }
 
     }
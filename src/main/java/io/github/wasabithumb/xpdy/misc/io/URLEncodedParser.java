@@ -0,0 +1,376 @@
+package io.github.wasabithumb.xpdy.misc.io;
+
+import io.github.wasabithumb.xpdy.except.BodyFormatException;
+import org.jetbrains.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ *     Parses {@code application/x-www-form-urlencoded} data directly from UTF-8 bytes. Runs of plain bytes are
+ *     copied in bulk into a scratch buffer which is reused for every token, and each decoded pair is passed to a
+ *     {@link Visitor} as soon as it is complete, so arbitrarily large bodies can be consumed without holding
+ *     them in memory.
+ * </p>
+ * <p>
+ *     Error messages report the index of the offending character, counted in UTF-16 code units from the start of
+ *     the input. A parser may be reused once a parse has completed, but is not thread-safe.
+ * </p>
+ */
+@ApiStatus.Internal
+public final class URLEncodedParser {
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final byte LITERAL = 0;
+    private static final byte PLUS = 1;
+    private static final byte PERCENT = 2;
+    private static final byte AMP = 3;
+    private static final byte EQ = 4;
+    private static final byte DISALLOWED = 5;
+    private static final byte[] CLASSES = new byte[256];
+    private static final byte[] REPLACEMENT = "�".getBytes(StandardCharsets.UTF_8);
+
+    static {
+        CLASSES['+'] = PLUS;
+        CLASSES['%'] = PERCENT;
+        CLASSES['&'] = AMP;
+        CLASSES['='] = EQ;
+        for (char c : "!#$'()*,/:;?@[]".toCharArray()) CLASSES[c] = DISALLOWED;
+    }
+
+    /**
+     * Parses a URL-encoded string into an unmodifiable map. When a key occurs more than once, the last value
+     * is kept.
+     * @throws BodyFormatException The string is not valid URL-encoded data
+     */
+    public static @NotNull @Unmodifiable Map<String, String> parse(@Nullable String string) throws BodyFormatException {
+        if (string == null || string.isEmpty()) return Collections.emptyMap();
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        Map<String, String> ret = new HashMap<>();
+        new URLEncodedParser().parse(bytes, 0, bytes.length, ret::put);
+        return wrap(ret);
+    }
+
+    /**
+     * Reads URL-encoded data from a stream into an unmodifiable map. When a key occurs more than once, the last
+     * value is kept. The stream is not closed.
+     * @throws BodyFormatException The stream does not contain valid URL-encoded data
+     */
+    public static @NotNull @Unmodifiable Map<String, String> parse(@NotNull InputStream in) throws IOException, BodyFormatException {
+        Map<String, String> ret = new HashMap<>();
+        new URLEncodedParser().parse(in, ret::put);
+        return wrap(ret);
+    }
+
+    private static @NotNull @Unmodifiable Map<String, String> wrap(@NotNull Map<String, String> map) {
+        if (map.isEmpty()) return Collections.emptyMap();
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Finds the value of a single key without building a map. The whole string is validated as it would be by
+     * {@link #parse(String)}, and when a key occurs more than once the last value is returned, so the result
+     * always agrees with {@code parse(string).get(key)}.
+     * @return The decoded value, or null if the key is not present
+     * @throws BodyFormatException The string is not valid URL-encoded data
+     */
+    public static @Nullable String find(@Nullable String string, @NotNull String key) throws BodyFormatException {
+        if (string == null || string.isEmpty()) return null;
+        final int len = string.length();
+
+        int found = -1;         // Start of the last matching value, or -2 if it was empty
+        int foundEnd = -1;
+        boolean matched = false; // The pending key matches
+        boolean pending = false; // A key has been read and awaits its value
+        int start = 0;
+
+        for (int i=0; i <= len; i++) {
+            char c = (i == len) ? '&' : string.charAt(i);
+            switch (c) {
+                case '&':
+                    if (i == len && i == start) break;
+                    if (pending) {
+                        if (matched) { found = start; foundEnd = i; }
+                        pending = false;
+                    } else if (matches(string, start, i, key)) {
+                        found = -2;
+                    }
+                    start = i + 1;
+                    break;
+                case '=':
+                    if (i == start) throw new BodyFormatException("Unexpected control character (=) @ index " + (i + 1));
+                    if (pending) throw new BodyFormatException("Unexpected equals (=) after value @ index " + (i + 1));
+                    matched = matches(string, start, i, key);
+                    pending = true;
+                    start = i + 1;
+                    break;
+                case '%':
+                    if (i + 2 >= len)
+                        throw new BodyFormatException("Incomplete escape sequence @ index " + len);
+                    if (hex(string.charAt(i + 1)) == -1 || hex(string.charAt(i + 2)) == -1)
+                        throw new BodyFormatException("Invalid escape sequence @ index " + (i + 3));
+                    i += 2;
+                    break;
+                case '!': case '#': case '$': case '\'':
+                case '(': case ')': case '*': case ',':
+                case '/': case ':': case ';': case '?':
+                case '@': case '[': case ']':
+                    throw new BodyFormatException("Disallowed character: " + c + " @ index " + (i + 1));
+            }
+        }
+        if (pending && matched) found = -2;
+
+        if (found == -1) return null;
+        if (found == -2 || found == foundEnd) return "";
+        return decode(string, found, foundEnd);
+    }
+
+    private static int hex(int c) {
+        if ('0' <= c && c <= '9') return c - '0';
+        if ('A' <= c && c <= 'F') return c - 'A' + 10;
+        if ('a' <= c && c <= 'f') return c - 'a' + 10;
+        return -1;
+    }
+
+    /**
+     * Decodes a single character of a validated token
+     * @return The decoded character in the low 16 bits, and the number of characters consumed above them
+     */
+    private static int decodeAt(@NotNull String string, int i) {
+        char c = string.charAt(i);
+        if (c == '+') return (1 << 16) | ' ';
+        if (c != '%') return (1 << 16) | c;
+        int ascii = (hex(string.charAt(i + 1)) << 4) | hex(string.charAt(i + 2));
+        return (3 << 16) | (ascii < 0x80 ? ascii : '�');
+    }
+
+    private static boolean matches(@NotNull String string, int start, int end, @NotNull String key) {
+        int k = 0;
+        int klen = key.length();
+        for (int i=start; i < end; ) {
+            if (k == klen) return false;
+            int d = decodeAt(string, i);
+            if ((char) d != key.charAt(k++)) return false;
+            i += d >>> 16;
+        }
+        return k == klen;
+    }
+
+    private static @NotNull String decode(@NotNull String string, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i=start; i < end; ) {
+            int d = decodeAt(string, i);
+            sb.append((char) d);
+            i += d >>> 16;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The number of UTF-16 code units contributed by a byte of well-formed UTF-8; the lead byte of a sequence
+     * carries the count for the whole sequence
+     */
+    private static int units(int b) {
+        if (b < 0x80) return 1;
+        if (b < 0xC0) return 0;
+        return (b < 0xF0) ? 1 : 2;
+    }
+
+    //
+
+    private byte[] token = new byte[64];
+    private byte[] chunk = null;
+    private int tokenLength;
+    private long position;
+    private int escape;          // Hex digits read for the current escape sequence, or -1 if not in one
+    private int escapeValue;     // Decoded value of the escape sequence, or -1 if it is invalid
+    private int escapeSkip;      // Continuation bytes of a multibyte character within an escape sequence
+    private String key;
+    private Visitor visitor;
+
+    //
+
+    /**
+     * Parses URL-encoded data from a stream in chunks, passing each pair to the visitor in order.
+     * The stream is not closed.
+     */
+    public void parse(@NotNull InputStream in, @NotNull Visitor visitor) throws IOException, BodyFormatException {
+        byte[] chunk = this.chunk;
+        if (chunk == null) this.chunk = chunk = new byte[CHUNK_SIZE];
+
+        this.begin(visitor);
+        int read;
+        while ((read = in.read(chunk)) != -1) this.feed(chunk, 0, read);
+        this.end();
+    }
+
+    /**
+     * Parses URL-encoded data from a region of a byte array, passing each pair to the visitor in order.
+     */
+    public void parse(byte @NotNull [] data, int off, int len, @NotNull Visitor visitor) throws BodyFormatException {
+        this.begin(visitor);
+        this.feed(data, off, off + len);
+        this.end();
+    }
+
+    private void begin(@NotNull Visitor visitor) {
+        this.tokenLength = 0;
+        this.position = 0L;
+        this.escape = -1;
+        this.escapeSkip = 0;
+        this.key = null;
+        this.visitor = visitor;
+    }
+
+    private void feed(byte @NotNull [] data, int off, int end) throws BodyFormatException {
+        int i = off;
+        while (i < end) {
+            int b = data[i] & 0xFF;
+            if (this.escape != -1) {
+                this.feedEscape(b);
+                i++;
+                continue;
+            }
+
+            // Copy a run of plain bytes in one go
+            if (CLASSES[b] == LITERAL) {
+                int start = i;
+                long units = 0L;
+                do {
+                    units += units(b);
+                    if (++i == end) break;
+                    b = data[i] & 0xFF;
+                } while (CLASSES[b] == LITERAL);
+                this.position += units;
+                this.append(data, start, i - start);
+                continue;
+            }
+
+            this.position++;
+            i++;
+            switch (CLASSES[b]) {
+                case PLUS -> this.append((byte) ' ');
+                case PERCENT -> {
+                    this.escape = 0;
+                    this.escapeValue = 0;
+                }
+                case AMP -> this.endToken(AMP);
+                case EQ -> {
+                    if (this.tokenLength == 0) this.raise("Unexpected control character (=)");
+                    this.endToken(EQ);
+                }
+                default -> this.raise("Disallowed character: " + ((char) b));
+            }
+        }
+    }
+
+    private void feedEscape(int b) throws BodyFormatException {
+        if (this.escapeSkip != 0 && (b & 0xC0) == 0x80) {
+            this.escapeSkip--;
+            return;
+        }
+        if (b >= 0xF0) {
+            // A surrogate pair; each half occupies a digit of the sequence
+            this.position += 2 - this.escape;
+            this.raise("Invalid escape sequence");
+        }
+        this.position += Math.max(units(b), 1);
+        this.escapeSkip = (b < 0xC0) ? 0 : (b < 0xE0) ? 1 : (b < 0xF0) ? 2 : 3;
+
+        int digit = hex(b);
+        if (digit == -1 || this.escapeValue == -1) {
+            this.escapeValue = -1;
+        } else {
+            this.escapeValue = (this.escapeValue << 4) | digit;
+        }
+        if (++this.escape != 2) return;
+
+        int value = this.escapeValue;
+        if (value == -1) this.raise("Invalid escape sequence");
+        this.escape = -1;
+        this.escapeSkip = 0;
+        if (value < 0x80) {
+            this.append((byte) value);
+        } else {
+            this.append(REPLACEMENT, 0, REPLACEMENT.length);
+        }
+    }
+
+    private void end() throws BodyFormatException {
+        try {
+            if (this.escape != -1) this.raise("Incomplete escape sequence");
+            if (this.tokenLength != 0) this.endToken(LITERAL);
+            if (this.key != null) this.visitor.visit(this.key, "");
+        } finally {
+            this.key = null;
+            this.visitor = null;
+        }
+    }
+
+    /**
+     * Completes the current token
+     * @param terminator {@link #AMP}, {@link #EQ} or {@link #LITERAL} for the end of the input
+     */
+    private void endToken(byte terminator) throws BodyFormatException {
+        String content = (this.tokenLength == 0) ? "" :
+                new String(this.token, 0, this.tokenLength, StandardCharsets.UTF_8);
+        this.tokenLength = 0;
+
+        String key = this.key;
+        if (key == null) {
+            if (terminator == EQ) {
+                this.key = content;
+            } else {
+                this.visitor.visit(content, "");
+            }
+        } else {
+            this.key = null;
+            this.visitor.visit(key, content);
+            if (terminator == EQ) this.raise("Unexpected equals (=) after value");
+        }
+    }
+
+    private void append(byte b) {
+        if (this.tokenLength == this.token.length) this.grow(1);
+        this.token[this.tokenLength++] = b;
+    }
+
+    private void append(byte @NotNull [] data, int off, int len) {
+        if (this.tokenLength > this.token.length - len) this.grow(len);
+        System.arraycopy(data, off, this.token, this.tokenLength, len);
+        this.tokenLength += len;
+    }
+
+    private void grow(int extra) {
+        int required = this.tokenLength + extra;
+        int size = this.token.length;
+        while (size < required) size <<= 1;
+        byte[] next = new byte[size];
+        System.arraycopy(this.token, 0, next, 0, this.tokenLength);
+        this.token = next;
+    }
+
+    @Contract("_ -> fail")
+    private void raise(@NotNull String detail) throws BodyFormatException {
+        throw new BodyFormatException(detail + " @ index " + this.position);
+    }
+
+    //
+
+    /**
+     * Receives the key-value pairs found by a {@link URLEncodedParser}. A key without a value is reported with
+     * an empty value.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+
+        void visit(@NotNull String key, @NotNull String value) throws BodyFormatException;
+
+    }
+
+}
@@ -79,6 +79,16 @@ public final class PathMap<T> {
         this.root.put(split(path), value);
     }
 
+    /**
+     * Creates an immutable snapshot of this map which is optimized for lookups.
+     * Later changes to this map are not reflected in the snapshot.
+     * @see PathRouter
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    public @NotNull PathRouter<T> compile() {
+        return PathRouter.compile(this.root);
+    }
+
     //
 
     public record Resolution<V>(
@@ -68,6 +68,26 @@ final class PathMapNode<T> {
         return (Entry<T>) this.children[index];
     }
 
+    boolean allowWildcard() {
+        return this.allowWildcard;
+    }
+
+    @Nullable T identity() {
+        return this.identity;
+    }
+
+    int childCount() {
+        return this.length;
+    }
+
+    @NotNull String childLabel(int index) {
+        return this.child(index).label;
+    }
+
+    @NotNull PathMapNode<T> childNode(int index) {
+        return this.child(index).node;
+    }
+
     public @Nullable PathMapNode<T> sub(@NotNull CharSequence name) {
         Entry<T> child;
         for (int i=0; i < this.length; i++) {
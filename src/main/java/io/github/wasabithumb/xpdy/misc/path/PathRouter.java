@@ -0,0 +1,197 @@
+package io.github.wasabithumb.xpdy.misc.path;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ *     An immutable, compiled form of a {@link PathMap}. Static path parts are stored in a
+ *     case-insensitive hash table on each node, and wildcards ({@code *}) are given a dedicated edge.
+ * </p>
+ * <p>
+ *     Resolution walks the raw path string in place and yields the same results as
+ *     {@link PathMap#resolve(CharSequence)}; an exact (case-insensitive) match for a part always
+ *     takes priority over a wildcard, and no backtracking is performed. Parameters are only
+ *     materialized when the matched route contains wildcards.
+ * </p>
+ * @see PathMap#compile()
+ */
+@ApiStatus.Internal
+@ApiStatus.AvailableSince("0.3.0")
+public final class PathRouter<T> {
+
+    private static final PathRouter<?> EMPTY = new PathRouter<>(new Node<>(null, 0, new String[1], Node.array(1), null));
+
+    /**
+     * Provides a router which never matches any path.
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> @NotNull PathRouter<V> empty() {
+        return (PathRouter<V>) EMPTY;
+    }
+
+    static <V> @NotNull PathRouter<V> compile(@NotNull PathMapNode<V> root) {
+        return new PathRouter<>(Node.compile(root, 0));
+    }
+
+    private static int hashPart(@NotNull CharSequence cs, int start, int end) {
+        int h = 0;
+        for (int i=start; i < end; i++) {
+            h = 31 * h + Character.toLowerCase(cs.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean partEquals(@NotNull String label, @NotNull CharSequence cs, int start, int end) {
+        int len = label.length();
+        if (len != (end - start)) return false;
+        for (int i=0; i < len; i++) {
+            if (Character.toLowerCase(label.charAt(i)) != Character.toLowerCase(cs.charAt(start + i)))
+                return false;
+        }
+        return true;
+    }
+
+    //
+
+    private final Node<T> root;
+
+    private PathRouter(@NotNull Node<T> root) {
+        this.root = root;
+    }
+
+    //
+
+    public @Nullable T get(@NotNull CharSequence path) {
+        Node<T> node = this.match(path, null);
+        return node == null ? null : node.identity;
+    }
+
+    public @Nullable PathMap.Resolution<T> resolve(@NotNull CharSequence path) {
+        Node<T> node = this.match(path, null);
+        if (node == null) return null;
+
+        List<String> params;
+        if (node.depth == 0) {
+            params = Collections.emptyList();
+        } else {
+            String[] arr = new String[node.depth];
+            this.match(path, arr);
+            params = Collections.unmodifiableList(Arrays.asList(arr));
+        }
+        return new PathMap.Resolution<>(node.identity, params);
+    }
+
+    private @Nullable Node<T> match(@NotNull CharSequence path, @Nullable String @Nullable [] params) {
+        Node<T> head = this.root;
+        int len = path.length();
+        int paramIndex = 0;
+        int i = 0;
+        int start;
+
+        while (true) {
+            while (i < len && path.charAt(i) == '/') i++;
+            if (i == len) break;
+
+            start = i;
+            while (i < len && path.charAt(i) != '/') i++;
+
+            Node<T> next = head.child(path, start, i);
+            if (next == null) {
+                next = head.wildcard;
+                if (next == null) return null;
+                if (params != null) params[paramIndex++] = path.subSequence(start, i).toString();
+            }
+            head = next;
+        }
+
+        return head.identity == null ? null : head;
+    }
+
+    //
+
+    private static final class Node<V> {
+
+        @SuppressWarnings("unchecked")
+        static <V> @Nullable Node<V> @NotNull [] array(int length) {
+            return (Node<V>[]) new Node<?>[length];
+        }
+
+        static <V> @NotNull Node<V> compile(@NotNull PathMapNode<V> source, int depth) {
+            int count = source.childCount();
+            boolean allowWildcard = source.allowWildcard();
+
+            Node<V> wildcard = null;
+            int staticCount = 0;
+            for (int i=0; i < count; i++) {
+                if (allowWildcard && source.childLabel(i).equals("*")) {
+                    wildcard = compile(source.childNode(i), depth + 1);
+                } else {
+                    staticCount++;
+                }
+            }
+
+            int capacity = 1;
+            while (capacity < (staticCount << 1)) capacity <<= 1;
+            int mask = capacity - 1;
+
+            String[] labels = new String[capacity];
+            Node<V>[] children = array(capacity);
+
+            for (int i=0; i < count; i++) {
+                String label = source.childLabel(i);
+                if (allowWildcard && label.equals("*")) continue;
+
+                int slot = hashPart(label, 0, label.length()) & mask;
+                while (labels[slot] != null) slot = (slot + 1) & mask;
+                labels[slot] = label;
+                children[slot] = compile(source.childNode(i), depth);
+            }
+
+            return new Node<>(source.identity(), depth, labels, children, wildcard);
+        }
+
+        //
+
+        final V identity;
+        final int depth;
+        final int mask;
+        final String[] labels;
+        final Node<V>[] children;
+        final Node<V> wildcard;
+
+        Node(
+                @Nullable V identity,
+                int depth,
+                @Nullable String @NotNull [] labels,
+                @Nullable Node<V> @NotNull [] children,
+                @Nullable Node<V> wildcard
+        ) {
+            this.identity = identity;
+            this.depth = depth;
+            this.mask = labels.length - 1;
+            this.labels = labels;
+            this.children = children;
+            this.wildcard = wildcard;
+        }
+
+        //
+
+        @Nullable Node<V> child(@NotNull CharSequence path, int start, int end) {
+            int slot = hashPart(path, start, end) & this.mask;
+            String label;
+            while ((label = this.labels[slot]) != null) {
+                if (partEquals(label, path, start, end)) return this.children[slot];
+                slot = (slot + 1) & this.mask;
+            }
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,61 @@
+package io.github.wasabithumb.xpdy.nd;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+import java.time.Duration;
+
+/**
+ * Limits for a {@link StaticContent#cached(StaticContent, CacheLimits) cached} static content source.
+ * @param maxBytes Total number of content bytes which may be held by the cache
+ * @param maxEntryBytes Size of the largest body which may be cached. Larger bodies, and bodies of unknown size,
+ *                      are always served from the source.
+ * @param revalidateAfter How long an entry is used before it is checked against the source again. Entries backed
+ *                        by a file are checked by comparing the modification time and size of the file; other entries
+ *                        (including paths with no content) are fetched again.
+ * @since 0.3.0
+ */
+@ApiStatus.AvailableSince("0.3.0")
+public record CacheLimits(
+        @Range(from=0, to=Long.MAX_VALUE) long maxBytes,
+        @Range(from=0, to=Integer.MAX_VALUE) long maxEntryBytes,
+        @NotNull Duration revalidateAfter
+) {
+
+    private static final CacheLimits DEFAULT = new CacheLimits(
+            64L * 1024L * 1024L,
+            1024L * 1024L,
+            Duration.ofSeconds(2L)
+    );
+
+    /**
+     * Default limits: 64 MiB total, 1 MiB per entry and revalidation every 2 seconds
+     */
+    @Contract(pure = true)
+    public static @NotNull CacheLimits defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * Default limits with the given total size
+     * @see #defaults()
+     */
+    @Contract("_ -> new")
+    public static @NotNull CacheLimits of(@Range(from=0, to=Long.MAX_VALUE) long maxBytes) {
+        return new CacheLimits(maxBytes, Math.min(maxBytes, DEFAULT.maxEntryBytes), DEFAULT.revalidateAfter);
+    }
+
+    //
+
+    public CacheLimits {
+        if (maxBytes < 0L)
+            throw new IllegalArgumentException("maxBytes must be non-negative (got " + maxBytes + ")");
+        if (maxEntryBytes < 0L || maxEntryBytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("maxEntryBytes out of range (got " + maxEntryBytes + ")");
+        if (revalidateAfter.isNegative())
+            throw new IllegalArgumentException("revalidateAfter must be non-negative (got " + revalidateAfter + ")");
+    }
+
+}
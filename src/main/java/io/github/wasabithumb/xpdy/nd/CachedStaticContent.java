@@ -0,0 +1,244 @@
+package io.github.wasabithumb.xpdy.nd;
+
+import io.github.wasabithumb.xpdy.misc.MimeType;
+import io.github.wasabithumb.xpdy.payload.body.Body;
+import io.github.wasabithumb.xpdy.payload.body.FileBody;
+import io.github.wasabithumb.xpdy.payload.body.SeekableBody;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds recently served static content in memory. Entries are evicted in least-recently-used order once the byte
+ * budget is exceeded. Paths for which the source serves nothing are also remembered, since every request
+ * consults static content before endpoints; these are kept apart from content, in a small table with its own
+ * bound, so that requests for many missing paths cannot push content out of the cache.
+ */
+@ApiStatus.Internal
+final class CachedStaticContent implements StaticContent {
+
+    /** Approximate cost of an entry beyond its content, counted against the byte budget */
+    private static final long ENTRY_OVERHEAD = 128L;
+
+    /** Number of paths with no content which are remembered */
+    private static final int MAX_MISSES = 1024;
+
+    private final StaticContent source;
+    private final CacheLimits limits;
+    private final long revalidateNanos;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Long> misses = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0L;
+
+    CachedStaticContent(@NotNull StaticContent source, @NotNull CacheLimits limits) {
+        this.source = source;
+        this.limits = limits;
+        this.revalidateNanos = limits.revalidateAfter().toNanos();
+    }
+
+    //
+
+    @Override
+    public @Nullable Body serve(@NotNull String path) throws IOException {
+        long now = System.nanoTime();
+        Entry entry;
+        Long missedAt;
+        synchronized (this) {
+            entry = this.entries.get(path);
+            missedAt = (entry == null) ? this.misses.get(path) : null;
+        }
+
+        if (entry != null) {
+            if (now - entry.checkedAt < this.revalidateNanos) return entry.body;
+            if (entry.isFresh()) {
+                entry.checkedAt = now;
+                return entry.body;
+            }
+        } else if (missedAt != null && now - missedAt < this.revalidateNanos) {
+            return null;
+        }
+
+        Body body = this.source.serve(path);
+        if (body == null) {
+            synchronized (this) {
+                this.remove(path);
+                this.putMiss(path, now);
+            }
+            return null;
+        }
+
+        long size = body.size();
+        if (size < 0L || size > this.limits.maxEntryBytes()) return this.uncached(path, body);
+
+        Path file = null;
+        BasicFileAttributes attrs = null;
+        if (body instanceof FileBody fb) {
+            file = fb.path();
+            attrs = readAttributes(file);
+            if (attrs == null || attrs.size() != size) return this.uncached(path, body);
+        }
+
+        byte[] data = body.bytes();
+        if (data.length != size) {
+            // The content changed while it was read; serve what was read, without validators
+            return this.uncached(path, new CachedBody(data, body.type(), null, null));
+        }
+
+        CachedBody cached = new CachedBody(data, body.type(), body.etag(), body.lastModified());
+        FileTime modified = (attrs == null) ? null : attrs.lastModifiedTime();
+        synchronized (this) {
+            this.misses.remove(path);
+            this.put(path, new Entry(cached, file, modified, now));
+        }
+        return cached;
+    }
+
+    /**
+     * Serves a body without caching it, dropping any previous entry for the path
+     */
+    private synchronized @NotNull Body uncached(@NotNull String path, @NotNull Body body) {
+        this.remove(path);
+        return body;
+    }
+
+    private void put(@NotNull String path, @NotNull Entry entry) {
+        long cost = entry.cost(path);
+        if (cost > this.limits.maxBytes()) {
+            this.remove(path);
+            return;
+        }
+
+        Entry previous = this.entries.put(path, entry);
+        if (previous != null) this.bytes -= previous.cost(path);
+        this.bytes += cost;
+
+        Iterator<Map.Entry<String, Entry>> iter = this.entries.entrySet().iterator();
+        while (this.bytes > this.limits.maxBytes() && iter.hasNext()) {
+            Map.Entry<String, Entry> eldest = iter.next();
+            this.bytes -= eldest.getValue().cost(eldest.getKey());
+            iter.remove();
+        }
+    }
+
+    private void putMiss(@NotNull String path, long now) {
+        this.misses.put(path, now);
+        if (this.misses.size() > MAX_MISSES) {
+            Iterator<String> iter = this.misses.keySet().iterator();
+            iter.next();
+            iter.remove();
+        }
+    }
+
+    private void remove(@NotNull String path) {
+        Entry removed = this.entries.remove(path);
+        if (removed != null) this.bytes -= removed.cost(path);
+    }
+
+    private static @Nullable BasicFileAttributes readAttributes(@NotNull Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    //
+
+    private static final class Entry {
+
+        final CachedBody body;
+        private final Path file;
+        private final FileTime modified;
+        volatile long checkedAt;
+
+        Entry(@NotNull CachedBody body, @Nullable Path file, @Nullable FileTime modified, long checkedAt) {
+            this.body = body;
+            this.file = file;
+            this.modified = modified;
+            this.checkedAt = checkedAt;
+        }
+
+        long cost(@NotNull String path) {
+            return ENTRY_OVERHEAD + 2L * path.length() + this.body.data.length;
+        }
+
+        /**
+         * Checks whether a file-backed entry still matches its file. Other entries are never considered
+         * fresh once their revalidation period has elapsed.
+         */
+        boolean isFresh() throws IOException {
+            if (this.file == null) return false;
+            BasicFileAttributes attrs = readAttributes(this.file);
+            return attrs != null &&
+                    attrs.size() == this.body.data.length &&
+                    attrs.lastModifiedTime().equals(this.modified);
+        }
+
+    }
+
+    private record CachedBody(
+            byte @NotNull [] data,
+            int offset,
+            int length,
+            @NotNull @MimeType String type,
+            @Nullable String etag,
+            @Nullable Instant lastModified
+    ) implements SeekableBody {
+
+        CachedBody(
+                byte @NotNull [] data,
+                @NotNull @MimeType String type,
+                @Nullable String etag,
+                @Nullable Instant lastModified
+        ) {
+            this(data, 0, data.length, type, etag, lastModified);
+        }
+
+        //
+
+        @Override
+        public long size() {
+            return this.length;
+        }
+
+        @Override
+        public @NotNull CachedBody slice(long offset, long length) {
+            if (offset < 0L || length < 0L || offset > this.length || length > this.length - offset)
+                throw new IndexOutOfBoundsException("Region " + offset + "+" + length + " is out of bounds for size " + this.length);
+            return new CachedBody(this.data, this.offset + (int) offset, (int) length, this.type, this.etag, this.lastModified);
+        }
+
+        @Override
+        public @NotNull InputStream stream() {
+            return new ByteArrayInputStream(this.data, this.offset, this.length);
+        }
+
+        @Override
+        public void pipe(@NotNull OutputStream os) throws IOException {
+            os.write(this.data, this.offset, this.length);
+            os.flush();
+        }
+
+        @Override
+        public byte @NotNull [] bytes() {
+            return Arrays.copyOfRange(this.data, this.offset, this.offset + this.length);
+        }
+
+    }
+
+}
@@ -86,6 +86,31 @@ public interface StaticContent {
         return new HttpStaticContent(url);
     }
 
+    /**
+     * Creates a new {@link StaticContent} instance which holds content served by {@code source} in memory,
+     * within the given {@link CacheLimits limits}. Paths for which the source serves nothing are also remembered.
+     * Content backed by a file is revalidated against the modification time of the file; other content is
+     * fetched from the source again once the revalidation period has elapsed.
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    @Contract("_, _ -> new")
+    static @NotNull StaticContent cached(@NotNull StaticContent source, @NotNull CacheLimits limits) {
+        return new CachedStaticContent(source, limits);
+    }
+
+    /**
+     * Creates a new {@link StaticContent} instance which holds content served by {@code source} in memory,
+     * using the {@link CacheLimits#defaults() default limits}.
+     * @since 0.3.0
+     * @see #cached(StaticContent, CacheLimits)
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    @Contract("_ -> new")
+    static @NotNull StaticContent cached(@NotNull StaticContent source) {
+        return new CachedStaticContent(source, CacheLimits.defaults());
+    }
+
     /**
      * Creates a new {@link StaticContent} instance which serves the {@link Class#getResource(String) resources}
      * of the calling class. Resources are resolved on a best-effort basis (the same name may exist in multiple sibling
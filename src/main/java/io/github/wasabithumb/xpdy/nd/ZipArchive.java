@@ -0,0 +1,425 @@
+package io.github.wasabithumb.xpdy.nd;
+
+import io.github.wasabithumb.xpdy.misc.io.ByteBufferInputStream;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * <p>
+ *     A read-only view of a ZIP archive, memory-mapped once and indexed by parsing its central directory
+ *     (APPNOTE 4.3.12). Entry data is read straight from the mapping, so serving an entry never reopens the file.
+ * </p>
+ * <p>
+ *     The index is a set of parallel primitive arrays, with open-addressed tables mapping entry paths and
+ *     directory paths to positions in those arrays. The children of each directory are stored contiguously, so
+ *     both {@link #get(String)} and {@link #list(String)} are constant-time lookups. As with
+ *     {@link io.github.wasabithumb.xpdy.misc.path.PathMap PathMap}, paths are matched case-insensitively and
+ *     empty segments are ignored.
+ * </p>
+ * <p>
+ *     Only stored and deflated entries without encryption are indexed. Archives must be smaller than 2 GiB.
+ * </p>
+ */
+@ApiStatus.Internal
+final class ZipArchive {
+
+    static final int STORED = 0;
+    static final int DEFLATED = 8;
+
+    private static final int SIG_LOCAL = 0x04034B50;
+    private static final int SIG_CENTRAL = 0x02014B50;
+    private static final int SIG_END = 0x06054B50;
+    private static final int SIG_END64 = 0x06064B50;
+    private static final int SIG_END64_LOCATOR = 0x07064B50;
+    private static final int END_SIZE = 22;
+    private static final int CENTRAL_SIZE = 46;
+    private static final int MAX_COMMENT = 0xFFFF;
+
+    private static final byte FLAG_DEFLATED = 1;
+    private static final byte FLAG_DIRECTORY = 2;
+    private static final byte FLAG_SHADOWED = 4;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    static @NotNull ZipArchive open(@NotNull Path path) throws IOException {
+        ByteBuffer data;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("Archive @ " + path.toAbsolutePath() + " is too large to map (" + size + " bytes)");
+            data = ch.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+        }
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            return new ZipArchive(data);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new ZipException("Malformed archive @ " + path.toAbsolutePath() + " (" + e + ")");
+        }
+    }
+
+    private static int findEnd(@NotNull ByteBuffer data) throws ZipException {
+        int limit = data.limit();
+        int min = Math.max(0, limit - END_SIZE - MAX_COMMENT);
+        for (int i = limit - END_SIZE; i >= min; i--) {
+            if (data.getInt(i) == SIG_END) return i;
+        }
+        throw new ZipException("End of central directory record not found");
+    }
+
+    private static long dosTime(int dos) {
+        try {
+            LocalDateTime ldt = LocalDateTime.of(
+                    ((dos >>> 25) & 0x7F) + 1980,
+                    (dos >>> 21) & 0x0F,
+                    (dos >>> 16) & 0x1F,
+                    (dos >>> 11) & 0x1F,
+                    (dos >>> 5) & 0x3F,
+                    (dos << 1) & 0x3E
+            );
+            return ldt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeException e) {
+            return NO_TIME;
+        }
+    }
+
+    /**
+     * Joins the non-empty segments of a path with {@code /}
+     */
+    private static @NotNull String normalize(@NotNull String path) {
+        int len = path.length();
+        if (len == 0) return path;
+        if (path.charAt(0) != '/' && path.charAt(len - 1) != '/' && !path.contains("//")) return path;
+
+        StringBuilder sb = new StringBuilder(len);
+        int start = 0;
+        for (int i=0; i <= len; i++) {
+            if (i != len && path.charAt(i) != '/') continue;
+            if (i != start) {
+                if (!sb.isEmpty()) sb.append('/');
+                sb.append(path, start, i);
+            }
+            start = i + 1;
+        }
+        return sb.toString();
+    }
+
+    private static int hash(@NotNull String key) {
+        int h = 0;
+        for (int i=0; i < key.length(); i++) {
+            h = 31 * h + Character.toLowerCase(Character.toUpperCase(key.charAt(i)));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSize(int count) {
+        int size = 2;
+        while (size < (count << 1)) size <<= 1;
+        return size;
+    }
+
+    /**
+     * Finds the slot holding the given key, or the empty slot at which it should be inserted
+     * @param slots A table with a power-of-two length, where each slot holds 1 plus an index into {@code keys},
+     *              or 0 if the slot is empty
+     */
+    private static int probe(@Nullable String @NotNull [] keys, int @NotNull [] slots, @NotNull String key) {
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+        int value;
+        while ((value = slots[slot]) != 0) {
+            if (key.equalsIgnoreCase(keys[value - 1])) break;
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    //
+
+    private final ByteBuffer data;
+    private final String[] names;
+    private final byte[] flags;
+    private final int[] crcs;
+    private final long[] compressedSizes;
+    private final long[] sizes;
+    private final long[] localOffsets;
+    private final long[] modified;
+    private final int[] entrySlots;
+    private final String[] dirNames;
+    private final int[] dirSlots;
+    private final int[] dirStarts;
+    private final int[] children;
+
+    private ZipArchive(@NotNull ByteBuffer data) throws ZipException {
+        this.data = data;
+
+        int end = findEnd(data);
+        long total = data.getShort(end + 10) & 0xFFFFL;
+        long offset = data.getInt(end + 16) & 0xFFFFFFFFL;
+
+        if (total == 0xFFFFL || offset == 0xFFFFFFFFL) {
+            int locator = end - 20;
+            if (locator >= 0 && data.getInt(locator) == SIG_END64_LOCATOR) {
+                long end64 = data.getLong(locator + 8);
+                if (end64 < 0L || end64 > data.limit() - 56L || data.getInt((int) end64) != SIG_END64)
+                    throw new ZipException("Invalid ZIP64 end of central directory record");
+                total = data.getLong((int) end64 + 32);
+                offset = data.getLong((int) end64 + 48);
+            }
+        }
+        if (offset < 0L || offset > end) throw new ZipException("Invalid central directory offset");
+        if (total < 0L || total > (end - offset) / CENTRAL_SIZE)
+            throw new ZipException("Invalid central directory entry count");
+
+        int capacity = (int) total;
+        String[] names = new String[capacity];
+        byte[] flags = new byte[capacity];
+        int[] crcs = new int[capacity];
+        long[] compressedSizes = new long[capacity];
+        long[] sizes = new long[capacity];
+        long[] localOffsets = new long[capacity];
+        long[] modified = new long[capacity];
+
+        int count = 0;
+        int head = (int) offset;
+        for (int i=0; i < capacity; i++) {
+            if (data.getInt(head) != SIG_CENTRAL) throw new ZipException("Invalid central directory header");
+
+            int gpFlags = data.getShort(head + 8) & 0xFFFF;
+            int method = data.getShort(head + 10) & 0xFFFF;
+            int dosTime = data.getInt(head + 12);
+            int crc = data.getInt(head + 16);
+            long compressedSize = data.getInt(head + 20) & 0xFFFFFFFFL;
+            long size = data.getInt(head + 24) & 0xFFFFFFFFL;
+            int nameLength = data.getShort(head + 28) & 0xFFFF;
+            int extraLength = data.getShort(head + 30) & 0xFFFF;
+            int commentLength = data.getShort(head + 32) & 0xFFFF;
+            long localOffset = data.getInt(head + 42) & 0xFFFFFFFFL;
+
+            byte[] nameBytes = new byte[nameLength];
+            data.get(head + CENTRAL_SIZE, nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            // ZIP64 extended information (APPNOTE 4.5.3) and extended timestamp (0x5455) extra fields
+            long time = NO_TIME;
+            int extra = head + CENTRAL_SIZE + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int tag = data.getShort(extra) & 0xFFFF;
+                int len = data.getShort(extra + 2) & 0xFFFF;
+                int pos = extra + 4;
+                int fieldEnd = pos + len;
+                if (fieldEnd > extraEnd) break;
+                if (tag == 0x0001) {
+                    if (size == 0xFFFFFFFFL && pos + 8 <= fieldEnd) { size = data.getLong(pos); pos += 8; }
+                    if (compressedSize == 0xFFFFFFFFL && pos + 8 <= fieldEnd) { compressedSize = data.getLong(pos); pos += 8; }
+                    if (localOffset == 0xFFFFFFFFL && pos + 8 <= fieldEnd) localOffset = data.getLong(pos);
+                } else if (tag == 0x5455 && len >= 5 && (data.get(pos) & 1) != 0) {
+                    time = (data.getInt(pos + 1) & 0xFFFFFFFFL) * 1000L;
+                }
+                extra = fieldEnd;
+            }
+            head = extraEnd + commentLength;
+
+            if ((gpFlags & 1) != 0) continue;
+            if (method != STORED && method != DEFLATED) continue;
+            if (localOffset < 0L || compressedSize < 0L || localOffset + compressedSize > data.limit()) continue;
+
+            byte flag = 0;
+            if (method == DEFLATED) flag |= FLAG_DEFLATED;
+            if (name.endsWith("/")) flag |= FLAG_DIRECTORY;
+
+            names[count] = normalize(name);
+            flags[count] = flag;
+            crcs[count] = crc;
+            compressedSizes[count] = compressedSize;
+            sizes[count] = size;
+            localOffsets[count] = localOffset;
+            modified[count] = (time == NO_TIME) ? dosTime(dosTime) : time;
+            count++;
+        }
+
+        this.names = names;
+        this.flags = flags;
+        this.crcs = crcs;
+        this.compressedSizes = compressedSizes;
+        this.sizes = sizes;
+        this.localOffsets = localOffsets;
+        this.modified = modified;
+
+        // Path -> entry; a later entry with the same path replaces an earlier one
+        int[] entrySlots = new int[tableSize(count)];
+        for (int i=0; i < count; i++) {
+            int slot = probe(names, entrySlots, names[i]);
+            int prev = entrySlots[slot];
+            if (prev != 0) flags[prev - 1] |= FLAG_SHADOWED;
+            entrySlots[slot] = i + 1;
+        }
+        this.entrySlots = entrySlots;
+
+        // Directory -> children, including directories which only exist as the parent of an entry
+        String[] dirNames = new String[count + 1];
+        int[] dirSlots = new int[tableSize(count + 1)];
+        int[] parents = new int[count];
+        int[] dirStarts = new int[count + 2];
+        int dirCount = 0;
+        for (int i=0; i < count; i++) {
+            String name = names[i];
+            if ((flags[i] & FLAG_SHADOWED) != 0 || name.isEmpty()) {
+                parents[i] = -1;
+                continue;
+            }
+            int sep = name.lastIndexOf('/');
+            String parent = (sep == -1) ? "" : name.substring(0, sep);
+
+            int slot = probe(dirNames, dirSlots, parent);
+            int dir = dirSlots[slot] - 1;
+            if (dir == -1) {
+                dir = dirCount++;
+                dirNames[dir] = parent;
+                dirSlots[slot] = dir + 1;
+            }
+            parents[i] = dir;
+            dirStarts[dir + 1]++;
+        }
+        for (int d=0; d < dirCount; d++) dirStarts[d + 1] += dirStarts[d];
+
+        int[] fill = Arrays.copyOf(dirStarts, dirCount);
+        int[] children = new int[dirStarts[dirCount]];
+        for (int i=0; i < count; i++) {
+            int dir = parents[i];
+            if (dir != -1) children[fill[dir]++] = i;
+        }
+
+        this.dirNames = dirNames;
+        this.dirSlots = dirSlots;
+        this.dirStarts = dirStarts;
+        this.children = children;
+    }
+
+    //
+
+    /**
+     * Looks up the entry at the given path
+     * @return The entry, or null if the archive has no entry at the path
+     */
+    @Nullable Entry get(@NotNull String path) {
+        int index = this.entrySlots[probe(this.names, this.entrySlots, normalize(path))] - 1;
+        return (index == -1) ? null : this.entry(index);
+    }
+
+    /**
+     * Lists the entries directly within the directory at the given path. The directory does not need an entry
+     * of its own.
+     */
+    @NotNull @Unmodifiable List<Entry> list(@NotNull String path) {
+        int dir = this.dirSlots[probe(this.dirNames, this.dirSlots, normalize(path))] - 1;
+        if (dir == -1) return Collections.emptyList();
+
+        int start = this.dirStarts[dir];
+        Entry[] ret = new Entry[this.dirStarts[dir + 1] - start];
+        for (int i=0; i < ret.length; i++) ret[i] = this.entry(this.children[start + i]);
+        return List.of(ret);
+    }
+
+    private @NotNull Entry entry(int index) {
+        byte flags = this.flags[index];
+        long time = this.modified[index];
+        return new Entry(
+                this.names[index],
+                (flags & FLAG_DIRECTORY) != 0,
+                (flags & FLAG_DEFLATED) != 0 ? DEFLATED : STORED,
+                this.crcs[index] & 0xFFFFFFFFL,
+                this.compressedSizes[index],
+                this.sizes[index],
+                this.localOffsets[index],
+                (time == NO_TIME) ? null : FileTime.fromMillis(time)
+        );
+    }
+
+    /**
+     * Provides the data of an entry as it is stored in the archive; compressed if the entry is deflated
+     * @throws ZipException The local header of the entry is malformed
+     */
+    @NotNull ByteBuffer raw(@NotNull Entry entry) throws ZipException {
+        int header = (int) entry.localOffset;
+        if (header > this.data.limit() - 30 || this.data.getInt(header) != SIG_LOCAL)
+            throw new ZipException("Invalid local header for entry \"" + entry.name + "\"");
+
+        int nameLength = this.data.getShort(header + 26) & 0xFFFF;
+        int extraLength = this.data.getShort(header + 28) & 0xFFFF;
+        long start = (long) header + 30L + nameLength + extraLength;
+        if (start + entry.compressedSize > this.data.limit())
+            throw new ZipException("Data for entry \"" + entry.name + "\" exceeds archive bounds");
+
+        return this.data.slice((int) start, (int) entry.compressedSize);
+    }
+
+    /**
+     * Opens a stream over the uncompressed data of an entry
+     */
+    @NotNull InputStream open(@NotNull Entry entry) throws IOException {
+        ByteBuffer raw = this.raw(entry);
+        InputStream is = new ByteBufferInputStream(raw);
+        if (entry.method == STORED) return is;
+
+        // Raw inflation may need a trailing dummy byte to detect the end of the stream
+        is = new SequenceInputStream(is, new ByteArrayInputStream(new byte[1]));
+        Inflater inflater = new Inflater(true);
+        return new InflaterInputStream(is, inflater, 8192) {
+            private boolean closed = false;
+
+            @Override
+            public void close() throws IOException {
+                if (this.closed) return;
+                this.closed = true;
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    //
+
+    /**
+     * An entry in the archive
+     * @param name The path of the entry, without leading or trailing slashes
+     * @param isDirectory True if the entry was stored as a directory
+     */
+    record Entry(
+            @NotNull String name,
+            boolean isDirectory,
+            int method,
+            long crc,
+            long compressedSize,
+            long size,
+            long localOffset,
+            @Nullable FileTime modified
+    ) { }
+
+}
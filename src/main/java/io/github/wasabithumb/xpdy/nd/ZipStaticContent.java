@@ -1,27 +1,42 @@
 package io.github.wasabithumb.xpdy.nd;
 
+import io.github.wasabithumb.xpdy.misc.EntityTag;
+import io.github.wasabithumb.xpdy.misc.MimeType;
 import io.github.wasabithumb.xpdy.misc.MimeTypes;
+import io.github.wasabithumb.xpdy.misc.io.ByteBufferInputStream;
 import io.github.wasabithumb.xpdy.misc.io.IOSupplier;
-import io.github.wasabithumb.xpdy.misc.path.PathMap;
 import io.github.wasabithumb.xpdy.payload.body.Body;
+import io.github.wasabithumb.xpdy.payload.body.SeekableBody;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.jetbrains.annotations.Unmodifiable;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
+/**
+ * <p>
+ *     Serves the entries of a ZIP/JAR file. The archive is memory-mapped on first use and kept mapped for the
+ *     lifetime of this instance. Entries and directory listings are found through the index built by
+ *     {@link ZipArchive} when the archive is opened, rather than by walking a tree of paths.
+ * </p>
+ * <p>
+ *     Deflated entries are inflated as they are read. Additionally, a request for {@code name.gz} which does not
+ *     match an entry is answered with the compressed data of the deflated entry {@code name}, framed as gzip.
+ *     This allows the server to send deflated entries without inflating them when the client accepts gzip.
+ * </p>
+ */
 final class ZipStaticContent implements StaticContent {
 
     private static final byte[] ZIP_HEADER = new byte[] { 0x50, 0x4B, 0x03, 0x04 };
+    private static final String GZIP_EXTENSION = ".gz";
     private static void checkReadableZip(@NotNull Path path) {
         Throwable suppressed = null;
         try (InputStream is = Files.newInputStream(path, StandardOpenOption.READ)) {
@@ -39,37 +54,48 @@ final class ZipStaticContent implements StaticContent {
 
     private final Path zip;
     private final String prefix;
-    private final Listing listing;
+    private ZipArchive archive = null;
 
     ZipStaticContent(@NotNull Path zip, @NotNull String prefix) {
         checkReadableZip(zip);
         this.zip = zip;
         this.prefix = prefix;
-        this.listing = new Listing(zip);
+    }
+
+    private synchronized @NotNull ZipArchive archive() throws IOException {
+        ZipArchive archive = this.archive;
+        if (archive == null) this.archive = archive = ZipArchive.open(this.zip);
+        return archive;
     }
 
     @Override
     public @Nullable Body serve(@NotNull String path) throws IOException {
-        ZipEntry ze = this.listing.get(this.prefix + path);
+        ZipArchive archive = this.archive();
+        ZipArchive.Entry ze = archive.get(this.prefix + path);
         if (ze != null && !ze.isDirectory()) return this.createBody(ze);
 
-        ZipEntry index = null;
-        for (ZipEntry child : this.listing.list(this.prefix + path)) {
-            String name = child.getName();
-            int len = name.length();
-            if (len == 0 || name.charAt(len - 1) == '/') continue;
+        if (ze == null && path.endsWith(GZIP_EXTENSION)) {
+            String base = path.substring(0, path.length() - GZIP_EXTENSION.length());
+            ze = archive.get(this.prefix + base);
+            if (ze != null && !ze.isDirectory() && ze.method() == ZipArchive.DEFLATED)
+                return this.createGzipBody(ze);
+            return null;
+        }
+
+        ZipArchive.Entry index = archive.get(this.prefix + path + "/index.html");
+        if (index != null && !index.isDirectory()) return this.createBody(index);
 
-            int ws = name.lastIndexOf('/') + 1;
-            name = name.substring(ws);
+        index = null;
+        for (ZipArchive.Entry child : archive.list(this.prefix + path)) {
+            if (child.isDirectory()) continue;
+
+            String name = child.name();
+            name = name.substring(name.lastIndexOf('/') + 1);
 
             int wd = name.indexOf('.');
             if (wd == -1) {
                 if (!name.equals("index")) continue;
-            } else if (wd == 5) {
-                if (!name.startsWith("index")) continue;
-                if ((len - ws) == 10 && name.endsWith("html"))
-                    return this.createBody(child);
-            } else {
+            } else if (wd != 5 || !name.startsWith("index")) {
                 continue;
             }
             index = child;
@@ -79,95 +105,103 @@ final class ZipStaticContent implements StaticContent {
     }
 
     @SuppressWarnings("PatternValidation")
-    private @NotNull Body createBody(@NotNull ZipEntry ze) {
-        String name = ze.getName();
-        int len = name.length();
-        if (len == 0 || name.charAt(len - 1) == '/')
+    private @NotNull Body createBody(@NotNull ZipArchive.Entry ze) throws IOException {
+        String name = ze.name();
+        if (name.isEmpty() || ze.isDirectory())
             throw new IllegalArgumentException("Entry is invalid or directory");
 
-        IOSupplier<InputStream> reader = this.createReader(name);
+        ZipArchive archive = this.archive();
+        IOSupplier<InputStream> reader = () -> archive.open(ze);
 
         int sep = name.lastIndexOf('/');
         if (sep != -1) name = name.substring(sep + 1);
         String type = MimeTypes.infer(name, reader, MimeTypes.BYTES);
 
+        String opaque = Long.toHexString(ze.crc()) + "-" + Long.toHexString(ze.size());
+        FileTime modified = ze.modified();
+        Instant lastModified = (modified == null) ? null : modified.toInstant();
+
+        // Stored entries are a plain region of the mapping, so they can be sliced freely
+        if (ze.method() == ZipArchive.STORED)
+            return new StoredEntryBody(archive.raw(ze), type, EntityTag.format(opaque, false), lastModified);
+
         return Body.builder()
                 .source(reader)
-                .size(ze.getSize())
+                .size(ze.size())
                 .type(type)
+                .etag(opaque, false)
+                .lastModified(lastModified)
                 .build();
     }
 
-    private @NotNull IOSupplier<InputStream> createReader(final @NotNull String name) {
-        return () -> {
-            ZipFile zf = null;
-            boolean close = true;
-            try {
-                zf = new ZipFile(this.zip.toFile());
-                ZipEntry ze = zf.getEntry(name);
-                if (ze == null) {
-                    throw new IOException("Entry \"" + name + "\" is no longer present in archive @ " +
-                            this.zip.toAbsolutePath());
-                }
-                InputStream is = zf.getInputStream(ze);
-                close = false;
-                return closeListener(is, zf);
-            } finally {
-                if (close && zf != null) zf.close();
-            }
-        };
-    }
-
-    private static @NotNull InputStream closeListener(@NotNull InputStream stream, @NotNull Closeable attached) {
-        return new FilterInputStream(stream) {
-            @Override
-            public void close() throws IOException {
-                try {
-                    super.close();
-                } finally {
-                    attached.close();
-                }
-            }
-        };
+    /**
+     * Frames the compressed data of a deflated entry as a gzip member (RFC 1952). The deflate stream of the
+     * entry is used as-is, and the trailer is built from the CRC-32 and size recorded in the archive.
+     */
+    private @NotNull Body createGzipBody(@NotNull ZipArchive.Entry ze) throws IOException {
+        ByteBuffer raw = this.archive().raw(ze);
+
+        // ID1, ID2, CM = deflate, FLG, MTIME (4), XFL, OS = unknown
+        final byte[] header = new byte[] { 0x1F, (byte) 0x8B, 8, 0, 0, 0, 0, 0, 0, (byte) 0xFF };
+        final byte[] trailer = ByteBuffer.allocate(8)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .putInt((int) ze.crc())
+                .putInt((int) ze.size())
+                .array();
+
+        FileTime modified = ze.modified();
+        return Body.builder()
+                .source((OutputStream os) -> {
+                    os.write(header);
+                    Channels.newChannel(os).write(raw.duplicate());
+                    os.write(trailer);
+                })
+                .size(header.length + ze.compressedSize() + trailer.length)
+                .type("application/gzip")
+                .etag(Long.toHexString(ze.crc()) + "-" + Long.toHexString(ze.size()) + "-gz", false)
+                .lastModified(modified == null ? null : modified.toInstant())
+                .build();
     }
 
     //
 
-    private static final class Listing {
+    private record StoredEntryBody(
+            @NotNull ByteBuffer data,
+            @NotNull @MimeType String type,
+            @Nullable String etag,
+            @Nullable Instant lastModified
+    ) implements SeekableBody {
 
-        private final Path zip;
-        private final PathMap<ZipEntry> map = new PathMap<>(false);
-        private boolean ready = false;
+        @Override
+        public long size() {
+            return this.data.remaining();
+        }
 
-        Listing(@NotNull Path zip) {
-            this.zip = zip;
+        @Override
+        public @NotNull StoredEntryBody slice(long offset, long length) {
+            long size = this.size();
+            if (offset < 0L || length < 0L || offset > size || length > size - offset)
+                throw new IndexOutOfBoundsException("Region " + offset + "+" + length + " is out of bounds for size " + size);
+            ByteBuffer slice = this.data.slice(this.data.position() + (int) offset, (int) length);
+            return new StoredEntryBody(slice, this.type, this.etag, this.lastModified);
         }
 
-        private synchronized void fill() throws IOException {
-            if (this.ready) return;
-            try (InputStream fis = Files.newInputStream(this.zip, StandardOpenOption.READ);
-                 ZipInputStream zis = new ZipInputStream(fis)
-            ) {
-                ZipEntry ze;
-                while ((ze = zis.getNextEntry()) != null) {
-                    this.map.put(ze.getName(), ze);
-                }
-            }
-            this.ready = true;
+        @Override
+        public @NotNull InputStream stream() {
+            return new ByteBufferInputStream(this.data.duplicate());
         }
 
-        public @Nullable ZipEntry get(@NotNull String path) throws IOException {
-            this.fill();
-            return this.map.get(path);
+        @Override
+        public void pipe(@NotNull OutputStream os) throws IOException {
+            Channels.newChannel(os).write(this.data.duplicate());
+            os.flush();
         }
 
-        public @NotNull @Unmodifiable List<ZipEntry> list(@NotNull String parent) throws IOException {
-            this.fill();
-            try {
-                return this.map.sub(parent).values(false);
-            } catch (IllegalArgumentException e) {
-                return Collections.emptyList();
-            }
+        @Override
+        public byte @NotNull [] bytes() {
+            byte[] ret = new byte[this.data.remaining()];
+            this.data.duplicate().get(ret);
+            return ret;
         }
 
     }
@@ -2,16 +2,18 @@ package io.github.wasabithumb.xpdy.payload.body;
 
 import com.sun.net.httpserver.HttpExchange;
 import io.github.wasabithumb.xpdy.except.BodyFormatException;
-import io.github.wasabithumb.xpdy.misc.MimeUtil;
+import io.github.wasabithumb.xpdy.misc.EntityTag;
 import io.github.wasabithumb.xpdy.misc.io.IOConsumer;
 import io.github.wasabithumb.xpdy.misc.io.IOSupplier;
 import io.github.wasabithumb.xpdy.misc.MimeType;
 import io.github.wasabithumb.xpdy.misc.MimeTypes;
-import io.github.wasabithumb.xpdy.misc.io.URLEncodedReader;
+import io.github.wasabithumb.xpdy.misc.io.URLEncodedParser;
 import io.github.wasabithumb.xpdy.misc.io.URLEncodedWriter;
+import io.github.wasabithumb.xpdy.transport.TransportExchange;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Range;
 
 import java.io.*;
@@ -20,9 +22,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.time.Instant;
 import java.util.Map;
 
 @ApiStatus.NonExtendable
@@ -35,22 +36,41 @@ public interface Body {
 
     @Contract("_ -> new")
     static @NotNull Body exchange(@NotNull HttpExchange exchange) {
-        if (exchange.getRequestMethod().equals("GET"))
-            return new EmptyBody(MimeTypes.TEXT);
-        return new ExchangeBody(exchange);
+        return exchange(TransportExchange.of(exchange));
     }
 
+    /**
+     * Provides the request body of an exchange
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
     @Contract("_ -> new")
-    static @NotNull Body file(@NotNull Path file) throws IOException {
-        Builder b = builder()
-                .source(() -> Files.newInputStream(file, StandardOpenOption.READ))
-                .size(Files.size(file));
+    static @NotNull Body exchange(@NotNull TransportExchange exchange) {
+        return exchange(exchange, -1L);
+    }
 
-        //noinspection PatternValidation
-        String type = MimeUtil.detect(file);
-        if (type != null) b.type(type);
+    /**
+     * Provides the request body of an exchange, allowing at most {@code maxSize} bytes to be read.
+     * Reading past this limit raises a {@link io.github.wasabithumb.xpdy.except.ServeException ServeException}
+     * which serves HTTP 413.
+     * @param maxSize The maximum number of bytes which may be read, or -1 for no limit
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    @Contract("_, _ -> new")
+    static @NotNull Body exchange(@NotNull TransportExchange exchange, @Range(from=-1, to=Long.MAX_VALUE) long maxSize) {
+        if (exchange.requestMethod().equals("GET"))
+            return new EmptyBody(MimeTypes.TEXT);
+        return new ExchangeBody(exchange, maxSize < 0L ? -1L : maxSize);
+    }
 
-        return b.build();
+    /**
+     * Provides a body which reads from the given file. The size of the body is the size of the file at the time
+     * this method is called. The returned body is a {@link FileBody}.
+     */
+    @Contract("_ -> new")
+    static @NotNull Body file(@NotNull Path file) throws IOException {
+        return PathFileBody.of(file);
     }
 
     @Contract("_ -> new")
@@ -77,20 +97,14 @@ public interface Body {
                 .build();
     }
 
-    @Contract("_ -> new")
+    /**
+     * Provides the body of an error page for the given status code. The page is rendered once per code by
+     * {@link ErrorRenderer#DEFAULT} and shared by every call. If the body is served by a server with a custom
+     * {@link io.github.wasabithumb.xpdy.XpdyServer.Builder#errorRenderer(ErrorRenderer) error renderer},
+     * the page produced by that renderer is sent instead.
+     */
     static @NotNull Body error(@Range(from=400, to=599) int code) {
-        final String rel = (code < 500) ? "Client" : "Server";
-        return html("<!DOCTYPE html><html lang=\"en\"><head><title>" + code + "</title><meta charset=\"UTF-8\">" +
-                "<style>body,footer,html{position:absolute}a:hover,footer{opacity:.6}body,html{width:100vw;" +
-                "height:100vh;height:100dvh;margin:0;padding:0}body{background:#eee;color:#000;flex-direction:column;" +
-                "display:flex;justify-content:center;align-items:center;font-family:\"JetBrains Mono\",monospace}" +
-                "@media (prefers-color-scheme:dark){body{background:#111;color:#eee}}a{color:inherit;cursor:pointer;" +
-                "text-decoration:none;opacity:1;transition:opacity .2s ease-in-out}h1{display:inline;" +
-                "font-size:min(24vw,24vh)}footer{left:0;bottom:0;width:100%;text-align:center;font-size:min(3vw,3vh);" +
-                "padding-bottom:.5em}</style></head><body>" +
-                "<a href=\"https://developer.mozilla.org/en-US/docs/Web/HTTP/Status/" + code + "\" target=\"_blank\">" +
-                "<h1>" + code + "</h1></a><footer><span>" + rel + " Error</span>&nbsp;&bull;&nbsp;" +
-                "<a href=\"https://github.com/WasabiThumb/xpdy\">xpdy</a></footer></body></html>");
+        return ErrorBodies.DEFAULT.get(code);
     }
 
     //
@@ -105,6 +119,25 @@ public interface Body {
      */
     @NotNull @MimeType String type();
 
+    /**
+     * The entity tag identifying this version of the body, as sent in the {@code ETag} header
+     * (including quotes and the {@code W/} prefix for weak tags). Null if the body has no entity tag.
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    default @Nullable String etag() {
+        return null;
+    }
+
+    /**
+     * The time at which the body was last modified, or null if not known.
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    default @Nullable Instant lastModified() {
+        return null;
+    }
+
     /**
      * Reads the content of the body.
      */
@@ -115,11 +148,7 @@ public interface Body {
      */
     default void pipe(@NotNull OutputStream os) throws IOException {
         try (InputStream is = this.stream()) {
-            byte[] buf = new byte[8192];
-            int r;
-            while ((r = is.read(buf)) != -1) {
-                os.write(buf, 0, r);
-            }
+            is.transferTo(os);
             os.flush();
         }
     }
@@ -158,11 +187,8 @@ public interface Body {
      * Reads the content of the body as urlencoded.
      */
     default @NotNull Map<String, String> urlencoded() throws IOException, BodyFormatException {
-        try (InputStream is = this.stream();
-             InputStreamReader isr = new InputStreamReader(is, StandardCharsets.UTF_8);
-             URLEncodedReader uer = new URLEncodedReader(isr)
-        ) {
-            return uer.readURLEncoded();
+        try (InputStream is = this.stream()) {
+            return URLEncodedParser.parse(is);
         }
     }
 
@@ -210,11 +236,22 @@ public interface Body {
         private Object source = null;
         private long size = -1L;
         private String type = MimeTypes.BYTES;
+        private String etag = null;
+        private Instant lastModified = null;
 
         //
 
         @Contract("_ -> this")
         public @NotNull Builder source(@NotNull HttpExchange exchange) {
+            return this.source(TransportExchange.of(exchange));
+        }
+
+        /**
+         * @since 0.3.0
+         */
+        @ApiStatus.AvailableSince("0.3.0")
+        @Contract("_ -> this")
+        public @NotNull Builder source(@NotNull TransportExchange exchange) {
             this.sourceType = SourceType.EXCHANGE;
             this.source = exchange;
             return this;
@@ -257,14 +294,53 @@ public interface Body {
             return this;
         }
 
+        /**
+         * Sets the entity tag of the body
+         * @param opaque The opaque tag, excluding quotes. May not contain double quotes or whitespace.
+         * @param weak True if the tag is a weak validator, meaning that bodies with the same tag are
+         *             semantically equivalent but not necessarily identical
+         * @since 0.3.0
+         * @see Body#etag()
+         */
+        @ApiStatus.AvailableSince("0.3.0")
+        @Contract("_, _ -> this")
+        public @NotNull Builder etag(@NotNull String opaque, boolean weak) {
+            this.etag = EntityTag.format(opaque, weak);
+            return this;
+        }
+
+        /**
+         * Sets the time at which the body was last modified
+         * @since 0.3.0
+         * @see Body#lastModified()
+         */
+        @ApiStatus.AvailableSince("0.3.0")
+        @Contract("_ -> this")
+        public @NotNull Builder lastModified(@Nullable Instant lastModified) {
+            this.lastModified = lastModified;
+            return this;
+        }
+
         @SuppressWarnings("unchecked")
         @Contract("-> new")
         public @NotNull Body build() {
             return switch (this.sourceType) {
                 case EMPTY -> new EmptyBody(this.type);
-                case INPUT_STREAM -> new InputStreamBody(this.size, this.type, (IOSupplier<InputStream>) this.source);
-                case OUTPUT_STREAM -> new OutputStreamBody(this.size, this.type, (IOConsumer<OutputStream>) this.source);
-                case EXCHANGE -> new ExchangeBody((HttpExchange) this.source);
+                case INPUT_STREAM -> new InputStreamBody(
+                        this.size,
+                        this.type,
+                        this.etag,
+                        this.lastModified,
+                        (IOSupplier<InputStream>) this.source
+                );
+                case OUTPUT_STREAM -> new OutputStreamBody(
+                        this.size,
+                        this.type,
+                        this.etag,
+                        this.lastModified,
+                        (IOConsumer<OutputStream>) this.source
+                );
+                case EXCHANGE -> new ExchangeBody((TransportExchange) this.source);
             };
         }
 
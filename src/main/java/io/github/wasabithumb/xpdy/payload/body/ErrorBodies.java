@@ -0,0 +1,72 @@
+package io.github.wasabithumb.xpdy.payload.body;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+import java.io.IOException;
+
+/**
+ * Renders error bodies with an {@link ErrorRenderer} once per status code, and serves every later error of
+ * the same code from the rendered content.
+ */
+@ApiStatus.Internal
+public final class ErrorBodies {
+
+    public static final ErrorBodies DEFAULT = new ErrorBodies(ErrorRenderer.DEFAULT);
+
+    //
+
+    private final ErrorRenderer renderer;
+    private final ErrorBody[] cache = new ErrorBody[200];
+
+    public ErrorBodies(@NotNull ErrorRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    //
+
+    /**
+     * Provides the error body for the given status code, rendering it if it is not cached
+     */
+    public @NotNull Body get(@Range(from=400, to=599) int code) {
+        if (code < 400 || code > 599)
+            throw new IllegalArgumentException("Status code " + code + " is not an error code");
+
+        // Racing threads may both render the body; either result is fine to keep
+        ErrorBody body = this.cache[code - 400];
+        if (body == null) {
+            body = this.render(code);
+            this.cache[code - 400] = body;
+        }
+        return body;
+    }
+
+    /**
+     * Replaces the given body with the body rendered by this instance, if it is an error body
+     * (as provided by {@link Body#error(int)})
+     * @return The body to serve in place of {@code body}
+     */
+    public @NotNull Body replace(@NotNull Body body) {
+        if (body instanceof ErrorBody eb) return this.get(eb.code());
+        return body;
+    }
+
+    private @NotNull ErrorBody render(int code) {
+        if (this != DEFAULT) {
+            try {
+                Body body = this.renderer.render(code);
+                if (body instanceof ErrorBody eb) return eb;
+                return new ErrorBody(code, body.bytes(), body.type());
+            } catch (IOException ignored) {
+                // Fall back to the default page
+            }
+        }
+        try {
+            return (ErrorBody) ErrorRenderer.DEFAULT.render(code);
+        } catch (IOException e) {
+            throw new AssertionError("Default error renderer raised an exception", e);
+        }
+    }
+
+}
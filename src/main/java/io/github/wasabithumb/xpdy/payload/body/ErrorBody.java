@@ -0,0 +1,51 @@
+package io.github.wasabithumb.xpdy.payload.body;
+
+import io.github.wasabithumb.xpdy.misc.MimeType;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The body of an error response, backed by an array which is shared with every other error of the same code.
+ * The array is never modified.
+ */
+@ApiStatus.Internal
+record ErrorBody(
+        @Range(from=400, to=599) int code,
+        byte @NotNull [] content,
+        @NotNull @MimeType String type
+) implements Body {
+
+    @Override
+    public @Range(from=0, to=Long.MAX_VALUE) long size() {
+        return this.content.length;
+    }
+
+    @Override
+    public @NotNull InputStream stream() {
+        return new ByteArrayInputStream(this.content);
+    }
+
+    @Override
+    public void pipe(@NotNull OutputStream os) throws IOException {
+        os.write(this.content);
+        os.flush();
+    }
+
+    @Override
+    public byte @NotNull [] bytes() {
+        return this.content.clone();
+    }
+
+    @Override
+    public @NotNull String text() {
+        return new String(this.content, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,56 @@
+package io.github.wasabithumb.xpdy.payload.body;
+
+import io.github.wasabithumb.xpdy.misc.MimeTypes;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ *     Renders the body of error responses (HTTP 4XX and 5XX) which do not provide a body of their own.
+ * </p>
+ * <p>
+ *     A renderer is invoked at most once per status code; the rendered content is kept and served for every
+ *     subsequent error with the same code. Renderers should therefore not depend on anything but the code.
+ * </p>
+ * @since 0.3.0
+ * @see io.github.wasabithumb.xpdy.XpdyServer.Builder#errorRenderer(ErrorRenderer)
+ */
+@ApiStatus.AvailableSince("0.3.0")
+@FunctionalInterface
+public interface ErrorRenderer {
+
+    /**
+     * The renderer used by {@link Body#error(int)}, which produces a small HTML page
+     */
+    ErrorRenderer DEFAULT = ErrorRenderer::renderDefault;
+
+    //
+
+    private static @NotNull Body renderDefault(@Range(from=400, to=599) int code) {
+        final String rel = (code < 500) ? "Client" : "Server";
+        String html = "<!DOCTYPE html><html lang=\"en\"><head><title>" + code + "</title><meta charset=\"UTF-8\">" +
+                "<style>body,footer,html{position:absolute}a:hover,footer{opacity:.6}body,html{width:100vw;" +
+                "height:100vh;height:100dvh;margin:0;padding:0}body{background:#eee;color:#000;flex-direction:column;" +
+                "display:flex;justify-content:center;align-items:center;font-family:\"JetBrains Mono\",monospace}" +
+                "@media (prefers-color-scheme:dark){body{background:#111;color:#eee}}a{color:inherit;cursor:pointer;" +
+                "text-decoration:none;opacity:1;transition:opacity .2s ease-in-out}h1{display:inline;" +
+                "font-size:min(24vw,24vh)}footer{left:0;bottom:0;width:100%;text-align:center;font-size:min(3vw,3vh);" +
+                "padding-bottom:.5em}</style></head><body>" +
+                "<a href=\"https://developer.mozilla.org/en-US/docs/Web/HTTP/Status/" + code + "\" target=\"_blank\">" +
+                "<h1>" + code + "</h1></a><footer><span>" + rel + " Error</span>&nbsp;&bull;&nbsp;" +
+                "<a href=\"https://github.com/WasabiThumb/xpdy\">xpdy</a></footer></body></html>";
+        return new ErrorBody(code, html.getBytes(StandardCharsets.UTF_8), MimeTypes.HTML);
+    }
+
+    //
+
+    /**
+     * Renders the body for the given status code
+     */
+    @NotNull Body render(@Range(from=400, to=599) int code) throws IOException;
+
+}
@@ -0,0 +1,475 @@
+package io.github.wasabithumb.xpdy.payload.body;
+
+import io.github.wasabithumb.xpdy.misc.concurrent.Workers;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Range;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *     A stream of <a href="https://html.spec.whatwg.org/multipage/server-sent-events.html">server-sent events</a>,
+ *     served by responding with {@link #body()}. Events may be sent from any thread, both before and while the
+ *     stream is served. Sent events are buffered and written to the client by a shared worker, so senders never
+ *     wait on the client and an idle stream holds no thread.
+ * </p>
+ * <p>
+ *     A client which falls behind is considered a slow consumer: once more than the
+ *     {@link Builder#maxBuffered(int) buffer limit} is pending, or a single write stalls for longer than the
+ *     {@link Builder#writeTimeout(Duration) write timeout}, the stream is closed and further sends fail.
+ *     The connection is then dropped without waiting on any write to the client which is in progress.
+ *     While no events are sent, a comment is written at each {@link Builder#heartbeat(Duration) heartbeat}
+ *     to keep the connection alive. Heartbeats for every stream are scheduled on a single shared thread.
+ * </p>
+ * @since 0.3.0
+ */
+@ApiStatus.AvailableSince("0.3.0")
+public final class EventStream {
+
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final Executor WORKERS = Workers.create("xpdy-sse-");
+
+    @Contract("-> new")
+    public static @NotNull Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates an event stream with the default settings
+     * @see #builder()
+     */
+    @Contract("-> new")
+    public static @NotNull EventStream create() {
+        return builder().build();
+    }
+
+    private static void appendField(@NotNull StringBuilder sb, @NotNull String name, @NotNull String value) {
+        for (int i=0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\r' || c == '\n' || c == '\0')
+                throw new IllegalArgumentException("Event " + name + " may not contain line breaks or NUL");
+        }
+        sb.append(name).append(": ").append(value).append('\n');
+    }
+
+    private static void appendLines(@NotNull StringBuilder sb, @NotNull String prefix, @NotNull String text) {
+        int start = 0;
+        int len = text.length();
+        for (int i=0; i < len; i++) {
+            char c = text.charAt(i);
+            if (c != '\r' && c != '\n') continue;
+            sb.append(prefix).append(text, start, i).append('\n');
+            if (c == '\r' && i + 1 < len && text.charAt(i + 1) == '\n') i++;
+            start = i + 1;
+        }
+        sb.append(prefix).append(text, start, len).append('\n');
+    }
+
+    //
+
+    private final long heartbeatNanos;
+    private final long writeTimeoutNanos;
+    private final int maxBuffered;
+    private final Object lock = new Object();
+    private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+    private final List<Runnable> closeListeners = new ArrayList<>(1);
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private int buffered = 0;               // Includes the chunk being written
+    private OutputStream out = null;
+    private Runnable abort = null;
+    private boolean draining = false;
+    private boolean closed = false;
+    private IOException failure = null;
+    private ScheduledFuture<?> heartbeat = null;
+    private volatile long lastSent = System.nanoTime();
+    private volatile long writeStarted = 0L; // 0 while no write is in progress
+
+    private EventStream(long heartbeatNanos, long writeTimeoutNanos, int maxBuffered) {
+        this.heartbeatNanos = heartbeatNanos;
+        this.writeTimeoutNanos = writeTimeoutNanos;
+        this.maxBuffered = maxBuffered;
+    }
+
+    //
+
+    /**
+     * Provides a body which serves this stream. A stream may only be served once.
+     */
+    @Contract("-> new")
+    public @NotNull Body body() {
+        return new EventStreamBody(this);
+    }
+
+    /**
+     * Sends an unnamed event
+     * @return False if the stream is closed
+     * @see #send(String, String, String)
+     */
+    public boolean send(@NotNull String data) {
+        return this.send(null, null, data);
+    }
+
+    /**
+     * Sends an event
+     * @return False if the stream is closed
+     * @see #send(String, String, String)
+     */
+    public boolean send(@Nullable String event, @NotNull String data) {
+        return this.send(null, event, data);
+    }
+
+    /**
+     * Sends an event
+     * @param id The event ID, which the client sends back as {@code Last-Event-ID} when reconnecting
+     * @param event The event name, or null for the default ({@code message})
+     * @param data The event data. May span multiple lines.
+     * @return False if the stream is closed, including if it was closed by this call because the client is
+     *         not keeping up
+     * @throws IllegalArgumentException The ID or name contains a line break or NUL
+     */
+    public boolean send(@Nullable String id, @Nullable String event, @NotNull String data) {
+        StringBuilder sb = new StringBuilder(data.length() + 16);
+        if (id != null) appendField(sb, "id", id);
+        if (event != null) appendField(sb, "event", event);
+        appendLines(sb, "data: ", data);
+        sb.append('\n');
+        return this.enqueue(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a comment, which is ignored by clients
+     * @return False if the stream is closed
+     */
+    public boolean comment(@NotNull String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 4);
+        appendLines(sb, ": ", text);
+        sb.append('\n');
+        return this.enqueue(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The number of bytes which have been sent but not yet written to the client
+     */
+    public int buffered() {
+        synchronized (this.lock) {
+            return this.buffered;
+        }
+    }
+
+    public boolean isOpen() {
+        synchronized (this.lock) {
+            return !this.closed;
+        }
+    }
+
+    /**
+     * Closes the stream once all events sent so far have been written
+     */
+    public void close() {
+        this.close(null);
+    }
+
+    /**
+     * Registers an action to run once the stream is closed, whether by {@link #close()}, by the client
+     * disconnecting or because the client is not keeping up. The action runs on the thread which closed the
+     * stream and should not block. If the stream is already closed, the action runs immediately.
+     */
+    public void onClose(@NotNull Runnable action) {
+        Objects.requireNonNull(action, "action");
+        synchronized (this.lock) {
+            if (!this.closed) {
+                this.closeListeners.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    //
+
+    /**
+     * Begins writing events to the given stream, which is closed once this event stream is closed
+     * @param abort Called if the client is dropped (for falling behind, or stalling a write), to abandon the
+     *              connection without waiting on any write which is in progress. Runs on a worker thread.
+     * @return A stage which completes once the stream has been closed, or fails as soon as the client is dropped
+     * @throws IllegalStateException This event stream is already being served
+     */
+    @NotNull CompletionStage<Void> attach(
+            @NotNull OutputStream out,
+            @NotNull Runnable abort
+    ) throws IllegalStateException {
+        synchronized (this.lock) {
+            if (this.out != null) throw new IllegalStateException("Event stream is already being served");
+            this.out = out;
+            this.abort = abort;
+            this.lastSent = System.nanoTime();
+            if (!this.closed) {
+                // Checked twice per interval, so a tick landing just short of the deadline delays by at most half
+                long period = Math.max(Math.min(this.heartbeatNanos, this.writeTimeoutNanos) / 2L, 1L);
+                this.heartbeat = Heartbeats.SCHEDULER.scheduleAtFixedRate(this::tick, period, period, TimeUnit.NANOSECONDS);
+            }
+            this.draining = true;
+        }
+        WORKERS.execute(this::start);
+        return this.done;
+    }
+
+    private boolean enqueue(byte @NotNull [] bytes) {
+        synchronized (this.lock) {
+            if (this.closed) return false;
+            // A single event is accepted regardless of size, so long as nothing else is pending
+            if (this.buffered == 0 || this.buffered + bytes.length <= this.maxBuffered) {
+                this.queue.add(bytes);
+                this.buffered += bytes.length;
+                this.lastSent = System.nanoTime();
+                if (this.out != null && !this.draining) {
+                    this.draining = true;
+                    WORKERS.execute(this::drain);
+                }
+                return true;
+            }
+        }
+        this.close(new IOException("Client is not keeping up with the event stream"));
+        return false;
+    }
+
+    private void close(@Nullable IOException failure) {
+        Runnable[] listeners;
+        Runnable abort = null;
+        ScheduledFuture<?> heartbeat = null;
+        synchronized (this.lock) {
+            if (this.closed) return;
+            this.closed = true;
+            if (failure != null) {
+                // Pending events are dropped; a chunk being written is still counted until its write ends
+                this.failure = failure;
+                byte[] event;
+                while ((event = this.queue.poll()) != null) this.buffered -= event.length;
+                if (this.out != null) {
+                    abort = this.abort;
+                    heartbeat = this.heartbeat;
+                    this.heartbeat = null;
+                }
+            }
+            if (this.out != null && !this.draining) {
+                this.draining = true;
+                WORKERS.execute(this::drain);
+            }
+            listeners = this.closeListeners.toArray(new Runnable[0]);
+            this.closeListeners.clear();
+        }
+        if (abort != null) {
+            // A write to a stalled client may never return, so the connection is dropped without waiting on it
+            if (heartbeat != null) heartbeat.cancel(false);
+            final Runnable dropConnection = abort;
+            WORKERS.execute(() -> {
+                this.done.completeExceptionally(failure);
+                dropConnection.run();
+            });
+        }
+        for (Runnable listener : listeners) listener.run();
+    }
+
+    /**
+     * Runs on the shared scheduler
+     */
+    private void tick() {
+        long now = System.nanoTime();
+        long started = this.writeStarted;
+        if (started != 0L && now - started > this.writeTimeoutNanos) {
+            this.close(new IOException("Timed out writing to the event stream"));
+        } else if (now - this.lastSent >= this.heartbeatNanos) {
+            this.enqueue(HEARTBEAT);
+        }
+    }
+
+    /**
+     * Sends the response head, then drains any events sent before the stream was served
+     */
+    private void start() {
+        try {
+            this.out.flush();
+        } catch (IOException e) {
+            this.close(e);
+        }
+        this.drain();
+    }
+
+    /**
+     * Writes pending events until none remain. Only one thread drains at a time.
+     */
+    private void drain() {
+        final OutputStream out = this.out;
+        while (true) {
+            byte[] chunk;
+            synchronized (this.lock) {
+                if (this.queue.isEmpty() || this.failure != null) {
+                    if (this.closed) break;
+                    this.draining = false;
+                    return;
+                }
+                chunk = this.poll();
+            }
+
+            this.writeStarted = System.nanoTime();
+            try {
+                out.write(chunk);
+                out.flush();
+            } catch (IOException e) {
+                this.close(e);
+            } finally {
+                this.writeStarted = 0L;
+            }
+
+            synchronized (this.lock) {
+                this.buffered -= chunk.length;
+            }
+        }
+        this.finish();
+    }
+
+    /**
+     * Removes all pending events from the queue as a single array
+     */
+    private byte @NotNull [] poll() {
+        if (this.queue.size() == 1) return this.queue.poll();
+        int size = 0;
+        for (byte[] event : this.queue) size += event.length;
+        byte[] ret = new byte[size];
+        int pos = 0;
+        byte[] event;
+        while ((event = this.queue.poll()) != null) {
+            System.arraycopy(event, 0, ret, pos, event.length);
+            pos += event.length;
+        }
+        return ret;
+    }
+
+    private void finish() {
+        IOException failure;
+        ScheduledFuture<?> heartbeat;
+        synchronized (this.lock) {
+            failure = this.failure;
+            heartbeat = this.heartbeat;
+            this.heartbeat = null;
+        }
+        if (heartbeat != null) heartbeat.cancel(false);
+
+        if (failure == null) {
+            try {
+                this.out.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        if (failure == null) {
+            this.done.complete(null);
+        } else {
+            this.done.completeExceptionally(failure);
+        }
+    }
+
+    //
+
+    public static final class Builder {
+
+        private Duration heartbeat = Duration.ofSeconds(15L);
+        private Duration writeTimeout = Duration.ofSeconds(30L);
+        private int maxBuffered = 65536;
+
+        private Builder() { }
+
+        //
+
+        /**
+         * Sets how long the stream may be idle before a comment is sent to keep the connection alive.
+         * Default is 15 seconds.
+         */
+        @Contract("_ -> this")
+        public @NotNull Builder heartbeat(@NotNull Duration heartbeat) {
+            if (heartbeat.isNegative() || heartbeat.isZero())
+                throw new IllegalArgumentException("Heartbeat interval must be positive (got " + heartbeat + ")");
+            this.heartbeat = heartbeat;
+            return this;
+        }
+
+        /**
+         * Sets how long a single write to the client may take before the client is considered a slow consumer.
+         * Writes are checked at least twice per heartbeat. Default is 30 seconds.
+         */
+        @Contract("_ -> this")
+        public @NotNull Builder writeTimeout(@NotNull Duration writeTimeout) {
+            if (writeTimeout.isNegative() || writeTimeout.isZero())
+                throw new IllegalArgumentException("Write timeout must be positive (got " + writeTimeout + ")");
+            this.writeTimeout = writeTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of bytes which may be pending for the client before it is considered a
+         * slow consumer. Default is 64 KiB.
+         */
+        @Contract("_ -> this")
+        public @NotNull Builder maxBuffered(@Range(from=1, to=Integer.MAX_VALUE) int maxBuffered) {
+            if (maxBuffered < 1)
+                throw new IllegalArgumentException("Buffer limit must be positive (got " + maxBuffered + ")");
+            this.maxBuffered = maxBuffered;
+            return this;
+        }
+
+        @Contract("-> new")
+        public @NotNull EventStream build() {
+            return new EventStream(
+                    saturatedNanos(this.heartbeat),
+                    saturatedNanos(this.writeTimeout),
+                    this.maxBuffered
+            );
+        }
+
+        private static long saturatedNanos(@NotNull Duration duration) {
+            try {
+                return duration.toNanos();
+            } catch (ArithmeticException e) {
+                return Long.MAX_VALUE;
+            }
+        }
+
+    }
+
+    /**
+     * Holds the scheduler shared by every event stream, created on first use
+     */
+    private static final class Heartbeats {
+
+        static final ScheduledThreadPoolExecutor SCHEDULER = create();
+
+        private static @NotNull ScheduledThreadPoolExecutor create() {
+            ScheduledThreadPoolExecutor ret = new ScheduledThreadPoolExecutor(1, (Runnable r) -> {
+                Thread t = new Thread(r, "xpdy-sse-heartbeat");
+                t.setDaemon(true);
+                return t;
+            });
+            ret.setRemoveOnCancelPolicy(true);
+            return ret;
+        }
+
+    }
+
+}
@@ -0,0 +1,92 @@
+package io.github.wasabithumb.xpdy.payload.body;
+
+import io.github.wasabithumb.xpdy.misc.MimeType;
+import io.github.wasabithumb.xpdy.misc.MimeTypes;
+import io.github.wasabithumb.xpdy.misc.io.PipeInputStream;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Body which serves an {@link EventStream}. The server {@link #attach(OutputStream, Runnable) attaches} the stream to the
+ * response without holding a thread; {@link #pipe(OutputStream)} instead blocks until the stream is closed.
+ * @see EventStream#body()
+ */
+@ApiStatus.Internal
+public final class EventStreamBody implements Body {
+
+    private final EventStream events;
+
+    EventStreamBody(@NotNull EventStream events) {
+        this.events = events;
+    }
+
+    //
+
+    @Override
+    public @Range(from = -1, to = Long.MAX_VALUE) long size() {
+        return -1L;
+    }
+
+    @Override
+    public @NotNull @MimeType String type() {
+        return MimeTypes.EVENT_STREAM;
+    }
+
+    /**
+     * Begins writing events to the given stream, which is closed once the event stream is closed
+     * @param abort Called if the client is dropped, to abandon the connection without waiting on any write
+     *              which is in progress
+     * @return A stage which completes once the stream has been closed, or fails as soon as the client is dropped
+     * @throws IllegalStateException The event stream is already being served
+     */
+    public @NotNull CompletionStage<Void> attach(
+            @NotNull OutputStream out,
+            @NotNull Runnable abort
+    ) throws IllegalStateException {
+        return this.events.attach(out, abort);
+    }
+
+    @Override
+    public @NotNull InputStream stream() {
+        return new PipeInputStream(this::pipe);
+    }
+
+    @Override
+    public void pipe(@NotNull OutputStream os) throws IOException {
+        // The caller owns the stream, so it is only flushed when the event stream closes
+        OutputStream target = new FilterOutputStream(os) {
+            @Override
+            public void write(byte @NotNull [] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                this.out.flush();
+            }
+        };
+
+        try {
+            // The caller's stream is not ours to abandon; a dropped client instead fails this call
+            this.events.attach(target, () -> { }).toCompletableFuture().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.events.close();
+            throw new InterruptedIOException("Interrupted while serving event stream");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            throw new IOException("Failed to serve event stream", cause);
+        }
+    }
+
+}
@@ -1,9 +1,10 @@
 package io.github.wasabithumb.xpdy.payload.body;
 
 import com.sun.net.httpserver.Headers;
-import com.sun.net.httpserver.HttpExchange;
 import io.github.wasabithumb.xpdy.misc.MimeType;
 import io.github.wasabithumb.xpdy.misc.MimeTypes;
+import io.github.wasabithumb.xpdy.misc.io.LimitedInputStream;
+import io.github.wasabithumb.xpdy.transport.TransportExchange;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Range;
@@ -11,13 +12,26 @@ import org.jetbrains.annotations.Range;
 import java.io.InputStream;
 
 @ApiStatus.Internal
-record ExchangeBody(
-        @NotNull HttpExchange handle
-) implements Body {
+final class ExchangeBody implements Body {
+
+    private final TransportExchange handle;
+    private final long maxSize;
+    private InputStream stream = null;
+
+    ExchangeBody(@NotNull TransportExchange handle, long maxSize) {
+        this.handle = handle;
+        this.maxSize = maxSize;
+    }
+
+    ExchangeBody(@NotNull TransportExchange handle) {
+        this(handle, -1L);
+    }
+
+    //
 
     @Override
     public @Range(from = -1, to = Long.MAX_VALUE) long size() {
-        Headers h = this.handle.getRequestHeaders();
+        Headers h = this.handle.requestHeaders();
         String text = h.getFirst("Content-Length");
         if (text != null) {
             try {
@@ -31,14 +45,21 @@ record ExchangeBody(
     @Override
     @SuppressWarnings("PatternValidation")
     public @NotNull @MimeType String type() {
-        Headers h = this.handle.getRequestHeaders();
+        Headers h = this.handle.requestHeaders();
         String text = h.getFirst("Content-Type");
         return (text == null) ? MimeTypes.BYTES : text;
     }
 
     @Override
-    public @NotNull InputStream stream() {
-        return this.handle.getRequestBody();
+    public synchronized @NotNull InputStream stream() {
+        InputStream stream = this.stream;
+        if (stream == null) {
+            stream = this.handle.requestBody();
+            // Counted across calls, since every call reads from the same underlying stream
+            if (this.maxSize != -1L) stream = new LimitedInputStream(stream, this.maxSize);
+            this.stream = stream;
+        }
+        return stream;
     }
 
 }
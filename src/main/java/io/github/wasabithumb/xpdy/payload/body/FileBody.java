@@ -0,0 +1,44 @@
+package io.github.wasabithumb.xpdy.payload.body;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * A {@link Body} backed by a file on the default filesystem. When a file body is served, the transport may
+ * copy from the file directly to the connection (for instance with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel) transferTo}) instead of streaming it through the heap.
+ * A file body may cover only part of its file, beginning at {@link #offset()} and spanning {@link #size()} bytes.
+ * @since 0.3.0
+ * @see Body#file(Path)
+ */
+@ApiStatus.AvailableSince("0.3.0")
+@ApiStatus.NonExtendable
+public interface FileBody extends SeekableBody {
+
+    /**
+     * The file backing this body
+     */
+    @NotNull Path path();
+
+    /**
+     * The position within the file at which this body begins
+     */
+    @Range(from=0, to=Long.MAX_VALUE) long offset();
+
+    /**
+     * Opens a new channel for reading the file. The caller is responsible for closing the channel.
+     */
+    @NotNull FileChannel channel() throws IOException;
+
+    @Override
+    @NotNull FileBody slice(
+            @Range(from=0, to=Long.MAX_VALUE) long offset,
+            @Range(from=0, to=Long.MAX_VALUE) long length
+    );
+
+}
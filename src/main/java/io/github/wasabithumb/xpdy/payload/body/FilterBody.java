@@ -4,11 +4,13 @@ import io.github.wasabithumb.xpdy.except.BodyFormatException;
 import io.github.wasabithumb.xpdy.misc.MimeType;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Range;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.time.Instant;
 import java.util.Map;
 
 @ApiStatus.Internal
@@ -31,6 +33,16 @@ public abstract class FilterBody implements Body {
         return this.backing.type();
     }
 
+    @Override
+    public @Nullable String etag() {
+        return this.backing.etag();
+    }
+
+    @Override
+    public @Nullable Instant lastModified() {
+        return this.backing.lastModified();
+    }
+
     @Override
     public @NotNull InputStream stream() throws IOException {
         return this.backing.stream();
@@ -4,10 +4,12 @@ import io.github.wasabithumb.xpdy.misc.io.IOSupplier;
 import io.github.wasabithumb.xpdy.misc.MimeType;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Range;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Instant;
 
 @ApiStatus.Internal
 final class InputStreamBody extends StreamBody {
@@ -22,6 +24,17 @@ final class InputStreamBody extends StreamBody {
         this.streamSource = streamSource;
     }
 
+    public InputStreamBody(
+            @Range(from = -1, to = Long.MAX_VALUE) long size,
+            @NotNull @MimeType String type,
+            @Nullable String etag,
+            @Nullable Instant lastModified,
+            @NotNull IOSupplier<InputStream> streamSource
+    ) {
+        super(size, type, etag, lastModified);
+        this.streamSource = streamSource;
+    }
+
     //
 
     @Override
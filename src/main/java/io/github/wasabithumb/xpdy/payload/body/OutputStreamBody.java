@@ -5,11 +5,13 @@ import io.github.wasabithumb.xpdy.misc.MimeType;
 import io.github.wasabithumb.xpdy.misc.io.PipeInputStream;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Range;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.time.Instant;
 
 @ApiStatus.Internal
 final class OutputStreamBody extends StreamBody {
@@ -24,6 +26,17 @@ final class OutputStreamBody extends StreamBody {
         this.streamSource = streamSource;
     }
 
+    public OutputStreamBody(
+            @Range(from = -1, to = Long.MAX_VALUE) long size,
+            @NotNull @MimeType String type,
+            @Nullable String etag,
+            @Nullable Instant lastModified,
+            @NotNull IOConsumer<OutputStream> streamSource
+    ) {
+        super(size, type, etag, lastModified);
+        this.streamSource = streamSource;
+    }
+
     //
 
 
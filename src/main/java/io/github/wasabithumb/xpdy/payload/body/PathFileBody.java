@@ -0,0 +1,103 @@
+package io.github.wasabithumb.xpdy.payload.body;
+
+import io.github.wasabithumb.xpdy.misc.EntityTag;
+import io.github.wasabithumb.xpdy.misc.MimeType;
+import io.github.wasabithumb.xpdy.misc.MimeTypes;
+import io.github.wasabithumb.xpdy.misc.MimeUtil;
+import io.github.wasabithumb.xpdy.misc.io.BoundedInputStream;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+
+@ApiStatus.Internal
+record PathFileBody(
+        @NotNull Path path,
+        @Range(from=0, to=Long.MAX_VALUE) long offset,
+        @Range(from=0, to=Long.MAX_VALUE) long size,
+        @NotNull @MimeType String type,
+        @NotNull Instant lastModified,
+        @NotNull String etag
+) implements FileBody {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    static @NotNull PathFileBody of(@NotNull Path path) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attrs.size();
+        Instant lastModified = attrs.lastModifiedTime().toInstant();
+
+        String type = MimeUtil.detect(path);
+        if (type == null) type = MimeTypes.BYTES;
+
+        // Same scheme as nginx: modification time and size, in hex
+        String etag = EntityTag.format(Long.toHexString(lastModified.toEpochMilli()) + "-" + Long.toHexString(size), false);
+
+        //noinspection PatternValidation
+        return new PathFileBody(path, 0L, size, type, lastModified, etag);
+    }
+
+    //
+
+    @Override
+    public @NotNull FileChannel channel() throws IOException {
+        return FileChannel.open(this.path, StandardOpenOption.READ);
+    }
+
+    @Override
+    public @NotNull PathFileBody slice(long offset, long length) {
+        if (offset < 0L || length < 0L || offset > this.size || length > this.size - offset)
+            throw new IndexOutOfBoundsException("Region " + offset + "+" + length + " is out of bounds for size " + this.size);
+        return new PathFileBody(this.path, this.offset + offset, length, this.type, this.lastModified, this.etag);
+    }
+
+    @Override
+    public @NotNull InputStream stream() throws IOException {
+        FileChannel ch = this.channel();
+        try {
+            ch.position(this.offset);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+        return new BoundedInputStream(Channels.newInputStream(ch), this.size);
+    }
+
+    @Override
+    public void pipe(@NotNull OutputStream os) throws IOException {
+        try (FileChannel ch = this.channel()) {
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(this.size, 1L)));
+            byte[] arr = buf.array();
+            long pos = this.offset;
+            long end = this.offset + this.size;
+            int read;
+            while (pos < end) {
+                buf.clear().limit((int) Math.min(buf.capacity(), end - pos));
+                if ((read = ch.read(buf, pos)) == -1) break;
+                os.write(arr, 0, read);
+                pos += read;
+            }
+            os.flush();
+        }
+    }
+
+    @Override
+    public byte @NotNull [] bytes() throws IOException {
+        if (this.offset == 0L) return Files.readAllBytes(this.path);
+        try (InputStream is = this.stream()) {
+            return is.readAllBytes();
+        }
+    }
+
+}
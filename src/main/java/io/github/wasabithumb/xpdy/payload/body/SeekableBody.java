@@ -0,0 +1,31 @@
+package io.github.wasabithumb.xpdy.payload.body;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+/**
+ * A {@link Body} of known size which can provide any contiguous region of itself without reading the bytes
+ * before that region. Static content served as a seekable body supports HTTP range requests.
+ * @since 0.3.0
+ */
+@ApiStatus.AvailableSince("0.3.0")
+@ApiStatus.NonExtendable
+public interface SeekableBody extends Body {
+
+    /**
+     * Provides a body holding the given region of this body. The slice has the same type and validators as
+     * this body.
+     * @param offset Offset of the first byte of the region
+     * @param length Number of bytes in the region
+     * @throws IndexOutOfBoundsException The region does not lie within this body
+     */
+    @NotNull SeekableBody slice(
+            @Range(from=0, to=Long.MAX_VALUE) long offset,
+            @Range(from=0, to=Long.MAX_VALUE) long length
+    );
+
+    @Override
+    @Range(from=0, to=Long.MAX_VALUE) long size();
+
+}
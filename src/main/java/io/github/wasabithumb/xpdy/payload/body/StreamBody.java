@@ -3,20 +3,36 @@ package io.github.wasabithumb.xpdy.payload.body;
 import io.github.wasabithumb.xpdy.misc.MimeType;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Range;
 
+import java.time.Instant;
+
 @ApiStatus.Internal
 abstract class StreamBody implements Body {
 
     private final long size;
     private final String type;
+    private final String etag;
+    private final Instant lastModified;
 
     protected StreamBody(
             @Range(from=-1, to=Long.MAX_VALUE) long size,
-            @NotNull @MimeType String type
+            @NotNull @MimeType String type,
+            @Nullable String etag,
+            @Nullable Instant lastModified
     ) {
         this.size = size;
         this.type = type;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    protected StreamBody(
+            @Range(from=-1, to=Long.MAX_VALUE) long size,
+            @NotNull @MimeType String type
+    ) {
+        this(size, type, null, null);
     }
 
     //
@@ -31,4 +47,14 @@ abstract class StreamBody implements Body {
         return this.type;
     }
 
+    @Override
+    public @Nullable String etag() {
+        return this.etag;
+    }
+
+    @Override
+    public @Nullable Instant lastModified() {
+        return this.lastModified;
+    }
+
 }
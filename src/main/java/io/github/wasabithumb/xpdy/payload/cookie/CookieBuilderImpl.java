@@ -9,20 +9,41 @@ import org.jetbrains.annotations.Nullable;
 import java.time.Instant;
 import java.util.Optional;
 import java.util.OptionalInt;
-import java.util.regex.Pattern;
 
 @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
 @ApiStatus.Internal
 final class CookieBuilderImpl implements Cookie.Builder {
 
-    private static final Pattern NAME_PATTERN = Pattern.compile(
-            "^[\\x21\\x23-\\x27\\x2A\\x2B\\x2D\\x2E\\x30-\\x39\\x41-\\x5A\\x5E-\\x7A\\x7C\\x7E]+$"
-    );
+    /**
+     * Characters permitted in a cookie name (RFC 6265 {@code token}), as a 128-bit set
+     */
+    private static final long NAME_CHARS_LO = 0x03FF6CFA00000000L;
+    private static final long NAME_CHARS_HI = 0x57FFFFFFC7FFFFFEL;
+
+    /**
+     * Checks if the given region of a string is a valid cookie name
+     */
+    static boolean isName(@NotNull CharSequence cs, int start, int end) {
+        if (start >= end) return false;
+        for (int i=start; i < end; i++) {
+            char c = cs.charAt(i);
+            long set;
+            if (c < 64) {
+                set = NAME_CHARS_LO;
+            } else if (c < 128) {
+                set = NAME_CHARS_HI;
+            } else {
+                return false;
+            }
+            if ((set & (1L << c)) == 0L) return false;
+        }
+        return true;
+    }
 
     @Contract("null -> null")
     static @Nullable @CookieName String checkName(@Nullable String name) {
         if (name == null) return null;
-        if (!NAME_PATTERN.matcher(name).matches()) return null;
+        if (!isName(name, 0, name.length())) return null;
         //noinspection PatternValidation
         return name;
     }
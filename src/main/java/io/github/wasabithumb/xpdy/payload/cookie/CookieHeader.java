@@ -0,0 +1,112 @@
+package io.github.wasabithumb.xpdy.payload.cookie;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * An index over the raw {@code Cookie} headers of a request. Each pair is recorded as offsets into its header,
+ * so indexing allocates no strings; names are only extracted, and values only decoded, when accessed.
+ * Pairs with an invalid name are not indexed.
+ */
+@ApiStatus.Internal
+final class CookieHeader {
+
+    private static final int STRIDE = 4;    // Header index, name start, '=' (or end), end
+
+    static @Nullable CookieHeader of(@NotNull Map<String, ? extends Collection<? extends String>> headers) {
+        Collection<? extends String> list = headers.get("Cookie");
+        if (list == null || list.isEmpty()) return null;
+
+        String[] sources = list.toArray(new String[0]);
+        int[] spans = new int[STRIDE * 8];
+        int count = 0;
+
+        for (int s=0; s < sources.length; s++) {
+            String str = sources[s];
+            int len = str.length();
+            int start = 0;
+            while (start < len) {
+                int end = str.indexOf(';', start);
+                if (end == -1) end = len;
+
+                int eq = str.indexOf('=', start);
+                if (eq == -1 || eq > end) eq = end;
+
+                if (CookieBuilderImpl.isName(str, start, eq)) {
+                    if (spans.length == STRIDE * count) spans = Arrays.copyOf(spans, spans.length << 1);
+                    int i = STRIDE * count++;
+                    spans[i] = s;
+                    spans[i + 1] = start;
+                    spans[i + 2] = eq;
+                    spans[i + 3] = end;
+                }
+
+                start = end + 1;
+                if (start < len && str.charAt(start) == ' ') start++;
+            }
+        }
+
+        return count == 0 ? null : new CookieHeader(sources, spans, count);
+    }
+
+    //
+
+    private final String[] sources;
+    private final int[] spans;
+    private final int count;
+
+    private CookieHeader(@NotNull String[] sources, int[] spans, int count) {
+        this.sources = sources;
+        this.spans = spans;
+        this.count = count;
+    }
+
+    //
+
+    int count() {
+        return this.count;
+    }
+
+    /**
+     * Finds the pair with the given name. When a name appears more than once, the last pair wins.
+     * @param ignoreCase If true, a pair whose name matches only when ignoring case is accepted if no pair
+     *                   matches exactly
+     * @return The index of the pair, or -1 if not found
+     */
+    int find(@NotNull String name, boolean ignoreCase) {
+        final int len = name.length();
+        int loose = -1;
+        for (int n = this.count - 1; n >= 0; n--) {
+            int i = STRIDE * n;
+            int start = this.spans[i + 1];
+            if (this.spans[i + 2] - start != len) continue;
+
+            String str = this.sources[this.spans[i]];
+            if (str.startsWith(name, start)) return n;
+            if (ignoreCase && loose == -1 && str.regionMatches(true, start, name, 0, len)) loose = n;
+        }
+        return loose;
+    }
+
+    @SuppressWarnings("PatternValidation")
+    @NotNull @CookieName String name(int n) {
+        int i = STRIDE * n;
+        return this.sources[this.spans[i]].substring(this.spans[i + 1], this.spans[i + 2]);
+    }
+
+    /**
+     * Provides a cookie for the pair at the given index, whose value is decoded when first accessed
+     */
+    @NotNull Cookie cookie(int n, @NotNull @CookieName String name) {
+        int i = STRIDE * n;
+        int eq = this.spans[i + 2];
+        int end = this.spans[i + 3];
+        return new HeaderCookie(name, this.sources[this.spans[i]], Math.min(eq + 1, end), end);
+    }
+
+}
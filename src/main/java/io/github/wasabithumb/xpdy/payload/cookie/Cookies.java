@@ -3,6 +3,7 @@ package io.github.wasabithumb.xpdy.payload.cookie;
 import com.sun.net.httpserver.Headers;
 import io.github.wasabithumb.xpdy.except.MissingCookieException;
 import io.github.wasabithumb.xpdy.misc.Tristate;
+import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -31,7 +32,25 @@ import java.util.function.Supplier;
  */
 public final class Cookies {
 
+    /**
+     * Creates a cookie jar holding the cookies sent in the {@code Cookie} headers of a request. The headers are
+     * not read into the jar until it is first modified or enumerated; until then, looking up a cookie by name
+     * scans the headers directly. Values are decoded when first accessed, and a value which is not validly
+     * percent-encoded is kept as sent rather than failing the lookup.
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    public static @NotNull Cookies deferred(@NotNull Map<String, ? extends Collection<? extends String>> headers) {
+        Cookies ret = new Cookies();
+        ret.deferred = headers;
+        return ret;
+    }
+
+    //
+
     private final Map<String, Cookie> map;
+    private Map<String, ? extends Collection<? extends String>> deferred = null;
+    private CookieHeader index = null;
 
     public Cookies(int initialCapacity) {
         this.map = new HashMap<>(initialCapacity);
@@ -47,6 +66,8 @@ public final class Cookies {
      * Clears all stored cookies.
      */
     public void clear() {
+        this.deferred = null;
+        this.index = null;
         this.map.clear();
     }
 
@@ -54,7 +75,7 @@ public final class Cookies {
      * Returns a set containing all stored cookie names.
      */
     public @NotNull @Unmodifiable Set<String> names() {
-        return Set.copyOf(this.map.keySet());
+        return Set.copyOf(this.map().keySet());
     }
 
     //
@@ -66,6 +87,7 @@ public final class Cookies {
      * is returned.
      */
     public @Nullable Cookie get(@NotNull String name, boolean ignoreCase) {
+        if (this.deferred != null) return this.findCookie(name, ignoreCase);
         Cookie ret = this.map.get(name);
         if (ret != null) return ret;
         if (ignoreCase) {
@@ -143,7 +165,7 @@ public final class Cookies {
      * that cookie is overwritten.
      */
     public void set(@NotNull Cookie cookie) {
-        this.map.put(cookie.name(), cookie);
+        this.map().put(cookie.name(), cookie);
     }
 
     /**
@@ -156,7 +178,7 @@ public final class Cookies {
             @NotNull String value,
             @NotNull Supplier<? extends Cookie.Builder> generator
     ) {
-        this.map.compute(
+        this.map().compute(
                 name,
                 (String ignored, Cookie existing) -> {
                     Cookie.Builder cb;
@@ -185,6 +207,28 @@ public final class Cookies {
 
     //
 
+    private @NotNull Map<String, Cookie> map() {
+        if (this.deferred != null) {
+            CookieHeader index = this.index();
+            this.deferred = null;
+            this.index = null;
+            if (index != null) this.readCookie(index);
+        }
+        return this.map;
+    }
+
+    /**
+     * Indexes the deferred headers, if not already indexed
+     */
+    private @Nullable CookieHeader index() {
+        CookieHeader index = this.index;
+        if (index == null) {
+            index = CookieHeader.of(this.deferred);
+            this.index = index;
+        }
+        return index;
+    }
+
     /**
      * Reads cookies into internal state
      * @param headers Headers to read cookie data from
@@ -218,47 +262,32 @@ public final class Cookies {
     }
 
     private void readCookie(@NotNull Map<String, ? extends Collection<? extends String>> headers) {
-        Iterable<? extends String> list = headers.get("Cookie");
-        if (list == null) return;
-
-        for (String str : list) {
-            int len = str.length();
-            if (len == 0) continue;
-
-            int start = 0;
-            for (int i=0; i < len; i++) {
-                if (str.charAt(i) != ';') continue;
-                int a = start;
-                start = i + 1;
-                if (start < len && str.charAt(start) == ' ') start++;
-                if (i != a) this.readCookieSingle(str.substring(a, i));
-            }
-            if (start != len)
-                this.readCookieSingle(str.substring(start));
-        }
+        CookieHeader index = CookieHeader.of(headers);
+        if (index != null) this.readCookie(index);
     }
 
-    private void readCookieSingle(@NotNull String single) {
-        int whereEq = single.indexOf('=');
-        String name, value;
-        if (whereEq == -1) {
-            name = single;
-            value = "";
-        } else {
-            name = single.substring(0, whereEq);
-            value = single.substring(whereEq + 1);
+    /**
+     * Stores every cookie of the index. Values are decoded when first accessed; a value which is not validly
+     * percent-encoded is kept as sent.
+     */
+    private void readCookie(@NotNull CookieHeader index) {
+        Map<String, Cookie> map = this.map();
+        for (int n=0; n < index.count(); n++) {
+            String name = index.name(n);
+            map.put(name, index.cookie(n, name));
         }
+    }
 
-        name = Cookie.checkName(name);
-        if (name == null) return;
-        value = URLDecoder.decode(value, StandardCharsets.UTF_8);
-
-        //noinspection PatternValidation
-        Cookie c = Cookie.of(
-                name,
-                value
-        );
-        this.set(c);
+    /**
+     * Finds a single cookie within the deferred {@code Cookie} headers, with the same semantics as looking it up
+     * after {@link #readCookie(Map) reading} the headers
+     */
+    private @Nullable Cookie findCookie(@NotNull String name, boolean ignoreCase) {
+        CookieHeader index = this.index();
+        if (index == null) return null;
+        int n = index.find(name, ignoreCase);
+        if (n == -1) return null;
+        return index.cookie(n, index.name(n));
     }
 
     private void readSetCookie(@NotNull Map<String, ? extends Collection<? extends String>> headers) {
@@ -353,14 +382,14 @@ public final class Cookies {
      * {@link Headers}. Any existing {@code Set-Cookie} headers will be overwritten.
      */
     public void write(@NotNull Map<String, List<String>> headers) {
-        int size = this.map.size();
+        int size = this.map().size();
         if (size == 0) {
             headers.remove("Set-Cookie");
             return;
         }
 
         List<String> ret = new ArrayList<>(size);
-        for (Cookie c : this.map.values()) {
+        for (Cookie c : this.map().values()) {
             ret.add(this.writeSingle(c));
         }
 
@@ -368,17 +397,26 @@ public final class Cookies {
     }
 
     private @NotNull String writeSingle(@NotNull Cookie cookie) {
+        // Built cookies are immutable and often reused across responses, so they keep their formatted header
+        if (cookie instanceof DeepCookie deep) return deep.header();
+        return format(cookie);
+    }
+
+    /**
+     * Formats the value of a {@code Set-Cookie} header for the given cookie
+     */
+    static @NotNull String format(@NotNull Cookie cookie) {
         StringBuilder sb = new StringBuilder(cookie.name());
         sb.append('=').append(URLEncoder.encode(cookie.value(), StandardCharsets.UTF_8));
 
         if (cookie.isShallow())
             return sb.toString();
 
-        this.writeSingleProperties(cookie, sb);
+        writeSingleProperties(cookie, sb);
         return sb.toString();
     }
 
-    private void writeSingleProperties(@NotNull Cookie c, @NotNull StringBuilder sb) {
+    private static void writeSingleProperties(@NotNull Cookie c, @NotNull StringBuilder sb) {
         c.domain().ifPresent((String domain) -> sb.append("; Domain=").append(domain));
         c.expires().ifPresent((Instant expires) -> sb.append("; Expires=").append(CookieDate.format(expires)));
         c.maxAge().ifPresent((int maxAge) -> sb.append("; Max-Age=").append(maxAge));
@@ -398,7 +436,7 @@ public final class Cookies {
 
         sb.append("Cookies[");
 
-        for (Cookie c : this.map.values()) {
+        for (Cookie c : this.map().values()) {
             if (sep) sb.append(", ");
             sep = true;
 
@@ -2,21 +2,153 @@ package io.github.wasabithumb.xpdy.payload.cookie;
 
 import io.github.wasabithumb.xpdy.misc.Tristate;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
 
 import java.time.Instant;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalInt;
 
+@SuppressWarnings("OptionalUsedAsFieldOrParameterType")
 @ApiStatus.Internal
-record DeepCookie(
-        String                          name,
-        String                          value,
-        Optional<String>                domain,
-        Optional<Instant>               expires,
-        Tristate                        httpOnly,
-        OptionalInt                     maxAge,
-        Tristate                        partitioned,
-        Optional<String>                path,
-        Optional<Cookie.SameSitePolicy> sameSite,
-        Tristate                        secure
-) implements Cookie { }
+final class DeepCookie implements Cookie {
+
+    private final String                          name;
+    private final String                          value;
+    private final Optional<String>                domain;
+    private final Optional<Instant>               expires;
+    private final Tristate                        httpOnly;
+    private final OptionalInt                     maxAge;
+    private final Tristate                        partitioned;
+    private final Optional<String>                path;
+    private final Optional<Cookie.SameSitePolicy> sameSite;
+    private final Tristate                        secure;
+    private String                                header = null;
+
+    DeepCookie(
+            String                          name,
+            String                          value,
+            Optional<String>                domain,
+            Optional<Instant>               expires,
+            Tristate                        httpOnly,
+            OptionalInt                     maxAge,
+            Tristate                        partitioned,
+            Optional<String>                path,
+            Optional<Cookie.SameSitePolicy> sameSite,
+            Tristate                        secure
+    ) {
+        this.name        = name;
+        this.value       = value;
+        this.domain      = domain;
+        this.expires     = expires;
+        this.httpOnly    = httpOnly;
+        this.maxAge      = maxAge;
+        this.partitioned = partitioned;
+        this.path        = path;
+        this.sameSite    = sameSite;
+        this.secure      = secure;
+    }
+
+    //
+
+    /**
+     * The value of the {@code Set-Cookie} header for this cookie, formatted once
+     */
+    @NotNull String header() {
+        String header = this.header;
+        if (header == null) this.header = header = Cookies.format(this);
+        return header;
+    }
+
+    @Override
+    public @NotNull @CookieName String name() {
+        //noinspection PatternValidation
+        return this.name;
+    }
+
+    @Override
+    public @NotNull String value() {
+        return this.value;
+    }
+
+    @Override
+    public @NotNull Optional<String> domain() {
+        return this.domain;
+    }
+
+    @Override
+    public @NotNull Optional<Instant> expires() {
+        return this.expires;
+    }
+
+    @Override
+    public @NotNull Tristate httpOnly() {
+        return this.httpOnly;
+    }
+
+    @Override
+    public @NotNull OptionalInt maxAge() {
+        return this.maxAge;
+    }
+
+    @Override
+    public @NotNull Tristate partitioned() {
+        return this.partitioned;
+    }
+
+    @Override
+    public @NotNull Optional<String> path() {
+        return this.path;
+    }
+
+    @Override
+    public @NotNull Optional<SameSitePolicy> sameSite() {
+        return this.sameSite;
+    }
+
+    @Override
+    public @NotNull Tristate secure() {
+        return this.secure;
+    }
+
+    //
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.name, this.value, this.domain, this.expires, this.httpOnly,
+                this.maxAge, this.partitioned, this.path, this.sameSite, this.secure);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) return true;
+        if (obj instanceof DeepCookie other) {
+            return this.name.equals(other.name) &&
+                    this.value.equals(other.value) &&
+                    this.domain.equals(other.domain) &&
+                    this.expires.equals(other.expires) &&
+                    this.httpOnly.equals(other.httpOnly) &&
+                    this.maxAge.equals(other.maxAge) &&
+                    this.partitioned.equals(other.partitioned) &&
+                    this.path.equals(other.path) &&
+                    this.sameSite.equals(other.sameSite) &&
+                    this.secure.equals(other.secure);
+        }
+        return false;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "DeepCookie[name=" + this.name +
+                ", value=" + this.value +
+                ", domain=" + this.domain +
+                ", expires=" + this.expires +
+                ", httpOnly=" + this.httpOnly +
+                ", maxAge=" + this.maxAge +
+                ", partitioned=" + this.partitioned +
+                ", path=" + this.path +
+                ", sameSite=" + this.sameSite +
+                ", secure=" + this.secure + "]";
+    }
+
+}
@@ -0,0 +1,76 @@
+package io.github.wasabithumb.xpdy.payload.cookie;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A shallow cookie read from a {@code Cookie} header, whose value is decoded from the header on first access.
+ * A value which is not validly percent-encoded is kept as it appears in the header, so reading a cookie never
+ * fails. This equals any other shallow cookie with the same name and value.
+ */
+@ApiStatus.Internal
+final class HeaderCookie implements Cookie {
+
+    private final String name;
+    private final String source;
+    private final int start;
+    private final int end;
+    private String value = null;
+
+    HeaderCookie(@NotNull @CookieName String name, @NotNull String source, int start, int end) {
+        this.name = name;
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    //
+
+    @Override
+    public @NotNull @CookieName String name() {
+        return this.name;
+    }
+
+    @Override
+    public @NotNull String value() {
+        String value = this.value;
+        if (value == null) {
+            value = this.source.substring(this.start, this.end);
+            if (value.indexOf('%') != -1 || value.indexOf('+') != -1) {
+                try {
+                    value = URLDecoder.decode(value, StandardCharsets.UTF_8);
+                } catch (IllegalArgumentException ignored) {
+                    // Malformed percent-encoding; the raw value is kept
+                }
+            }
+            this.value = value;
+        }
+        return value;
+    }
+
+    @Override
+    public boolean isShallow() {
+        return true;
+    }
+
+    //
+
+    @Override
+    public int hashCode() {
+        return ShallowCookie.hashCode(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return ShallowCookie.equals(this, obj);
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "HeaderCookie[name=" + this.name + ", value=" + this.value() + "]";
+    }
+
+}
@@ -2,6 +2,7 @@ package io.github.wasabithumb.xpdy.payload.cookie;
 
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 @ApiStatus.Internal
 record ShallowCookie(
@@ -9,9 +10,38 @@ record ShallowCookie(
         @NotNull String value
 ) implements Cookie {
 
+    /**
+     * Hashes a shallow cookie by its name and value, consistently across shallow cookie implementations
+     */
+    static int hashCode(@NotNull Cookie cookie) {
+        return 31 * cookie.name().hashCode() + cookie.value().hashCode();
+    }
+
+    /**
+     * Checks whether a shallow cookie equals another object, which is the case when that object is any
+     * shallow cookie with the same name and value
+     */
+    static boolean equals(@NotNull Cookie cookie, @Nullable Object obj) {
+        if (obj == cookie) return true;
+        if (!(obj instanceof Cookie other) || !other.isShallow()) return false;
+        return cookie.name().equals(other.name()) && cookie.value().equals(other.value());
+    }
+
+    //
+
     @Override
     public boolean isShallow() {
         return true;
     }
 
+    @Override
+    public int hashCode() {
+        return hashCode(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return equals(this, obj);
+    }
+
 }
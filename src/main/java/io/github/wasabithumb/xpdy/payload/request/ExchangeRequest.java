@@ -1,11 +1,9 @@
 package io.github.wasabithumb.xpdy.payload.request;
 
 import com.sun.net.httpserver.Headers;
-import com.sun.net.httpserver.HttpExchange;
-import io.github.wasabithumb.xpdy.except.BodyFormatException;
-import io.github.wasabithumb.xpdy.misc.io.URLEncodedReader;
 import io.github.wasabithumb.xpdy.payload.body.Body;
 import io.github.wasabithumb.xpdy.payload.cookie.Cookies;
+import io.github.wasabithumb.xpdy.transport.TransportExchange;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Unmodifiable;
@@ -17,36 +15,20 @@ import java.util.Map;
 @ApiStatus.Internal
 final class ExchangeRequest implements Request {
 
-    private final HttpExchange handle;
+    private final TransportExchange handle;
     private final Body body;
-    private final Headers headers;
-    private final Cookies cookies;
     private final List<String> pathParameters;
-    private final Map<String, String> query;
-
-    ExchangeRequest(@NotNull HttpExchange handle, @NotNull List<String> pathParameters) {
-        Headers headers = handle.getRequestHeaders();
-        Cookies cookies = new Cookies();
-        cookies.read(headers, true, false);
-
-        Map<String, String> query;
-        try {
-            query = URLEncodedReader.parse(handle.getRequestURI().getRawQuery());
-        } catch (BodyFormatException e) {
-            query = Collections.emptyMap();
-        }
+    private Cookies cookies = null;
+    private Map<String, String> query = null;
 
+    ExchangeRequest(@NotNull TransportExchange handle, @NotNull List<String> pathParameters, long maxBodySize) {
         this.handle         = handle;
-        this.body           = Body.exchange(handle);
-        this.headers        = headers;
-        this.cookies        = cookies;
+        this.body           = Body.exchange(handle, maxBodySize);
         this.pathParameters = Collections.unmodifiableList(pathParameters);
-        this.query          = query;
     }
 
     //
 
-
     @Override
     public @NotNull Body body() {
         return this.body;
@@ -54,12 +36,14 @@ final class ExchangeRequest implements Request {
 
     @Override
     public @NotNull Headers headers() {
-        return this.headers;
+        return this.handle.requestHeaders();
     }
 
     @Override
     public @NotNull Cookies cookies() {
-        return this.cookies;
+        Cookies cookies = this.cookies;
+        if (cookies == null) this.cookies = cookies = Cookies.deferred(this.handle.requestHeaders());
+        return cookies;
     }
 
     @Override
@@ -69,7 +53,13 @@ final class ExchangeRequest implements Request {
 
     @Override
     public @NotNull @Unmodifiable Map<String, String> query() {
-        return this.query;
+        Map<String, String> query = this.query;
+        if (query == null) {
+            String raw = this.handle.requestURI().getRawQuery();
+            query = (raw == null || raw.isEmpty()) ? Collections.emptyMap() : new QueryMap(raw);
+            this.query = query;
+        }
+        return query;
     }
 
     //
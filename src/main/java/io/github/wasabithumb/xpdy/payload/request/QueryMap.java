@@ -0,0 +1,66 @@
+package io.github.wasabithumb.xpdy.payload.request;
+
+import io.github.wasabithumb.xpdy.except.BodyFormatException;
+import io.github.wasabithumb.xpdy.misc.io.URLEncodedParser;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An unmodifiable view of a raw query string. Looking up a single key scans the raw string; the string is only
+ * parsed into a full map when the view is enumerated. A malformed query string behaves as an empty map.
+ */
+@ApiStatus.Internal
+final class QueryMap extends AbstractMap<String, String> {
+
+    private final String raw;
+    private Map<String, String> parsed = null;
+
+    QueryMap(@NotNull String raw) {
+        this.raw = raw;
+    }
+
+    //
+
+    private @NotNull @Unmodifiable Map<String, String> parsed() {
+        Map<String, String> parsed = this.parsed;
+        if (parsed == null) {
+            try {
+                parsed = URLEncodedParser.parse(this.raw);
+            } catch (BodyFormatException e) {
+                parsed = Collections.emptyMap();
+            }
+            this.parsed = parsed;
+        }
+        return parsed;
+    }
+
+    @Override
+    public @Nullable String get(Object key) {
+        Map<String, String> parsed = this.parsed;
+        if (parsed != null) return parsed.get(key);
+        if (!(key instanceof String str)) return null;
+        try {
+            return URLEncodedParser.find(this.raw, str);
+        } catch (BodyFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.get(key) != null;
+    }
+
+    @Override
+    public @NotNull Set<Entry<String, String>> entrySet() {
+        return this.parsed().entrySet();
+    }
+
+}
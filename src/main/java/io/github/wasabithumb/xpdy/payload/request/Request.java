@@ -5,8 +5,10 @@ import io.github.wasabithumb.xpdy.except.BodyFormatException;
 import io.github.wasabithumb.xpdy.misc.collections.UnionMap;
 import io.github.wasabithumb.xpdy.payload.Payload;
 import io.github.wasabithumb.xpdy.payload.body.Body;
+import io.github.wasabithumb.xpdy.transport.TransportExchange;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
 import org.jetbrains.annotations.Unmodifiable;
 
 import java.io.IOException;
@@ -17,7 +19,30 @@ import java.util.Map;
 public interface Request extends Payload {
 
     static @NotNull Request of(@NotNull HttpExchange exchange, @NotNull List<String> pathParameters) {
-        return new ExchangeRequest(exchange, pathParameters);
+        return of(TransportExchange.of(exchange), pathParameters);
+    }
+
+    /**
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    static @NotNull Request of(@NotNull TransportExchange exchange, @NotNull List<String> pathParameters) {
+        return of(exchange, pathParameters, -1L);
+    }
+
+    /**
+     * Creates a request whose {@link #body() body} allows at most {@code maxBodySize} bytes to be read.
+     * @param maxBodySize The maximum size of the body, or -1 for no limit
+     * @since 0.3.0
+     * @see Body#exchange(TransportExchange, long)
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    static @NotNull Request of(
+            @NotNull TransportExchange exchange,
+            @NotNull List<String> pathParameters,
+            @Range(from=-1, to=Long.MAX_VALUE) long maxBodySize
+    ) {
+        return new ExchangeRequest(exchange, pathParameters, maxBodySize);
     }
 
     //
@@ -29,7 +29,6 @@ public interface Response extends Payload {
     static @NotNull Response error(@Range(from=400, to=599) int code) {
         return builder()
                 .code(code)
-                .body(Body.error(code))
                 .build();
     }
 
@@ -42,6 +41,17 @@ public interface Response extends Payload {
     @Contract(pure = true)
     @Range(from=100, to=599) int code();
 
+    /**
+     * Whether the server may compress the body on the fly, if the client accepts it and the body is
+     * large enough. Responses which already declare a {@code Content-Encoding} are never compressed.
+     * This is true unless disabled with {@link Builder#compress(boolean)}. The {@code compress} element of
+     * the endpoint annotation disables compression for an endpoint regardless of this value.
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    @Contract(pure = true)
+    boolean compress();
+
     //
 
     interface Builder {
@@ -61,6 +71,15 @@ public interface Response extends Payload {
         @Contract("_ -> this")
         @NotNull Builder setCookie(@NotNull Cookie cookie);
 
+        /**
+         * Sets whether the server may compress the body on the fly. True by default.
+         * @see Response#compress()
+         * @since 0.3.0
+         */
+        @ApiStatus.AvailableSince("0.3.0")
+        @Contract("_ -> this")
+        @NotNull Builder compress(boolean compress);
+
         @Contract("_, _ -> this")
         default @NotNull Builder setCookie(@NotNull @CookieName String key, @NotNull String value) {
             return this.setCookie(Cookie.of(key, value));
@@ -13,13 +13,15 @@ record ResponseImpl(
         @Range(from=100, to=599) int code,
         @NotNull Body body,
         @NotNull Headers headers,
-        @NotNull Cookies cookies
+        @NotNull Cookies cookies,
+        boolean compress
 ) implements Response {
 
     static final class Builder implements Response.Builder {
 
         private int code = 200;
         private Body body = null;
+        private boolean compress = true;
         private final Headers headers = new Headers();
         private final Cookies cookies = new Cookies();
 
@@ -27,7 +29,6 @@ record ResponseImpl(
 
         @Override
         public @NotNull Response.Builder code(@Range(from = 100, to = 599) int code) {
-            if (code >= 400 && this.body == null) this.body(Body.error(code));
             this.code = code;
             return this;
         }
@@ -65,15 +66,24 @@ record ResponseImpl(
             return this;
         }
 
+        @Override
+        public @NotNull Response.Builder compress(boolean compress) {
+            this.compress = compress;
+            return this;
+        }
+
         //
 
         @Override
         public @NotNull ResponseImpl build() {
+            // Error pages are only provided if no body was set
+            if (this.body == null && this.code >= 400) this.body(Body.error(this.code));
             return new ResponseImpl(
                     this.code,
                     this.body == null ? Body.html("") : this.body,
                     this.headers,
-                    this.cookies
+                    this.cookies,
+                    this.compress
             );
         }
 
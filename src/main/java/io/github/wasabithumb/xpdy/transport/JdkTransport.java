@@ -0,0 +1,121 @@
+package io.github.wasabithumb.xpdy.transport;
+
+import com.sun.net.httpserver.*;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+@ApiStatus.Internal
+final class JdkTransport implements Transport {
+
+    static final JdkTransport INSTANCE = new JdkTransport();
+
+    //
+
+    private JdkTransport() { }
+
+    //
+
+    @Override
+    public @NotNull Binding bind(
+            @NotNull InetSocketAddress address,
+            @Nullable HttpsConfigurator httpsConfigurator,
+            @Nullable Executor executor,
+            @NotNull Handler handler
+    ) throws IOException {
+        HttpServer server;
+        if (httpsConfigurator != null) {
+            HttpsServer s = HttpsServer.create();
+            s.setHttpsConfigurator(httpsConfigurator);
+            server = s;
+        } else {
+            server = HttpServer.create();
+        }
+
+        if (executor != null) {
+            server.setExecutor(executor);
+        }
+
+        server.bind(address, 0);
+        server.createContext("/", (HttpExchange exchange) -> {
+            CompletionStage<?> stage = handler.handle(new Exchange(exchange));
+            if (stage != null) {
+                stage.whenComplete((Object value, Throwable error) -> {
+                    if (error != null) exchange.close();
+                });
+            }
+        });
+        server.start();
+
+        return server::stop;
+    }
+
+    //
+
+    record Exchange(
+            @NotNull HttpExchange handle
+    ) implements TransportExchange {
+
+        @Override
+        public @NotNull String requestMethod() {
+            return this.handle.getRequestMethod();
+        }
+
+        @Override
+        public @NotNull URI requestURI() {
+            return this.handle.getRequestURI();
+        }
+
+        @Override
+        public @NotNull String protocol() {
+            return this.handle.getProtocol();
+        }
+
+        @Override
+        public @NotNull InetSocketAddress remoteAddress() {
+            return this.handle.getRemoteAddress();
+        }
+
+        @Override
+        public @NotNull Headers requestHeaders() {
+            return this.handle.getRequestHeaders();
+        }
+
+        @Override
+        public @NotNull InputStream requestBody() {
+            return this.handle.getRequestBody();
+        }
+
+        @Override
+        public @NotNull Headers responseHeaders() {
+            return this.handle.getResponseHeaders();
+        }
+
+        @Override
+        public void sendResponseHeaders(int code, long length) throws IOException {
+            this.handle.sendResponseHeaders(code, length);
+        }
+
+        @Override
+        public @NotNull OutputStream responseBody() {
+            return this.handle.getResponseBody();
+        }
+
+        @Override
+        public void abort() {
+            // HttpServer offers no way to close the connection under a blocked write; closing the exchange
+            // waits for that write to fail, after which the connection is dropped
+            this.handle.close();
+        }
+
+    }
+
+}
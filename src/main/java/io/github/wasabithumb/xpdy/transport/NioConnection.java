@@ -0,0 +1,364 @@
+package io.github.wasabithumb.xpdy.transport;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * <p>
+ *     State for a single connection served by {@link NioTransport}. The channel is always non-blocking and
+ *     registered with the engine selector.
+ * </p>
+ * <p>
+ *     While idle, the selector thread reads into {@link #in} until a complete request head is buffered and then
+ *     hands the connection to a worker. While {@link #busy}, the worker owns both buffers and performs reads and
+ *     writes itself, parking on {@link #lock} whenever the channel is not ready; the selector thread only signals
+ *     readiness. After each exchange the worker serves any pipelined request that is already buffered before
+ *     returning the connection to the selector.
+ *     If a handler completes asynchronously, the connection remains busy and serving resumes on a worker
+ *     once the handler is done.
+ * </p>
+ */
+@ApiStatus.Internal
+final class NioConnection {
+
+    private final NioTransport.Engine engine;
+    private final SocketChannel channel;
+    private final InetSocketAddress remoteAddress;
+    private final Object lock = new Object();
+    private SelectionKey key;
+
+    /** Request bytes, kept in read mode: unconsumed data lies between position and limit */
+    final ByteBuffer in;
+
+    /** Response bytes, kept in write mode */
+    final ByteBuffer out;
+
+    private boolean busy = false;
+    private boolean closed = false;
+    private int readyOps = 0;
+    private NioRequestHead pending = null;
+    private volatile long lastActive;
+
+    NioConnection(
+            @NotNull NioTransport.Engine engine,
+            @NotNull SocketChannel channel,
+            @NotNull InetSocketAddress remoteAddress,
+            @NotNull ByteBuffer in,
+            @NotNull ByteBuffer out
+    ) {
+        this.engine = engine;
+        this.channel = channel;
+        this.remoteAddress = remoteAddress;
+        this.in = in.flip();
+        this.out = out;
+        this.lastActive = System.nanoTime();
+    }
+
+    //
+
+    @NotNull InetSocketAddress remoteAddress() {
+        return this.remoteAddress;
+    }
+
+    void register(@NotNull SelectionKey key) {
+        this.key = key;
+    }
+
+    long lastActive() {
+        return this.lastActive;
+    }
+
+    boolean isBusy() {
+        synchronized (this.lock) {
+            return this.busy;
+        }
+    }
+
+    // Selector thread
+
+    /**
+     * Called by the selector thread when the channel is ready for the given operations
+     */
+    void ready(int ops) {
+        synchronized (this.lock) {
+            if (this.busy) {
+                this.readyOps |= ops;
+                this.key.interestOps(0);
+                this.lock.notifyAll();
+                return;
+            }
+        }
+
+        try {
+            int n = this.fill();
+            if (n == -1) {
+                this.close();
+                return;
+            }
+            this.lastActive = System.nanoTime();
+            this.tryDispatch();
+        } catch (IOException e) {
+            this.close();
+        }
+    }
+
+    private void tryDispatch() {
+        NioRequestHead head;
+        try {
+            head = NioRequestHead.parse(this.in);
+        } catch (NioRequestHead.Malformed e) {
+            this.reject(e.code());
+            return;
+        }
+
+        if (head == null) {
+            if (this.in.position() == 0 && this.in.limit() == this.in.capacity()) this.reject(431);
+            return;
+        }
+
+        synchronized (this.lock) {
+            this.busy = true;
+            this.readyOps = 0;
+            this.pending = head;
+            this.key.interestOps(0);
+        }
+        this.engine.dispatch(this);
+    }
+
+    /**
+     * Writes a minimal error response without blocking, then closes the connection
+     */
+    private void reject(int code) {
+        String text = "HTTP/1.1 " + code + " " + NioExchange.reason(code) + "\r\n" +
+                "Content-Length: 0\r\n" +
+                "Connection: close\r\n\r\n";
+        try {
+            this.channel.write(ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1)));
+        } catch (IOException ignored) { }
+        this.close();
+    }
+
+    // Worker thread
+
+    /**
+     * Serves the pending exchange, followed by any pipelined exchanges
+     */
+    void serve() {
+        this.serve(null, null);
+    }
+
+    /**
+     * Serves exchanges until the connection is returned to the selector or closed, or until a handler
+     * completes asynchronously. In the latter case, serving resumes on a worker once the handler is done.
+     * @param current An exchange whose handler has completed asynchronously, or null to begin with the
+     *                pending exchange
+     * @param error The error which the handler of {@code current} completed with, if any
+     */
+    private void serve(@Nullable NioExchange current, @Nullable Throwable error) {
+        try {
+            while (true) {
+                NioExchange exchange = current;
+                current = null;
+                if (exchange == null) {
+                    NioRequestHead head;
+                    synchronized (this.lock) {
+                        head = this.pending;
+                        this.pending = null;
+                    }
+
+                    exchange = new NioExchange(this, head);
+                    CompletionStage<?> stage = exchange.begin(this.engine.handler(), this.engine.isStopping());
+                    if (stage != null) {
+                        final NioExchange started = exchange;
+                        stage.whenComplete((Object value, Throwable t) ->
+                                this.engine.execute(() -> this.serve(started, t)));
+                        return;
+                    }
+                }
+
+                boolean keepAlive = exchange.finish(error);
+                error = null;
+                if (!keepAlive) break;
+
+                this.lastActive = System.nanoTime();
+                NioRequestHead next;
+                try {
+                    next = NioRequestHead.parse(this.in);
+                } catch (NioRequestHead.Malformed e) {
+                    this.rejectBlocking(e.code());
+                    break;
+                }
+
+                if (next != null) {
+                    synchronized (this.lock) {
+                        this.pending = next;
+                    }
+                    continue;
+                }
+
+                if (this.in.position() == 0 && this.in.limit() == this.in.capacity()) {
+                    this.rejectBlocking(431);
+                    break;
+                }
+
+                synchronized (this.lock) {
+                    if (this.closed) break;
+                    this.busy = false;
+                    this.readyOps = 0;
+                    this.key.interestOps(SelectionKey.OP_READ);
+                }
+                this.engine.wakeup();
+                return;
+            }
+        } catch (Throwable ignored) { }
+        this.closeFromWorker();
+    }
+
+    private void rejectBlocking(int code) throws IOException {
+        String text = "HTTP/1.1 " + code + " " + NioExchange.reason(code) + "\r\n" +
+                "Content-Length: 0\r\n" +
+                "Connection: close\r\n\r\n";
+        this.out.clear();
+        this.out.put(text.getBytes(StandardCharsets.ISO_8859_1));
+        this.flush();
+    }
+
+    /**
+     * Reads more data into {@link #in}, blocking until at least one byte is available
+     * @return Number of bytes read, or -1 at end of stream
+     * @throws IOException The buffer is full, the read timed out, or an I/O error occurred
+     */
+    int fillBlocking() throws IOException {
+        if (this.in.position() == 0 && this.in.limit() == this.in.capacity())
+            throw new IOException("Input buffer is full");
+
+        int n;
+        while ((n = this.fill()) == 0) {
+            this.await(SelectionKey.OP_READ);
+        }
+        return n;
+    }
+
+    /**
+     * Writes the contents of {@link #out} to the channel and clears it
+     */
+    void flush() throws IOException {
+        this.out.flip();
+        try {
+            while (this.out.hasRemaining()) {
+                if (this.channel.write(this.out) == 0) {
+                    this.await(SelectionKey.OP_WRITE);
+                }
+            }
+        } finally {
+            this.out.clear();
+        }
+    }
+
+    /**
+     * Flushes {@link #out}, then copies a region of a file directly to the channel
+     */
+    void transfer(@NotNull FileChannel file, long position, long count) throws IOException {
+        this.flush();
+        while (count > 0L) {
+            long n = file.transferTo(position, count, this.channel);
+            if (n == 0L) {
+                if (position >= file.size()) throw new EOFException("File ended before expected");
+                this.await(SelectionKey.OP_WRITE);
+                continue;
+            }
+            position += n;
+            count -= n;
+        }
+    }
+
+    private void await(int op) throws IOException {
+        long timeout = this.engine.timeoutNanos();
+        long deadline = System.nanoTime() + timeout;
+        synchronized (this.lock) {
+            if (this.closed) throw new ClosedChannelException();
+            try {
+                this.key.interestOps(op);
+            } catch (CancelledKeyException e) {
+                throw new ClosedChannelException();
+            }
+            this.engine.wakeup();
+
+            while ((this.readyOps & op) == 0) {
+                if (this.closed) throw new ClosedChannelException();
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) throw new SocketTimeoutException("Timed out waiting for client");
+                try {
+                    this.lock.wait(remaining / 1000000L + 1L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for client", e);
+                }
+            }
+            this.readyOps &= ~op;
+        }
+    }
+
+    // Either thread
+
+    /**
+     * Reads whatever is available into {@link #in} without blocking, compacting unread data to the start
+     * of the buffer
+     */
+    private int fill() throws IOException {
+        this.in.compact();
+        try {
+            return this.channel.read(this.in);
+        } finally {
+            this.in.flip();
+        }
+    }
+
+    /**
+     * Closes the connection from any thread. Buffers are returned to the pool only if no worker owns them.
+     */
+    void close() {
+        boolean release;
+        synchronized (this.lock) {
+            if (this.closed) return;
+            this.closed = true;
+            this.lock.notifyAll();
+            release = !this.busy;
+        }
+        this.closeChannel();
+        if (release) this.engine.release(this);
+    }
+
+    private void closeFromWorker() {
+        boolean release;
+        synchronized (this.lock) {
+            release = this.busy;
+            this.busy = false;
+            this.closed = true;
+            this.lock.notifyAll();
+        }
+        this.closeChannel();
+        if (release) this.engine.release(this);
+    }
+
+    private void closeChannel() {
+        try {
+            this.channel.close();
+        } catch (IOException ignored) { }
+    }
+
+}
@@ -0,0 +1,705 @@
+package io.github.wasabithumb.xpdy.transport;
+
+import com.sun.net.httpserver.Headers;
+import io.github.wasabithumb.xpdy.misc.HttpDate;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+@ApiStatus.Internal
+final class NioExchange implements TransportExchange {
+
+    /** Maximum number of unread request body bytes to discard in order to keep a connection alive */
+    private static final long DRAIN_LIMIT = 65536L;
+
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes();
+    private static final byte[] CRLF = { '\r', '\n' };
+    private static final byte[] LAST_CHUNK = { '0', '\r', '\n', '\r', '\n' };
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    /** Width of the zero-padded chunk size field reserved ahead of each chunk */
+    private static final int CHUNK_HEADER = 8 + 2;
+
+    static @NotNull String reason(int code) {
+        return switch (code) {
+            case 100 -> "Continue";
+            case 101 -> "Switching Protocols";
+            case 200 -> "OK";
+            case 201 -> "Created";
+            case 202 -> "Accepted";
+            case 204 -> "No Content";
+            case 206 -> "Partial Content";
+            case 301 -> "Moved Permanently";
+            case 302 -> "Found";
+            case 303 -> "See Other";
+            case 304 -> "Not Modified";
+            case 307 -> "Temporary Redirect";
+            case 308 -> "Permanent Redirect";
+            case 400 -> "Bad Request";
+            case 401 -> "Unauthorized";
+            case 403 -> "Forbidden";
+            case 404 -> "Not Found";
+            case 405 -> "Method Not Allowed";
+            case 406 -> "Not Acceptable";
+            case 408 -> "Request Timeout";
+            case 409 -> "Conflict";
+            case 410 -> "Gone";
+            case 411 -> "Length Required";
+            case 412 -> "Precondition Failed";
+            case 413 -> "Content Too Large";
+            case 415 -> "Unsupported Media Type";
+            case 416 -> "Range Not Satisfiable";
+            case 429 -> "Too Many Requests";
+            case 431 -> "Request Header Fields Too Large";
+            case 500 -> "Internal Server Error";
+            case 501 -> "Not Implemented";
+            case 502 -> "Bad Gateway";
+            case 503 -> "Service Unavailable";
+            case 504 -> "Gateway Timeout";
+            case 505 -> "HTTP Version Not Supported";
+            default -> "";
+        };
+    }
+
+    //
+
+    private final NioConnection connection;
+    private final NioRequestHead head;
+    private final Headers responseHeaders = new Headers();
+    private boolean keepAlive;
+    private boolean rejected = false;
+    private boolean failed = false;
+    private InputStream requestBody;
+    private OutputStream responseBody = null;
+
+    NioExchange(@NotNull NioConnection connection, @NotNull NioRequestHead head) {
+        this.connection = connection;
+        this.head = head;
+        this.keepAlive = head.keepAlive();
+    }
+
+    //
+
+    /**
+     * Runs the handler on this exchange. Once the handler is done with the exchange, {@link #finish(Throwable)}
+     * must be called.
+     * @return A stage which completes once the handler is done, or null if it is already done
+     */
+    @Nullable CompletionStage<?> begin(@NotNull Transport.Handler handler, boolean stopping) throws IOException {
+        if (stopping) this.keepAlive = false;
+
+        try {
+            this.requestBody = this.openRequestBody();
+        } catch (NioRequestHead.Malformed e) {
+            this.keepAlive = false;
+            this.rejected = true;
+            this.requestBody = new FixedInput(0L);
+            this.sendResponseHeaders(e.code(), -1L);
+            this.connection.flush();
+            return null;
+        }
+
+        // As with HttpServer, the client is told to continue before the handler runs
+        String expect = this.head.headers().getFirst("Expect");
+        if (expect != null && !this.head.isHttp10() && expect.equalsIgnoreCase("100-continue")
+                && !(this.requestBody instanceof FixedInput f && f.remaining == 0L)) {
+            this.connection.out.put(CONTINUE);
+            this.connection.flush();
+        }
+
+        try {
+            return handler.handle(this);
+        } catch (IOException | RuntimeException e) {
+            this.failed = true;
+            return null;
+        }
+    }
+
+    /**
+     * Finishes the response once the handler is done with the exchange
+     * @param error The error which the handler completed with, if any
+     * @return True if the connection may be reused for another request
+     */
+    boolean finish(@Nullable Throwable error) throws IOException {
+        if (this.rejected) return false;
+        if (error != null) this.failed = true;
+
+        // Response framing can no longer be trusted
+        if (this.failed && this.responseBody != null) return false;
+
+        if (this.responseBody == null) {
+            this.keepAlive = false;
+            this.sendResponseHeaders(500, -1L);
+        }
+        this.responseBody.close();
+
+        if (this.keepAlive && !this.drain()) this.keepAlive = false;
+        return this.keepAlive;
+    }
+
+    private @NotNull InputStream openRequestBody() throws NioRequestHead.Malformed {
+        Headers headers = this.head.headers();
+        String transferEncoding = headers.getFirst("Transfer-Encoding");
+        String contentLength = headers.getFirst("Content-Length");
+
+        if (transferEncoding != null) {
+            if (contentLength != null)
+                throw new NioRequestHead.Malformed(400, "Both Transfer-Encoding and Content-Length are present");
+            if (!transferEncoding.strip().equalsIgnoreCase("chunked"))
+                throw new NioRequestHead.Malformed(501, "Unsupported transfer encoding");
+            return new ChunkedInput();
+        }
+
+        if (contentLength != null) {
+            List<String> all = headers.get("Content-Length");
+            if (all.size() != 1)
+                throw new NioRequestHead.Malformed(400, "Multiple Content-Length headers");
+            long length;
+            try {
+                length = Long.parseLong(contentLength.strip());
+            } catch (NumberFormatException e) {
+                throw new NioRequestHead.Malformed(400, "Malformed Content-Length");
+            }
+            if (length < 0L)
+                throw new NioRequestHead.Malformed(400, "Malformed Content-Length");
+            return new FixedInput(length);
+        }
+
+        return new FixedInput(0L);
+    }
+
+    /**
+     * Discards any unread request body so that the next request can be read
+     * @return True if the body was fully consumed
+     */
+    private boolean drain() {
+        try {
+            if (this.requestBody.read() == -1) return true;
+            byte[] scratch = new byte[4096];
+            long skipped = 1L;
+            int r;
+            while ((r = this.requestBody.read(scratch)) != -1) {
+                skipped += r;
+                if (skipped > DRAIN_LIMIT) return false;
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    //
+
+    @Override
+    public @NotNull String requestMethod() {
+        return this.head.method();
+    }
+
+    @Override
+    public @NotNull URI requestURI() {
+        return this.head.uri();
+    }
+
+    @Override
+    public @NotNull String protocol() {
+        return this.head.protocol();
+    }
+
+    @Override
+    public @NotNull InetSocketAddress remoteAddress() {
+        return this.connection.remoteAddress();
+    }
+
+    @Override
+    public @NotNull Headers requestHeaders() {
+        return this.head.headers();
+    }
+
+    @Override
+    public @NotNull InputStream requestBody() {
+        return this.requestBody;
+    }
+
+    @Override
+    public @NotNull Headers responseHeaders() {
+        return this.responseHeaders;
+    }
+
+    @Override
+    public void sendResponseHeaders(int code, long length) throws IOException {
+        if (this.responseBody != null)
+            throw new IOException("Response headers have already been sent");
+        if (code < 100 || code > 999)
+            throw new IllegalArgumentException("Invalid response code: " + code);
+
+        Headers headers = this.responseHeaders;
+        boolean noBody = this.head.method().equals("HEAD") || code < 200 || code == 204 || code == 304;
+
+        OutputStream body;
+        if (noBody) {
+            if (length > 0L && this.head.method().equals("HEAD")) {
+                headers.set("Content-Length", Long.toString(length));
+            } else {
+                headers.remove("Content-Length");
+            }
+            headers.remove("Transfer-Encoding");
+            body = new FixedOutput(0L);
+        } else if (length > 0L) {
+            headers.set("Content-Length", Long.toString(length));
+            headers.remove("Transfer-Encoding");
+            body = new FixedOutput(length);
+        } else if (length == 0L) {
+            headers.remove("Content-Length");
+            if (this.head.isHttp10()) {
+                this.keepAlive = false;
+                headers.remove("Transfer-Encoding");
+                body = new RawOutput();
+            } else {
+                headers.set("Transfer-Encoding", "chunked");
+                body = new ChunkedOutput();
+            }
+        } else {
+            headers.set("Content-Length", "0");
+            headers.remove("Transfer-Encoding");
+            body = new FixedOutput(0L);
+        }
+
+        if (!this.keepAlive) {
+            headers.set("Connection", "close");
+        } else if (this.head.isHttp10()) {
+            headers.set("Connection", "keep-alive");
+        }
+        if (!headers.containsKey("Date")) {
+            headers.set("Date", DateCache.get());
+        }
+
+        ByteBuffer out = this.connection.out;
+        this.putAscii("HTTP/1.1 ");
+        this.putAscii(Integer.toString(code));
+        out.put((byte) ' ');
+        this.putAscii(reason(code));
+        out.put(CRLF);
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            String name = entry.getKey();
+            for (String value : entry.getValue()) {
+                this.putHeader(name, value == null ? "" : value);
+            }
+        }
+        out.put(CRLF);
+
+        this.responseBody = body;
+    }
+
+    private void putHeader(@NotNull String name, @NotNull String value) throws IOException {
+        for (int i=0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\r' || c == '\n')
+                throw new IOException("Illegal character in value of header \"" + name + "\"");
+        }
+        this.putAscii(name);
+        this.putAscii(": ");
+        this.putAscii(value);
+        this.connection.out.put(CRLF);
+    }
+
+    private void putAscii(@NotNull String s) throws IOException {
+        ByteBuffer out = this.connection.out;
+        int len = s.length();
+        for (int i=0; i < len; i++) {
+            if (!out.hasRemaining()) this.connection.flush();
+            char c = s.charAt(i);
+            out.put((byte) (c > 0xFF ? '?' : c));
+        }
+    }
+
+    @Override
+    public @NotNull OutputStream responseBody() {
+        OutputStream body = this.responseBody;
+        if (body == null)
+            throw new IllegalStateException("Response headers have not been sent");
+        return body;
+    }
+
+    @Override
+    public void abort() {
+        this.connection.close();
+    }
+
+    @Override
+    public void transferFile(@NotNull FileChannel file, long position, long count) throws IOException {
+        OutputStream body = this.responseBody();
+        if (body instanceof FixedOutput f) {
+            f.transfer(file, position, count);
+        } else if (body instanceof ChunkedOutput c) {
+            c.transfer(file, position, count);
+        } else if (body instanceof RawOutput r) {
+            r.transfer(file, position, count);
+        } else {
+            TransportExchange.super.transferFile(file, position, count);
+        }
+    }
+
+    //
+
+    /**
+     * Copies up to {@code len} buffered request bytes into the array, reading from the channel if nothing is buffered
+     * @return Number of bytes copied, or -1 at end of stream
+     */
+    private int readBuffered(byte @NotNull [] b, int off, int len) throws IOException {
+        ByteBuffer in = this.connection.in;
+        if (!in.hasRemaining() && this.connection.fillBlocking() == -1) return -1;
+        int n = Math.min(len, in.remaining());
+        in.get(b, off, n);
+        return n;
+    }
+
+    private int readBufferedByte() throws IOException {
+        ByteBuffer in = this.connection.in;
+        if (!in.hasRemaining() && this.connection.fillBlocking() == -1) return -1;
+        return in.get() & 0xFF;
+    }
+
+    /**
+     * Copies bytes into the response buffer, flushing whenever it fills
+     */
+    private void writeBuffered(byte @NotNull [] b, int off, int len, int reserve) throws IOException {
+        ByteBuffer out = this.connection.out;
+        while (len > 0) {
+            int space = out.remaining() - reserve;
+            if (space <= 0) {
+                this.connection.flush();
+                continue;
+            }
+            int n = Math.min(space, len);
+            out.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    //
+
+    private final class FixedInput extends InputStream {
+
+        private long remaining;
+
+        FixedInput(long length) {
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.remaining == 0L) return -1;
+            int b = NioExchange.this.readBufferedByte();
+            if (b == -1) throw new EOFException("Unexpected end of request body");
+            this.remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte @NotNull [] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (this.remaining == 0L) return -1;
+            int n = NioExchange.this.readBuffered(b, off, (int) Math.min(len, this.remaining));
+            if (n == -1) throw new EOFException("Unexpected end of request body");
+            this.remaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(NioExchange.this.connection.in.remaining(), this.remaining);
+        }
+
+    }
+
+    private final class ChunkedInput extends InputStream {
+
+        private static final int MAX_LINE = 4096;
+
+        private long remaining = 0L;
+        boolean done = false;
+
+        @Override
+        public int read() throws IOException {
+            if (!this.advance()) return -1;
+            int b = NioExchange.this.readBufferedByte();
+            if (b == -1) throw new EOFException("Unexpected end of request body");
+            this.remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte @NotNull [] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!this.advance()) return -1;
+            int n = NioExchange.this.readBuffered(b, off, (int) Math.min(len, this.remaining));
+            if (n == -1) throw new EOFException("Unexpected end of request body");
+            this.remaining -= n;
+            return n;
+        }
+
+        /**
+         * Moves to the next chunk if the current one is exhausted
+         * @return False if the last chunk has been reached
+         */
+        private boolean advance() throws IOException {
+            if (this.done) return false;
+            if (this.remaining != 0L) return true;
+
+            String line = this.readLine();
+            if (line.isEmpty()) line = this.readLine(); // CRLF terminating the previous chunk
+
+            int ext = line.indexOf(';');
+            if (ext != -1) line = line.substring(0, ext);
+            long size;
+            try {
+                size = Long.parseLong(line.strip(), 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed chunk size");
+            }
+            if (size < 0L) throw new IOException("Malformed chunk size");
+
+            if (size == 0L) {
+                // Trailers are discarded
+                while (!this.readLine().isEmpty());
+                this.done = true;
+                return false;
+            }
+            this.remaining = size;
+            return true;
+        }
+
+        private @NotNull String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int b;
+            while ((b = NioExchange.this.readBufferedByte()) != '\n') {
+                if (b == -1) throw new EOFException("Unexpected end of request body");
+                if (sb.length() >= MAX_LINE) throw new IOException("Chunk header too long");
+                if (b != '\r') sb.append((char) b);
+            }
+            return sb.toString();
+        }
+
+    }
+
+    /**
+     * Body of known length. Writing more than the declared length is an error; writing less
+     * means the connection cannot be reused.
+     */
+    private final class FixedOutput extends OutputStream {
+
+        private long remaining;
+        private boolean closed = false;
+
+        FixedOutput(long length) {
+            this.remaining = length;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte @NotNull [] b, int off, int len) throws IOException {
+            if (this.closed) throw new IOException("Stream closed");
+            if (len > this.remaining) throw new IOException("Too many bytes for declared length");
+            NioExchange.this.writeBuffered(b, off, len, 0);
+            this.remaining -= len;
+        }
+
+        void transfer(@NotNull FileChannel file, long position, long count) throws IOException {
+            if (this.closed) throw new IOException("Stream closed");
+            if (count > this.remaining) throw new IOException("Too many bytes for declared length");
+            NioExchange.this.connection.transfer(file, position, count);
+            this.remaining -= count;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (this.closed) return;
+            NioExchange.this.connection.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.closed) return;
+            this.closed = true;
+            if (this.remaining != 0L) NioExchange.this.keepAlive = false;
+            NioExchange.this.connection.flush();
+        }
+
+    }
+
+    /**
+     * Body delimited by closing the connection (HTTP/1.0 with unknown length)
+     */
+    private final class RawOutput extends OutputStream {
+
+        private boolean closed = false;
+
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte @NotNull [] b, int off, int len) throws IOException {
+            if (this.closed) throw new IOException("Stream closed");
+            NioExchange.this.writeBuffered(b, off, len, 0);
+        }
+
+        void transfer(@NotNull FileChannel file, long position, long count) throws IOException {
+            if (this.closed) throw new IOException("Stream closed");
+            NioExchange.this.connection.transfer(file, position, count);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (this.closed) return;
+            NioExchange.this.connection.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.closed) return;
+            this.closed = true;
+            NioExchange.this.connection.flush();
+        }
+
+    }
+
+    /**
+     * Chunked body. Space for a fixed-width chunk size is reserved ahead of the data in the response buffer and
+     * filled in when the chunk is sealed, so each buffer's worth of data is written as a single chunk without
+     * copying.
+     */
+    private final class ChunkedOutput extends OutputStream {
+
+        private int chunkStart = -1;
+        private boolean closed = false;
+
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte @NotNull [] b, int off, int len) throws IOException {
+            if (this.closed) throw new IOException("Stream closed");
+            ByteBuffer out = NioExchange.this.connection.out;
+            while (len > 0) {
+                if (this.chunkStart == -1) {
+                    if (out.remaining() < CHUNK_HEADER + CRLF.length + 1) {
+                        NioExchange.this.connection.flush();
+                    }
+                    this.chunkStart = out.position();
+                    out.position(this.chunkStart + CHUNK_HEADER);
+                }
+
+                int space = out.remaining() - CRLF.length;
+                if (space <= 0) {
+                    this.seal();
+                    NioExchange.this.connection.flush();
+                    continue;
+                }
+                int n = Math.min(space, len);
+                out.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Writes the file region as a single chunk
+         */
+        void transfer(@NotNull FileChannel file, long position, long count) throws IOException {
+            if (this.closed) throw new IOException("Stream closed");
+            if (count <= 0L) return;
+            this.seal();
+
+            String header = Long.toHexString(count);
+            ByteBuffer out = NioExchange.this.connection.out;
+            if (out.remaining() < header.length() + CRLF.length) NioExchange.this.connection.flush();
+            NioExchange.this.putAscii(header);
+            out.put(CRLF);
+            NioExchange.this.connection.transfer(file, position, count);
+            out.put(CRLF);
+        }
+
+        private void seal() {
+            if (this.chunkStart == -1) return;
+            ByteBuffer out = NioExchange.this.connection.out;
+            int size = out.position() - this.chunkStart - CHUNK_HEADER;
+            if (size == 0) {
+                out.position(this.chunkStart);
+            } else {
+                for (int i=7; i >= 0; i--) {
+                    out.put(this.chunkStart + i, HEX[size & 0xF]);
+                    size >>>= 4;
+                }
+                out.put(this.chunkStart + 8, (byte) '\r');
+                out.put(this.chunkStart + 9, (byte) '\n');
+                out.put(CRLF);
+            }
+            this.chunkStart = -1;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (this.closed) return;
+            this.seal();
+            NioExchange.this.connection.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.closed) return;
+            this.closed = true;
+            this.seal();
+            ByteBuffer out = NioExchange.this.connection.out;
+            if (out.remaining() < LAST_CHUNK.length) NioExchange.this.connection.flush();
+            out.put(LAST_CHUNK);
+            NioExchange.this.connection.flush();
+        }
+
+    }
+
+    //
+
+    /**
+     * Caches the formatted value of the {@code Date} header, which only changes once per second
+     */
+    private static final class DateCache {
+
+        private static volatile Entry ENTRY = new Entry(Long.MIN_VALUE, "");
+
+        static @NotNull String get() {
+            long second = System.currentTimeMillis() / 1000L;
+            Entry entry = ENTRY;
+            if (entry.second != second) {
+                String value = HttpDate.format(Instant.ofEpochSecond(second));
+                ENTRY = entry = new Entry(second, value);
+            }
+            return entry.value;
+        }
+
+        private record Entry(long second, @NotNull String value) { }
+
+    }
+
+}
@@ -0,0 +1,176 @@
+package io.github.wasabithumb.xpdy.transport;
+
+import com.sun.net.httpserver.Headers;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The request line and headers of an HTTP/1.x request
+ */
+@ApiStatus.Internal
+record NioRequestHead(
+        @NotNull String method,
+        @NotNull URI uri,
+        @NotNull String protocol,
+        @NotNull Headers headers
+) {
+
+    /**
+     * Attempts to parse a request head from the readable bytes of the buffer. If a complete head is present,
+     * the buffer position is advanced past it.
+     * @return The head, or null if the buffer does not yet contain a complete head
+     * @throws Malformed The head is malformed
+     */
+    static @Nullable NioRequestHead parse(@NotNull ByteBuffer buf) throws Malformed {
+        int start = buf.position();
+        int limit = buf.limit();
+
+        // Leading empty lines are permitted before the request line (RFC 9112 2.2)
+        while (start < limit && (buf.get(start) == '\r' || buf.get(start) == '\n')) start++;
+
+        // Find the empty line terminating the head
+        int end = -1;
+        int lineStart = start;
+        for (int i=start; i < limit; i++) {
+            if (buf.get(i) != '\n') continue;
+            int lineEnd = (i > lineStart && buf.get(i - 1) == '\r') ? i - 1 : i;
+            if (lineEnd == lineStart && lineStart != start) {
+                end = i + 1;
+                break;
+            }
+            lineStart = i + 1;
+        }
+        if (end == -1) {
+            buf.position(start);
+            return null;
+        }
+
+        // Request line
+        int[] cursor = { start };
+        String requestLine = readLine(buf, cursor);
+        int sp1 = requestLine.indexOf(' ');
+        int sp2 = requestLine.lastIndexOf(' ');
+        if (sp1 <= 0 || sp2 == sp1 || sp2 == requestLine.length() - 1)
+            throw new Malformed(400, "Malformed request line");
+
+        String method = requestLine.substring(0, sp1);
+        String target = requestLine.substring(sp1 + 1, sp2);
+        String protocol = requestLine.substring(sp2 + 1);
+        if (!isToken(method))
+            throw new Malformed(400, "Malformed request method");
+        if (!protocol.startsWith("HTTP/1."))
+            throw new Malformed(505, "Unsupported protocol");
+
+        URI uri;
+        try {
+            uri = new URI(target);
+        } catch (URISyntaxException e) {
+            throw new Malformed(400, "Malformed request target");
+        }
+
+        // Headers
+        Headers headers = new Headers();
+        while (cursor[0] < end) {
+            String line = readLine(buf, cursor);
+            if (line.isEmpty()) break;
+
+            char first = line.charAt(0);
+            if (first == ' ' || first == '\t')
+                throw new Malformed(400, "Obsolete line folding is not supported");
+
+            int colon = line.indexOf(':');
+            if (colon <= 0)
+                throw new Malformed(400, "Malformed header");
+
+            String name = line.substring(0, colon);
+            if (!isToken(name))
+                throw new Malformed(400, "Malformed header name");
+
+            headers.add(name, line.substring(colon + 1).strip());
+        }
+
+        buf.position(end);
+        return new NioRequestHead(method, uri, protocol, headers);
+    }
+
+    private static @NotNull String readLine(@NotNull ByteBuffer buf, int @NotNull [] cursor) {
+        int start = cursor[0];
+        int i = start;
+        while (buf.get(i) != '\n') i++;
+        cursor[0] = i + 1;
+
+        int end = (i > start && buf.get(i - 1) == '\r') ? i - 1 : i;
+        byte[] bytes = new byte[end - start];
+        buf.get(start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean isToken(@NotNull String s) {
+        if (s.isEmpty()) return false;
+        for (int i=0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c <= ' ' || c >= 127) return false;
+            if ("\"(),/:;<=>?@[\\]{}".indexOf(c) != -1) return false;
+        }
+        return true;
+    }
+
+    //
+
+    boolean isHttp10() {
+        return this.protocol.equals("HTTP/1.0");
+    }
+
+    /**
+     * Reports true if the connection may be reused after this request, according to
+     * the protocol version and {@code Connection} header
+     */
+    boolean keepAlive() {
+        String connection = this.headers.getFirst("Connection");
+        if (this.isHttp10()) {
+            return connection != null && hasToken(connection, "keep-alive");
+        }
+        return connection == null || !hasToken(connection, "close");
+    }
+
+    static boolean hasToken(@NotNull String list, @NotNull String token) {
+        int start = 0;
+        int len = list.length();
+        while (start < len) {
+            int end = list.indexOf(',', start);
+            if (end == -1) end = len;
+            if (list.substring(start, end).strip().equalsIgnoreCase(token)) return true;
+            start = end + 1;
+        }
+        return false;
+    }
+
+    //
+
+    /**
+     * Thrown when a request cannot be parsed. Carries the response code to reply with.
+     */
+    static final class Malformed extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int code;
+
+        Malformed(int code, @NotNull String message) {
+            super(message, null, false, false);
+            this.code = code;
+        }
+
+        int code() {
+            return this.code;
+        }
+
+    }
+
+}
@@ -0,0 +1,287 @@
+package io.github.wasabithumb.xpdy.transport;
+
+import com.sun.net.httpserver.HttpsConfigurator;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@ApiStatus.Internal
+final class NioTransport implements Transport {
+
+    static final int DEFAULT_BUFFER_SIZE = 16384;
+
+    /** How long an idle keep-alive connection is held open */
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30L);
+
+    /** How long a worker waits for the client to become readable or writable */
+    private static final long IO_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30L);
+
+    /** Maximum number of buffers kept for reuse by closed connections */
+    private static final int POOL_CAPACITY = 128;
+
+    private static final AtomicInteger ENGINE_COUNTER = new AtomicInteger(0);
+
+    //
+
+    private final int bufferSize;
+
+    NioTransport(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    //
+
+    @Override
+    public @NotNull Binding bind(
+            @NotNull InetSocketAddress address,
+            @Nullable HttpsConfigurator httpsConfigurator,
+            @Nullable Executor executor,
+            @NotNull Handler handler
+    ) throws IOException {
+        if (httpsConfigurator != null)
+            throw new UnsupportedOperationException("NIO transport does not support HTTPS");
+
+        ServerSocketChannel server = ServerSocketChannel.open();
+        Selector selector;
+        try {
+            server.bind(address);
+            server.configureBlocking(false);
+            selector = Selector.open();
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException | RuntimeException e) {
+            server.close();
+            throw e;
+        }
+
+        Engine engine = new Engine(server, selector, handler, executor, this.bufferSize);
+        engine.start();
+        return engine;
+    }
+
+    //
+
+    static final class Engine implements Binding, Runnable {
+
+        private final int id = ENGINE_COUNTER.getAndIncrement();
+        private final ServerSocketChannel server;
+        private final Selector selector;
+        private final Handler handler;
+        private final Executor executor;
+        private final ExecutorService ownedExecutor;
+        private final int bufferSize;
+        private final Set<NioConnection> connections = ConcurrentHashMap.newKeySet();
+        private final ArrayDeque<ByteBuffer> pool = new ArrayDeque<>();
+        private final Thread thread;
+        private volatile boolean stopping = false;
+        private volatile boolean running = true;
+
+        Engine(
+                @NotNull ServerSocketChannel server,
+                @NotNull Selector selector,
+                @NotNull Handler handler,
+                @Nullable Executor executor,
+                int bufferSize
+        ) {
+            this.server = server;
+            this.selector = selector;
+            this.handler = handler;
+            this.bufferSize = bufferSize;
+
+            if (executor == null) {
+                // Match HttpServer, which serves exchanges on a single thread by default
+                ExecutorService owned = Executors.newSingleThreadExecutor((Runnable r) -> {
+                    Thread t = new Thread(r, "xpdy-nio-worker-" + this.id);
+                    t.setDaemon(true);
+                    return t;
+                });
+                this.executor = owned;
+                this.ownedExecutor = owned;
+            } else {
+                this.executor = executor;
+                this.ownedExecutor = null;
+            }
+
+            this.thread = new Thread(this, "xpdy-nio-selector-" + this.id);
+            this.thread.setDaemon(true);
+        }
+
+        //
+
+        void start() {
+            this.thread.start();
+        }
+
+        @NotNull Handler handler() {
+            return this.handler;
+        }
+
+        boolean isStopping() {
+            return this.stopping;
+        }
+
+        long timeoutNanos() {
+            return IO_TIMEOUT_NANOS;
+        }
+
+        void wakeup() {
+            this.selector.wakeup();
+        }
+
+        void dispatch(@NotNull NioConnection connection) {
+            this.execute(connection::serve);
+        }
+
+        /**
+         * Runs a task on a worker, or on the calling thread if the executor refuses it
+         */
+        void execute(@NotNull Runnable task) {
+            try {
+                this.executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
+
+        // Buffers
+
+        private @NotNull ByteBuffer acquire() {
+            ByteBuffer buf;
+            synchronized (this.pool) {
+                buf = this.pool.poll();
+            }
+            if (buf == null) buf = ByteBuffer.allocateDirect(this.bufferSize);
+            return buf.clear();
+        }
+
+        void release(@NotNull NioConnection connection) {
+            this.connections.remove(connection);
+            synchronized (this.pool) {
+                if (this.pool.size() < POOL_CAPACITY) this.pool.add(connection.in);
+                if (this.pool.size() < POOL_CAPACITY) this.pool.add(connection.out);
+            }
+        }
+
+        // Selector loop
+
+        @Override
+        public void run() {
+            long lastSweep = System.nanoTime();
+            try {
+                while (this.running) {
+                    this.selector.select(1000L);
+
+                    Iterator<SelectionKey> iter = this.selector.selectedKeys().iterator();
+                    while (iter.hasNext()) {
+                        SelectionKey key = iter.next();
+                        iter.remove();
+                        try {
+                            if (!key.isValid()) continue;
+                            if (key.isAcceptable()) {
+                                this.accept();
+                            } else if (key.attachment() instanceof NioConnection connection) {
+                                connection.ready(key.readyOps());
+                            }
+                        } catch (CancelledKeyException ignored) { }
+                    }
+
+                    long now = System.nanoTime();
+                    if (this.stopping || now - lastSweep >= TimeUnit.SECONDS.toNanos(1L)) {
+                        this.sweep(now);
+                        lastSweep = now;
+                    }
+                }
+            } catch (IOException | ClosedSelectorException ignored) {
+            } finally {
+                for (NioConnection connection : this.connections) connection.close();
+                try {
+                    this.selector.close();
+                } catch (IOException ignored) { }
+            }
+        }
+
+        private void accept() throws IOException {
+            if (this.stopping) return;
+            SocketChannel channel;
+            while ((channel = this.server.accept()) != null) {
+                try {
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    InetSocketAddress remote = (InetSocketAddress) channel.getRemoteAddress();
+
+                    NioConnection connection = new NioConnection(this, channel, remote, this.acquire(), this.acquire());
+                    this.connections.add(connection);
+                    connection.register(channel.register(this.selector, SelectionKey.OP_READ, connection));
+                } catch (IOException e) {
+                    channel.close();
+                }
+            }
+        }
+
+        /**
+         * Closes connections which have been idle for too long, or all idle connections when stopping
+         */
+        private void sweep(long now) {
+            for (NioConnection connection : this.connections) {
+                if (connection.isBusy()) continue;
+                if (this.stopping || now - connection.lastActive() >= IDLE_TIMEOUT_NANOS) {
+                    connection.close();
+                }
+            }
+        }
+
+        //
+
+        @Override
+        public void stop(int delay) {
+            if (delay < 0)
+                throw new IllegalArgumentException("Delay must be non-negative (got " + delay + ")");
+
+            this.stopping = true;
+            try {
+                this.server.close();
+            } catch (IOException ignored) { }
+            this.selector.wakeup();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(delay);
+            while (System.nanoTime() < deadline && this.hasBusyConnections()) {
+                try {
+                    //noinspection BusyWait
+                    Thread.sleep(50L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            this.running = false;
+            this.selector.wakeup();
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (this.ownedExecutor != null) this.ownedExecutor.shutdownNow();
+        }
+
+        private boolean hasBusyConnections() {
+            for (NioConnection connection : this.connections) {
+                if (connection.isBusy()) return true;
+            }
+            return false;
+        }
+
+    }
+
+}
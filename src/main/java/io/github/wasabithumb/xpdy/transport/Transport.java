@@ -0,0 +1,105 @@
+package io.github.wasabithumb.xpdy.transport;
+
+import com.sun.net.httpserver.HttpsConfigurator;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Range;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * <p>
+ *     The network layer underlying an {@link io.github.wasabithumb.xpdy.XpdyServer XpdyServer}. A transport accepts
+ *     connections, parses HTTP requests and presents each one to the server as a {@link TransportExchange}.
+ * </p>
+ * <p>
+ *     Two transports are built in: {@link #jdk()}, backed by {@link com.sun.net.httpserver.HttpServer HttpServer},
+ *     and {@link #nio()}, a selector-based HTTP/1.1 engine with keep-alive and pipelining.
+ * </p>
+ * @since 0.3.0
+ */
+@ApiStatus.AvailableSince("0.3.0")
+public interface Transport {
+
+    /**
+     * The default transport, backed by {@link com.sun.net.httpserver.HttpServer HttpServer}
+     * (or {@link com.sun.net.httpserver.HttpsServer HttpsServer} when HTTPS is configured).
+     */
+    @Contract(pure = true)
+    static @NotNull Transport jdk() {
+        return JdkTransport.INSTANCE;
+    }
+
+    /**
+     * A selector-based HTTP/1.1 transport with keep-alive, pipelining and per-connection reusable
+     * direct buffers of the default size (16 KiB). This transport does not support HTTPS.
+     * @see #nio(int)
+     */
+    @Contract("-> new")
+    static @NotNull Transport nio() {
+        return new NioTransport(NioTransport.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * A selector-based HTTP/1.1 transport with keep-alive, pipelining and per-connection reusable
+     * direct buffers of the given size. The buffer size also limits the size of a request head
+     * (request line and headers); larger heads are rejected with {@code 431}.
+     * This transport does not support HTTPS.
+     */
+    @Contract("_ -> new")
+    static @NotNull Transport nio(@Range(from=1024, to=Integer.MAX_VALUE) int bufferSize) {
+        if (bufferSize < 1024)
+            throw new IllegalArgumentException("Buffer size must be at least 1024 (got " + bufferSize + ")");
+        return new NioTransport(bufferSize);
+    }
+
+    //
+
+    /**
+     * Binds to the given address and begins serving exchanges to the handler.
+     * @param address The address to bind to
+     * @param httpsConfigurator HTTPS configuration, or null to serve plain HTTP
+     * @param executor Executor to run the handler on, or null to use a transport-specific default
+     * @param handler Handler to serve exchanges with
+     * @throws IOException Failed to bind
+     * @throws UnsupportedOperationException The transport does not support the given configuration
+     */
+    @NotNull Binding bind(
+            @NotNull InetSocketAddress address,
+            @Nullable HttpsConfigurator httpsConfigurator,
+            @Nullable Executor executor,
+            @NotNull Handler handler
+    ) throws IOException, UnsupportedOperationException;
+
+    //
+
+    @FunctionalInterface
+    interface Handler {
+
+        /**
+         * Serves an exchange. If this method returns null, the transport finishes the exchange once this method
+         * returns. Otherwise, the exchange is finished once the returned stage completes, and the response may
+         * be sent from any thread until then. A stage which completes exceptionally is treated as if this
+         * method had thrown.
+         */
+        @Nullable CompletionStage<?> handle(@NotNull TransportExchange exchange) throws IOException;
+
+    }
+
+    interface Binding {
+
+        /**
+         * Stops serving, as specified by {@link com.sun.net.httpserver.HttpServer#stop(int) HttpServer#stop(int)}.
+         * New connections are refused immediately, and exchanges in progress are given up to
+         * {@code delay} seconds to complete.
+         */
+        void stop(@Range(from=0, to=Integer.MAX_VALUE) int delay);
+
+    }
+
+}
@@ -0,0 +1,123 @@
+package io.github.wasabithumb.xpdy.transport;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A single HTTP request/response pair as presented by a {@link Transport}. Mirrors the parts of
+ * {@link HttpExchange} used by xpdy, with the same semantics.
+ * @since 0.3.0
+ */
+@ApiStatus.AvailableSince("0.3.0")
+public interface TransportExchange {
+
+    /**
+     * Provides a view of an {@link HttpExchange} as a transport exchange.
+     */
+    @Contract("_ -> new")
+    static @NotNull TransportExchange of(@NotNull HttpExchange exchange) {
+        return new JdkTransport.Exchange(exchange);
+    }
+
+    //
+
+    /**
+     * The request method, such as {@code GET}
+     */
+    @NotNull String requestMethod();
+
+    /**
+     * The request URI, as sent in the request line
+     */
+    @NotNull URI requestURI();
+
+    /**
+     * The protocol string from the request line, such as {@code HTTP/1.1}
+     */
+    @NotNull String protocol();
+
+    /**
+     * The address of the remote peer
+     */
+    @NotNull InetSocketAddress remoteAddress();
+
+    /**
+     * The request headers. These should not be modified.
+     */
+    @NotNull Headers requestHeaders();
+
+    /**
+     * A stream providing the request body. Reading past the end of the body yields EOF.
+     */
+    @NotNull InputStream requestBody();
+
+    /**
+     * The response headers, which may be modified until {@link #sendResponseHeaders(int, long)} is called
+     */
+    @NotNull Headers responseHeaders();
+
+    /**
+     * Sends the status line and response headers, as specified by
+     * {@link HttpExchange#sendResponseHeaders(int, long) HttpExchange}.
+     * @param code The response code
+     * @param length The exact length of the body if positive; {@code 0} if the length is not known
+     *               (the body is streamed), or {@code -1} if there is no body
+     */
+    void sendResponseHeaders(int code, long length) throws IOException;
+
+    /**
+     * A stream to write the response body to. Must be called after {@link #sendResponseHeaders(int, long)}.
+     * Closing the stream ends the exchange.
+     */
+    @NotNull OutputStream responseBody();
+
+    /**
+     * Abandons the exchange from any thread, closing the connection without completing the response, so that
+     * a write to the {@link #responseBody() response body} which is blocked on the client fails. The default
+     * implementation closes the response body.
+     * @since 0.3.0
+     */
+    @ApiStatus.AvailableSince("0.3.0")
+    default void abort() {
+        try {
+            this.responseBody().close();
+        } catch (IOException | IllegalStateException ignored) { }
+    }
+
+    /**
+     * Writes a region of a file to the {@link #responseBody() response body}. Transports may override this to
+     * copy from the file to the connection without passing through the heap. The default implementation
+     * copies through a 64 KiB buffer.
+     * @param file The file to read from. Its position is not modified.
+     * @param position Offset within the file to start reading at
+     * @param count Number of bytes to write
+     * @throws EOFException The file ended before {@code count} bytes were read
+     */
+    default void transferFile(@NotNull FileChannel file, long position, long count) throws IOException {
+        OutputStream os = this.responseBody();
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(65536L, Math.max(count, 1L)));
+        byte[] arr = buf.array();
+        while (count > 0L) {
+            buf.clear();
+            if (count < buf.capacity()) buf.limit((int) count);
+            int r = file.read(buf, position);
+            if (r == -1) throw new EOFException("File ended before expected");
+            os.write(arr, 0, r);
+            position += r;
+            count -= r;
+        }
+    }
+
+}
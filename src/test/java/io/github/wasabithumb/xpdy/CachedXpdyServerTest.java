@@ -0,0 +1,21 @@
+package io.github.wasabithumb.xpdy;
+
+import io.github.wasabithumb.xpdy.nd.StaticContent;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs the server tests with static content held in memory
+ */
+class CachedXpdyServerTest extends XpdyServerTest {
+
+    @Override
+    int port() {
+        return 9742;
+    }
+
+    @Override
+    @NotNull StaticContent staticContent(@NotNull StaticContent content) {
+        return StaticContent.cached(content);
+    }
+
+}
@@ -0,0 +1,91 @@
+package io.github.wasabithumb.xpdy;
+
+import io.github.wasabithumb.xpdy.logging.XpdyLogger;
+import io.github.wasabithumb.xpdy.payload.body.Body;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Serves error pages with a custom {@link io.github.wasabithumb.xpdy.payload.body.ErrorRenderer ErrorRenderer}
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ErrorRendererTest {
+
+    private static final int PORT = 9743;
+
+    private XpdyServer server = null;
+    private final Map<Integer, AtomicInteger> renders = new ConcurrentHashMap<>();
+
+    @BeforeAll
+    void setup() throws IOException {
+        XpdyServer server = XpdyServer.builder()
+                .port(PORT)
+                .logger(XpdyLogger.simple())
+                .errorRenderer((int code) -> {
+                    this.renders.computeIfAbsent(code, (Integer k) -> new AtomicInteger()).incrementAndGet();
+                    return Body.text("Error " + code);
+                })
+                .inject(Instant.class, Instant.now())
+                .build();
+        server.registerEndpoints(TestEndpoints.class);
+        server.start();
+
+        this.server = server;
+    }
+
+    @AfterAll
+    void cleanup() {
+        if (this.server != null) this.server.stop(0);
+    }
+
+    //
+
+    @Test
+    void errorRenderer() throws IOException {
+        HttpURLConnection c1 = open("/missing");
+        assertEquals(404, c1.getResponseCode());
+        assertTrue(c1.getHeaderField("Content-Type").startsWith("text/plain"));
+        assertEquals("Error 404", readError(c1));
+
+        HttpURLConnection c2 = open("/ctxmiss");
+        assertEquals(500, c2.getResponseCode());
+        assertEquals("Error 500", readError(c2));
+
+        // Each code is rendered once
+        HttpURLConnection c3 = open("/missing");
+        assertEquals(404, c3.getResponseCode());
+        assertEquals("Error 404", readError(c3));
+        assertEquals(1, this.renders.get(404).get());
+    }
+
+    //
+
+    private static @NotNull HttpURLConnection open(@NotNull String path) throws IOException {
+        URL url = URI.create("http://127.0.0.1:" + PORT + path).toURL();
+        return (HttpURLConnection) url.openConnection();
+    }
+
+    private static @NotNull String readError(@NotNull HttpURLConnection connection) throws IOException {
+        try (InputStream is = connection.getErrorStream()) {
+            assertNotNull(is);
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+}
@@ -0,0 +1,21 @@
+package io.github.wasabithumb.xpdy;
+
+import io.github.wasabithumb.xpdy.transport.Transport;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs the server tests over the NIO transport
+ */
+class NioXpdyServerTest extends XpdyServerTest {
+
+    @Override
+    int port() {
+        return 9741;
+    }
+
+    @Override
+    void configure(@NotNull XpdyServer.Builder builder) {
+        builder.transport(Transport.nio());
+    }
+
+}
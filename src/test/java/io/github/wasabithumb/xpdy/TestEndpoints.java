@@ -1,13 +1,17 @@
 package io.github.wasabithumb.xpdy;
 
+import io.github.wasabithumb.xpdy.endpoint.EndpointContext;
 import io.github.wasabithumb.xpdy.endpoint.EndpointInject;
 import io.github.wasabithumb.xpdy.endpoint.Endpoints;
 import io.github.wasabithumb.xpdy.endpoint.methods.Get;
 import io.github.wasabithumb.xpdy.endpoint.methods.Post;
 import io.github.wasabithumb.xpdy.endpoint.methods.Put;
+import io.github.wasabithumb.xpdy.except.ServeException;
 import io.github.wasabithumb.xpdy.payload.body.Body;
+import io.github.wasabithumb.xpdy.payload.body.EventStream;
 import io.github.wasabithumb.xpdy.payload.request.Request;
 import io.github.wasabithumb.xpdy.payload.response.Response;
+import org.jetbrains.annotations.NotNull;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
@@ -17,10 +21,14 @@ import java.io.OutputStream;
 import java.time.Instant;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 public class TestEndpoints implements Endpoints {
 
+    private static final Response SHARED = Response.of(Body.text("the quick brown fox jumps over the lazy dog\n".repeat(200)));
+
     @EndpointInject
     private Instant start;
 
@@ -39,6 +47,30 @@ public class TestEndpoints implements Endpoints {
                 .build();
     }
 
+    @Post(value = "/echo/plain", compress = false)
+    Response echoPlain(Request request) {
+        return Response.builder()
+                .body(request.body())
+                .build();
+    }
+
+    @Get(value = "/shared/plain", compress = false)
+    Response sharedPlain() {
+        return SHARED;
+    }
+
+    @Get("/shared")
+    Response shared() {
+        return SHARED;
+    }
+
+    @Post(value = "/limited", maxBodySize = 1024)
+    Response limited(Request request) throws IOException {
+        return Response.builder()
+                .body(Body.text(Integer.toString(request.body().bytes().length)))
+                .build();
+    }
+
     @Get("/wildcard/*")
     Response wildcard(Request request) {
         return Response.builder()
@@ -46,6 +78,65 @@ public class TestEndpoints implements Endpoints {
                 .build();
     }
 
+    @Get("/static/*")
+    static Response staticWildcard(Request request) {
+        return Response.builder()
+                .body(Body.text(request.pathParameters().get(0)))
+                .build();
+    }
+
+    @Get("/async/*")
+    CompletableFuture<Response> async(Request request) {
+        String text = request.pathParameters().get(0);
+        return CompletableFuture.supplyAsync(() -> {
+            if (text.equals("fail")) throw new ServeException(418, "Failed asynchronously");
+            return Response.builder()
+                    .body(Body.text(text))
+                    .build();
+        }, CompletableFuture.delayedExecutor(50L, TimeUnit.MILLISECONDS));
+    }
+
+    @Get("/async-thread")
+    CompletableFuture<Response> asyncThread() {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException ignored) { }
+            future.complete(Response.builder().build());
+        }, "xpdy-test-completer");
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    @Override
+    public void afterEach(@NotNull EndpointContext ctx) {
+        if (ctx.getMeta().path().equals("/async-thread"))
+            ctx.getResponse().headers().set("X-Thread", Thread.currentThread().getName());
+    }
+
+    @Get("/events/*")
+    Response events(Request request) {
+        String text = request.pathParameters().get(0);
+        EventStream events = EventStream.create();
+        events.send("first");
+        CompletableFuture.delayedExecutor(50L, TimeUnit.MILLISECONDS).execute(() -> {
+            events.send("1", "nonce", text);
+            events.close();
+        });
+        return Response.builder()
+                .body(events.body())
+                .build();
+    }
+
+    @Get("/ctxmiss")
+    Response ctxmiss(Thread thread) {
+        return Response.builder()
+                .body(Body.text(thread.getName()))
+                .build();
+    }
+
     @Put("/params")
     Response params(Request request) throws IOException {
         Map<String, String> map = request.urlencoded();
@@ -0,0 +1,20 @@
+package io.github.wasabithumb.xpdy;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs the server tests with each exchange handled on its own virtual thread
+ */
+class VirtualThreadsXpdyServerTest extends XpdyServerTest {
+
+    @Override
+    int port() {
+        return 9740;
+    }
+
+    @Override
+    void configure(@NotNull XpdyServer.Builder builder) {
+        builder.virtualThreads(64);
+    }
+
+}
@@ -6,6 +6,7 @@ import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
@@ -14,36 +15,106 @@ import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.HexFormat;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
 class XpdyServerTest {
 
-    private static XpdyServer SERVER = null;
+    /**
+     * Text long enough to be compressed
+     */
+    private static final String SCRIPT = "console.log(\"the quick brown fox jumps over the lazy dog\");\n".repeat(100);
+
+    private XpdyServer server = null;
+    private Path archive = null;
+
+    /**
+     * The port to serve on. Each configuration uses its own port.
+     */
+    int port() {
+        return 9739;
+    }
+
+    /**
+     * Applies further configuration to the server under test. Subclasses run every test in this class
+     * against other configurations.
+     */
+    void configure(@NotNull XpdyServer.Builder builder) { }
+
+    /**
+     * Wraps the static content served by the server under test
+     */
+    @NotNull StaticContent staticContent(@NotNull StaticContent content) {
+        return content;
+    }
 
     @BeforeAll
-    static void setup() throws IOException {
-        XpdyServer server = XpdyServer.builder()
-                .port(9739)
-                .logger(XpdyLogger.simple())
-                .staticContent(StaticContent.resources("www"))
-                .inject(Instant.class, Instant.now())
-                .build();
+    void setup() throws IOException {
+        this.archive = Files.createTempFile("xpdy-test", ".zip");
+        writeArchive(this.archive);
 
+        XpdyServer.Builder builder = XpdyServer.builder()
+                .port(this.port())
+                .logger(XpdyLogger.simple())
+                .staticContent(this.staticContent(StaticContent.of(
+                        StaticContent.resources("www"),
+                        StaticContent.archive(this.archive, "site")
+                )))
+                .inject(Instant.class, Instant.now());
+        this.configure(builder);
+
+        XpdyServer server = builder.build();
         server.registerEndpoints(TestEndpoints.class);
         server.start();
 
-        SERVER = server;
+        this.server = server;
     }
 
     @AfterAll
-    static void cleanup() {
-        if (SERVER != null) SERVER.stop(0);
+    void cleanup() throws IOException {
+        if (this.server != null) this.server.stop(0);
+        if (this.archive != null) Files.deleteIfExists(this.archive);
+    }
+
+    private static void writeArchive(@NotNull Path path) throws IOException {
+        try (OutputStream os = Files.newOutputStream(path);
+             ZipOutputStream zos = new ZipOutputStream(os)
+        ) {
+            zos.setMethod(ZipOutputStream.DEFLATED);
+            zos.putNextEntry(new ZipEntry("site/zip/app.js"));
+            zos.write(SCRIPT.getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+
+            zos.putNextEntry(new ZipEntry("site/zip/docs/"));
+            zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("site/zip/docs/index.html"));
+            zos.write("<h1>Docs</h1>".getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+
+            byte[] stored = "0123456789".getBytes(StandardCharsets.UTF_8);
+            CRC32 crc = new CRC32();
+            crc.update(stored);
+            ZipEntry entry = new ZipEntry("site/zip/stored.txt");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(stored.length);
+            entry.setCrc(crc.getValue());
+            zos.putNextEntry(entry);
+            zos.write(stored);
+            zos.closeEntry();
+        }
     }
 
     //
@@ -55,6 +126,83 @@ class XpdyServerTest {
         assertEquals("<h1>Hello world!</h1>", index);
     }
 
+    @Test
+    void wwwNotModified() throws IOException {
+        HttpURLConnection c1 = this.open("/");
+        String etag = c1.getHeaderField("ETag");
+        assertNotNull(etag);
+        this.readText(c1);
+
+        HttpURLConnection c2 = this.open("/");
+        c2.setUseCaches(false);
+        c2.setRequestProperty("If-None-Match", etag);
+        assertEquals(304, c2.getResponseCode());
+    }
+
+    @Test
+    void wwwRange() throws IOException {
+        byte[] full;
+        try (InputStream is = this.open("/samples/1.bin").getInputStream()) {
+            full = is.readAllBytes();
+        }
+
+        HttpURLConnection c1 = this.open("/samples/1.bin");
+        c1.setRequestProperty("Range", "bytes=10-19");
+        assertEquals(206, c1.getResponseCode());
+        assertEquals("bytes 10-19/" + full.length, c1.getHeaderField("Content-Range"));
+        try (InputStream is = c1.getInputStream()) {
+            assertArrayEquals(Arrays.copyOfRange(full, 10, 20), is.readAllBytes());
+        }
+
+        HttpURLConnection c2 = this.open("/samples/1.bin");
+        c2.setRequestProperty("Range", "bytes=" + full.length + "-");
+        assertEquals(416, c2.getResponseCode());
+
+        HttpURLConnection c3 = this.open("/samples/1.bin");
+        c3.setRequestProperty("Range", "bytes=0-0");
+        c3.setRequestProperty("If-Range", "\"stale\"");
+        assertEquals(200, c3.getResponseCode());
+    }
+
+    @Test
+    void archiveGzip() throws IOException {
+        byte[] expected = SCRIPT.getBytes(StandardCharsets.UTF_8);
+
+        // The deflated entry is sent as-is, framed as gzip
+        HttpURLConnection c1 = this.open("/zip/app.js");
+        c1.setRequestProperty("Accept-Encoding", "gzip");
+        assertEquals("gzip", c1.getHeaderField("Content-Encoding"));
+        assertTrue(c1.getHeaderField("Content-Type").startsWith("text/javascript"));
+        try (InputStream is = new GZIPInputStream(c1.getInputStream())) {
+            assertArrayEquals(expected, is.readAllBytes());
+        }
+
+        // Otherwise, it is inflated
+        HttpURLConnection c2 = this.open("/zip/app.js");
+        c2.setRequestProperty("Accept-Encoding", "identity");
+        assertNull(c2.getHeaderField("Content-Encoding"));
+        try (InputStream is = c2.getInputStream()) {
+            assertArrayEquals(expected, is.readAllBytes());
+        }
+    }
+
+    @Test
+    void archive() throws IOException {
+        assertEquals("<h1>Docs</h1>", this.readText(this.open("/zip/docs")));
+        assertEquals("<h1>Docs</h1>", this.readText(this.open("/zip//docs/index.html")));
+        assertEquals("0123456789", this.readText(this.open("/zip/stored.txt")));
+        assertEquals(404, this.open("/zip/missing.txt").getResponseCode());
+        // Only deflated entries have a gzip form
+        assertEquals(404, this.open("/zip/stored.txt.gz").getResponseCode());
+
+        // Stored entries are served from the mapping, and so can answer ranges
+        HttpURLConnection connection = this.open("/zip/stored.txt");
+        connection.setRequestProperty("Range", "bytes=2-4");
+        assertEquals(206, connection.getResponseCode());
+        assertEquals("bytes 2-4/10", connection.getHeaderField("Content-Range"));
+        assertEquals("234", this.readText(connection));
+    }
+
     @Test
     void sample1() throws IOException {
         this.testSample(1);
@@ -96,6 +244,83 @@ class XpdyServerTest {
         assertEquals(buf.length, head);
     }
 
+    @Test
+    void echoGzip() throws IOException {
+        byte[] buf = "the quick brown fox jumps over the lazy dog\n".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+        HttpURLConnection connection = this.postText("/echo", buf);
+        assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+        try (InputStream is = new GZIPInputStream(connection.getInputStream())) {
+            assertArrayEquals(buf, is.readAllBytes());
+        }
+    }
+
+    @Test
+    void echoUncompressed() throws IOException {
+        byte[] buf = "the quick brown fox jumps over the lazy dog\n".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+        HttpURLConnection connection = this.postText("/echo/plain", buf);
+        assertNull(connection.getHeaderField("Content-Encoding"));
+        try (InputStream is = connection.getInputStream()) {
+            assertArrayEquals(buf, is.readAllBytes());
+        }
+    }
+
+    @Test
+    void sharedUncompressed() throws IOException {
+        // Opting out for one endpoint does not affect another returning the same response
+        for (int i=0; i < 2; i++) {
+            HttpURLConnection plain = this.open("/shared/plain");
+            plain.setRequestProperty("Accept-Encoding", "gzip");
+            assertNull(plain.getHeaderField("Content-Encoding"));
+            try (InputStream is = plain.getInputStream()) {
+                is.readAllBytes();
+            }
+
+            HttpURLConnection compressed = this.open("/shared");
+            compressed.setRequestProperty("Accept-Encoding", "gzip");
+            assertEquals("gzip", compressed.getHeaderField("Content-Encoding"));
+            try (InputStream is = compressed.getInputStream()) {
+                is.readAllBytes();
+            }
+        }
+    }
+
+    private @NotNull HttpURLConnection postText(@NotNull String path, byte @NotNull [] buf) throws IOException {
+        HttpURLConnection connection = this.open(path);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "text/plain");
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+
+        try (OutputStream os = connection.getOutputStream()) {
+            os.write(buf);
+            os.flush();
+        }
+        return connection;
+    }
+
+    @Test
+    void limited() throws IOException {
+        assertEquals("1024", this.readText(this.postLimited(1024, false)));
+        assertEquals(413, this.postLimited(1025, false).getResponseCode());
+        assertEquals("1024", this.readText(this.postLimited(1024, true)));
+        assertEquals(413, this.postLimited(1025, true).getResponseCode());
+    }
+
+    private @NotNull HttpURLConnection postLimited(int size, boolean chunked) throws IOException {
+        HttpURLConnection connection = this.open("/limited");
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        if (chunked) connection.setChunkedStreamingMode(256);
+
+        try (OutputStream os = connection.getOutputStream()) {
+            os.write(new byte[size]);
+            os.flush();
+        }
+        return connection;
+    }
+
     @Test
     void wildcard() throws IOException {
         String nonce = this.generateNonce();
@@ -104,6 +329,65 @@ class XpdyServerTest {
         assertEquals(nonce, response);
     }
 
+    @Test
+    void staticWildcard() throws IOException {
+        String nonce = this.generateNonce();
+        HttpURLConnection connection = this.open("/static/" + nonce);
+        String response = this.readText(connection);
+        assertEquals(nonce, response);
+    }
+
+    @Test
+    void async() throws IOException {
+        String nonce = this.generateNonce();
+        HttpURLConnection connection = this.open("/async/" + nonce);
+        assertEquals(nonce, this.readText(connection));
+
+        connection = this.open("/async/fail");
+        assertEquals(418, connection.getResponseCode());
+    }
+
+    @Test
+    void asyncThread() throws IOException {
+        // Completion is handed back to the server rather than run on the thread which completed the stage
+        HttpURLConnection connection = this.open("/async-thread");
+        assertEquals(200, connection.getResponseCode());
+        String thread = connection.getHeaderField("X-Thread");
+        assertNotNull(thread);
+        assertNotEquals("xpdy-test-completer", thread);
+    }
+
+    @Test
+    void events() throws IOException {
+        String nonce = this.generateNonce();
+        HttpURLConnection connection = this.open("/events/" + nonce);
+        assertEquals("text/event-stream", connection.getHeaderField("Content-Type"));
+        assertEquals(
+                "data: first\n\nid: 1\nevent: nonce\ndata: " + nonce + "\n\n",
+                this.readText(connection)
+        );
+    }
+
+    @Test
+    void ctxmiss() throws IOException {
+        HttpURLConnection connection = this.open("/ctxmiss");
+        assertEquals(500, connection.getResponseCode());
+    }
+
+    @Test
+    void defaultErrorPage() throws IOException {
+        for (int i=0; i < 2; i++) {
+            HttpURLConnection c1 = this.open("/missing");
+            assertEquals(404, c1.getResponseCode());
+            assertTrue(c1.getHeaderField("Content-Type").startsWith("text/html"));
+            assertTrue(this.readError(c1).contains("<h1>404</h1>"));
+
+            HttpURLConnection c2 = this.open("/ctxmiss");
+            assertEquals(500, c2.getResponseCode());
+            assertTrue(this.readError(c2).contains("<h1>500</h1>"));
+        }
+    }
+
     @Test
     void params() throws IOException {
         String a = this.generateNonce();
@@ -141,10 +425,17 @@ class XpdyServerTest {
     //
 
     private @NotNull HttpURLConnection open(@NotNull String path) throws IOException {
-        URL url = URI.create("http://127.0.0.1:9739" + path).toURL();
+        URL url = URI.create("http://127.0.0.1:" + this.port() + path).toURL();
         return (HttpURLConnection) url.openConnection();
     }
 
+    private @NotNull String readError(@NotNull HttpURLConnection connection) throws IOException {
+        try (InputStream is = connection.getErrorStream()) {
+            assertNotNull(is);
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
     private @NotNull String readText(@NotNull HttpURLConnection connection) throws IOException {
         try (InputStream is = connection.getInputStream();
              InputStreamReader isr = new InputStreamReader(is, StandardCharsets.UTF_8)
@@ -0,0 +1,74 @@
+package io.github.wasabithumb.xpdy.endpoint;
+
+import io.github.wasabithumb.xpdy.misc.HTTPVerb;
+import io.github.wasabithumb.xpdy.payload.request.Request;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EndpointContextTest {
+
+    @Test
+    void classKeys() {
+        assertEquals(ContextKey.of(Number.class), ContextKey.of(Number.class));
+        assertEquals(ContextKey.of(Number.class).hashCode(), ContextKey.of(Number.class).hashCode());
+        assertNotEquals(ContextKey.of(Number.class), ContextKey.of(Integer.class));
+        assertNotEquals(ContextKey.of(Number.class), ContextKey.create(Number.class, "number"));
+        assertNotEquals(ContextKey.create(Number.class, "number"), ContextKey.create(Number.class, "number"));
+
+        EndpointContext ctx = context();
+        ctx.set(Integer.class, 7);
+        assertEquals(Integer.valueOf(7), ctx.get(Integer.class));
+        assertEquals(7, ctx.get(Number.class));
+        assertNull(ctx.get(Long.class));
+    }
+
+    @Test
+    void overflow() {
+        // Create enough keys that some are not given a slot
+        List<ContextKey<Integer>> keys = new ArrayList<>();
+        for (int i=0; i <= ContextKey.MAX_SLOTS; i++) keys.add(ContextKey.create(Integer.class, "key " + i));
+        assertEquals(-1, keys.get(keys.size() - 1).slot);
+
+        EndpointContext ctx = context();
+        for (int i=0; i < keys.size(); i++) ctx.set(keys.get(i), i);
+        for (int i=0; i < keys.size(); i++) assertEquals(Integer.valueOf(i), ctx.get(keys.get(i)));
+        assertNull(context().get(keys.get(keys.size() - 1)));
+
+        // Class keys without a slot take part in assignable lookups
+        ContextKey<Overflowed> key = ContextKey.of(Overflowed.class);
+        assertEquals(-1, key.slot);
+        Overflowed value = new Overflowed();
+        ctx.set(Overflowed.class, value);
+        assertSame(value, ctx.get(key));
+        assertSame(value, ctx.get(Runnable.class));
+        assertTrue(ctx.toString().contains(key + "="));
+    }
+
+    //
+
+    private static @NotNull EndpointContext context() {
+        Request request = (Request) Proxy.newProxyInstance(
+                Request.class.getClassLoader(),
+                new Class<?>[] { Request.class },
+                (Object proxy, Method method, Object[] args) ->
+                        method.getName().equals("toString") ? "request" : null
+        );
+        EndpointMeta meta = EndpointMeta.of(HTTPVerb.GET, "/", "", "", false, true, -1L);
+        return new EndpointContext(request, meta);
+    }
+
+    private static final class Overflowed implements Runnable {
+
+        @Override
+        public void run() { }
+
+    }
+
+}
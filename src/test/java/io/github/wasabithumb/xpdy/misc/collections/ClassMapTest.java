@@ -0,0 +1,132 @@
+package io.github.wasabithumb.xpdy.misc.collections;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassMapTest {
+
+    private static final Class<?>[] QUERIES = {
+            Object.class, Number.class, Integer.class, Long.class, CharSequence.class, String.class,
+            Comparable.class, Serializable.class, Thread.class, Runnable.class, Double.class, Iterable.class
+    };
+
+    private static ClassMap<Object, String> populated() {
+        ClassMap<Object, String> map = ClassMap.create();
+        map.put(Object.class, "object");
+        map.put(Number.class, "number");
+        map.put(Integer.class, "integer");
+        map.put(String.class, "string");
+        map.put(StringBuilder.class, "builder");
+        return map;
+    }
+
+    @Test
+    void order() {
+        ClassMap<Object, String> map = populated();
+        assertEquals(
+                List.of(StringBuilder.class, Integer.class, String.class, Number.class, Object.class),
+                new ArrayList<>(map.keySet())
+        );
+        assertEquals(StringBuilder.class, map.firstKey());
+        assertEquals(Object.class, map.lastKey());
+    }
+
+    @Test
+    void assignable() {
+        ClassMap<Object, String> map = populated();
+        assertEquals("number", map.getAssignable(Number.class));
+        assertEquals("integer", map.getAssignable(Integer.class));
+        assertEquals("builder", map.getAssignable(CharSequence.class));
+        assertEquals("object", map.getAssignable(Object.class));
+        assertNull(map.getAssignable(Long.class));
+        assertNull(map.getAssignable(Runnable.class));
+    }
+
+    @Test
+    void memo() {
+        ClassMap<Object, String> map = ClassMap.create();
+        map.put(Integer.class, "integer");
+        map.put(String.class, "string");
+
+        // Resolve more types than are remembered, several times over
+        for (int round=0; round < 3; round++) {
+            for (Class<?> type : QUERIES) {
+                assertEquals(parity(map, type), map.getAssignable(type), type.getName());
+            }
+        }
+
+        // Resolutions are forgotten once the map is modified
+        assertEquals("integer", map.getAssignable(Number.class));
+        map.put(Long.class, "long");
+        assertEquals("long", map.getAssignable(Number.class));
+        map.remove(Long.class);
+        assertEquals("integer", map.getAssignable(Number.class));
+        map.put(Integer.class, "replaced");
+        assertEquals("replaced", map.getAssignable(Number.class));
+        map.clear();
+        assertNull(map.getAssignable(Number.class));
+    }
+
+    @Test
+    void concurrentReaders() throws Exception {
+        ClassMap<Object, String> map = populated();
+        String[] expected = new String[QUERIES.length];
+        for (int i=0; i < QUERIES.length; i++) expected[i] = parity(map, QUERIES[i]);
+
+        final int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int t=0; t < threads; t++) {
+                final int offset = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i=0; i < 2000000; i++) {
+                        int q = (i * 7 + offset) % QUERIES.length;
+                        String value = map.getAssignable(QUERIES[q]);
+                        if (!Objects.equals(expected[q], value))
+                            throw new AssertionError(QUERIES[q].getName() + " resolved to " + value);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) future.get(30L, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void unmodifiable() {
+        ClassMap<Object, String> map = ClassMap.copyOf(populated());
+        assertEquals("builder", map.getAssignable(CharSequence.class));
+        assertThrows(UnsupportedOperationException.class, () -> map.put(Long.class, "long"));
+    }
+
+    /**
+     * Resolves a type in the same way as {@link ClassMap#getAssignable(Class)}, without any memo
+     */
+    private static String parity(ClassMap<Object, String> map, Class<?> type) {
+        TreeClassMap<Object, String> tree = new TreeClassMap<>();
+        tree.putAll(map);
+        if (tree.containsKey(type)) return tree.get(type);
+        for (var entry : tree.entrySet()) {
+            if (type.isAssignableFrom(entry.getKey())) return entry.getValue();
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,199 @@
+package io.github.wasabithumb.xpdy.misc.io;
+
+import io.github.wasabithumb.xpdy.payload.body.Body;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipeInputStreamTest {
+
+    /** Several times the size of the ring buffer, and not a multiple of it */
+    private static final byte[] DATA = pattern(5 * 16384 + 123);
+
+    @Test
+    void wrapAround() throws IOException {
+        // Odd write and read sizes leave the ends of the ring at every offset
+        int[] reads = { 1, 7, 4096, 16383, 16384, 16385, 50000 };
+        for (int size : reads) {
+            try (InputStream in = new PipeInputStream(PipeInputStreamTest::writeChunked)) {
+                assertArrayEquals(DATA, readAll(in, size), "read size " + size);
+                assertEquals(-1, in.read());
+            }
+        }
+    }
+
+    @Test
+    void singleBytes() throws IOException {
+        try (InputStream in = new PipeInputStream((OutputStream out) -> {
+            for (byte b : DATA) out.write(b);
+        })) {
+            for (int i=0; i < DATA.length; i++) assertEquals(DATA[i] & 0xFF, in.read(), "byte " + i);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void direct() throws IOException {
+        // Consumed before the first read, the operation runs on the calling thread
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        PipeInputStream.Operation operation = (OutputStream out) -> {
+            thread.set(Thread.currentThread());
+            writeChunked(out);
+        };
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (InputStream in = new PipeInputStream(operation)) {
+            assertEquals(DATA.length, in.transferTo(bos));
+            assertEquals(-1, in.read());
+        }
+        assertArrayEquals(DATA, bos.toByteArray());
+        assertSame(Thread.currentThread(), thread.get());
+
+        thread.set(null);
+        try (InputStream in = new PipeInputStream(operation)) {
+            assertArrayEquals(DATA, in.readAllBytes());
+        }
+        assertSame(Thread.currentThread(), thread.get());
+    }
+
+    @Test
+    void transferAfterRead() throws IOException {
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (InputStream in = new PipeInputStream((OutputStream out) -> {
+            thread.set(Thread.currentThread());
+            writeChunked(out);
+        })) {
+            bos.write(in.read());
+            assertEquals(DATA.length - 1, in.transferTo(bos));
+        }
+        assertArrayEquals(DATA, bos.toByteArray());
+        assertNotSame(Thread.currentThread(), thread.get());
+    }
+
+    @Test
+    void error() throws IOException {
+        // Data written before the failure is read in full, then the failure is raised once
+        try (InputStream in = new PipeInputStream((OutputStream out) -> {
+            out.write(DATA);
+            throw new IOException("Operation failed");
+        })) {
+            ByteArrayOutputStream read = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int r;
+            IOException e = null;
+            try {
+                while ((r = in.read(buf)) != -1) read.write(buf, 0, r);
+            } catch (IOException caught) {
+                e = caught;
+            }
+            assertNotNull(e);
+            assertEquals("Operation failed", e.getMessage());
+            assertArrayEquals(DATA, read.toByteArray());
+            assertEquals(-1, in.read());
+        }
+
+        InputStream in = new PipeInputStream((OutputStream out) -> {
+            throw new IllegalStateException("Unchecked");
+        });
+        IOException e = assertThrows(IOException.class, in::read);
+        assertEquals(IllegalStateException.class, e.getCause().getClass());
+        in.close();
+
+        // Through the direct path, the failure is thrown as-is
+        InputStream direct = new PipeInputStream((OutputStream out) -> {
+            throw new IOException("Direct");
+        });
+        assertEquals("Direct", assertThrows(IOException.class, direct::readAllBytes).getMessage());
+    }
+
+    @Test
+    void closeMidWrite() throws Exception {
+        CompletableFuture<Throwable> writeError = new CompletableFuture<>();
+        CountDownLatch writing = new CountDownLatch(1);
+        InputStream in = new PipeInputStream((OutputStream out) -> {
+            try {
+                // Far more than the buffer holds, so the operation blocks until closed
+                writing.countDown();
+                for (int i=0; i < 1000; i++) out.write(DATA);
+                writeError.complete(null);
+            } catch (Throwable t) {
+                writeError.complete(t);
+                throw t;
+            }
+        });
+
+        assertEquals(DATA[0] & 0xFF, in.read());
+        assertTrue(writing.await(5L, TimeUnit.SECONDS));
+
+        // Closing waits for the operation, whose failure is not reported
+        in.close();
+        Throwable t = writeError.get(5L, TimeUnit.SECONDS);
+        assertNotNull(t);
+        assertEquals("Pipe closed", t.getMessage());
+    }
+
+    @Test
+    void closeUnread() throws IOException {
+        AtomicBoolean ran = new AtomicBoolean(false);
+        InputStream in = new PipeInputStream((OutputStream out) -> ran.set(true));
+        in.close();
+        assertEquals(-1, in.read());
+        assertFalse(ran.get());
+    }
+
+    @Test
+    void body() throws IOException {
+        Body body = Body.builder()
+                .source((OutputStream out) -> writeChunked(out))
+                .build();
+
+        try (InputStream in = body.stream()) {
+            assertArrayEquals(DATA, readAll(in, 1000));
+        }
+        try (InputStream in = body.stream()) {
+            assertArrayEquals(DATA, in.readAllBytes());
+        }
+    }
+
+    //
+
+    private static byte @NotNull [] pattern(int length) {
+        byte[] ret = new byte[length];
+        for (int i=0; i < length; i++) ret[i] = (byte) (i * 31 + (i >> 8));
+        return ret;
+    }
+
+    /**
+     * Writes {@link #DATA} in chunks of varying size
+     */
+    private static void writeChunked(@NotNull OutputStream out) throws IOException {
+        int[] sizes = { 1, 1000, 3, 16384, 7, 20000 };
+        int head = 0;
+        for (int i=0; head < DATA.length; i++) {
+            int n = Math.min(sizes[i % sizes.length], DATA.length - head);
+            out.write(DATA, head, n);
+            head += n;
+        }
+    }
+
+    private static byte @NotNull [] readAll(@NotNull InputStream in, int size) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[size];
+        int r;
+        while ((r = in.read(buf)) != -1) bos.write(buf, 0, r);
+        return bos.toByteArray();
+    }
+
+}
@@ -0,0 +1,124 @@
+package io.github.wasabithumb.xpdy.misc.io;
+
+import io.github.wasabithumb.xpdy.except.BodyFormatException;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class URLEncodedParserTest {
+
+    @Test
+    void plus() throws IOException {
+        assertParses(Map.of("a", "b c", "d e", ""), "a=b+c&d+e");
+    }
+
+    @Test
+    void percent() throws IOException {
+        assertParses(Map.of("a", "Ab", "k=", "v&"), "a=%41%62&k%3D=v%26");
+        assertParses(Map.of("lower", " ~"), "lower=%20%7e");
+
+        // Escapes outside of ASCII are replaced rather than decoded
+        assertParses(Map.of("a", "\uFFFD\uFFFD"), "a=%C3%A9");
+
+        // Unescaped text is read as UTF-8
+        assertParses(Map.of("\u00E4", "\u00F6\uD83D\uDE00"), "\u00E4=\u00F6\uD83D\uDE00");
+    }
+
+    @Test
+    void malformed() {
+        assertMalformed("Incomplete escape sequence @ index 3", "a=%");
+        assertMalformed("Incomplete escape sequence @ index 4", "a=%4");
+        assertMalformed("Invalid escape sequence @ index 5", "a=%zz");
+        assertMalformed("Invalid escape sequence @ index 5", "a=%4g&b");
+        assertMalformed("Disallowed character: ; @ index 4", "a=b;c");
+        assertMalformed("Unexpected control character (=) @ index 1", "=b");
+        assertMalformed("Unexpected equals (=) after value @ index 4", "a=b=c");
+    }
+
+    @Test
+    void empty() throws IOException {
+        assertTrue(URLEncodedParser.parse((String) null).isEmpty());
+        assertParses(Map.of(), "");
+        assertParses(Map.of("a", ""), "a");
+        assertParses(Map.of("a", ""), "a=");
+
+        // Empty pairs are reported under the empty key
+        assertParses(Map.of("", "", "a", "1", "b", ""), "a=1&&b");
+        assertParses(Map.of("", ""), "&");
+    }
+
+    @Test
+    void repeated() throws IOException {
+        assertParses(Map.of("a", "2", "b", "3"), "a=1&b=3&a=2");
+        assertParses(Map.of("a", ""), "a=1&a");
+    }
+
+    @Test
+    void large() throws IOException {
+        String value = "x".repeat(20000);
+        assertParses(Map.of("a", value, "b", "c d"), "a=" + value + "&b=c+d");
+    }
+
+    //
+
+    private static void assertParses(@NotNull Map<String, String> expected, @NotNull String input) throws IOException {
+        assertEquals(expected, URLEncodedParser.parse(input), input);
+
+        // Reading one byte at a time splits every token and escape sequence across reads
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected, URLEncodedParser.parse(new TrickleInputStream(bytes)), input);
+        assertEquals(expected, URLEncodedParser.parse(new ByteArrayInputStream(bytes)), input);
+
+        // Lookups agree with the map for every key, and for a key which is absent
+        Map<String, String> found = new HashMap<>();
+        for (String key : expected.keySet()) found.put(key, URLEncodedParser.find(input, key));
+        assertEquals(expected, found, input);
+        assertNull(URLEncodedParser.find(input, "absent"), input);
+    }
+
+    private static void assertMalformed(@NotNull String message, @NotNull String input) {
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        assertEquals(message, assertThrows(BodyFormatException.class, () -> URLEncodedParser.parse(input)).getMessage());
+        assertEquals(message, assertThrows(
+                BodyFormatException.class,
+                () -> URLEncodedParser.parse(new TrickleInputStream(bytes))
+        ).getMessage());
+        assertEquals(message, assertThrows(BodyFormatException.class, () -> URLEncodedParser.find(input, "a")).getMessage());
+    }
+
+    //
+
+    private static final class TrickleInputStream extends InputStream {
+
+        private final byte[] data;
+        private int head = 0;
+
+        TrickleInputStream(byte @NotNull [] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            return (this.head < this.data.length) ? (this.data[this.head++] & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte @NotNull [] b, int off, int len) {
+            if (len == 0) return 0;
+            int next = this.read();
+            if (next == -1) return -1;
+            b[off] = (byte) next;
+            return 1;
+        }
+
+    }
+
+}
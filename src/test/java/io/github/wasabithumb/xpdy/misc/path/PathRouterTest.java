@@ -0,0 +1,137 @@
+package io.github.wasabithumb.xpdy.misc.path;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PathRouterTest {
+
+    @Test
+    void literal() {
+        PathMap<String> map = new PathMap<>();
+        map.put("/", "root");
+        map.put("/foo", "foo");
+        map.put("/foo/bar", "bar");
+        PathRouter<String> router = map.compile();
+
+        assertEquals("root", router.get("/"));
+        assertEquals("root", router.get(""));
+        assertEquals("foo", router.get("/foo"));
+        assertEquals("bar", router.get("/foo/bar"));
+        assertNull(router.get("/bar"));
+        assertNull(router.get("/foo/bar/baz"));
+    }
+
+    @Test
+    void caseInsensitive() {
+        PathMap<String> map = new PathMap<>();
+        map.put("/Foo/bar", "bar");
+        PathRouter<String> router = map.compile();
+
+        assertEquals("bar", router.get("/foo/BAR"));
+        assertEquals("bar", router.get("/FOO/Bar"));
+    }
+
+    @Test
+    void slashes() {
+        PathMap<String> map = new PathMap<>();
+        map.put("/foo/bar", "bar");
+        PathRouter<String> router = map.compile();
+
+        assertEquals("bar", router.get("foo/bar"));
+        assertEquals("bar", router.get("/foo/bar/"));
+        assertEquals("bar", router.get("//foo///bar"));
+    }
+
+    @Test
+    void wildcard() {
+        PathMap<String> map = new PathMap<>(true);
+        map.put("/sample/*/and/*", "sample");
+        map.put("/plain", "plain");
+        PathRouter<String> router = map.compile();
+
+        PathMap.Resolution<String> resolution = router.resolve("/sample/foo/and/bar");
+        assertNotNull(resolution);
+        assertEquals("sample", resolution.value());
+        assertEquals(List.of("foo", "bar"), resolution.params());
+
+        resolution = router.resolve("/plain");
+        assertNotNull(resolution);
+        assertEquals(List.of(), resolution.params());
+
+        assertNull(router.resolve("/sample/foo/or/bar"));
+        assertNull(router.resolve("/sample/foo/and"));
+    }
+
+    @Test
+    void wildcardDisallowed() {
+        PathMap<String> map = new PathMap<>(false);
+        map.put("/files/*", "literal");
+        PathRouter<String> router = map.compile();
+
+        assertEquals("literal", router.get("/files/*"));
+        assertNull(router.get("/files/foo"));
+    }
+
+    @Test
+    void literalPriority() {
+        PathMap<String> map = new PathMap<>(true);
+        map.put("/users/*", "user");
+        map.put("/users/me", "me");
+        map.put("/*/b/d", "wild");
+        map.put("/a/b/c", "exact");
+        PathRouter<String> router = map.compile();
+
+        assertEquals("me", router.get("/users/me"));
+        assertEquals("user", router.get("/users/you"));
+        assertEquals("exact", router.get("/a/b/c"));
+        assertEquals("wild", router.get("/z/b/d"));
+
+        // An exact part is committed to; the wildcard branch is not revisited
+        assertNull(router.get("/a/b/d"));
+        assertEquals(map.get("/a/b/d"), router.get("/a/b/d"));
+    }
+
+    @Test
+    void empty() {
+        PathRouter<String> router = PathRouter.empty();
+        assertNull(router.get("/"));
+        assertNull(router.resolve("/foo"));
+        assertNull(new PathMap<String>().compile().get("/"));
+    }
+
+    @Test
+    void parity() {
+        String[] parts = { "a", "b", "C", "dd", "*" };
+        Random random = new Random(0x5EEDL);
+        PathMap<Integer> map = new PathMap<>(true);
+        for (int i=0; i < 200; i++) map.put(randomPath(random, parts), i);
+        PathRouter<Integer> router = map.compile();
+
+        for (int i=0; i < 5000; i++) {
+            String path = randomPath(random, parts);
+            PathMap.Resolution<Integer> expected = map.resolve(path);
+            PathMap.Resolution<Integer> actual = router.resolve(path);
+            if (expected == null) {
+                assertNull(actual, path);
+            } else {
+                assertNotNull(actual, path);
+                assertEquals(expected.value(), actual.value(), path);
+                assertEquals(expected.params(), actual.params(), path);
+            }
+        }
+    }
+
+    private static String randomPath(Random random, String[] parts) {
+        StringBuilder sb = new StringBuilder();
+        int depth = random.nextInt(5);
+        for (int i=0; i < depth; i++) {
+            sb.append('/').append(parts[random.nextInt(parts.length)]);
+        }
+        return sb.isEmpty() ? "/" : sb.toString();
+    }
+
+}
@@ -0,0 +1,112 @@
+package io.github.wasabithumb.xpdy.nd;
+
+import io.github.wasabithumb.xpdy.payload.body.Body;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedStaticContentTest {
+
+    private static final CacheLimits LIMITS = new CacheLimits(4096L, 1024L, Duration.ofMinutes(1L));
+
+    @Test
+    void hit() throws IOException {
+        CountingContent source = new CountingContent();
+        source.put("/a", "alpha");
+        StaticContent cached = StaticContent.cached(source, LIMITS);
+
+        assertEquals("alpha", text(cached.serve("/a")));
+        assertEquals("alpha", text(cached.serve("/a")));
+        assertEquals(1, source.count("/a"));
+    }
+
+    @Test
+    void miss() throws IOException {
+        CountingContent source = new CountingContent();
+        StaticContent cached = StaticContent.cached(source, LIMITS);
+
+        assertNull(cached.serve("/missing"));
+        assertNull(cached.serve("/missing"));
+        assertEquals(1, source.count("/missing"));
+    }
+
+    @Test
+    void missesDoNotEvictContent() throws IOException {
+        CountingContent source = new CountingContent();
+        source.put("/hot", "x".repeat(1000));
+        StaticContent cached = StaticContent.cached(source, LIMITS);
+
+        assertNotNull(cached.serve("/hot"));
+        for (int i=0; i < 10000; i++) assertNull(cached.serve("/missing/" + i));
+        assertNotNull(cached.serve("/hot"));
+        assertEquals(1, source.count("/hot"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws IOException {
+        CountingContent source = new CountingContent();
+        for (int i=0; i < 5; i++) source.put("/" + i, "x".repeat(1000));
+        StaticContent cached = StaticContent.cached(source, LIMITS);
+
+        for (int i=0; i < 5; i++) cached.serve("/" + i);
+        cached.serve("/4");
+        cached.serve("/0");
+        assertEquals(2, source.count("/0"));
+        assertEquals(1, source.count("/4"));
+    }
+
+    @Test
+    void truncatedBody() throws IOException {
+        // A single-use stream which provides fewer bytes than the body declares
+        byte[] data = "short".getBytes(StandardCharsets.UTF_8);
+        StaticContent source = (String path) -> Body.builder()
+                .source(new ByteArrayInputStream(data))
+                .size(10L)
+                .build();
+        StaticContent cached = StaticContent.cached(source, LIMITS);
+
+        Body body = cached.serve("/truncated");
+        assertNotNull(body);
+        assertEquals(data.length, body.size());
+        assertEquals("short", body.text());
+        assertEquals("short", text(cached.serve("/truncated")));
+    }
+
+    private static @NotNull String text(Body body) throws IOException {
+        assertNotNull(body);
+        return body.text();
+    }
+
+    //
+
+    private static final class CountingContent implements StaticContent {
+
+        private final Map<String, String> content = new HashMap<>();
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        void put(@NotNull String path, @NotNull String text) {
+            this.content.put(path, text);
+        }
+
+        int count(@NotNull String path) {
+            return this.counts.getOrDefault(path, 0);
+        }
+
+        @Override
+        public Body serve(@NotNull String path) {
+            this.counts.merge(path, 1, Integer::sum);
+            String text = this.content.get(path);
+            return text == null ? null : Body.text(text);
+        }
+
+    }
+
+}
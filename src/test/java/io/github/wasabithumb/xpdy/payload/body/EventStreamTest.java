@@ -0,0 +1,104 @@
+package io.github.wasabithumb.xpdy.payload.body;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventStreamTest {
+
+    @Test
+    void slowConsumer() {
+        EventStream events = EventStream.builder()
+                .maxBuffered(16)
+                .build();
+        CountDownLatch closed = new CountDownLatch(1);
+        events.onClose(closed::countDown);
+
+        // A single event is accepted even if it exceeds the limit, but nothing more
+        assertTrue(events.send("0123456789"));
+        assertEquals(18, events.buffered());
+        assertFalse(events.send("x"));
+
+        assertEquals(0L, closed.getCount());
+        assertFalse(events.isOpen());
+        assertEquals(0, events.buffered());
+        assertFalse(events.send("y"));
+    }
+
+    @Test
+    void writeTimeout() throws Exception {
+        EventStream events = EventStream.builder()
+                .writeTimeout(Duration.ofMillis(50L))
+                .build();
+        CountDownLatch closed = new CountDownLatch(1);
+        events.onClose(closed::countDown);
+
+        // The write never returns, as if the client stopped reading and the socket buffer filled up
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch aborted = new CountDownLatch(1);
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                this.write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte @NotNull [] b, int off, int len) throws IOException {
+                stalled.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+        CompletableFuture<Void> done = events.attach(out, aborted::countDown).toCompletableFuture();
+
+        assertTrue(events.send("stalls"));
+        assertTrue(stalled.await(5L, TimeUnit.SECONDS));
+        assertTrue(closed.await(5L, TimeUnit.SECONDS));
+        assertFalse(events.send("rejected"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> done.get(5L, TimeUnit.SECONDS));
+        assertEquals(IOException.class, e.getCause().getClass());
+        assertTrue(aborted.await(5L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void heartbeat() throws Exception {
+        EventStream events = EventStream.builder()
+                .heartbeat(Duration.ofMillis(50L))
+                .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletableFuture<Void> done = events.attach(out, () -> { }).toCompletableFuture();
+
+        assertTrue(events.send("first"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+        while (!text(out).contains(":\n\n")) {
+            if (System.nanoTime() > deadline) fail("No heartbeat was written: " + text(out));
+            Thread.sleep(10L);
+        }
+
+        events.close();
+        done.get(5L, TimeUnit.SECONDS);
+        assertTrue(text(out).startsWith("data: first\n\n:\n\n"), text(out));
+    }
+
+    //
+
+    private static @NotNull String text(@NotNull ByteArrayOutputStream out) {
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,98 @@
+package io.github.wasabithumb.xpdy.payload.cookie;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CookiesTest {
+
+    private static @NotNull Cookies request(@NotNull String @NotNull ... headers) {
+        return Cookies.deferred(Map.of("Cookie", List.of(headers)));
+    }
+
+    @Test
+    void decode() {
+        for (Cookies cookies : this.both("a=hello%20world; b=x+y; c=plain; d; e=")) {
+            assertEquals("hello world", cookies.getValue("a"));
+            assertEquals("x y", cookies.getValue("b"));
+            assertEquals("plain", cookies.getValue("c"));
+            assertEquals("", cookies.getValue("d"));
+            assertEquals("", cookies.getValue("e"));
+            assertNull(cookies.get("f"));
+        }
+    }
+
+    @Test
+    void malformed() {
+        for (Cookies cookies : this.both("bad=%zz; half=%4; ok=%41")) {
+            // Values which cannot be decoded are kept as sent, and do not affect other cookies
+            assertEquals("%zz", cookies.getValue("bad"));
+            assertEquals("%4", cookies.getValue("half"));
+            assertEquals("A", cookies.getValue("ok"));
+        }
+    }
+
+    @Test
+    void lookup() {
+        for (Cookies cookies : this.both("Session=1; other=2", "session=3; bad name=4; other=5")) {
+            assertEquals("1", cookies.getValue("Session"));
+            assertEquals("3", cookies.getValue("session"));
+            assertNotNull(cookies.get("SESSION", true));
+            assertNull(cookies.get("SESSION"));
+
+            // The last occurrence of a name wins
+            assertEquals("5", cookies.getValue("other"));
+            assertNull(cookies.get("bad name"));
+        }
+        assertEquals(Set.of("Session", "session", "other"), request("Session=1; other=2", "session=3; other=5").names());
+    }
+
+    @Test
+    void equality() {
+        for (Cookies cookies : this.both("a=hello%20world")) {
+            Cookie read = cookies.get("a");
+            assertNotNull(read);
+            assertTrue(read.isShallow());
+
+            Cookie created = Cookie.of("a", "hello world");
+            assertEquals(created, read);
+            assertEquals(read, created);
+            assertEquals(created.hashCode(), read.hashCode());
+            assertTrue(Set.of(created).contains(read));
+
+            assertNotEquals(Cookie.of("a", "hello%20world"), read);
+            assertNotEquals(Cookie.of("b", "hello world"), read);
+            assertNotEquals(Cookie.builder().name("a").value("hello world").path("/").build(), read);
+        }
+    }
+
+    @Test
+    void materialize() {
+        Cookies cookies = request("a=1; b=2");
+        Cookie a = cookies.get("a");
+        cookies.setValue("c", "3");
+
+        // Reading the headers into the jar keeps the values seen through lookups
+        assertEquals(a, cookies.get("a"));
+        assertEquals("2", cookies.getValue("b"));
+        assertEquals("3", cookies.getValue("c"));
+        assertEquals(Set.of("a", "b", "c"), cookies.names());
+    }
+
+    //
+
+    /**
+     * Provides the same jar twice: once deferred, and once read into the jar
+     */
+    private @NotNull List<Cookies> both(@NotNull String @NotNull ... headers) {
+        Cookies read = request(headers);
+        read.names();
+        return List.of(request(headers), read);
+    }
+
+}
@@ -0,0 +1,269 @@
+package io.github.wasabithumb.xpdy.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exercises the NIO transport directly over raw sockets
+ */
+class NioTransportTest {
+
+    private static final int PORT = 9745;
+    private static final int BUFFER_SIZE = 1024;
+
+    private static Transport.Binding BINDING = null;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        BINDING = Transport.nio(BUFFER_SIZE).bind(
+                new InetSocketAddress("127.0.0.1", PORT),
+                null,
+                null,
+                NioTransportTest::handle
+        );
+    }
+
+    @AfterAll
+    static void cleanup() {
+        if (BINDING != null) BINDING.stop(0);
+    }
+
+    private static CompletionStage<?> handle(@NotNull TransportExchange exchange) throws IOException {
+        String path = exchange.requestURI().getPath();
+        if (path.equals("/echo")) {
+            byte[] body;
+            try (InputStream is = exchange.requestBody()) {
+                body = is.readAllBytes();
+            }
+            respond(exchange, body);
+            return null;
+        }
+        if (path.startsWith("/async/")) {
+            String text = path.substring(7);
+            return CompletableFuture.runAsync(() -> {
+                if (text.equals("fail")) throw new IllegalStateException("Failed asynchronously");
+                try {
+                    respond(exchange, text.getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, CompletableFuture.delayedExecutor(50L, TimeUnit.MILLISECONDS));
+        }
+        respond(exchange, path.getBytes(StandardCharsets.UTF_8));
+        return null;
+    }
+
+    private static void respond(@NotNull TransportExchange exchange, byte @NotNull [] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length == 0 ? -1L : body.length);
+        try (OutputStream os = exchange.responseBody()) {
+            os.write(body);
+        }
+    }
+
+    //
+
+    @Test
+    void malformedRequestLine() throws IOException {
+        try (Connection connection = new Connection()) {
+            connection.write("GARBAGE\r\n\r\n");
+            assertEquals(400, connection.read().code);
+            assertTrue(connection.isClosed());
+        }
+    }
+
+    @Test
+    void malformedHeader() throws IOException {
+        try (Connection connection = new Connection()) {
+            connection.write("GET / HTTP/1.1\r\nHost: x\r\nNo colon here\r\n\r\n");
+            assertEquals(400, connection.read().code);
+        }
+    }
+
+    @Test
+    void unsupportedProtocol() throws IOException {
+        try (Connection connection = new Connection()) {
+            connection.write("GET / HTTP/2.0\r\nHost: x\r\n\r\n");
+            assertEquals(505, connection.read().code);
+        }
+    }
+
+    @Test
+    void oversizedHead() throws IOException {
+        try (Connection connection = new Connection()) {
+            connection.write("GET / HTTP/1.1\r\nHost: x\r\nX-Padding: " + "a".repeat(BUFFER_SIZE * 2) + "\r\n\r\n");
+            assertEquals(431, connection.read().code);
+        }
+    }
+
+    @Test
+    void conflictingLength() throws IOException {
+        try (Connection connection = new Connection()) {
+            connection.write("POST /echo HTTP/1.1\r\nHost: x\r\nContent-Length: 3\r\n" +
+                    "Transfer-Encoding: chunked\r\n\r\nabc");
+            assertEquals(400, connection.read().code);
+            assertTrue(connection.isClosed());
+        }
+    }
+
+    @Test
+    void keepAlive() throws IOException {
+        try (Connection connection = new Connection()) {
+            for (int i=0; i < 3; i++) {
+                connection.write("GET /hello" + i + " HTTP/1.1\r\nHost: x\r\n\r\n");
+                Response response = connection.read();
+                assertEquals(200, response.code);
+                assertEquals("/hello" + i, response.body);
+            }
+        }
+    }
+
+    @Test
+    void closeRequested() throws IOException {
+        try (Connection connection = new Connection()) {
+            connection.write("GET /bye HTTP/1.1\r\nHost: x\r\nConnection: close\r\n\r\n");
+            assertEquals("/bye", connection.read().body);
+            assertTrue(connection.isClosed());
+        }
+        try (Connection connection = new Connection()) {
+            connection.write("GET /old HTTP/1.0\r\n\r\n");
+            assertEquals("/old", connection.read().body);
+            assertTrue(connection.isClosed());
+        }
+    }
+
+    @Test
+    void chunkedRequest() throws IOException {
+        try (Connection connection = new Connection()) {
+            connection.write("POST /echo HTTP/1.1\r\nHost: x\r\nTransfer-Encoding: chunked\r\n\r\n" +
+                    "5\r\nhello\r\n6\r\n world\r\n0\r\n\r\n");
+            assertEquals("hello world", connection.read().body);
+
+            // The connection is reusable once the chunked body has been consumed
+            connection.write("GET /after HTTP/1.1\r\nHost: x\r\n\r\n");
+            assertEquals("/after", connection.read().body);
+        }
+    }
+
+    @Test
+    void unreadBodyDrained() throws IOException {
+        try (Connection connection = new Connection()) {
+            connection.write("POST /ignored HTTP/1.1\r\nHost: x\r\nContent-Length: 5\r\n\r\nhello");
+            assertEquals("/ignored", connection.read().body);
+            connection.write("GET /next HTTP/1.1\r\nHost: x\r\n\r\n");
+            assertEquals("/next", connection.read().body);
+        }
+    }
+
+    @Test
+    void asyncContinuation() throws IOException {
+        try (Connection connection = new Connection()) {
+            // Responses are written in request order, even when an earlier exchange completes asynchronously
+            connection.write("GET /async/first HTTP/1.1\r\nHost: x\r\n\r\n" +
+                    "GET /sync HTTP/1.1\r\nHost: x\r\n\r\n" +
+                    "GET /async/last HTTP/1.1\r\nHost: x\r\n\r\n");
+            assertEquals("first", connection.read().body);
+            assertEquals("/sync", connection.read().body);
+            assertEquals("last", connection.read().body);
+
+            // The connection is read from again once the pipeline is drained
+            connection.write("GET /async/again HTTP/1.1\r\nHost: x\r\n\r\n");
+            assertEquals("again", connection.read().body);
+        }
+    }
+
+    @Test
+    void asyncFailure() throws IOException {
+        try (Connection connection = new Connection()) {
+            connection.write("GET /async/fail HTTP/1.1\r\nHost: x\r\n\r\n");
+            assertEquals(500, connection.read().code);
+            assertTrue(connection.isClosed());
+        }
+    }
+
+    //
+
+    private record Response(int code, @NotNull String body) { }
+
+    private static final class Connection implements Closeable {
+
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+
+        Connection() throws IOException {
+            this.socket = new Socket("127.0.0.1", PORT);
+            this.socket.setSoTimeout(5000);
+            this.in = new BufferedInputStream(this.socket.getInputStream());
+            this.out = this.socket.getOutputStream();
+        }
+
+        void write(@NotNull String text) throws IOException {
+            this.out.write(text.getBytes(StandardCharsets.ISO_8859_1));
+            this.out.flush();
+        }
+
+        @NotNull Response read() throws IOException {
+            String status = this.line();
+            assertTrue(status.startsWith("HTTP/1."), status);
+            int code = Integer.parseInt(status.substring(9, 12));
+
+            long length = 0L;
+            boolean chunked = false;
+            String line;
+            while (!(line = this.line()).isEmpty()) {
+                int colon = line.indexOf(':');
+                String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(colon + 1).trim();
+                if (name.equals("content-length")) length = Long.parseLong(value);
+                if (name.equals("transfer-encoding")) chunked = value.equalsIgnoreCase("chunked");
+            }
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if (chunked) {
+                int size;
+                while ((size = Integer.parseInt(this.line().trim(), 16)) != 0) {
+                    body.write(this.in.readNBytes(size));
+                    this.line();
+                }
+                this.line();
+            } else {
+                body.write(this.in.readNBytes((int) length));
+            }
+            return new Response(code, body.toString(StandardCharsets.UTF_8));
+        }
+
+        boolean isClosed() throws IOException {
+            return this.in.read() == -1;
+        }
+
+        private @NotNull String line() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int b;
+            while ((b = this.in.read()) != '\n') {
+                if (b == -1) throw new EOFException("Connection closed");
+                if (b != '\r') sb.append((char) b);
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.socket.close();
+        }
+
+    }
+
+}